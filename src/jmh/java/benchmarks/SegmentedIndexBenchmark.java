@@ -0,0 +1,75 @@
+package benchmarks;
+
+import indexing.SegmentedIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of miss-heavy query workloads on a {@link SegmentedIndex}, with and without Bloom filters.
+ * Every segment has its own vocabulary, plus a set of terms shared by all segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentedIndexBenchmark {
+    private static final int SEGMENTS = 64;
+    private static final int FILES_PER_SEGMENT = 16;
+    private static final int TERMS_PER_FILE = 500;
+
+    /**
+     * The false positive rate of the filters; 1 disables them.
+     */
+    @Param({"1", "0.01"})
+    public double falsePositiveRate;
+
+    /**
+     * The fraction of queries for terms that are not indexed at all.
+     */
+    @Param({"0.9", "1"})
+    public double missRatio;
+
+    private SegmentedIndex index;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void buildIndex() {
+        this.index = new SegmentedIndex(FILES_PER_SEGMENT, this.falsePositiveRate);
+        Random random = new Random(42);
+        List<String> indexed = new ArrayList<>();
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            for (int f = 0; f < FILES_PER_SEGMENT; f++) {
+                List<String> tokens = new ArrayList<>();
+                for (int t = 0; t < TERMS_PER_FILE; t++) {
+                    // Mostly segment-local terms, with a few shared by all segments
+                    String term = random.nextInt(10) == 0 ? "shared" + random.nextInt(100) : "s" + segment + "term" + random.nextInt(5000);
+                    tokens.add(term);
+                    indexed.add(term);
+                }
+                this.index.addDocument(new File("segment" + segment + "/file" + f + ".txt"), tokens);
+            }
+        }
+        this.index.seal();
+
+        this.queries = new String[1 << 14];
+        for (int i = 0; i < this.queries.length; i++) {
+            this.queries[i] = random.nextDouble() < this.missRatio
+                    ? "missing" + random.nextInt(1_000_000)
+                    : indexed.get(random.nextInt(indexed.size()));
+        }
+    }
+
+    @Benchmark
+    public int search() {
+        String query = this.queries[this.next++ & (this.queries.length - 1)];
+        return this.index.search(query).size();
+    }
+}
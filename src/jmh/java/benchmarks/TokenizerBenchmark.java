@@ -0,0 +1,75 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tokenizing.Utf8ByteTokenizer;
+import tokenizing.VectorWhitespaceTokenizer;
+import tokenizing.WhitespaceTokenizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the tokenizers on the bundled Wikipedia extracts:
+ * the regex based {@link WhitespaceTokenizer} (including decoding the bytes into a String),
+ * the scalar loop of the {@link Utf8ByteTokenizer} and the SIMD scan of the {@link VectorWhitespaceTokenizer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class TokenizerBenchmark {
+    private static final String[] EXTRACTS = {"Poland.txt", "United_States.txt", "new_york_city.txt"};
+
+    /**
+     * The approximate size of the tokenized text in bytes.
+     */
+    @Param({"1048576"})
+    public int size;
+
+    private byte[] text;
+    private final WhitespaceTokenizer regexTokenizer = new WhitespaceTokenizer();
+    private final Utf8ByteTokenizer scalarTokenizer = new Utf8ByteTokenizer();
+    private final Utf8ByteTokenizer vectorTokenizer = new VectorWhitespaceTokenizer();
+
+    @Setup
+    public void loadText() throws IOException {
+        ByteArrayOutputStream extracts = new ByteArrayOutputStream();
+        for (String extract : EXTRACTS) {
+            try (InputStream in = TokenizerBenchmark.class.getResourceAsStream("/wikipedia_extracts/" + extract)) {
+                if (in == null) {
+                    throw new IOException("Missing resource: " + extract);
+                }
+                in.transferTo(extracts);
+            }
+        }
+
+        ByteArrayOutputStream repeated = new ByteArrayOutputStream(this.size + extracts.size());
+        while (repeated.size() < this.size) {
+            extracts.writeTo(repeated);
+        }
+        this.text = repeated.toByteArray();
+    }
+
+    @Benchmark
+    public void regexSplit(Blackhole blackhole) {
+        for (String token : this.regexTokenizer.tokenize(new String(this.text, StandardCharsets.UTF_8))) {
+            blackhole.consume(token);
+        }
+    }
+
+    @Benchmark
+    public void scalarBytes(Blackhole blackhole) {
+        this.scalarTokenizer.tokenize(this.text, 0, this.text.length, blackhole::consume);
+    }
+
+    @Benchmark
+    public void vectorBytes(Blackhole blackhole) {
+        this.vectorTokenizer.tokenize(this.text, 0, this.text.length, blackhole::consume);
+    }
+}
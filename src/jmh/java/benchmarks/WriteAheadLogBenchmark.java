@@ -0,0 +1,77 @@
+package benchmarks;
+
+import indexing.LoggedHashMapIndex;
+import indexing.WriteAheadLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Measures how many documents per second can be added to a {@link LoggedHashMapIndex} with every durability mode,
+ * from several threads at once. Like a {@code FileIndexer}, every thread changes the index under a lock,
+ * and waits for its record after releasing the lock, so the records of concurrent threads share an fsync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(4)
+public class WriteAheadLogBenchmark {
+    private static final int TERMS_PER_DOCUMENT = 100;
+
+    @Param({"BATCH", "INTERVAL", "NONE"})
+    public WriteAheadLog.Durability durability;
+
+    private Path directory;
+    private LoggedHashMapIndex index;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicInteger nextDocument = new AtomicInteger();
+    private List<String> terms;
+
+    @Setup(Level.Iteration)
+    public void openIndex() throws IOException {
+        this.directory = Files.createTempDirectory("wal-benchmark");
+        this.index = LoggedHashMapIndex.open(this.directory, this.durability, WriteAheadLog.DEFAULT_INTERVAL_MILLIS);
+        this.terms = new ArrayList<>(TERMS_PER_DOCUMENT);
+        for (int i = 0; i < TERMS_PER_DOCUMENT; i++) {
+            this.terms.add("term" + i);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeIndex() throws IOException {
+        this.index.close();
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public long addDocument() {
+        File file = new File("documents/" + this.nextDocument.getAndIncrement() + ".txt");
+        long sequence;
+        this.lock.lock();
+        try {
+            this.index.addDocument(file, this.terms);
+            sequence = this.index.getLog().lastSequence();
+        } finally {
+            this.lock.unlock();
+        }
+        this.index.getLog().sync(sequence);
+        return sequence;
+    }
+}
@@ -1,9 +1,18 @@
+import indexing.BatchResult;
 import indexing.FileIndexer;
+import indexing.IndexRegistry;
+import indexing.IndexingJob;
+import indexing.IndexingJobs;
+import indexing.IndexingPipeline;
+import indexing.MappedIndex;
+import indexing.SearchPage;
 import indexing.SimpleFileIndexer;
+import indexing.TermLocation;
 import util.FileHandling;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -14,18 +23,29 @@ import java.util.regex.Pattern;
  * It allows users to execute various commands related to file indexing and searching.
  */
 class IndexerApplication implements Runnable {
-    private final FileIndexer fileIndexer; // The file indexer used for indexing files
+    private FileIndexer fileIndexer; // The indexer of the current index, replaced when an index file is opened or swapped out
+    private final IndexRegistry indexRegistry; // All named indexes, sharing a memory budget
+    private String currentIndex = IndexRegistry.DEFAULT_INDEX; // The name of the index used by the commands
     private final Map<String, Command> commands; // Map to store available commands
+    private final Scanner scanner; // Reads user input, shared by all commands
+    private final IndexingJobs indexingJobs; // Indexing jobs running in the background
     private File currentDirectory; // The current working directory
 
     /**
-     * Initializes the IndexerApplication with a SimpleFileIndexer
+     * Initializes the IndexerApplication with an empty default index
      * and sets the current directory to the user's working directory.
+     * The indexes may take half of the maximum heap together, before the least recently used ones are swapped out.
      */
     public IndexerApplication() {
-        this.fileIndexer = new SimpleFileIndexer();
         this.currentDirectory = new File(System.getProperty("user.dir"));
         this.commands = new HashMap<>();
+        this.scanner = new Scanner(System.in);
+        this.indexingJobs = new IndexingJobs();
+        Path spillDirectory = Path.of(System.getProperty("java.io.tmpdir"), "indexer-" + ProcessHandle.current().pid());
+        // The current index and indexes with running jobs stay on the heap
+        this.indexRegistry = new IndexRegistry(Runtime.getRuntime().maxMemory() / 2, spillDirectory,
+                indexer -> indexer == this.fileIndexer || this.indexingJobs.isIndexing(indexer));
+        this.fileIndexer = this.indexRegistry.get(this.currentIndex);
         this.initializeCommands(); // Set up available commands
     }
 
@@ -37,6 +57,16 @@ class IndexerApplication implements Runnable {
         commands.put("help", this::displayHelp);
         commands.put("index", this::handleFileIndexer);
         commands.put("query", this::handleFileSearch);
+        commands.put("explain", this::handleExplain);
+        commands.put("terms", this::handleTerms);
+        commands.put("remove", this::handleRemove);
+        commands.put("jobs", this::handleJobs);
+        commands.put("progress", this::handleProgress);
+        commands.put("cancel", this::handleCancel);
+        commands.put("save", this::handleSave);
+        commands.put("open", this::handleOpen);
+        commands.put("use", this::handleUse);
+        commands.put("indexes", this::handleIndexes);
         commands.put("cd", this::handleChangeDirectory);
         commands.put("ls", this::handleListFiles);
         commands.put("exit", this::exitApplication);
@@ -47,11 +77,10 @@ class IndexerApplication implements Runnable {
         System.out.println("Welcome to the Text File Indexer!");
         System.out.println("Type 'help' for a list of commands.");
 
-        Scanner scanner = new Scanner(System.in);
         while (true) {
             System.out.println("Working Directory: " + this.currentDirectory.getAbsolutePath());
             System.out.print("> ");
-            String input = scanner.nextLine();
+            String input = this.scanner.nextLine();
 
             if (input.isEmpty()) {
                 continue; // Skip empty input
@@ -76,12 +105,17 @@ class IndexerApplication implements Runnable {
             }
 
             // Execute the command
-            if (!commands.get(command).execute(args)) {
-                System.out.println("Error while executing command. Please try again.");
+            try {
+                if (!commands.get(command).execute(args)) {
+                    System.out.println("Error while executing command. Please try again.");
+                }
+            } catch (UnsupportedOperationException e) {
+                System.out.println(e.getMessage()); // For example, when changing an index that was opened from a file
             }
+            this.indexRegistry.enforceBudget(); // Indexes may have grown
             System.out.println();
         }
-        scanner.close();
+        this.scanner.close();
         System.out.println("Thank you for using the File Indexer & Search Utility!");
     }
 
@@ -93,11 +127,21 @@ class IndexerApplication implements Runnable {
      */
     private boolean displayHelp(String[] ignored) {
         System.out.println("Available commands:");
-        System.out.println("1. index [-r recursively] <path1> <path2> ... <pathN> - Index all text files in the specified directories and files. If a path contains a space, it can be placed between quotation marks.");
-        System.out.println("2. query <word> - Find files containing the specified word in the stored index.");
-        System.out.println("3. cd <path> - Change the current directory.");
-        System.out.println("4. ls - List all files in the current directory.");
-        System.out.println("5. exit - Exit the application.");
+        System.out.println("1. index [-r recursively] [-m <megabytes> memory budget] [-p pipeline] [-b background] [-l locations] [--into <name>] <path1> <path2> ... <pathN> - Index all text files in the specified directories and files. If a path contains a space, it can be placed between quotation marks. With a memory budget, the index is built in runs spilled to disk and written to a read-only index file, which is searched without loading it onto the heap until the index is changed without a budget. Existing files are updated without asking. With -p, files are walked, read, tokenized and committed in overlapping stages, and the statistics of every stage are printed. With -b, the pipeline runs as a background job, and queries are answered from the files indexed so far. With -l, the line and offset of the first occurrences of every word are stored, for query --context. With --into, the files are added to the named index instead of the current one.");
+        System.out.println("2. query [--count] [--context] [--all] [--limit <n>] [--after <cursor>] <word1> <word2> ... <wordN> - Find files containing all specified words in the stored index. --count only prints the number of files, --context prints the line and a snippet of every occurrence in files indexed with -l, --all searches all indexes, --limit prints at most n files, and --after continues after a previous page. Pages are only supported for a single word.");
+        System.out.println("3. explain <word1> <word2> ... <wordN> - Show how a query for the specified words would be run, without running it.");
+        System.out.println("4. terms [--top <k>] - Show the number of distinct words in the index, the k words contained in the most files (10 by default), and how many words are contained in how many files.");
+        System.out.println("5. remove <path1> <path2> ... <pathN> - Remove the specified files, or all indexed files below the specified directories, from the index.");
+        System.out.println("6. jobs - List the background indexing jobs and their progress.");
+        System.out.println("7. progress <id> - Show the files and bytes indexed by a background job, its throughput and the estimated time left.");
+        System.out.println("8. cancel <id> - Stop a background job. The files indexed before the cancellation stay in the index.");
+        System.out.println("9. save <file> - Write the index to a file.");
+        System.out.println("10. open <file> - Serve searches from an index file written with save, without loading it into memory. The opened index is read-only.");
+        System.out.println("11. use <name> - Switch to the index with the given name, creating it if it doesn't exist. All commands work on the current index, which is 'default' at the start.");
+        System.out.println("12. indexes [--budget <megabytes>] - List the indexes with their number of files and estimated memory. The indexes share a memory budget, half of the maximum heap by default: when they exceed it, the least recently used indexes are swapped out to disk and searched from there, until they change again.");
+        System.out.println("13. cd <path> - Change the current directory.");
+        System.out.println("14. ls - List all files in the current directory.");
+        System.out.println("15. exit - Exit the application.");
         return true;
     }
 
@@ -117,13 +161,39 @@ class IndexerApplication implements Runnable {
         }
 
         boolean recursive = false; // Flag for recursive indexing
-        String[] filePaths = args;
-
-        // Check for the recursive flag
-        if (args[0].equals("-r") || args[0].equals("--recursive")) {
-            recursive = true;
-            filePaths = Arrays.copyOfRange(args, 1, args.length); // Remove the flag
+        long memoryBudget = 0; // Memory budget in bytes for building the index, 0 if unlimited
+        boolean pipeline = false; // Flag for indexing in overlapping stages
+        boolean background = false; // Flag for indexing in a background job
+        boolean locations = false; // Flag for storing where words occur
+        String into = this.currentIndex; // The named index to add the files to
+
+        // Parse the flags in front of the paths
+        int flagCount = 0;
+        while (flagCount < args.length && args[flagCount].startsWith("-")) {
+            String flag = args[flagCount++];
+            if (flag.equals("-r") || flag.equals("--recursive")) {
+                recursive = true;
+            } else if (flag.equals("-p") || flag.equals("--pipeline")) {
+                pipeline = true;
+            } else if (flag.equals("-b") || flag.equals("--background")) {
+                background = true;
+            } else if (flag.equals("-l") || flag.equals("--locations")) {
+                locations = true;
+            } else if (flag.equals("--into") && flagCount < args.length) {
+                into = args[flagCount++];
+            } else if ((flag.equals("-m") || flag.equals("--memory-budget")) && flagCount < args.length) {
+                try {
+                    memoryBudget = Long.parseLong(args[flagCount++]) * 1024 * 1024;
+                } catch (NumberFormatException e) {
+                    System.out.println("The memory budget must be a number of megabytes.");
+                    return false;
+                }
+            } else {
+                System.out.println("Unknown flag: " + flag);
+                return false;
+            }
         }
+        String[] filePaths = Arrays.copyOfRange(args, flagCount, args.length); // Remove the flags
 
         // Ensure at least one file path is provided
         if (filePaths.length == 0) {
@@ -131,6 +201,34 @@ class IndexerApplication implements Runnable {
             return false;
         }
 
+        // Load the index onto the heap if it was swapped out, since it's about to change,
+        // unless it's rebuilt into a new file within a memory budget
+        FileIndexer indexer;
+        try {
+            indexer = memoryBudget > 0 ? this.indexRegistry.get(into) : this.indexRegistry.load(into);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        if (into.equals(this.currentIndex)) {
+            this.fileIndexer = indexer;
+        }
+
+        if (locations) {
+            if (!(indexer instanceof SimpleFileIndexer simpleIndexer)) {
+                System.out.println("The opened index doesn't support storing the locations of words.");
+                return false;
+            }
+            simpleIndexer.setLocationStorage(true);
+        }
+
+        if (background) {
+            return indexInBackground(indexer, filePaths, recursive);
+        }
+        if (pipeline) {
+            return indexWithPipeline(indexer, filePaths, recursive);
+        }
+
         List<File> textFiles = new ArrayList<>();
 
         for (String filePath : filePaths) {
@@ -153,11 +251,32 @@ class IndexerApplication implements Runnable {
             return false;
         }
 
+        // Build the index within the memory budget, spilling to disk when needed
+        if (memoryBudget > 0) {
+            this.indexingJobs.cancelAll(indexer); // The jobs would keep indexing into the replaced index
+            FileIndexer built;
+            try {
+                built = this.indexRegistry.build(into, memoryBudget, textFiles.toArray(new File[0]));
+            } catch (IOException e) {
+                System.out.println("Error while creating the index file: " + e.getMessage());
+                return false;
+            }
+            if (built == null) {
+                System.out.println("Error while indexing files, the index was left unchanged.");
+                return false;
+            }
+            if (into.equals(this.currentIndex)) {
+                this.fileIndexer = built;
+            }
+            System.out.printf("Built an index file with %d files%n", built.getIndexedFileCount());
+            return true;
+        }
+
         // Index each text file
         for (File textFile : textFiles) {
 
-            if (!this.fileIndexer.getIndexedFiles().contains(textFile)) {
-                if (!this.fileIndexer.indexFile(textFile)) {
+            if (!indexer.isIndexed(textFile)) {
+                if (!indexer.indexFile(textFile)) {
                     System.out.println("Error while indexing file: " + textFile.getAbsolutePath());
                     return false;
                 }
@@ -166,10 +285,9 @@ class IndexerApplication implements Runnable {
 
             // Prompt user to update the index if the file is already indexed
             System.out.printf("File `%s` already indexed. Update? (y/n) ", textFile.getName());
-            Scanner scanner = new Scanner(System.in);
-            String input = scanner.nextLine();
+            String input = this.scanner.nextLine();
             if (input.equalsIgnoreCase("y")) {
-                if (!this.fileIndexer.updateFileInIndex(textFile)) {
+                if (!indexer.updateFileInIndex(textFile)) {
                     System.out.println("Error while updating index for file: " + textFile.getAbsolutePath());
                     return false;
                 }
@@ -180,17 +298,217 @@ class IndexerApplication implements Runnable {
     }
 
     /**
-     * Searches for files containing a specific keyword.
+     * Indexes files with an {@link IndexingPipeline}, which walks, reads, tokenizes and commits files in overlapping stages,
+     * and prints the statistics of every stage. Files that are already indexed are updated without asking.
+     */
+    private boolean indexWithPipeline(FileIndexer indexer, String[] filePaths, boolean recursive) {
+        if (!(indexer instanceof SimpleFileIndexer simpleIndexer)) {
+            System.out.println("The opened index doesn't support indexing in a pipeline.");
+            return false;
+        }
+
+        List<File> roots = new ArrayList<>();
+        for (String filePath : filePaths) {
+            roots.add(resolve(filePath));
+        }
+
+        IndexingPipeline indexingPipeline = new IndexingPipeline(simpleIndexer);
+        BatchResult result;
+        try {
+            result = indexingPipeline.run(roots, recursive);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        System.out.printf("Indexed %d files%n", result.committed());
+        for (IndexingPipeline.StageStats stage : indexingPipeline.stats()) {
+            System.out.println("  " + stage);
+        }
+        for (File file : result.failed()) {
+            System.out.println("Error while indexing file: " + file.getAbsolutePath());
+        }
+        return result.isComplete();
+    }
+
+    /**
+     * Starts an {@link IndexingJob}, which indexes files with a pipeline on a background thread, and prints its ID.
+     */
+    private boolean indexInBackground(FileIndexer indexer, String[] filePaths, boolean recursive) {
+        if (!(indexer instanceof SimpleFileIndexer simpleIndexer)) {
+            System.out.println("The opened index doesn't support indexing in the background.");
+            return false;
+        }
+
+        List<File> roots = new ArrayList<>();
+        for (String filePath : filePaths) {
+            roots.add(resolve(filePath));
+        }
+        IndexingJob job = this.indexingJobs.submit(simpleIndexer, roots, recursive);
+        System.out.printf("Started indexing job %d. Use 'progress %d' to follow it.%n", job.getId(), job.getId());
+        return true;
+    }
+
+    /**
+     * Lists all background indexing jobs with their state and progress.
+     *
+     * @param ignored Unused parameter.
+     * @return true to indicate that the command was executed successfully.
+     */
+    private boolean handleJobs(String[] ignored) {
+        List<IndexingJob> jobs = this.indexingJobs.list();
+        if (jobs.isEmpty()) {
+            System.out.println("No indexing jobs.");
+        }
+        jobs.forEach(System.out::println);
+        return true;
+    }
+
+    /**
+     * Prints the progress of a background indexing job, and the statistics of its stages.
+     *
+     * @param args Command line arguments containing the ID of the job.
+     * @return true if the job exists, false otherwise.
+     */
+    private boolean handleProgress(String[] args) {
+        IndexingJob job = findJob(args);
+        if (job == null) {
+            return false;
+        }
+
+        System.out.println(job);
+        for (IndexingPipeline.StageStats stage : job.stats()) {
+            System.out.println("  " + stage);
+        }
+        BatchResult result = job.getResult();
+        if (result != null) {
+            for (File file : result.failed()) {
+                System.out.println("Error while indexing file: " + file.getAbsolutePath());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cancels a background indexing job. The job stops after the batch it is committing.
+     *
+     * @param args Command line arguments containing the ID of the job.
+     * @return true if the job exists, false otherwise.
+     */
+    private boolean handleCancel(String[] args) {
+        IndexingJob job = findJob(args);
+        if (job == null) {
+            return false;
+        }
+
+        if (job.getState() != IndexingJob.State.RUNNING) {
+            System.out.printf("Job %d has already finished.%n", job.getId());
+            return true;
+        }
+        job.cancel();
+        System.out.printf("Cancelling job %d.%n", job.getId());
+        return true;
+    }
+
+    /**
+     * Finds the job whose ID is the only argument, printing a message if there is none.
+     */
+    private IndexingJob findJob(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Please provide the ID of a job. Use 'jobs' to list them.");
+            return null;
+        }
+        IndexingJob job;
+        try {
+            job = this.indexingJobs.get(Integer.parseInt(args[0]));
+        } catch (NumberFormatException e) {
+            job = null;
+        }
+        if (job == null) {
+            System.out.println("No job with ID " + args[0] + ".");
+        }
+        return job;
+    }
+
+    /**
+     * Searches for files containing a specific keyword, or all of several keywords.
+     * With {@code --count}, only the number of files is printed. With {@code --context}, the line and a snippet
+     * of every occurrence are printed. With {@code --all}, every index is searched. With {@code --limit <n>}, at most n files are printed,
+     * and {@code --after <cursor>} continues after a previous page.
      *
-     * @param args Command line arguments containing the search keyword.
+     * @param args Command line arguments containing the options and the search keywords.
      * @return {@code true} if the search was successful, {@code false} otherwise.
      */
     private boolean handleFileSearch(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Please provide one keyword to search for.");
+        String wrongInputMessage = "Please provide one or more keywords to search for, optionally preceded by --count, --context, --all, --limit <n> or --after <cursor>.";
+        boolean countOnly = false;
+        boolean context = false; // Print where the keywords occur
+        boolean allIndexes = false; // Search every named index
+        int limit = 0; // The number of files to print, 0 to print all
+        String cursor = null;
+
+        // Parse the options in front of the keyword
+        int optionCount = 0;
+        while (optionCount < args.length - 1 && args[optionCount].startsWith("--")) {
+            String option = args[optionCount++];
+            if (option.equals("--count")) {
+                countOnly = true;
+            } else if (option.equals("--context")) {
+                context = true;
+            } else if (option.equals("--all")) {
+                allIndexes = true;
+            } else if (option.equals("--limit") && optionCount < args.length - 1) {
+                try {
+                    limit = Integer.parseInt(args[optionCount++]);
+                } catch (NumberFormatException e) {
+                    limit = -1;
+                }
+                if (limit < 1) {
+                    System.out.println("The limit must be a positive number.");
+                    return false;
+                }
+            } else if (option.equals("--after") && optionCount < args.length - 1) {
+                cursor = args[optionCount++];
+            } else {
+                System.out.println("Unknown option: " + option);
+                return false;
+            }
+        }
+        if (args.length - optionCount < 1) {
+            System.out.println(wrongInputMessage);
             return false;
         }
-        String keyword = args[0].trim().toLowerCase();
+        if (allIndexes) {
+            if (context || limit > 0 || cursor != null) {
+                System.out.println("--all can only be combined with --count.");
+                return false;
+            }
+            return printSearchAllIndexes(Arrays.copyOfRange(args, optionCount, args.length), countOnly);
+        }
+        if (context) {
+            if (countOnly || limit > 0 || cursor != null) {
+                System.out.println("--context can't be combined with other options.");
+                return false;
+            }
+            return printLocations(Arrays.copyOfRange(args, optionCount, args.length));
+        }
+        if (args.length - optionCount > 1) {
+            if (limit > 0 || cursor != null) {
+                System.out.println("Pages are only supported when searching for a single keyword.");
+                return false;
+            }
+            return printSearchAll(Arrays.copyOfRange(args, optionCount, args.length), countOnly);
+        }
+        String keyword = args[optionCount].trim().toLowerCase();
+
+        if (countOnly) {
+            System.out.printf("%d files contain '%s'%n", this.fileIndexer.count(keyword), keyword);
+            return true;
+        }
+
+        if (limit > 0 || cursor != null) {
+            return printSearchPage(keyword, cursor, limit > 0 ? limit : 20);
+        }
 
         Set<File> files = fileIndexer.search(keyword);
 
@@ -206,6 +524,298 @@ class IndexerApplication implements Runnable {
         return true;
     }
 
+    /**
+     * Prints the files of every index that contain all keywords, or only their number, grouped by index.
+     */
+    private boolean printSearchAllIndexes(String[] keywords, boolean countOnly) {
+        Map<String, Set<File>> indexes = this.indexRegistry.searchAll(keywords);
+        String description = "'" + String.join("' and '", keywords) + "'";
+        if (indexes.isEmpty()) {
+            System.out.println("No files found containing " + description + " in any index");
+            return true;
+        }
+
+        for (Map.Entry<String, Set<File>> index : indexes.entrySet()) {
+            if (countOnly) {
+                System.out.printf("%s: %d files contain %s%n", index.getKey(), index.getValue().size(), description);
+                continue;
+            }
+            System.out.println("Files containing " + description + " in " + index.getKey() + ":");
+            for (File file : index.getValue()) {
+                System.out.println("- " + file.getAbsolutePath());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prints the files containing all keywords, with the line and a snippet of every stored occurrence.
+     */
+    private boolean printLocations(String[] keywords) {
+        if (!(this.fileIndexer instanceof SimpleFileIndexer simpleIndexer)) {
+            System.out.println("The opened index doesn't store the locations of words.");
+            return false;
+        }
+
+        Map<File, List<TermLocation>> files = simpleIndexer.locate(keywords);
+        String description = "'" + String.join("' and '", keywords) + "'";
+        if (files.isEmpty()) {
+            System.out.println("No files found containing " + description);
+            return true;
+        }
+
+        System.out.println("Files containing " + description + ":");
+        for (Map.Entry<File, List<TermLocation>> entry : files.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                System.out.println(entry.getKey().getAbsolutePath() + " (no locations stored, index with -l)");
+            }
+            for (TermLocation location : entry.getValue()) {
+                System.out.println(location);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prints the files containing all of several keywords, or only their number.
+     */
+    private boolean printSearchAll(String[] keywords, boolean countOnly) {
+        Set<File> files = this.fileIndexer.searchAll(keywords);
+        String description = "'" + String.join("' and '", keywords) + "'";
+
+        if (countOnly) {
+            System.out.printf("%d files contain %s%n", files.size(), description);
+            return true;
+        }
+        if (files.isEmpty()) {
+            System.out.println("No files found containing " + description);
+            return true;
+        }
+
+        System.out.println("Files containing " + description + ":");
+        for (File file : files) {
+            System.out.println("- " + file.getAbsolutePath());
+        }
+        return true;
+    }
+
+    /**
+     * Prints how a search for several keywords would be run: the order of the keywords,
+     * their estimated number of files, and how each is intersected with the files matching the ones before it.
+     *
+     * @param args Command line arguments containing the keywords.
+     * @return true if keywords were provided, false otherwise.
+     */
+    private boolean handleExplain(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Please provide the keywords to explain the search of.");
+            return false;
+        }
+        System.out.println(this.fileIndexer.explain(args));
+        return true;
+    }
+
+    /**
+     * Prints the statistics of the vocabulary of the index.
+     * With {@code --top <k>}, the k most frequent words are printed instead of 10.
+     *
+     * @param args Command line arguments containing the options.
+     * @return true if the statistics were printed, false otherwise.
+     */
+    private boolean handleTerms(String[] args) {
+        int k = 10;
+        if (args.length == 2 && args[0].equals("--top")) {
+            try {
+                k = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                k = -1;
+            }
+            if (k < 1) {
+                System.out.println("The number of words must be a positive number.");
+                return false;
+            }
+        } else if (args.length != 0) {
+            System.out.println("Please provide no options, or --top <k>.");
+            return false;
+        }
+
+        System.out.println(this.fileIndexer.vocabulary(k));
+        return true;
+    }
+
+    /**
+     * Prints one page of the files containing a keyword, and how to get the next page.
+     */
+    private boolean printSearchPage(String keyword, String cursor, int limit) {
+        SearchPage page;
+        try {
+            page = this.fileIndexer.search(keyword, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+
+        if (page.files().isEmpty()) {
+            System.out.println("No " + (cursor != null ? "more " : "") + "files found containing '" + keyword + "'");
+            return true;
+        }
+
+        System.out.printf("Files containing '%s' (%d of %d):%n", keyword, page.files().size(), this.fileIndexer.count(keyword));
+        for (File file : page.files()) {
+            System.out.println("- " + file.getAbsolutePath());
+        }
+        if (page.hasMore()) {
+            System.out.printf("More files: query --limit %d --after %s %s%n", limit, page.nextCursor(), keyword);
+        }
+        return true;
+    }
+
+    /**
+     * Removes files, or all indexed files below directories, from the index.
+     *
+     * @param args Command line arguments specifying the paths to remove.
+     * @return true if at least one path was provided, false otherwise.
+     */
+    private boolean handleRemove(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Please provide a list of files or directories to remove from the index.");
+            return false;
+        }
+        this.fileIndexer = this.indexRegistry.load(this.currentIndex); // Load the index if it was swapped out
+
+        for (String path : args) {
+            File providedFile = new File(path);
+
+            // If the provided path is not absolute, we assume it's relative to the current directory
+            if (!providedFile.isAbsolute()) {
+                providedFile = new File(this.currentDirectory, providedFile.getPath());
+            }
+
+            int before = this.fileIndexer.getIndexedFileCount();
+            this.fileIndexer.removeDirectoryFromIndex(providedFile);
+            System.out.printf("Removed %d files below %s%n", before - this.fileIndexer.getIndexedFileCount(), providedFile.getAbsolutePath());
+        }
+        return true;
+    }
+
+    /**
+     * Writes the index to a file, so it can be opened again later with {@code open}.
+     *
+     * @param args Command line arguments containing the path of the file.
+     * @return true if the index was written, false otherwise.
+     */
+    private boolean handleSave(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Please provide the file to write the index to.");
+            return false;
+        }
+
+        File file = resolve(args[0]);
+        try {
+            this.fileIndexer.writeIndex(file.toPath());
+        } catch (IOException e) {
+            System.out.println("Error while writing the index: " + e.getMessage());
+            return false;
+        }
+        System.out.printf("Wrote %d files to %s%n", this.fileIndexer.getIndexedFileCount(), file.getAbsolutePath());
+        return true;
+    }
+
+    /**
+     * Replaces the index with a read-only index file written by {@code save}.
+     * The file is mapped into memory, so it can be searched right away, no matter its size.
+     *
+     * @param args Command line arguments containing the path of the file.
+     * @return true if the index file was opened, false otherwise.
+     */
+    private boolean handleOpen(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Please provide the index file to open.");
+            return false;
+        }
+
+        File file = resolve(args[0]);
+        this.indexingJobs.cancelAll(this.fileIndexer); // The jobs would keep indexing into the replaced index
+        try {
+            this.fileIndexer = new SimpleFileIndexer(MappedIndex.open(file.toPath()));
+        } catch (IOException e) {
+            System.out.println("Error while opening the index: " + e.getMessage());
+            return false;
+        }
+        this.indexRegistry.put(this.currentIndex, this.fileIndexer);
+        System.out.printf("Opened %s with %d files%n", file.getAbsolutePath(), this.fileIndexer.getIndexedFileCount());
+        return true;
+    }
+
+    /**
+     * Switches to a named index, creating an empty one if it doesn't exist yet.
+     * A swapped out index stays on disk until it is changed.
+     *
+     * @param args Command line arguments containing the name of the index.
+     * @return true if the name is valid, false otherwise.
+     */
+    private boolean handleUse(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Please provide the name of the index to use.");
+            return false;
+        }
+
+        boolean exists = this.indexRegistry.names().contains(args[0]);
+        try {
+            this.fileIndexer = this.indexRegistry.get(args[0]);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        this.currentIndex = args[0];
+        System.out.printf("%s index %s with %d files%n", exists ? "Using" : "Created", args[0], this.fileIndexer.getIndexedFileCount());
+        return true;
+    }
+
+    /**
+     * Lists all named indexes with their number of files and estimated memory, and the shared memory budget.
+     * With {@code --budget <megabytes>}, the budget is changed first.
+     *
+     * @param args Command line arguments containing the options.
+     * @return true if the indexes were listed, false otherwise.
+     */
+    private boolean handleIndexes(String[] args) {
+        if (args.length == 2 && args[0].equals("--budget")) {
+            long budget;
+            try {
+                budget = Long.parseLong(args[1]);
+            } catch (NumberFormatException e) {
+                budget = -1;
+            }
+            if (budget < 1) {
+                System.out.println("The memory budget must be a positive number of megabytes.");
+                return false;
+            }
+            this.indexRegistry.setMemoryBudget(budget * 1024 * 1024);
+            for (String name : this.indexRegistry.enforceBudget()) {
+                System.out.println("Swapped out index " + name);
+            }
+        } else if (args.length != 0) {
+            System.out.println("Please provide no options, or --budget <megabytes>.");
+            return false;
+        }
+
+        for (IndexRegistry.IndexInfo index : this.indexRegistry.list()) {
+            System.out.println((index.name().equals(this.currentIndex) ? "* " : "  ") + index);
+        }
+        System.out.printf("Estimated memory: %.1f MB of %d MB%n",
+                this.indexRegistry.estimatedHeapBytes() / 1048576.0, this.indexRegistry.getMemoryBudget() / (1024 * 1024));
+        return true;
+    }
+
+    /**
+     * Resolves a path relative to the current directory, unless it is absolute.
+     */
+    private File resolve(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(this.currentDirectory, file.getPath());
+    }
+
     /**
      * Changes the current working directory based on user input.
      * If no path is provided, it changes to the user's home directory.
@@ -284,8 +894,7 @@ class IndexerApplication implements Runnable {
      */
     private boolean exitApplication(String[] ignored) {
         System.out.println("Are you sure you want to exit? (y/n)");
-        Scanner scanner = new Scanner(System.in);
-        String input = scanner.nextLine();
+        String input = this.scanner.nextLine();
         return input.equalsIgnoreCase("y");
     }
 
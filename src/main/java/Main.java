@@ -1,3 +1,8 @@
+import server.IndexServer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * The Main class is the entry point of the application.
  * Run the main method to start the application.
@@ -7,10 +12,18 @@ public class Main {
     /**
      * The main method that starts the application.
      * It creates an instance of IndexerApplication and starts it.
+     * If the first argument is {@code --server}, a headless {@link IndexServer} is started instead,
+     * and the remaining arguments are passed on to it.
      *
-     * @param ignored Command line arguments (not used).
+     * @param args Command line arguments.
+     * @throws IOException If the server can't be started.
      */
-    public static void main(String[] ignored) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            IndexServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Create and run the IndexerApplication
         IndexerApplication app = new IndexerApplication();
         app.run(); // Start the application
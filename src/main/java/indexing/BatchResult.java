@@ -0,0 +1,21 @@
+package indexing;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The result of indexing files in batches.
+ *
+ * @param committed  The number of files that were committed to the index.
+ * @param failed     The files that could not be read or are not text files.
+ * @param rolledBack The readable files that were not committed, because their batch was rolled back.
+ */
+public record BatchResult(int committed, List<File> failed, List<File> rolledBack) {
+
+    /**
+     * @return {@code true} if all files were committed.
+     */
+    public boolean isComplete() {
+        return this.failed.isEmpty() && this.rolledBack.isEmpty();
+    }
+}
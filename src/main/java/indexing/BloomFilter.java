@@ -0,0 +1,165 @@
+package indexing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A Bloom filter over terms, used to skip index segments that certainly don't contain a term.
+ *
+ * <p>{@link #mightContain(String)} never returns {@code false} for an added term,
+ * but returns {@code true} for a term that was never added with roughly the configured false positive rate.
+ * The bit positions are derived from a single 64-bit hash of the term using double hashing.</p>
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates a filter sized for the given number of terms and false positive rate.
+     *
+     * @param expectedTerms     The number of terms that will be added.
+     * @param falsePositiveRate The probability that a term that was never added is reported as present, between 0 and 1.
+     */
+    public BloomFilter(int expectedTerms, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int terms = Math.max(1, expectedTerms);
+
+        // The optimal number of bits is -n ln(p) / ln(2)^2, and the optimal number of hashes is (m / n) ln(2)
+        long bitCount = (long) Math.ceil(-terms * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = Math.max(64, (bitCount + 63) & ~63L);
+        if (bitCount > 1L << 32) {
+            throw new IllegalArgumentException("Bloom filter would need more than 2^32 bits: " + bitCount);
+        }
+        this.bits = new long[Math.toIntExact(bitCount >>> 6)];
+        this.bitCount = bitCount;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / terms * Math.log(2)));
+    }
+
+    private BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length << 6;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Adds a term to the filter.
+     *
+     * @param term The term.
+     */
+    public void add(String term) {
+        long hash = hash(term);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = bitIndex(h1 + i * h2);
+            this.bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a term may have been added to the filter.
+     *
+     * @param term The term.
+     * @return {@code false} if the term was certainly never added.
+     */
+    public boolean mightContain(String term) {
+        return mightContainHash(hash(term));
+    }
+
+    /**
+     * Checks whether a term may have been added to the filter, given its {@link #hash(String)}.
+     * This allows hashing a term once when checking the filters of several segments.
+     *
+     * @param hash The hash of the term.
+     * @return {@code false} if the term was certainly never added.
+     */
+    public boolean mightContainHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = bitIndex(h1 + i * h2);
+            if ((this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps a 32-bit hash to a bit index with a multiplication instead of a (much slower) modulo.
+     */
+    private long bitIndex(int hash) {
+        return (Integer.toUnsignedLong(hash) * this.bitCount) >>> 32;
+    }
+
+    /**
+     * @return The number of hash functions used per term.
+     */
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * @return The size of the bit array in bytes.
+     */
+    public long sizeInBytes() {
+        return (long) this.bits.length * Long.BYTES;
+    }
+
+    /**
+     * Writes the filter, so it can be stored together with the segment it belongs to.
+     *
+     * @param out The output to write to.
+     * @throws IOException If the filter can't be written.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.hashCount);
+        out.writeInt(this.bits.length);
+        for (long word : this.bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input to read from.
+     * @return The filter.
+     * @throws IOException If the filter can't be read.
+     */
+    public static BloomFilter readFrom(DataInput in) throws IOException {
+        int hashCount = in.readInt();
+        int words = in.readInt();
+        if (hashCount < 1 || words < 1) {
+            throw new IOException("Invalid Bloom filter header.");
+        }
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, hashCount);
+    }
+
+    /**
+     * Hashes the characters of a term with 64-bit FNV-1a, followed by the MurmurHash3 finalizer to spread the bits.
+     *
+     * @param term The term.
+     * @return The hash used to set and test the bits of the term.
+     */
+    public static long hash(String term) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < term.length(); i++) {
+            hash = (hash ^ term.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,184 @@
+package indexing;
+
+import tokenizing.TokenSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Remembers the terms of every distinct file content, so byte-identical copies of a file are only tokenized once.
+ *
+ * <p>The content of a file is identified by its length and its SHA-256 hash, computed in a single streaming pass.
+ * The terms of a content are kept as long as at least one file with that content is registered,
+ * so the memory used grows with the number of distinct contents, not with the number of copies.</p>
+ *
+ * <p>All methods are synchronized, since files are tokenized outside the lock of the indexer.</p>
+ */
+class ContentDeduplicator {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Map<ContentKey, Entry> contents = new HashMap<>();
+    private final Map<File, ContentKey> files = new HashMap<>(); // The content every registered file was last indexed with
+    private long hits;
+
+    /**
+     * Identifies the content of a file by its length and the first 128 bits of its SHA-256 hash.
+     */
+    record ContentKey(long length, long high, long low) {
+    }
+
+    /**
+     * The terms of a content, and the number of registered files with that content.
+     */
+    private static final class Entry {
+        final TokenSet terms;
+        int files;
+
+        Entry(TokenSet terms) {
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * Hashes the content of a file without reading it into memory at once.
+     *
+     * @param file The file.
+     * @return The key identifying the content of the file.
+     * @throws IOException If the file can't be read.
+     */
+    static ContentKey hash(File file) throws IOException {
+        MessageDigest digest = sha256();
+        long length = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+                length += read;
+            }
+        }
+        return key(length, digest);
+    }
+
+    /**
+     * Hashes the content of a file that was already read, giving the same key as {@link #hash(File)}.
+     *
+     * @param content The content of the file.
+     * @return The key identifying the content.
+     */
+    static ContentKey hash(byte[] content) {
+        MessageDigest digest = sha256();
+        digest.update(content);
+        return key(content.length, digest);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform.", e);
+        }
+    }
+
+    private static ContentKey key(long length, MessageDigest digest) {
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+        return new ContentKey(length, hash.getLong(), hash.getLong());
+    }
+
+    /**
+     * Looks up the terms of a content that was seen before, by a registered file or a file that isn't committed yet.
+     *
+     * @param key    The key of the content.
+     * @param staged The terms of the contents of files that were tokenized, but not registered yet.
+     * @return The terms, or {@code null} if no registered or staged file has this content.
+     */
+    synchronized TokenSet lookup(ContentKey key, Map<ContentKey, TokenSet> staged) {
+        Entry entry = this.contents.get(key);
+        TokenSet terms = entry != null ? entry.terms : staged.get(key);
+        if (terms != null) {
+            this.hits++;
+        }
+        return terms;
+    }
+
+    /**
+     * Registers the content a file is indexed with. The content the file had before is released.
+     *
+     * @param file  The file.
+     * @param key   The key of its content.
+     * @param terms The terms of the content. They must not be modified afterward, since they are shared by all copies.
+     */
+    synchronized void register(File file, ContentKey key, TokenSet terms) {
+        ContentKey previous = this.files.put(file, key);
+        if (key.equals(previous)) {
+            return;
+        }
+        this.contents.computeIfAbsent(key, k -> new Entry(terms)).files++;
+        if (previous != null) {
+            releaseContent(previous);
+        }
+    }
+
+    /**
+     * Releases the content of a file that is no longer indexed.
+     *
+     * @param file The file.
+     */
+    synchronized void release(File file) {
+        ContentKey key = this.files.remove(file);
+        if (key != null) {
+            releaseContent(key);
+        }
+    }
+
+    /**
+     * Releases the content of every registered file that doesn't match the filter.
+     *
+     * @param indexed Whether a file is still indexed.
+     */
+    synchronized void retainIf(Predicate<File> indexed) {
+        Iterator<Map.Entry<File, ContentKey>> iterator = this.files.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<File, ContentKey> file = iterator.next();
+            if (!indexed.test(file.getKey())) {
+                iterator.remove();
+                releaseContent(file.getValue());
+            }
+        }
+    }
+
+    private void releaseContent(ContentKey key) {
+        Entry entry = this.contents.get(key);
+        if (--entry.files == 0) {
+            this.contents.remove(key);
+        }
+    }
+
+    synchronized void clear() {
+        this.contents.clear();
+        this.files.clear();
+    }
+
+    /**
+     * @return The number of distinct contents that are remembered.
+     */
+    synchronized int contentCount() {
+        return this.contents.size();
+    }
+
+    /**
+     * @return The number of files whose terms were reused instead of tokenized.
+     */
+    synchronized long hits() {
+        return this.hits;
+    }
+}
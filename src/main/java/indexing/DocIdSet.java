@@ -0,0 +1,108 @@
+package indexing;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A sorted set of file IDs, stored in a growable int array.
+ * Files are usually added in ascending ID order, in which case adding is a plain append.
+ */
+class DocIdSet {
+    private int[] ids;
+    private int size;
+
+    DocIdSet() {
+        this.ids = new int[2];
+    }
+
+    /**
+     * Wraps the first {@code size} IDs of an array, which must be sorted and distinct, without copying them.
+     */
+    DocIdSet(int[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    /**
+     * Adds an ID to the set.
+     *
+     * @return {@code true} if the ID wasn't in the set yet.
+     */
+    boolean add(int id) {
+        if (this.size > 0 && id <= this.ids[this.size - 1]) {
+            int position = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if (position >= 0) {
+                return false;
+            }
+            insertAt(-(position + 1), id);
+            return true;
+        }
+        insertAt(this.size, id);
+        return true;
+    }
+
+    private void insertAt(int position, int id) {
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, this.size + (this.size >> 1) + 1);
+        }
+        System.arraycopy(this.ids, position, this.ids, position + 1, this.size - position);
+        this.ids[position] = id;
+        this.size++;
+    }
+
+    /**
+     * Removes all IDs that don't match the filter.
+     */
+    void retainIf(IntPredicate filter) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (filter.test(this.ids[i])) {
+                this.ids[kept++] = this.ids[i];
+            }
+        }
+        this.size = kept;
+    }
+
+    /**
+     * @return The position of the first ID in the set that is greater than the given ID.
+     */
+    int indexAfter(int id) {
+        int position = Arrays.binarySearch(this.ids, 0, this.size, id);
+        return position >= 0 ? position + 1 : -(position + 1);
+    }
+
+    /**
+     * Finds the first position at or after {@code from} whose ID is at least the given ID.
+     * The position is found by galloping: steps of growing length, followed by a binary search of the last step,
+     * so the cost grows with the logarithm of the distance instead of the size of the set.
+     *
+     * @return The position, or the size of the set if all IDs after {@code from} are smaller.
+     */
+    int advance(int from, int id) {
+        int low = from;
+        int high = from;
+        for (int step = 1; high < this.size && this.ids[high] < id; step <<= 1) {
+            low = high + 1;
+            high += step;
+        }
+        int position = Arrays.binarySearch(this.ids, low, Math.min(high, this.size), id);
+        return position >= 0 ? position : -(position + 1);
+    }
+
+    int get(int index) {
+        return this.ids[index];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(this.ids, this.size));
+    }
+}
@@ -0,0 +1,17 @@
+package indexing;
+
+/**
+ * Decides what happens to a batch of files when one of its files can't be indexed.
+ * Files that were committed in earlier batches are never affected.
+ */
+public enum FailurePolicy {
+    /**
+     * None of the files of the batch are committed, as if the batch was never indexed.
+     */
+    ROLL_BACK_BATCH,
+
+    /**
+     * The files that can't be indexed are skipped, and the other files of the batch are committed.
+     */
+    SKIP_FILE
+}
@@ -0,0 +1,45 @@
+package indexing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for reading and tokenizing a file, with the time spent in every phase.
+ * Large files are read while they are tokenized, and files indexed by an {@link IndexingPipeline} are read by another stage,
+ * so their read duration is 0.
+ */
+@Name("indexer.FileIndexed")
+@Label("File Indexed")
+@Category("Indexer")
+@Description("A file was read and tokenized")
+@StackTrace(false)
+class FileIndexedEvent extends Event {
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Distinct Terms")
+    int terms;
+
+    @Label("Type Detection")
+    @Description("Time spent checking that the file is a text file")
+    @Timespan
+    long detectDuration;
+
+    @Label("Read")
+    @Timespan
+    long readDuration;
+
+    @Label("Tokenize")
+    @Timespan
+    long tokenizeDuration;
+}
@@ -1,22 +1,43 @@
 package indexing;
 
+import tokenizing.TermStatistics;
 import tokenizing.Tokenizer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
  * The FileIndexer interface defines methods for indexing, searching, and clearing indexes of files.
  * An implementation of this indexer must define its own structure for processing, storing and searching an index of the provided files.
+ * <p>
+ * A FileIndexer can be used by several threads at once. Searches share a read lock,
+ * while changes to the index take a write lock, so implementations should do expensive work
+ * such as reading and tokenizing files before acquiring it.
+ * <p>
+ * Searches and changes are reported as {@link QueryExecutedEvent} and {@link IndexMutationEvent} to Java Flight Recorder.
+ * When the events are disabled, they cost no more than a check of a flag.
+ * <p>
+ * If the index is a {@link LoggedHashMapIndex}, a change returns once its records are as durable as the log promises.
+ * The records are waited for after the write lock is released, so concurrent changes share the fsyncs of the log.
  */
-public abstract class FileIndexer {
+public abstract class FileIndexer implements TermStatistics {
     final Tokenizer tokenizer;
     final Index index;
+    final ReadWriteLock lock = new ReentrantReadWriteLock(); // Guards all access to the index
+    private final WriteAheadLog log; // The log of the index, or null if changes aren't logged
 
     public FileIndexer(Tokenizer tokenizer, Index index) {
         this.tokenizer = tokenizer;
         this.index = index;
+        this.log = index instanceof LoggedHashMapIndex logged ? logged.getLog() : null;
     }
 
     /**
@@ -28,14 +49,45 @@ public abstract class FileIndexer {
     public abstract boolean indexFile(File file);
 
     /**
-     * Indexes multiple files specified by their file paths.
-     * All files must be correctly indexed, if not, the index should be cleared and the method should return false.
+     * Indexes multiple files specified by their file paths as a single batch.
+     * All files must be correctly indexed, if not, none of them are committed and the method should return false.
+     * Files that were indexed before are never removed because of a failure.
      *
      * @param file variable number of files to be indexed
      * @return a boolean value indicating whether the indexing operation was successful or not
      */
     public abstract boolean indexFiles(File... file);
 
+    /**
+     * Indexes multiple files in batches. The files of a batch are read and tokenized into a private staging area first,
+     * and then committed to the index at once, so searches never see a partially indexed batch.
+     * Files that are already indexed are updated.
+     * <p>
+     * When a file can't be indexed, the failure policy decides whether the rest of its batch is still committed.
+     * Earlier batches stay committed either way.
+     *
+     * @param policy    what to do with a batch containing a file that can't be indexed.
+     * @param batchSize the maximum number of files committed at once.
+     * @param files     the files to be indexed.
+     * @return the number of committed files, and the files that were not committed.
+     */
+    public abstract BatchResult indexFiles(FailurePolicy policy, int batchSize, File... files);
+
+    /**
+     * Builds a read-only index file with the files of this index and the given files,
+     * while keeping the memory used for building it within a budget, so the built index doesn't have to fit on the heap.
+     * Files that are already indexed are updated in the built index. This index itself is left unchanged,
+     * and changes made to it while the file is built may be missing from the built index.
+     * <p>
+     * All files must be correctly read, if not, no index file is built and the method returns null.
+     *
+     * @param memoryBudgetBytes the approximate number of bytes that may be used while building the index.
+     * @param path the index file to write. An existing file is replaced.
+     * @param files the files to be indexed.
+     * @return an indexer that serves the built file with a {@link MappedIndex}, or null if the file couldn't be built.
+     * @throws UnsupportedOperationException if this index can't list its terms.
+     */
+    public abstract FileIndexer indexFiles(long memoryBudgetBytes, Path path, File... files);
 
     /**
      * Searches the index for files containing a particular phrase or keyword.
@@ -45,16 +97,242 @@ public abstract class FileIndexer {
      */
     public abstract Set<File> search(String keyword);
 
+    /**
+     * Searches the index for files containing a keyword, one page at a time.
+     * Only the files on the page are created, so this is suited for keywords that appear in many files.
+     *
+     * @param keyword the keyword to search for in the index.
+     * @param cursor  the cursor of the previous page, or {@code null} to start with the first page.
+     * @param limit   the maximum number of files on the page.
+     * @return A page of files that contain the requested keyword
+     */
+    public SearchPage search(String keyword, String cursor, int limit) {
+        QueryExecutedEvent event = new QueryExecutedEvent();
+        event.begin();
+        SearchPage page = SearchPage.empty();
+        this.lock.readLock().lock();
+        try {
+            String term = this.tokenizer.normalize(keyword);
+            if (term != null) { // Otherwise the keyword is never indexed
+                page = this.index.search(term, cursor, limit);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        queryExecuted(event, "page", keyword, page.files().size());
+        return page;
+    }
+
+    /**
+     * Counts the files containing a keyword, without returning them.
+     *
+     * @param keyword the keyword to search for in the index.
+     * @return the number of files that contain the requested keyword.
+     */
+    public int count(String keyword) {
+        QueryExecutedEvent event = new QueryExecutedEvent();
+        event.begin();
+        int count;
+        this.lock.readLock().lock();
+        try {
+            String term = this.tokenizer.normalize(keyword);
+            count = term == null ? 0 : this.index.count(term);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        queryExecuted(event, "count", keyword, count);
+        return count;
+    }
+
+    /**
+     * Searches the index for files containing all of several keywords.
+     * The keywords are intersected rarest first, as planned by the {@link QueryPlanner}.
+     * Keywords that are never indexed, such as stopwords, are ignored.
+     *
+     * @param keywords the keywords to search for in the index.
+     * @return the files that contain every keyword, or an empty set if no keyword can be searched for.
+     */
+    public Set<File> searchAll(String... keywords) {
+        QueryExecutedEvent event = new QueryExecutedEvent();
+        event.begin();
+        Set<File> files;
+        this.lock.readLock().lock();
+        try {
+            files = QueryPlanner.execute(this.index, plan(keywords));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        if (event.isEnabled()) { // Avoids joining the keywords when the event is disabled
+            queryExecuted(event, "all", String.join(" ", keywords), files.size());
+        }
+        return files;
+    }
+
+    /**
+     * Explains how {@link #searchAll(String...)} would search for several keywords, without running the search.
+     *
+     * @param keywords the keywords to search for in the index.
+     * @return the plan of the search.
+     */
+    public QueryPlanner.Plan explain(String... keywords) {
+        this.lock.readLock().lock();
+        try {
+            return plan(keywords);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private QueryPlanner.Plan plan(String[] keywords) {
+        List<String> terms = new ArrayList<>(keywords.length);
+        for (String keyword : keywords) {
+            String term = this.tokenizer.normalize(keyword);
+            if (term != null) {
+                terms.add(term);
+            }
+        }
+        return QueryPlanner.plan(this.index, terms);
+    }
+
+    /**
+     * Reports the vocabulary of the index: the number of distinct terms, the terms contained in the most files,
+     * and how the lengths of the postings lists are distributed.
+     *
+     * @param k the number of most frequent terms to report.
+     * @return the statistics of the vocabulary.
+     * @throws UnsupportedOperationException if the index can't list its terms.
+     */
+    public VocabularyReport vocabulary(int k) {
+        this.lock.readLock().lock();
+        try {
+            return this.index.vocabulary(k);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the approximate heap used by the index, or 0 if it is not kept on the heap.
+     */
+    public long estimatedHeapBytes() {
+        this.lock.readLock().lock();
+        try {
+            return this.index.estimatedHeapBytes();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of a {@link LoggedHashMapIndex} and empties its log, so a recovery only replays later changes.
+     * Changes to the index wait until the snapshot is written.
+     *
+     * @throws IOException if the snapshot can't be written.
+     * @throws UnsupportedOperationException if the index isn't logged.
+     */
+    public void checkpoint() throws IOException {
+        if (!(this.index instanceof LoggedHashMapIndex logged)) {
+            throw new UnsupportedOperationException("Only a logged index can be checkpointed.");
+        }
+        this.lock.writeLock().lock(); // No records may be appended while the log is emptied
+        try {
+            logged.checkpoint();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes the log of a {@link LoggedHashMapIndex} grew by since the last checkpoint,
+     *         or 0 if the index isn't logged.
+     */
+    public long getLogSize() {
+        return this.log != null ? this.log.size() : 0;
+    }
+
+    /**
+     * Writes the index to a file that can be served with {@link MappedIndex#open(Path)}.
+     * Changes to the index wait until the file is written.
+     *
+     * @param path the file to write to. An existing file is replaced.
+     * @throws IOException if the file can't be written.
+     * @throws UnsupportedOperationException if the index can't list its terms.
+     */
+    public void writeIndex(Path path) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            MappedIndexWriter.write(this.index, path);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
     /**
      * Clears the index, useful when files are updated or deleted.
      */
     public abstract void clearIndex();
 
     /**
-     * @return Returns a set of all files stored in the index.
+     * @return Returns a snapshot of all files stored in the index.
      */
     public Set<File> getIndexedFiles() {
-        return this.index.getIndexedFiles();
+        this.lock.readLock().lock();
+        try {
+            return new HashSet<>(this.index.getIndexedFiles());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of files stored in the index.
+     */
+    public int getIndexedFileCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.index.getIndexedFiles().size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks up the document frequency of a term with {@link Index#documentFrequency(String)}, without reading its postings.
+     *
+     * @param term The normalized term.
+     * @return The number of indexed files containing the term, or an upper bound of it.
+     */
+    @Override
+    public int documentFrequency(String term) {
+        this.lock.readLock().lock();
+        try {
+            return this.index.documentFrequency(term);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of indexed files.
+     */
+    @Override
+    public int documentCount() {
+        return getIndexedFileCount();
+    }
+
+    /**
+     * Checks whether a file is stored in the index, without copying the set of indexed files.
+     *
+     * @param file The file to check.
+     * @return {@code true} if the file is indexed.
+     */
+    public boolean isIndexed(File file) {
+        this.lock.readLock().lock();
+        try {
+            return this.index.getIndexedFiles().contains(file);
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
 
@@ -64,24 +342,86 @@ public abstract class FileIndexer {
      * @param file The file to remove from the index.
      */
     public void removeFileFromIndex(File file) {
-        this.index.removeFileFromIndex(file);
+        IndexMutationEvent event = lockForMutation();
+        try {
+            this.index.removeFileFromIndex(file);
+        } finally {
+            unlockAfterMutation(event, "remove", file, 1);
+        }
     }
 
-
     /**
-     * Updates the index for a given file.
-     * If the file is already indexed, it will be removed from the index first.
-     * The provided file will then be indexed.
+     * Removes all files below a directory from the index.
      *
-     * @param file The file to be indexed.
+     * @param directory The directory whose files should be removed, or a single file.
      */
-    public boolean updateFileInIndex(File file) {
+    public void removeDirectoryFromIndex(File directory) {
+        IndexMutationEvent event = lockForMutation();
+        try {
+            this.index.removeDirectoryFromIndex(directory);
+        } finally {
+            unlockAfterMutation(event, "remove directory", directory, 0);
+        }
+    }
 
-        if (this.index.getIndexedFiles().contains(file)) {
-            this.index.removeFileFromIndex(file);
+    /**
+     * Takes the write lock for a change to the index, and starts the event that reports the change.
+     * The time spent waiting for the lock is only measured while the event is enabled.
+     */
+    IndexMutationEvent lockForMutation() {
+        IndexMutationEvent event = new IndexMutationEvent();
+        event.begin();
+        if (event.isEnabled()) {
+            long start = System.nanoTime();
+            this.lock.writeLock().lock();
+            event.lockWait = System.nanoTime() - start;
+        } else {
+            this.lock.writeLock().lock();
+        }
+        return event;
+    }
+
+    /**
+     * Releases the write lock after a change to the index, and commits the event of the change if it is enabled.
+     * If the index is logged, this then waits until the records of the change are durable.
+     */
+    void unlockAfterMutation(IndexMutationEvent event, String operation, File path, int files) {
+        long sequence = this.log != null ? this.log.lastSequence() : 0; // Read under the lock, so it covers this change
+        this.lock.writeLock().unlock();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = path != null ? path.getPath() : null;
+            event.files = files;
+            event.commit();
+        }
+        if (sequence > 0) {
+            this.log.sync(sequence);
+        }
+    }
+
+    /**
+     * Commits the event of a search if it is enabled.
+     */
+    static void queryExecuted(QueryExecutedEvent event, String kind, String query, int hits) {
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.query = query;
+            event.hits = hits;
+            event.commit();
         }
+    }
+
 
-        return this.indexFile(file);
+    /**
+     * Updates the index for a given file, or indexes it if it isn't indexed yet.
+     * The file is tokenized first, and then replaces its indexed version in a single commit,
+     * so the indexed version is kept if the file can't be read or tokenized anymore.
+     *
+     * @param file The file to be indexed.
+     * @return whether the file was indexed.
+     */
+    public boolean updateFileInIndex(File file) {
+        return indexFiles(FailurePolicy.ROLL_BACK_BATCH, 1, file).isComplete();
     }
 
 }
\ No newline at end of file
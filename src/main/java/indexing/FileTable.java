@@ -0,0 +1,350 @@
+package indexing;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Assigns int IDs to files and stores their paths compactly, as a tree of path components.
+ *
+ * <p>Every directory is stored once, no matter how many files it contains, so deep directory structures
+ * shared by many files take little memory. {@link File} objects are only created when they are requested
+ * with {@link #file(int)}. Since files are grouped by directory, all files below a directory can be found
+ * and removed in time proportional to the size of that subtree.</p>
+ *
+ * <p>The ID of a removed file is not handed out again right away, because it may still be referenced
+ * by postings. Once the owner of the table has purged those references, it calls {@link #recycleRemovedIds()}.</p>
+ */
+public class FileTable {
+    private static final int ROOT = 0;
+
+    private int[] parents = new int[64];
+    private String[] names = new String[64]; // The last path component of every node, or null for unused nodes
+    private final List<HashMap<String, Integer>> directories = new ArrayList<>(); // Subdirectories of every directory node
+    private final List<HashMap<String, Integer>> files = new ArrayList<>(); // Files of every directory node
+    private final BitSet liveFiles = new BitSet();
+    private int nodeCount;
+    private int fileCount;
+    private int[] freeIds = new int[16]; // Unused node IDs that can be handed out again
+    private int freeCount;
+    private int[] removedIds = new int[16]; // IDs of removed files that may still be referenced
+    private int removedCount;
+
+    /**
+     * Creates an empty file table.
+     */
+    public FileTable() {
+        newNode(ROOT, "", true);
+    }
+
+    /**
+     * Adds a file to the table, if it isn't in the table yet.
+     *
+     * @param file The file.
+     * @return The ID of the file.
+     */
+    public int add(File file) {
+        String[] components = components(file);
+        int directory = ROOT;
+        for (int i = 0; i < components.length - 1; i++) {
+            Integer child = this.directories.get(directory).get(components[i]);
+            if (child == null) {
+                child = newNode(directory, components[i], true);
+                this.directories.get(directory).put(components[i], child);
+            }
+            directory = child;
+        }
+
+        String name = components[components.length - 1];
+        Integer id = this.files.get(directory).get(name);
+        if (id == null) {
+            id = newNode(directory, name, false);
+            this.files.get(directory).put(name, id);
+            this.liveFiles.set(id);
+            this.fileCount++;
+        }
+        return id;
+    }
+
+    /**
+     * Looks up the ID of a file.
+     *
+     * @param file The file.
+     * @return The ID of the file, or -1 if the file is not in the table.
+     */
+    public int idOf(File file) {
+        String[] components = components(file);
+        int directory = findDirectory(components, components.length - 1);
+        if (directory < 0) {
+            return -1;
+        }
+        Integer id = this.files.get(directory).get(components[components.length - 1]);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id A file ID.
+     * @return {@code true} if the ID belongs to a file that is currently in the table.
+     */
+    public boolean contains(int id) {
+        return id >= 0 && this.liveFiles.get(id);
+    }
+
+    /**
+     * Creates the File object of a file in the table.
+     *
+     * @param id The ID of the file.
+     * @return The file, with the same path it was added with.
+     */
+    public File file(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Unknown file ID: " + id);
+        }
+
+        // Collect the components from the file up to the root, and join them in reverse
+        int depth = 0;
+        int length = 0;
+        for (int node = id; node != ROOT; node = this.parents[node]) {
+            depth++;
+            length += this.names[node].length() + 1;
+        }
+        String[] components = new String[depth];
+        for (int node = id; node != ROOT; node = this.parents[node]) {
+            components[--depth] = this.names[node];
+        }
+
+        StringBuilder path = new StringBuilder(length);
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) {
+                path.append(File.separatorChar);
+            }
+            path.append(components[i]);
+        }
+        return new File(path.toString());
+    }
+
+    /**
+     * Removes a file from the table.
+     *
+     * @param id The ID of the file.
+     * @return {@code true} if the file was in the table.
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        int directory = this.parents[id];
+        this.files.get(directory).remove(this.names[id]);
+        retireFile(id);
+        pruneDirectories(directory);
+        return true;
+    }
+
+    /**
+     * Removes a file, or all files below a directory, from the table.
+     * Only the subtree of the directory is visited.
+     *
+     * @param path The file or directory.
+     * @return The IDs of the removed files.
+     */
+    public int[] removeAll(File path) {
+        return removeAll(path, null);
+    }
+
+    /**
+     * Removes a file, or all files below a directory, from the table, and collects the removed files.
+     * Only the subtree of the directory is visited, and the files are created from the path and the names in the subtree.
+     *
+     * @param path         The file or directory.
+     * @param removedFiles The list the removed files are added to, or {@code null} to only return their IDs.
+     * @return The IDs of the removed files.
+     */
+    public int[] removeAll(File path, List<File> removedFiles) {
+        int id = idOf(path);
+        if (id >= 0) {
+            remove(id);
+            if (removedFiles != null) {
+                removedFiles.add(path);
+            }
+            return new int[]{id};
+        }
+
+        String[] components = components(path);
+        int directory = findDirectory(components, components.length);
+        if (directory < 0) {
+            return new int[0];
+        }
+
+        List<Integer> removed = new ArrayList<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        ArrayDeque<File> paths = new ArrayDeque<>(); // The path of every node on the stack
+        stack.push(directory);
+        paths.push(path);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            File nodePath = paths.pop();
+            for (Map.Entry<String, Integer> file : this.files.get(node).entrySet()) {
+                removed.add(file.getValue());
+                if (removedFiles != null) {
+                    removedFiles.add(new File(nodePath, file.getKey()));
+                }
+                retireFile(file.getValue());
+            }
+            for (Map.Entry<String, Integer> child : this.directories.get(node).entrySet()) {
+                stack.push(child.getValue());
+                paths.push(new File(nodePath, child.getKey()));
+            }
+            if (node != directory) {
+                freeDirectory(node);
+            }
+        }
+
+        // Detach the directory itself, unless it is the root of the table
+        if (directory != ROOT) {
+            int parent = this.parents[directory];
+            this.directories.get(parent).remove(this.names[directory]);
+            freeDirectory(directory);
+            pruneDirectories(parent);
+        } else {
+            this.files.get(ROOT).clear();
+            this.directories.get(ROOT).clear();
+        }
+
+        int[] ids = new int[removed.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = removed.get(i);
+        }
+        return ids;
+    }
+
+    /**
+     * Makes the IDs of all removed files available for new files.
+     * Must only be called once nothing refers to the removed IDs anymore.
+     */
+    public void recycleRemovedIds() {
+        for (int i = 0; i < this.removedCount; i++) {
+            free(this.removedIds[i]);
+        }
+        this.removedCount = 0;
+    }
+
+    /**
+     * @return The number of removed files whose IDs haven't been recycled yet.
+     */
+    public int removedCount() {
+        return this.removedCount;
+    }
+
+    /**
+     * @return The number of files in the table.
+     */
+    public int size() {
+        return this.fileCount;
+    }
+
+    /**
+     * @return The IDs of all files in the table, in ascending order.
+     */
+    public int[] ids() {
+        return this.liveFiles.stream().toArray();
+    }
+
+    /**
+     * Removes all files from the table. All IDs become available again.
+     */
+    public void clear() {
+        Arrays.fill(this.names, null);
+        this.directories.clear();
+        this.files.clear();
+        this.liveFiles.clear();
+        this.nodeCount = 0;
+        this.fileCount = 0;
+        this.freeCount = 0;
+        this.removedCount = 0;
+        newNode(ROOT, "", true);
+    }
+
+    /**
+     * Splits the path of a file into its components. Absolute paths start with an empty component (or a drive),
+     * so joining the components with the separator gives back the original path.
+     */
+    private static String[] components(File file) {
+        String path = file.getPath();
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("A file needs a path.");
+        }
+        return path.split(File.separatorChar == '\\' ? "\\\\" : File.separator, -1);
+    }
+
+    /**
+     * Follows the first {@code count} components from the root through the directory nodes.
+     *
+     * @return The directory node, or -1 if it doesn't exist.
+     */
+    private int findDirectory(String[] components, int count) {
+        int directory = ROOT;
+        for (int i = 0; i < count; i++) {
+            Integer child = this.directories.get(directory).get(components[i]);
+            if (child == null) {
+                return -1;
+            }
+            directory = child;
+        }
+        return directory;
+    }
+
+    private int newNode(int parent, String name, boolean directory) {
+        int id;
+        if (this.freeCount > 0) {
+            id = this.freeIds[--this.freeCount];
+        } else {
+            id = this.nodeCount++;
+            if (id == this.parents.length) {
+                this.parents = Arrays.copyOf(this.parents, id * 2);
+                this.names = Arrays.copyOf(this.names, id * 2);
+            }
+            this.directories.add(null);
+            this.files.add(null);
+        }
+        this.parents[id] = parent;
+        this.names[id] = name;
+        this.directories.set(id, directory ? new HashMap<>() : null);
+        this.files.set(id, directory ? new HashMap<>() : null);
+        return id;
+    }
+
+    private void retireFile(int id) {
+        this.liveFiles.clear(id);
+        this.fileCount--;
+        this.names[id] = null;
+        if (this.removedCount == this.removedIds.length) {
+            this.removedIds = Arrays.copyOf(this.removedIds, this.removedCount * 2);
+        }
+        this.removedIds[this.removedCount++] = id;
+    }
+
+    private void freeDirectory(int id) {
+        this.names[id] = null;
+        this.directories.set(id, null);
+        this.files.set(id, null);
+        free(id);
+    }
+
+    private void free(int id) {
+        if (this.freeCount == this.freeIds.length) {
+            this.freeIds = Arrays.copyOf(this.freeIds, this.freeCount * 2);
+        }
+        this.freeIds[this.freeCount++] = id;
+    }
+
+    /**
+     * Removes empty directories, starting at the given directory and moving up to the root.
+     */
+    private void pruneDirectories(int directory) {
+        while (directory != ROOT && this.files.get(directory).isEmpty() && this.directories.get(directory).isEmpty()) {
+            int parent = this.parents[directory];
+            this.directories.get(parent).remove(this.names[directory]);
+            freeDirectory(directory);
+            directory = parent;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package indexing;
+
+import tokenizing.TokenSet;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * The FrontCodedIndex class implements the Index interface on top of a {@link FrontCodedTermDictionary}.
+ *
+ * <p>Unlike the {@link HashMapIndex}, the terms are not kept as individual String keys.
+ * They are stored sorted and front-coded in contiguous byte blocks,
+ * and the postings of a term are found by the ordinal of the term in the dictionary.
+ * This makes the index much more compact for large vocabularies and allows iterating over the terms in order.</p>
+ *
+ * <p>Since the dictionary is immutable, new terms are first collected in a small buffer.
+ * Once the buffer reaches a threshold, it is merged with the dictionary into a new dictionary.
+ * The threshold grows with the dictionary, so every merge adds a fixed fraction of its size
+ * and building a large vocabulary costs linear rather than quadratic time overall.</p>
+ */
+public class FrontCodedIndex implements Index {
+    static final int DEFAULT_MERGE_THRESHOLD = 1 << 16;
+    static final int PENDING_FRACTION = 8; // The buffer may grow to 1/8 of the dictionary before it is merged
+
+    final Set<File> indexedFiles;
+    private final int mergeThreshold;
+    private FrontCodedTermDictionary dictionary;
+    private List<Set<File>> postings; // Postings of the dictionary terms, by ordinal
+    private final HashMap<String, Set<File>> pending; // Terms not yet merged into the dictionary
+    private int emptyPostings; // Dictionary terms whose files were all removed, dropped at the next merge
+
+    /**
+     * Initializes a new, empty FrontCodedIndex using the default merge threshold.
+     */
+    public FrontCodedIndex() {
+        this(DEFAULT_MERGE_THRESHOLD);
+    }
+
+    /**
+     * Initializes a new, empty FrontCodedIndex.
+     *
+     * @param mergeThreshold The smallest number of new terms that are buffered before they are merged into the dictionary.
+     */
+    public FrontCodedIndex(int mergeThreshold) {
+        if (mergeThreshold < 1) {
+            throw new IllegalArgumentException("Merge threshold must be positive: " + mergeThreshold);
+        }
+        this.mergeThreshold = mergeThreshold;
+        this.indexedFiles = new HashSet<>();
+        this.dictionary = FrontCodedTermDictionary.empty();
+        this.postings = new ArrayList<>();
+        this.pending = new HashMap<>();
+    }
+
+    @Override
+    public void addToIndex(String token, File file) {
+        int ordinal = this.dictionary.indexOf(token);
+        if (ordinal >= 0) {
+            addPosting(ordinal, file);
+        } else {
+            this.pending.computeIfAbsent(token, t -> new HashSet<>()).add(file);
+            if (this.pending.size() >= mergeThreshold()) {
+                mergePending();
+            }
+        }
+        this.indexedFiles.add(file); // Track the indexed file
+    }
+
+    @Override
+    public void addDocument(File file, Iterable<String> tokens) {
+        TokenSet distinct = TokenSet.of(tokens);
+        if (distinct.isEmpty()) {
+            return;
+        }
+
+        for (String token : distinct) {
+            int ordinal = this.dictionary.indexOf(token);
+            if (ordinal >= 0) {
+                addPosting(ordinal, file);
+            } else {
+                this.pending.computeIfAbsent(token, t -> new HashSet<>()).add(file);
+            }
+        }
+        this.indexedFiles.add(file);
+
+        // Merge once per document rather than in the middle of it
+        if (this.pending.size() >= mergeThreshold()) {
+            mergePending();
+        }
+    }
+
+    private void addPosting(int ordinal, File file) {
+        Set<File> files = this.postings.get(ordinal);
+        if (files.add(file) && files.size() == 1) {
+            this.emptyPostings--; // The term was emptied by a removal and is in use again
+        }
+    }
+
+    /**
+     * @return The number of buffered terms at which the buffer is merged: the configured threshold,
+     *         or a fixed fraction of the dictionary once the dictionary is large enough.
+     */
+    int mergeThreshold() {
+        return Math.max(this.mergeThreshold, this.dictionary.size() / PENDING_FRACTION);
+    }
+
+    /**
+     * Removes a file from the index.
+     * Terms whose postings become empty are dropped the next time the dictionary is merged.
+     *
+     * @param file The file to be removed from the index.
+     */
+    @Override
+    public void removeFileFromIndex(File file) {
+        if (!this.indexedFiles.remove(file)) {
+            return;
+        }
+
+        for (Set<File> files : this.postings) {
+            if (files.remove(file) && files.isEmpty()) {
+                this.emptyPostings++;
+            }
+        }
+        this.pending.values().removeIf(files -> files.remove(file) && files.isEmpty());
+    }
+
+    @Override
+    public void clearIndex() {
+        this.dictionary = FrontCodedTermDictionary.empty();
+        this.postings = new ArrayList<>();
+        this.pending.clear();
+        this.emptyPostings = 0;
+        this.indexedFiles.clear();
+    }
+
+    @Override
+    public Set<File> search(String query) {
+        int ordinal = this.dictionary.indexOf(query);
+        if (ordinal >= 0) {
+            return this.postings.get(ordinal);
+        }
+        return this.pending.getOrDefault(query, new HashSet<>());
+    }
+
+    /**
+     * Iterates in sorted order over the indexed terms, including the buffered ones, without merging the buffer.
+     *
+     * @return The indexed terms.
+     */
+    @Override
+    public Iterable<String> terms() {
+        return () -> terms(null, null);
+    }
+
+    /**
+     * Lists the terms of a file by checking the postings of every term, which is what a removal of the file costs too.
+     */
+    @Override
+    public List<String> termsOf(File file) {
+        List<String> terms = new ArrayList<>();
+        if (!this.indexedFiles.contains(file)) {
+            return terms;
+        }
+        for (int ordinal = 0; ordinal < this.postings.size(); ordinal++) {
+            if (this.postings.get(ordinal).contains(file)) {
+                terms.add(this.dictionary.get(ordinal));
+            }
+        }
+        this.pending.forEach((term, files) -> {
+            if (files.contains(file)) {
+                terms.add(term);
+            }
+        });
+        return terms;
+    }
+
+    @Override
+    public Set<File> getIndexedFiles() {
+        return this.indexedFiles;
+    }
+
+    /**
+     * Iterates in sorted order over the indexed terms between two bounds.
+     * The order is the unsigned UTF-8 byte order used by {@link FrontCodedTermDictionary}.
+     *
+     * @param fromInclusive The lower bound, or {@code null} to start at the first term.
+     * @param toExclusive   The upper bound, or {@code null} to continue to the last term.
+     * @return An iterator over the indexed terms in the range.
+     */
+    public Iterator<String> terms(String fromInclusive, String toExclusive) {
+        List<String> buffered = new ArrayList<>();
+        for (String term : this.pending.keySet()) {
+            if ((fromInclusive == null || FrontCodedTermDictionary.compare(term, fromInclusive) >= 0)
+                && (toExclusive == null || FrontCodedTermDictionary.compare(term, toExclusive) < 0)) {
+                buffered.add(term);
+            }
+        }
+        return withBuffered(this.dictionary.range(fromInclusive, toExclusive), buffered);
+    }
+
+    /**
+     * Iterates in sorted order over the indexed terms starting with the given prefix.
+     *
+     * @param prefix The prefix of the terms.
+     * @return An iterator over the indexed terms starting with the prefix.
+     */
+    public Iterator<String> termsWithPrefix(String prefix) {
+        List<String> buffered = new ArrayList<>();
+        for (String term : this.pending.keySet()) {
+            if (term.startsWith(prefix)) {
+                buffered.add(term);
+            }
+        }
+        return withBuffered(this.dictionary.prefixed(prefix), buffered);
+    }
+
+    /**
+     * @return The number of distinct terms in the index.
+     */
+    public int termCount() {
+        return this.dictionary.size() - this.emptyPostings + this.pending.size();
+    }
+
+    /**
+     * Merges the sorted terms of the dictionary with the buffered terms in the same range,
+     * skipping the dictionary terms that no longer have any files.
+     */
+    private Iterator<String> withBuffered(Iterator<String> dictionaryTerms, List<String> buffered) {
+        buffered.sort(FrontCodedTermDictionary::compare);
+        return new Iterator<>() {
+            private String nextExisting = advance();
+            private int bufferedPosition;
+
+            private String advance() {
+                while (dictionaryTerms.hasNext()) {
+                    String term = dictionaryTerms.next();
+                    if (emptyPostings == 0 || !search(term).isEmpty()) {
+                        return term;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.nextExisting != null || this.bufferedPosition < buffered.size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (this.bufferedPosition == buffered.size()
+                    || (this.nextExisting != null
+                        && FrontCodedTermDictionary.compare(this.nextExisting, buffered.get(this.bufferedPosition)) < 0)) {
+                    String term = this.nextExisting;
+                    this.nextExisting = advance();
+                    return term;
+                }
+                return buffered.get(this.bufferedPosition++);
+            }
+        };
+    }
+
+    /**
+     * Merges the buffered terms into the dictionary.
+     * Terms without any remaining files are dropped from the new dictionary.
+     */
+    void mergePending() {
+        if (this.pending.isEmpty() && this.emptyPostings == 0) {
+            return;
+        }
+        SegmentMergeEvent event = new SegmentMergeEvent();
+        event.begin();
+
+        List<String> added = new ArrayList<>(this.pending.keySet());
+        added.sort(FrontCodedTermDictionary::compare);
+
+        FrontCodedTermDictionary.Builder builder = new FrontCodedTermDictionary.Builder();
+        List<Set<File>> mergedPostings = new ArrayList<>(this.dictionary.size() + added.size());
+
+        // Both the old dictionary and the new terms are sorted, so they can be merged in one pass
+        Iterator<String> existing = this.dictionary.iterator();
+        int ordinal = 0;
+        String current = existing.hasNext() ? existing.next() : null;
+        int addedPosition = 0;
+        while (current != null || addedPosition < added.size()) {
+            boolean takeExisting = addedPosition == added.size()
+                                   || (current != null && FrontCodedTermDictionary.compare(current, added.get(addedPosition)) < 0);
+            if (takeExisting) {
+                Set<File> files = this.postings.get(ordinal++);
+                if (!files.isEmpty()) {
+                    builder.add(current);
+                    mergedPostings.add(files);
+                }
+                current = existing.hasNext() ? existing.next() : null;
+            } else {
+                String term = added.get(addedPosition++);
+                builder.add(term);
+                mergedPostings.add(this.pending.get(term));
+            }
+        }
+
+        this.dictionary = builder.build();
+        this.postings = mergedPostings;
+        this.emptyPostings = 0;
+        if (event.shouldCommit()) {
+            event.index = getClass().getSimpleName();
+            event.operation = "merge";
+            event.terms = this.dictionary.size();
+            event.files = this.indexedFiles.size();
+            event.commit();
+        }
+        this.pending.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "FrontCodedIndex{" +
+               "terms=" + this.dictionary.size() +
+               ", pending=" + this.pending.size() +
+               ", dictionaryBytes=" + this.dictionary.sizeInBytes() +
+               '}';
+    }
+}
@@ -0,0 +1,407 @@
+package indexing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * An immutable, sorted dictionary of terms stored in a compact front-coded form.
+ *
+ * <p>Terms are UTF-8 encoded and sorted by their unsigned byte order (which equals Unicode code point order).
+ * They are grouped into blocks of {@code blockSize} terms that are stored one after another in a single byte array.
+ * The first term of every block (the block head) is stored in full,
+ * every following term only stores the length of the prefix it shares with the previous term and the remaining suffix.
+ * Lookups binary search over the block heads and then decode at most one block sequentially.</p>
+ *
+ * <p>Every term is addressed by its ordinal, its position in the sorted order, which can be used by an index
+ * to store the postings of a term in a plain array.</p>
+ */
+public class FrontCodedTermDictionary implements Iterable<String> {
+    static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private static final FrontCodedTermDictionary EMPTY = new Builder().build();
+
+    private final int blockSize;
+    private final int size;
+    private final byte[] data; // All blocks, stored contiguously
+    private final int[] blockOffsets; // Offset of each block head in data
+
+    private FrontCodedTermDictionary(int blockSize, int size, byte[] data, int[] blockOffsets) {
+        this.blockSize = blockSize;
+        this.size = size;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+    }
+
+    /**
+     * @return An empty dictionary.
+     */
+    public static FrontCodedTermDictionary empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a dictionary from an unordered collection of terms. Duplicate terms are stored only once.
+     *
+     * @param terms The terms to store.
+     * @return A dictionary containing all provided terms.
+     */
+    public static FrontCodedTermDictionary of(Collection<String> terms) {
+        byte[][] encoded = new byte[terms.size()][];
+        int i = 0;
+        for (String term : terms) {
+            encoded[i++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(encoded, Arrays::compareUnsigned);
+
+        Builder builder = new Builder();
+        byte[] previous = null;
+        for (byte[] term : encoded) {
+            if (previous == null || !Arrays.equals(previous, term)) {
+                builder.add(term);
+            }
+            previous = term;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Compares two terms in the order used by the dictionary (unsigned UTF-8 byte order).
+     *
+     * @param a The first term.
+     * @param b The second term.
+     * @return A negative number, zero or a positive number as {@code a} is less than, equal to or greater than {@code b}.
+     */
+    public static int compare(String a, String b) {
+        return Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The number of terms in the dictionary.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The number of bytes used to store the encoded terms.
+     */
+    public long sizeInBytes() {
+        return this.data.length + 4L * this.blockOffsets.length;
+    }
+
+    int blockSize() {
+        return this.blockSize;
+    }
+
+    /**
+     * @return The encoded blocks. Not copied, so it must not be modified.
+     */
+    byte[] data() {
+        return this.data;
+    }
+
+    /**
+     * @return The offset of every block head in {@link #data()}. Not copied, so it must not be modified.
+     */
+    int[] blockOffsets() {
+        return this.blockOffsets;
+    }
+
+    /**
+     * Looks up the ordinal of a term.
+     *
+     * @param term The term to look up.
+     * @return The ordinal of the term if it is present,
+     *         otherwise {@code -(insertionPoint + 1)} where the insertion point is the ordinal the term would have.
+     */
+    public int indexOf(String term) {
+        return indexOf(term.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int indexOf(byte[] key) {
+        if (this.size == 0) {
+            return -1;
+        }
+
+        // Binary search for the last block whose head is less than or equal to the key
+        int low = 0;
+        int high = this.blockOffsets.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareHead(mid, key);
+            if (cmp == 0) {
+                return mid * this.blockSize;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (high < 0) {
+            return -1; // The key is smaller than every term
+        }
+
+        // Scan the block sequentially
+        Cursor cursor = new Cursor(high * this.blockSize);
+        while (cursor.hasNext() && cursor.ordinal < (high + 1) * this.blockSize) {
+            int ordinal = cursor.ordinal;
+            cursor.advance();
+            int cmp = Arrays.compareUnsigned(cursor.buffer, 0, cursor.length, key, 0, key.length);
+            if (cmp == 0) {
+                return ordinal;
+            }
+            if (cmp > 0) {
+                return -(ordinal + 1);
+            }
+        }
+        return -(Math.min((high + 1) * this.blockSize, this.size) + 1);
+    }
+
+    /**
+     * Returns the term stored under the given ordinal.
+     *
+     * @param ordinal The ordinal of the term.
+     * @return The term.
+     * @throws IndexOutOfBoundsException If the ordinal is negative or not less than {@link #size()}.
+     */
+    public String get(int ordinal) {
+        Objects.checkIndex(ordinal, this.size);
+        Cursor cursor = new Cursor(ordinal - ordinal % this.blockSize);
+        while (cursor.ordinal <= ordinal) {
+            cursor.advance();
+        }
+        return cursor.term();
+    }
+
+    /**
+     * Iterates over all terms in sorted order.
+     *
+     * @return An iterator over all terms.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return iterator(0, this.size);
+    }
+
+    /**
+     * Iterates in sorted order over the terms between two bounds.
+     *
+     * @param fromInclusive The lower bound, or {@code null} to start at the first term.
+     * @param toExclusive   The upper bound, or {@code null} to continue to the last term.
+     * @return An iterator over the terms in the range.
+     */
+    public Iterator<String> range(String fromInclusive, String toExclusive) {
+        int from = fromInclusive == null ? 0 : insertionPoint(indexOf(fromInclusive));
+        int to = toExclusive == null ? this.size : insertionPoint(indexOf(toExclusive));
+        return iterator(from, Math.max(from, to));
+    }
+
+    /**
+     * Iterates in sorted order over all terms starting with the given prefix.
+     *
+     * @param prefix The prefix of the terms.
+     * @return An iterator over the terms starting with the prefix.
+     */
+    public Iterator<String> prefixed(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = insertionPoint(indexOf(key));
+        Cursor cursor = new Cursor(from);
+
+        return new Iterator<>() {
+            private boolean fetched;
+            private boolean matches;
+
+            @Override
+            public boolean hasNext() {
+                if (!this.fetched) {
+                    this.fetched = true;
+                    this.matches = false;
+                    if (cursor.hasNext()) {
+                        cursor.advance();
+                        this.matches = cursor.length >= key.length
+                                       && Arrays.equals(cursor.buffer, 0, key.length, key, 0, key.length);
+                    }
+                }
+                return this.matches;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.fetched = false;
+                return cursor.term();
+            }
+        };
+    }
+
+    private static int insertionPoint(int indexOfResult) {
+        return indexOfResult >= 0 ? indexOfResult : -(indexOfResult + 1);
+    }
+
+    private Iterator<String> iterator(int from, int to) {
+        Cursor cursor = new Cursor(from);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.ordinal < to;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                cursor.advance();
+                return cursor.term();
+            }
+        };
+    }
+
+    private int compareHead(int block, byte[] key) {
+        int[] position = {this.blockOffsets[block]};
+        int length = readVarInt(this.data, position);
+        return Arrays.compareUnsigned(this.data, position[0], position[0] + length, key, 0, key.length);
+    }
+
+    /**
+     * Sequentially decodes terms, starting at the head of a block and skipping forward to a given ordinal.
+     */
+    private class Cursor {
+        int ordinal; // Ordinal of the next term to decode
+        byte[] buffer = new byte[32];
+        int length; // Length of the last decoded term
+        private final int[] position = new int[1];
+
+        Cursor(int ordinal) {
+            int block = ordinal / blockSize;
+            this.ordinal = block * blockSize;
+            if (block < blockOffsets.length) {
+                this.position[0] = blockOffsets[block];
+            }
+            while (this.ordinal < ordinal && hasNext()) {
+                advance();
+            }
+        }
+
+        boolean hasNext() {
+            return this.ordinal < size;
+        }
+
+        void advance() {
+            int shared = this.ordinal % blockSize == 0 ? 0 : readVarInt(data, this.position);
+            int suffix = readVarInt(data, this.position);
+            if (shared + suffix > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(shared + suffix, this.buffer.length * 2));
+            }
+            System.arraycopy(data, this.position[0], this.buffer, shared, suffix);
+            this.position[0] += suffix;
+            this.length = shared + suffix;
+            this.ordinal++;
+        }
+
+        String term() {
+            return new String(this.buffer, 0, this.length, StandardCharsets.UTF_8);
+        }
+    }
+
+    static int readVarInt(byte[] bytes, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Builds a dictionary from terms that are added in strictly increasing order.
+     */
+    public static class Builder {
+        private final int blockSize;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private int[] blockOffsets = new int[16];
+        private int size;
+        private byte[] previous;
+
+        /**
+         * Creates a builder using the default block size.
+         */
+        public Builder() {
+            this(DEFAULT_BLOCK_SIZE);
+        }
+
+        /**
+         * Creates a builder with the given number of terms per block.
+         * Larger blocks compress better but make lookups decode more terms.
+         *
+         * @param blockSize The number of terms per block.
+         */
+        public Builder(int blockSize) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+            }
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Appends a term to the dictionary.
+         *
+         * @param term The term to append. It must be greater than the previously added term.
+         * @return The ordinal of the term.
+         * @throws IllegalArgumentException If the term is not greater than the previously added term.
+         */
+        public int add(String term) {
+            return add(term.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int add(byte[] term) {
+            if (this.previous != null && Arrays.compareUnsigned(this.previous, term) >= 0) {
+                throw new IllegalArgumentException("Terms must be added in strictly increasing order: "
+                                                   + new String(term, StandardCharsets.UTF_8));
+            }
+
+            if (this.size % this.blockSize == 0) {
+                // Start a new block with the term stored in full
+                if (this.size / this.blockSize == this.blockOffsets.length) {
+                    this.blockOffsets = Arrays.copyOf(this.blockOffsets, this.blockOffsets.length * 2);
+                }
+                this.blockOffsets[this.size / this.blockSize] = this.data.size();
+                writeVarInt(this.data, term.length);
+                this.data.write(term, 0, term.length);
+            } else {
+                int shared = Arrays.mismatch(this.previous, term);
+                writeVarInt(this.data, shared);
+                writeVarInt(this.data, term.length - shared);
+                this.data.write(term, shared, term.length - shared);
+            }
+
+            this.previous = term;
+            return this.size++;
+        }
+
+        /**
+         * @return The dictionary containing all added terms.
+         */
+        public FrontCodedTermDictionary build() {
+            int blocks = (this.size + this.blockSize - 1) / this.blockSize;
+            return new FrontCodedTermDictionary(this.blockSize, this.size, this.data.toByteArray(),
+                    Arrays.copyOf(this.blockOffsets, blocks));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package indexing;
 
+import tokenizing.TokenSet;
+
 import java.io.File;
 import java.util.*;
 
@@ -9,19 +11,39 @@ import java.util.*;
  * It allows for adding, removing, searching, and clearing indexed files efficiently.
  *
  * <p> </p>A HashMap was chosen as a way to store the index as it should provide a constant-time lookup and insertion.
- * The efficiency is limited when considering the removal of files from the index, as it requires iterating over all tokens.
+ *
+ * <p>Files are stored once in a {@link FileTable}, and the postings only hold their int IDs.
+ * Removing a file only removes it from the file table; its IDs are purged from the postings in bulk,
+ * once enough files have been removed, so removals don't have to iterate over all tokens every time.</p>
+ *
+ * <p>Every live file also keeps references to the postings it is listed in, so the tokens of a single file can be
+ * listed by {@link #termsOf(File)} without visiting the rest of the index.</p>
+ *
+ * <p>The statistics of the vocabulary and the document frequencies are updated whenever a file is added or removed:
+ * a removal goes through the postings of the removed file and counts it as removed in each of them.
+ * The statistics are rebuilt when removed files are purged.</p>
  */
-public class HashMapIndex implements Index {
-    final Set<File> indexedFiles;
-    final HashMap<String, Set<File>> index; // Map of tokens to sets of files
+public class HashMapIndex implements Index, SortedPostings {
+    final FileTable files; // The indexed files, by ID
+    final HashMap<String, TermPostings> index; // Map of tokens to the IDs of the files containing them
+    static final int TRACKED_TERMS = 1000; // The number of most frequent tokens kept up to date
+    // Rough estimates of the heap used per token, besides its characters, per posting and per file
+    static final int TERM_OVERHEAD_BYTES = 96;
+    static final int POSTING_BYTES = 4;
+    static final int FILE_BYTES = 128;
+    private final VocabularyStats vocabulary = new VocabularyStats(TRACKED_TERMS);
+    private final Set<File> indexedFiles; // A view of the file table
+    private final List<List<TermPostings>> documents = new ArrayList<>(); // The postings of every live file, by ID
+    private long termBytes; // The estimated heap of the tokens and their postings, kept up to date by every change
 
     /**
-     * Initializes a new HashMapIndex with empty sets for indexed files
+     * Initializes a new HashMapIndex with an empty file table
      * and an empty index.
      */
     public HashMapIndex() {
-        this.indexedFiles = new HashSet<>();
+        this.files = new FileTable();
         this.index = new HashMap<>();
+        this.indexedFiles = new IndexedFiles();
     }
 
     /**
@@ -33,51 +55,315 @@ public class HashMapIndex implements Index {
      */
     @Override
     public void addToIndex(String token, File file) {
-        if (!index.containsKey(token)) {
-            Set<File> files = new HashSet<>();
-            files.add(file);
-            index.put(token, files); // Create a new entry for the token
-        } else {
-            index.get(token).add(file); // Add the file to the existing token
+        int id = this.files.add(file); // Track the indexed file
+        post(token, id);
+    }
+
+    /**
+     * Adds all distinct tokens of a file to the index, tracking the file only once.
+     *
+     * @param file The file to be indexed.
+     * @param tokens All tokens of the file, possibly containing duplicates.
+     */
+    @Override
+    public void addDocument(File file, Iterable<String> tokens) {
+        TokenSet distinct = TokenSet.of(tokens);
+        if (distinct.isEmpty()) {
+            return;
+        }
+
+        int id = this.files.add(file);
+        for (String token : distinct) {
+            post(token, id);
+        }
+    }
+
+    /**
+     * Adds the complete postings of a single token.
+     *
+     * @param token The token.
+     * @param files The files containing the token.
+     */
+    @Override
+    public void addPostings(String token, Collection<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        for (File file : files) {
+            post(token, this.files.add(file));
+        }
+    }
+
+    /**
+     * Adds a file ID to the postings of a token, and the postings to the file.
+     */
+    private void post(String token, int id) {
+        TermPostings postings = this.index.get(token);
+        if (postings == null) {
+            postings = new TermPostings(token);
+            this.index.put(token, postings);
+            this.termBytes += TERM_OVERHEAD_BYTES + token.length();
+        }
+        if (postings.add(id)) {
+            this.termBytes += POSTING_BYTES;
+            this.vocabulary.grow(postings.term, postings.liveSize());
+            while (this.documents.size() <= id) {
+                this.documents.add(null);
+            }
+            List<TermPostings> document = this.documents.get(id);
+            if (document == null) {
+                document = new ArrayList<>();
+                this.documents.set(id, document);
+            }
+            document.add(postings);
+        }
+    }
+
+    /**
+     * Counts a removed file as removed in all of its postings, which still hold the file ID until they are purged,
+     * and drops the references of the file to its postings.
+     */
+    private void forget(int id) {
+        List<TermPostings> document = id < this.documents.size() ? this.documents.get(id) : null;
+        if (document == null) {
+            return;
+        }
+        for (TermPostings postings : document) {
+            postings.removed++;
+            this.vocabulary.shrink(postings.term, postings.liveSize());
         }
-        this.indexedFiles.add(file); // Track the indexed file
+        this.documents.set(id, null);
     }
 
     /**
      * Removes a file from the index.
-     * This method iterates over all tokens and removes the file from each
-     * associated set. If a token's set becomes empty, the token is removed
-     * from the index.
+     * The file is removed from the file table right away, so it is no longer returned by searches.
+     * Its ID is purged from the postings once the removed files make up a large part of the index.
      *
      * @param file The file to be removed from the index.
      */
     @Override
     public void removeFileFromIndex(File file) {
-        if (!this.indexedFiles.contains(file)) {
+        int id = this.files.idOf(file);
+        if (id < 0) {
+            return;
+        }
+        this.files.remove(id);
+        forget(id);
+        purgeIfNeeded();
+    }
+
+    /**
+     * Removes all files below a directory from the index.
+     * Only the part of the file table below the directory is visited.
+     *
+     * @param directory The directory, or a single file.
+     * @return The removed files.
+     */
+    @Override
+    public List<File> removeDirectoryFromIndex(File directory) {
+        List<File> removedFiles = new ArrayList<>();
+        int[] removed = this.files.removeAll(directory, removedFiles);
+        for (int id : removed) {
+            forget(id);
+        }
+        if (removed.length > 0) {
+            purgeIfNeeded();
+        }
+        return removedFiles;
+    }
+
+    /**
+     * Purges the IDs of removed files from all postings, once there are more removed files than half of the indexed files.
+     * This keeps the amortized cost of a removal proportional to the average number of terms per file.
+     */
+    private void purgeIfNeeded() {
+        if (this.files.removedCount() <= 64 + this.files.size() / 2) {
             return;
         }
-        this.indexedFiles.remove(file);
+        SegmentMergeEvent event = new SegmentMergeEvent();
+        event.begin();
+        int purged = this.files.removedCount();
 
-        List<String> tokens = new ArrayList<>(this.index.keySet());
-        for (String token : tokens) {
-            this.index.get(token).remove(file); // Remove file from each token's set
+        this.index.values().removeIf(ids -> {
+            ids.retainIf(this.files::contains);
+            ids.removed = 0;
+            return ids.isEmpty(); // Remove an entry from the index if no files contain it anymore
+        });
+        this.files.recycleRemovedIds();
 
-            if (this.index.get(token).isEmpty()) {
-                // Remove an entry from the index if the set is empty
-                this.index.remove(token);
-            }
+        this.vocabulary.clear();
+        this.termBytes = 0;
+        this.index.forEach((token, ids) -> {
+            this.vocabulary.record(token, ids.size());
+            this.termBytes += TERM_OVERHEAD_BYTES + token.length() + (long) ids.size() * POSTING_BYTES;
+        });
+
+        if (event.shouldCommit()) {
+            event.index = getClass().getSimpleName();
+            event.operation = "purge";
+            event.terms = this.index.size();
+            event.files = purged;
+            event.commit();
         }
     }
 
     /**
      * Searches the index for files associated with a specific token.
+     * The File objects are only created here, from the paths in the file table.
      *
      * @param query The token to search for in the index.
      * @return A set of files that contain the requested token, or an empty set if none are found.
      */
     @Override
     public Set<File> search(String query) {
-        return index.getOrDefault(query, new HashSet<>()); // Return the set of files found
+        DocIdSet ids = this.index.get(query);
+        if (ids == null) {
+            return new HashSet<>();
+        }
+
+        Set<File> result = new HashSet<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            if (this.files.contains(id)) { // Skip removed files that weren't purged yet
+                result.add(this.files.file(id));
+            }
+        }
+        return result; // Return the set of files found
+    }
+
+    /**
+     * Reads a page of files straight from the postings of a token, without copying them.
+     * The cursor is the ID of the last file on the previous page, so pages stay consistent
+     * while files are added or removed between searches.
+     *
+     * @param query The token to search for in the index.
+     * @param cursor The cursor of the previous page, or {@code null} to start with the first page.
+     * @param limit The maximum number of files on the page.
+     * @return A page of files that contain the requested token.
+     */
+    @Override
+    public SearchPage search(String query, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        int after = SearchPage.parseCursor(cursor);
+        DocIdSet ids = this.index.get(query);
+        if (ids == null) {
+            return SearchPage.empty();
+        }
+
+        List<File> page = new ArrayList<>(Math.min(limit, ids.size()));
+        int position = after < 0 ? 0 : ids.indexAfter(after);
+        int lastId = after;
+        for (; position < ids.size() && page.size() < limit; position++) {
+            int id = ids.get(position);
+            if (this.files.contains(id)) {
+                page.add(this.files.file(id));
+                lastId = id;
+            }
+        }
+
+        // Only offer a next page if a file that wasn't removed follows
+        while (position < ids.size() && !this.files.contains(ids.get(position))) {
+            position++;
+        }
+        return new SearchPage(page, position < ids.size() ? String.valueOf(lastId) : null);
+    }
+
+    /**
+     * Counts the files containing a token, without creating any File objects.
+     *
+     * @param query The token to search for in the index.
+     * @return The number of files that contain the requested token.
+     */
+    @Override
+    public int count(String query) {
+        DocIdSet ids = this.index.get(query);
+        if (ids == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            if (this.files.contains(ids.get(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the length of the postings of a token, without the removed files that weren't purged yet.
+     *
+     * @param query The token.
+     * @return The number of files that contain the token.
+     */
+    @Override
+    public int documentFrequency(String query) {
+        TermPostings ids = this.index.get(query);
+        return ids == null ? 0 : ids.liveSize();
+    }
+
+    /**
+     * Reports the statistics of the vocabulary without scanning the index.
+     * Like {@link #documentFrequency(String)}, they don't count removed files.
+     *
+     * @param k The number of most frequent tokens to report.
+     * @return The statistics of the vocabulary.
+     */
+    @Override
+    public VocabularyReport vocabulary(int k) {
+        if (k > TRACKED_TERMS) {
+            return Index.super.vocabulary(k); // More tokens than are tracked, so the postings are counted
+        }
+        return this.vocabulary.report(k);
+    }
+
+    /**
+     * Estimates the heap used by the tokens, the postings and the file table.
+     * Removed files count until they are purged from the postings.
+     * The estimate of the tokens and postings is updated as they change, so this doesn't visit the index.
+     *
+     * @return The approximate number of bytes.
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        return (long) (this.files.size() + this.files.removedCount()) * FILE_BYTES + this.termBytes;
+    }
+
+    /**
+     * Lists the tokens of a file from the postings the file refers to, without visiting other tokens.
+     *
+     * @param file The file.
+     * @return The tokens of the file, or an empty list if the file isn't indexed.
+     */
+    @Override
+    public List<String> termsOf(File file) {
+        int id = this.files.idOf(file);
+        List<TermPostings> document = id >= 0 && id < this.documents.size() ? this.documents.get(id) : null;
+        if (document == null) {
+            return new ArrayList<>();
+        }
+        List<String> terms = new ArrayList<>(document.size());
+        for (TermPostings postings : document) {
+            terms.add(postings.term);
+        }
+        return terms;
+    }
+
+    @Override
+    public DocIdSet postings(String term) {
+        return this.index.get(term);
+    }
+
+    @Override
+    public boolean isLive(int id) {
+        return this.files.contains(id);
+    }
+
+    @Override
+    public File file(int id) {
+        return this.files.file(id);
     }
 
     /**
@@ -86,11 +372,26 @@ public class HashMapIndex implements Index {
     @Override
     public void clearIndex() {
         this.index.clear(); // Clear the index
-        this.indexedFiles.clear(); // Clear the indexed files
+        this.files.clear(); // Clear the indexed files
+        this.documents.clear();
+        this.vocabulary.clear();
+        this.termBytes = 0;
+    }
+
+    /**
+     * Lists the tokens of the index, as a read-only view of its keys.
+     * Until removed files are purged, it may include tokens that only removed files contained.
+     *
+     * @return All tokens of the index.
+     */
+    @Override
+    public Iterable<String> terms() {
+        return Collections.unmodifiableSet(this.index.keySet());
     }
 
     /**
      * Returns a set of all files currently indexed.
+     * The set is a view of the file table: lookups don't create any File objects.
      *
      * @return A set of indexed files.
      */
@@ -105,4 +406,59 @@ public class HashMapIndex implements Index {
                "index=" + index +
                '}';
     }
+
+    /**
+     * The postings of a token, which also hold the token, so the postings of a file lead back to its tokens.
+     */
+    static final class TermPostings extends DocIdSet {
+        final String term;
+        int removed; // The removed files that are still in the postings, until they are purged
+
+        TermPostings(String term) {
+            this.term = term;
+        }
+
+        /**
+         * @return The number of files in the postings that weren't removed.
+         */
+        int liveSize() {
+            return size() - this.removed;
+        }
+    }
+
+    /**
+     * A read-only view of the files in the file table.
+     */
+    private class IndexedFiles extends AbstractSet<File> {
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof File file && files.idOf(file) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return files.size();
+        }
+
+        @Override
+        public Iterator<File> iterator() {
+            int[] ids = files.ids();
+            return new Iterator<>() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return this.position < ids.length;
+                }
+
+                @Override
+                public File next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return files.file(ids[this.position++]);
+                }
+            };
+        }
+    }
 }
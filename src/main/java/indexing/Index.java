@@ -1,6 +1,13 @@
 package indexing;
 
+import tokenizing.TokenSet;
+
 import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -17,6 +24,32 @@ public interface Index {
      */
     void addToIndex(String token, File file);
 
+    /**
+     * Adds a whole document to the index in one step.
+     * The tokens are deduplicated first, so every distinct token is inserted only once,
+     * no matter how often it occurs in the document.
+     * <p>
+     * Implementations can override this method to commit the document as a single unit of work.
+     * @param file The file the tokens were read from.
+     * @param tokens All tokens of the file, possibly containing duplicates.
+     */
+    default void addDocument(File file, Iterable<String> tokens) {
+        for (String token : TokenSet.of(tokens)) {
+            addToIndex(token, file);
+        }
+    }
+
+    /**
+     * Adds the complete postings of a single token, for example when loading postings that were built elsewhere.
+     * @param token The string token.
+     * @param files The files containing the token.
+     */
+    default void addPostings(String token, Collection<File> files) {
+        for (File file : files) {
+            addToIndex(token, file);
+        }
+    }
+
     /**
      * Removes a file from the index.
      * After a file is removed,
@@ -25,6 +58,24 @@ public interface Index {
      */
     void removeFileFromIndex(File file);
 
+    /**
+     * Removes all files below a directory from the index.
+     * Implementations that group files by directory can override this method to only visit that directory.
+     * @param directory The directory whose files should be removed, or a single file.
+     * @return The removed files.
+     */
+    default List<File> removeDirectoryFromIndex(File directory) {
+        Path root = directory.toPath();
+        List<File> removed = new ArrayList<>();
+        for (File file : new ArrayList<>(getIndexedFiles())) {
+            if (file.toPath().startsWith(root)) {
+                removeFileFromIndex(file);
+                removed.add(file);
+            }
+        }
+        return removed;
+    }
+
     /**
      * Removes all entries from the index and the set of indexed files.
      */
@@ -37,6 +88,101 @@ public interface Index {
      */
     Set<File> search(String query);
 
+    /**
+     * Searches the index for files associated with a specific token, returning at most {@code limit} files at a time.
+     * The cursor of a page continues the search after that page.
+     * <p>
+     * This default implementation pages through {@link #search(String)} by offset.
+     * Implementations should override it to read the page straight from their postings.
+     * @param query The string token to search for in the index.
+     * @param cursor The cursor of the previous page, or {@code null} to start with the first page.
+     * @param limit The maximum number of files on the page.
+     * @return A page of files that contain the requested token.
+     */
+    default SearchPage search(String query, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        int offset = Math.max(0, SearchPage.parseCursor(cursor));
+
+        Iterator<File> matches = search(query).iterator();
+        for (int i = 0; i < offset && matches.hasNext(); i++) {
+            matches.next();
+        }
+        List<File> files = new ArrayList<>();
+        while (files.size() < limit && matches.hasNext()) {
+            files.add(matches.next());
+        }
+        return new SearchPage(files, matches.hasNext() ? String.valueOf(offset + files.size()) : null);
+    }
+
+    /**
+     * Counts the files associated with a specific token.
+     * @param query The string token to search for in the index.
+     * @return The number of files that contain the requested token.
+     */
+    default int count(String query) {
+        return search(query).size();
+    }
+
+    /**
+     * Estimates the number of files associated with a specific token, for example to plan a query.
+     * Unlike {@link #count(String)}, this must be cheap, so implementations may return an upper bound
+     * when the exact number would require reading the postings.
+     * <p>
+     * Total term frequencies are not available, since the postings only record whether a file contains a token.
+     * @param query The string token.
+     * @return The number of files that contain the token, or an upper bound of it.
+     */
+    default int documentFrequency(String query) {
+        return count(query);
+    }
+
+    /**
+     * Reports the number of distinct tokens, the tokens contained in the most files,
+     * and how the lengths of the postings lists are distributed.
+     * <p>
+     * This default implementation counts the files of every token.
+     * Implementations should keep the statistics up to date while files are added, so no scan is needed.
+     * @param k The number of most frequent tokens to report.
+     * @return The statistics of the vocabulary.
+     * @throws UnsupportedOperationException If the index can't list its tokens.
+     */
+    default VocabularyReport vocabulary(int k) {
+        VocabularyStats stats = new VocabularyStats(k);
+        for (String term : terms()) {
+            stats.record(term, count(term));
+        }
+        return stats.report(k);
+    }
+
+    /**
+     * Lists every distinct token in the index, for example to write the index to a file.
+     * @return All tokens that at least one file is associated with, in no particular order.
+     * @throws UnsupportedOperationException If the index can't list its tokens.
+     */
+    default Iterable<String> terms() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't list its terms.");
+    }
+
+    /**
+     * Lists the distinct tokens a file is indexed with, for example to restore the file after a failed change.
+     * @param file The file.
+     * @return The tokens of the file, or an empty list if the file isn't indexed.
+     * @throws UnsupportedOperationException If the index can't list the tokens of a file.
+     */
+    default List<String> termsOf(File file) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " can't list the terms of a file.");
+    }
+
+    /**
+     * Estimates the heap used by the index, for example to decide which index to swap out to disk.
+     * @return The approximate number of bytes, or 0 if the index is not kept on the heap or can't estimate its size.
+     */
+    default long estimatedHeapBytes() {
+        return 0;
+    }
+
     /**
      * Returns a set of all files currently indexed.
      * @return A set of all files stored in the index.
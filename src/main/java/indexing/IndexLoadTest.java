@@ -0,0 +1,222 @@
+package indexing;
+
+import util.CorpusGenerator;
+import util.LatencyRecorder;
+import util.QueryWorkload;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load test for a {@link FileIndexer}, which runs in the same process as the indexer.
+ *
+ * <p>It generates a corpus with a {@link CorpusGenerator}, builds the index while measuring the build time and peak heap,
+ * committing the files in batches the way the server does, and then replays a {@link QueryWorkload} at a fixed rate. Queries are started at their scheduled time
+ * no matter how long earlier queries take, and their latency is measured from that time,
+ * so a slow query also shows up in the latency of the queries queued behind it.</p>
+ *
+ * <p>Supported options: {@code --corpus <directory>}, {@code --files <n>}, {@code --words <words per file>},
+ * {@code --depth <directory levels>}, {@code --vocabulary <distinct words>}, {@code --zipf <exponent>},
+ * {@code --seed <n>}, {@code --batch <files per commit>}, {@code --queries <n>}, {@code --keywords <max keywords per query>}, {@code --qps <n>},
+ * {@code --record <file>} to save the generated queries, and {@code --replay <file>} to run saved queries instead.</p>
+ */
+public class IndexLoadTest {
+    static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final FileIndexer indexer;
+    private final int batchSize;
+
+    /**
+     * @param indexer The indexer to test.
+     */
+    public IndexLoadTest(FileIndexer indexer) {
+        this(indexer, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param indexer   The indexer to test.
+     * @param batchSize The number of files committed to the index at once while building it.
+     */
+    public IndexLoadTest(FileIndexer indexer, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.indexer = indexer;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The measurements of building an index.
+     *
+     * @param files             The number of indexed files.
+     * @param nanos             The time it took to index them.
+     * @param peakHeapBytes     The peak heap usage while indexing, summed over all heap pools, so an upper bound.
+     * @param retainedHeapBytes The heap usage after indexing and a garbage collection.
+     */
+    public record BuildResult(int files, long nanos, long peakHeapBytes, long retainedHeapBytes) {
+        @Override
+        public String toString() {
+            return String.format("Indexed %d files in %.2fs (%.0f files/s), peak heap %.1f MB, retained heap %.1f MB",
+                    this.files, this.nanos / 1e9, this.files / (this.nanos / 1e9),
+                    this.peakHeapBytes / 1e6, this.retainedHeapBytes / 1e6);
+        }
+    }
+
+    /**
+     * The measurements of replaying a workload.
+     *
+     * @param targetQps   The rate the queries were scheduled at.
+     * @param achievedQps The rate the queries were answered at.
+     * @param latencies   The latencies of all queries, from their scheduled start.
+     */
+    public record ReplayResult(int targetQps, double achievedQps, LatencyRecorder latencies) {
+        @Override
+        public String toString() {
+            return String.format("Replayed %d queries at %d/s (achieved %.1f/s): %s",
+                    this.latencies.count(), this.targetQps, this.achievedQps, this.latencies.summary());
+        }
+    }
+
+    /**
+     * Indexes files in batches and measures the time and heap it takes. Files that can't be read are skipped.
+     * A {@link SimpleFileIndexer} doesn't print the indexed files while it is measured.
+     *
+     * @param files The files to index.
+     * @return The measurements.
+     */
+    public BuildResult build(List<File> files) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        SimpleFileIndexer simpleIndexer = this.indexer instanceof SimpleFileIndexer simple ? simple : null;
+        boolean progressOutput = simpleIndexer != null && simpleIndexer.isPrintingProgress();
+        if (simpleIndexer != null) {
+            simpleIndexer.setProgressOutput(false);
+        }
+        long start = System.nanoTime();
+        long nanos;
+        try {
+            this.indexer.indexFiles(FailurePolicy.SKIP_FILE, this.batchSize, files.toArray(new File[0]));
+            nanos = System.nanoTime() - start;
+        } finally {
+            if (simpleIndexer != null) {
+                simpleIndexer.setProgressOutput(progressOutput);
+            }
+        }
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        System.gc();
+        long retained = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return new BuildResult(this.indexer.getIndexedFileCount(), nanos, peak, retained);
+    }
+
+    /**
+     * Runs the queries of a workload at a fixed rate, each on its own virtual thread.
+     * A query with several keywords returns the files containing all of them.
+     *
+     * @param workload The queries to run.
+     * @param qps      The number of queries to start per second.
+     * @return The measurements.
+     * @throws InterruptedException If interrupted while waiting for the queries.
+     */
+    public ReplayResult replay(QueryWorkload workload, int qps) throws InterruptedException {
+        if (qps < 1) {
+            throw new IllegalArgumentException("The rate must be positive: " + qps);
+        }
+        LatencyRecorder latencies = new LatencyRecorder();
+        long interval = 1_000_000_000L / qps;
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<List<String>> queries = workload.queries();
+            for (int i = 0; i < queries.size(); i++) {
+                long scheduled = start + i * interval;
+                for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                String[] keywords = queries.get(i).toArray(new String[0]);
+                executor.submit(() -> {
+                    if (keywords.length == 1) {
+                        this.indexer.search(keywords[0]);
+                    } else {
+                        this.indexer.searchAll(keywords);
+                    }
+                    latencies.record(System.nanoTime() - scheduled);
+                });
+            }
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new ReplayResult(qps, latencies.count() / seconds, latencies);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path corpus = null;
+        int files = 10_000;
+        int words = 500;
+        int depth = 3;
+        int vocabulary = 50_000;
+        double exponent = 1.0;
+        long seed = 42;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        int queryCount = 10_000;
+        int keywords = 2;
+        int qps = 1000;
+        Path record = null;
+        Path replay = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus" -> corpus = Path.of(args[++i]);
+                case "--files" -> files = Integer.parseInt(args[++i]);
+                case "--words" -> words = Integer.parseInt(args[++i]);
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--vocabulary" -> vocabulary = Integer.parseInt(args[++i]);
+                case "--zipf" -> exponent = Double.parseDouble(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--batch" -> batchSize = Integer.parseInt(args[++i]);
+                case "--queries" -> queryCount = Integer.parseInt(args[++i]);
+                case "--keywords" -> keywords = Integer.parseInt(args[++i]);
+                case "--qps" -> qps = Integer.parseInt(args[++i]);
+                case "--record" -> record = Path.of(args[++i]);
+                case "--replay" -> replay = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (corpus == null) {
+            corpus = Files.createTempDirectory("corpus");
+        }
+
+        CorpusGenerator generator = new CorpusGenerator(files, words, depth, vocabulary, exponent, seed);
+        System.out.printf("Generating %d files of %d words in %s...%n", files, words, corpus);
+        List<File> corpusFiles = generator.generate(corpus);
+
+        IndexLoadTest loadTest = new IndexLoadTest(new SimpleFileIndexer(), batchSize);
+        System.out.println(loadTest.build(corpusFiles));
+
+        QueryWorkload workload = replay != null
+                ? QueryWorkload.load(replay)
+                : QueryWorkload.generate(generator.getDistribution(), queryCount, keywords, seed);
+        if (record != null) {
+            workload.save(record);
+            System.out.println("Recorded " + workload.size() + " queries to " + record);
+        }
+        System.out.println(loadTest.replay(workload, qps));
+    }
+}
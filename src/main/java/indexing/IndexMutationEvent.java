@@ -0,0 +1,35 @@
+package indexing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for a change to the index under the write lock of a {@link FileIndexer}.
+ * The duration of the event includes the time spent waiting for the lock, which is also reported on its own.
+ */
+@Name("indexer.IndexMutation")
+@Label("Index Mutation")
+@Category("Indexer")
+@Description("Files were added to or removed from the index")
+@StackTrace(false)
+class IndexMutationEvent extends Event {
+    @Label("Operation")
+    @Description("add, commit, bulk load, remove, remove directory or clear")
+    String operation;
+
+    @Label("Path")
+    @Description("The removed file or directory")
+    String path;
+
+    @Label("Files")
+    int files;
+
+    @Label("Lock Wait")
+    @Timespan
+    long lockWait;
+}
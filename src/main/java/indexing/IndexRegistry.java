@@ -0,0 +1,337 @@
+package indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps several named indexes in one process, within a memory budget shared by all of them.
+ *
+ * <p>When the estimated heap of all indexes exceeds the budget, the least recently used indexes are swapped out:
+ * they are written to a file in the spill directory with {@link FileIndexer#writeIndex(Path)},
+ * and replaced by a read-only {@link MappedIndex} of that file. A swapped out index can still be searched,
+ * from the page cache instead of the heap, and is only loaded back onto the heap when it is about to change.</p>
+ *
+ * <p>Swapping an index out or loading it back keeps the tokenizer and the settings of its indexer,
+ * like stored term locations or deduplication, see {@link SimpleFileIndexer#withIndex(Index)}.
+ * Indexes that are pinned, for example because a background job is adding files to them, are never swapped out.</p>
+ *
+ * <p>All methods are synchronized, since indexes can be swapped out while background jobs are running.
+ * Only building an index file with {@link #build(String, long, File...)} happens outside the lock.</p>
+ */
+public class IndexRegistry {
+    public static final String DEFAULT_INDEX = "default";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+"); // Names are used as file names
+
+    private final Path spillDirectory;
+    private final Predicate<FileIndexer> pinned;
+    private final Map<String, Entry> indexes = new TreeMap<>();
+    private volatile long memoryBudgetBytes;
+    private long clock; // Increases on every use, to find the least recently used index
+
+    /**
+     * A named index, and the file it was swapped out to.
+     */
+    private static final class Entry {
+        FileIndexer indexer;
+        Path spillFile; // Set while the index is swapped out
+        long lastUsed;
+
+        Entry(FileIndexer indexer) {
+            this.indexer = indexer;
+        }
+    }
+
+    /**
+     * A summary of a named index.
+     *
+     * @param name               The name of the index.
+     * @param files              The number of indexed files.
+     * @param estimatedHeapBytes The approximate heap used by the index, 0 while it is swapped out.
+     * @param swappedOut         Whether the index is served from its file in the spill directory.
+     */
+    public record IndexInfo(String name, int files, long estimatedHeapBytes, boolean swappedOut) {
+        @Override
+        public String toString() {
+            return String.format("%s: %d files, %s", this.name, this.files,
+                    this.swappedOut ? "swapped out" : String.format("%.1f MB", this.estimatedHeapBytes / 1048576.0));
+        }
+    }
+
+    /**
+     * Creates a registry with an empty {@value #DEFAULT_INDEX} index.
+     *
+     * @param memoryBudgetBytes The approximate heap all indexes may take together.
+     * @param spillDirectory    The directory indexes are swapped out to.
+     * @param pinned            Whether an indexer must stay on the heap, checked whenever the budget is enforced.
+     */
+    public IndexRegistry(long memoryBudgetBytes, Path spillDirectory, Predicate<FileIndexer> pinned) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.pinned = pinned;
+        this.indexes.put(DEFAULT_INDEX, new Entry(new SimpleFileIndexer()));
+    }
+
+    /**
+     * @param memoryBudgetBytes The approximate heap all indexes may take together.
+     *                          Takes effect the next time the budget is enforced.
+     */
+    public void setMemoryBudget(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * @return The approximate heap all indexes may take together.
+     */
+    public long getMemoryBudget() {
+        return this.memoryBudgetBytes;
+    }
+
+    /**
+     * Returns a named index, creating an empty one if there is none yet.
+     * A swapped out index is returned as it is, so it can be searched without loading it.
+     *
+     * @param name The name of the index.
+     * @return The indexer of the index.
+     * @throws IllegalArgumentException If the name contains characters other than letters, digits, '-' and '_'.
+     */
+    public synchronized FileIndexer get(String name) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Index names may only contain letters, digits, '-' and '_': " + name);
+        }
+        Entry entry = this.indexes.computeIfAbsent(name, n -> new Entry(new SimpleFileIndexer()));
+        entry.lastUsed = ++this.clock;
+        return entry.indexer;
+    }
+
+    /**
+     * Returns a named index that is about to change, loading it back onto the heap if it was swapped out.
+     * Other indexes may be swapped out to make room for it.
+     *
+     * @param name The name of the index.
+     * @return The indexer of the index, which stays the same until the index is swapped out again.
+     * @throws IllegalArgumentException If the name is invalid.
+     */
+    public synchronized FileIndexer load(String name) {
+        FileIndexer indexer = get(name);
+        Entry entry = this.indexes.get(name);
+        if (entry.spillFile == null) {
+            return indexer;
+        }
+
+        // Copy the postings of the mapped file into a new index on the heap
+        HashMapIndex index = new HashMapIndex();
+        for (String term : indexer.index.terms()) {
+            index.addPostings(term, indexer.index.search(term));
+        }
+        entry.indexer = withIndex(indexer, index);
+        deleteSpillFile(entry);
+        enforceBudget(name);
+        return entry.indexer;
+    }
+
+    /**
+     * Builds a read-only index file with the files of a named index and the given files, within a memory budget,
+     * and replaces the index with it, see {@link FileIndexer#indexFiles(long, Path, File...)}.
+     * The file is written to the spill directory, and the built index is treated like a swapped out index:
+     * it is searched from the file, and only loaded onto the heap when it is about to change.
+     * The registry isn't locked while the file is built.
+     *
+     * @param name              The name of the index.
+     * @param memoryBudgetBytes The approximate number of bytes the postings may take while building.
+     * @param files             The files to be indexed.
+     * @return The indexer of the built index, or null if it couldn't be built, in which case the index is unchanged.
+     * @throws IOException If the index file can't be created.
+     * @throws IllegalArgumentException If the name is invalid.
+     */
+    public FileIndexer build(String name, long memoryBudgetBytes, File... files) throws IOException {
+        FileIndexer indexer = get(name);
+        Files.createDirectories(this.spillDirectory);
+        Path file = Files.createTempFile(this.spillDirectory, name + "-", ".idx");
+        file.toFile().deleteOnExit();
+        FileIndexer built = indexer.indexFiles(memoryBudgetBytes, file, files);
+        if (built == null) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+
+        synchronized (this) {
+            Entry entry = this.indexes.get(name);
+            deleteSpillFile(entry);
+            entry.indexer = built;
+            entry.spillFile = file;
+            entry.lastUsed = ++this.clock;
+        }
+        return built;
+    }
+
+    /**
+     * Replaces a named index, for example with an index file that was opened.
+     *
+     * @param name    The name of the index.
+     * @param indexer The new indexer of the index.
+     * @throws IllegalArgumentException If the name is invalid.
+     */
+    public synchronized void put(String name, FileIndexer indexer) {
+        get(name);
+        Entry entry = this.indexes.get(name);
+        deleteSpillFile(entry);
+        entry.indexer = indexer;
+    }
+
+    /**
+     * @return The names of all indexes, in alphabetical order.
+     */
+    public synchronized List<String> names() {
+        return List.copyOf(this.indexes.keySet());
+    }
+
+    /**
+     * @return A summary of every index, in alphabetical order of their names.
+     */
+    public synchronized List<IndexInfo> list() {
+        List<IndexInfo> infos = new ArrayList<>();
+        this.indexes.forEach((name, entry) -> infos.add(new IndexInfo(
+                name, entry.indexer.getIndexedFileCount(), entry.indexer.estimatedHeapBytes(), entry.spillFile != null)));
+        return infos;
+    }
+
+    /**
+     * @param name The name of the index.
+     * @return {@code true} if the index is served from its file in the spill directory.
+     */
+    public synchronized boolean isSwappedOut(String name) {
+        Entry entry = this.indexes.get(name);
+        return entry != null && entry.spillFile != null;
+    }
+
+    /**
+     * @return The approximate heap used by all indexes together.
+     */
+    public synchronized long estimatedHeapBytes() {
+        long bytes = 0;
+        for (Entry entry : this.indexes.values()) {
+            bytes += entry.indexer.estimatedHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Searches all indexes for the files containing all keywords.
+     * Swapped out indexes are searched from their files, without loading them.
+     *
+     * @param keywords The keywords to search for.
+     * @return The matching files of every index that has any, by the name of the index.
+     */
+    public synchronized Map<String, Set<File>> searchAll(String... keywords) {
+        Map<String, Set<File>> result = new LinkedHashMap<>();
+        this.indexes.forEach((name, entry) -> {
+            Set<File> files = entry.indexer.searchAll(keywords);
+            if (!files.isEmpty()) {
+                result.put(name, files);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Swaps out the least recently used indexes until all indexes fit in the memory budget again.
+     * Pinned indexes and indexes that can't be written to a file are skipped.
+     *
+     * @return The names of the indexes that were swapped out.
+     */
+    public synchronized List<String> enforceBudget() {
+        return enforceBudget(null);
+    }
+
+    /**
+     * Swaps out the least recently used indexes, except one, until all indexes fit in the memory budget again.
+     */
+    private List<String> enforceBudget(String keep) {
+        List<String> swapped = new ArrayList<>();
+        Map<String, Long> heaps = new HashMap<>(); // Estimated once, since swapping out one index doesn't change the others
+        long bytes = 0;
+        for (Map.Entry<String, Entry> candidate : this.indexes.entrySet()) {
+            long heap = candidate.getValue().indexer.estimatedHeapBytes();
+            heaps.put(candidate.getKey(), heap);
+            bytes += heap;
+        }
+        while (bytes > this.memoryBudgetBytes) {
+            String coldest = null;
+            long coldestHeap = 0;
+            for (Map.Entry<String, Entry> candidate : this.indexes.entrySet()) {
+                Entry entry = candidate.getValue();
+                long heap = heaps.get(candidate.getKey());
+                if (heap == 0 || candidate.getKey().equals(keep) || this.pinned.test(entry.indexer)) {
+                    continue; // Nothing to gain, or in use
+                }
+                if (coldest == null || entry.lastUsed < this.indexes.get(coldest).lastUsed) {
+                    coldest = candidate.getKey();
+                    coldestHeap = heap;
+                }
+            }
+            if (coldest == null) {
+                break; // Everything left is pinned
+            }
+
+            try {
+                swapOut(coldest);
+            } catch (IOException | UnsupportedOperationException e) {
+                System.out.println("Error swapping out index " + coldest + ": " + e.getMessage());
+                break;
+            }
+            swapped.add(coldest);
+            heaps.put(coldest, 0L);
+            bytes -= coldestHeap;
+        }
+        return swapped;
+    }
+
+    /**
+     * Writes an index to the spill directory and replaces it with a read-only mapping of that file.
+     */
+    private void swapOut(String name) throws IOException {
+        Entry entry = this.indexes.get(name);
+        Files.createDirectories(this.spillDirectory);
+        Path file = this.spillDirectory.resolve(name + ".idx");
+        entry.indexer.writeIndex(file);
+        entry.indexer = withIndex(entry.indexer, MappedIndex.open(file));
+        entry.spillFile = file;
+        file.toFile().deleteOnExit();
+    }
+
+    /**
+     * Replaces the index of an indexer with another index holding the same files, keeping its tokenizer and settings.
+     */
+    private static FileIndexer withIndex(FileIndexer indexer, Index index) {
+        if (indexer instanceof SimpleFileIndexer simpleIndexer) {
+            return simpleIndexer.withIndex(index);
+        }
+        return new SimpleFileIndexer(indexer.tokenizer, index);
+    }
+
+    /**
+     * Deletes the file an index was swapped out to. The mapping of the file stays valid until it's collected.
+     */
+    private static void deleteSpillFile(Entry entry) {
+        if (entry.spillFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.spillFile);
+        } catch (IOException e) {
+            System.out.println("Error deleting swapped out index: " + entry.spillFile);
+        }
+        entry.spillFile = null;
+    }
+}
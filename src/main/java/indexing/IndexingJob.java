@@ -0,0 +1,129 @@
+package indexing;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Indexes files with an {@link IndexingPipeline} on a background thread.
+ * While the job runs, searches are answered from the files committed so far,
+ * and the job can report its progress or be cancelled.
+ */
+public class IndexingJob {
+    /**
+     * The states of a job.
+     */
+    public enum State {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    private final int id;
+    private final List<File> roots;
+    private final SimpleFileIndexer indexer;
+    private final IndexingPipeline pipeline;
+    private final Thread thread;
+    private volatile State state = State.RUNNING;
+    private volatile BatchResult result; // Set when the job has finished
+
+    /**
+     * Starts a job that indexes the given files and directories.
+     *
+     * @param id        The ID of the job.
+     * @param indexer   The indexer to add the files to.
+     * @param roots     The files and directories to index.
+     * @param recursive Whether to index subdirectories.
+     */
+    public IndexingJob(int id, SimpleFileIndexer indexer, List<File> roots, boolean recursive) {
+        this.id = id;
+        this.roots = List.copyOf(roots);
+        this.indexer = indexer;
+        this.pipeline = new IndexingPipeline(indexer);
+        this.thread = new Thread(() -> run(recursive), "indexing-job-" + id);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run(boolean recursive) {
+        try {
+            this.result = this.pipeline.run(this.roots, recursive);
+            this.state = this.pipeline.isCancelled() ? State.CANCELLED : State.COMPLETED;
+        } catch (InterruptedException e) {
+            this.state = State.CANCELLED;
+        } catch (RuntimeException e) {
+            System.out.println("Error in indexing job " + this.id + ": " + e.getMessage());
+            this.state = State.FAILED;
+        }
+    }
+
+    /**
+     * Cancels the job. The files committed before the cancellation stay in the index.
+     * Does nothing if the job has already finished.
+     */
+    public void cancel() {
+        this.pipeline.cancel();
+    }
+
+    /**
+     * Waits until the job has finished.
+     *
+     * @return The state the job finished in.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public State await() throws InterruptedException {
+        this.thread.join();
+        return this.state;
+    }
+
+    /**
+     * @return The ID of the job.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return The files and directories indexed by the job.
+     */
+    public List<File> getRoots() {
+        return this.roots;
+    }
+
+    /**
+     * @return The indexer the files are added to.
+     */
+    public SimpleFileIndexer getIndexer() {
+        return this.indexer;
+    }
+
+    /**
+     * @return The current state of the job.
+     */
+    public State getState() {
+        return this.state;
+    }
+
+    /**
+     * @return The progress of the job.
+     */
+    public IndexingPipeline.Progress progress() {
+        return this.pipeline.progress();
+    }
+
+    /**
+     * @return The statistics of every stage of the job.
+     */
+    public List<IndexingPipeline.StageStats> stats() {
+        return this.pipeline.stats();
+    }
+
+    /**
+     * @return The committed and failed files, or {@code null} while the job runs.
+     */
+    public BatchResult getResult() {
+        return this.result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Job %d [%s] %s: %s", this.id, this.state, this.roots, progress());
+    }
+}
@@ -0,0 +1,80 @@
+package indexing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of background indexing jobs. Jobs are numbered from 1 in the order they were submitted.
+ * Several jobs can run at the same time, in which case their commits are interleaved.
+ */
+public class IndexingJobs {
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Integer, IndexingJob> jobs = new ConcurrentSkipListMap<>();
+
+    /**
+     * Starts indexing files in the background.
+     *
+     * @param indexer   The indexer to add the files to.
+     * @param roots     The files and directories to index.
+     * @param recursive Whether to index subdirectories.
+     * @return The started job.
+     */
+    public IndexingJob submit(SimpleFileIndexer indexer, List<File> roots, boolean recursive) {
+        int id = this.nextId.getAndIncrement();
+        IndexingJob job = new IndexingJob(id, indexer, roots, recursive);
+        this.jobs.put(id, job);
+        return job;
+    }
+
+    /**
+     * @param id The ID of the job.
+     * @return The job with the ID, or {@code null} if there is none.
+     */
+    public IndexingJob get(int id) {
+        return this.jobs.get(id);
+    }
+
+    /**
+     * @return All jobs, ordered by ID.
+     */
+    public List<IndexingJob> list() {
+        return new ArrayList<>(this.jobs.values());
+    }
+
+    /**
+     * Cancels all running jobs, for example before the index is replaced.
+     */
+    public void cancelAll() {
+        this.jobs.values().forEach(IndexingJob::cancel);
+    }
+
+    /**
+     * Cancels the running jobs that index into a single indexer, for example before that index is replaced.
+     *
+     * @param indexer The indexer.
+     */
+    public void cancelAll(FileIndexer indexer) {
+        for (IndexingJob job : this.jobs.values()) {
+            if (job.getIndexer() == indexer) {
+                job.cancel();
+            }
+        }
+    }
+
+    /**
+     * @param indexer The indexer.
+     * @return {@code true} if a running job is adding files to the indexer.
+     */
+    public boolean isIndexing(FileIndexer indexer) {
+        for (IndexingJob job : this.jobs.values()) {
+            if (job.getIndexer() == indexer && job.getState() == IndexingJob.State.RUNNING) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
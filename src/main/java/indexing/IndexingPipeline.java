@@ -0,0 +1,572 @@
+package indexing;
+
+import util.Archives;
+import util.FileHandling;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Indexes directories in four stages that run at the same time, connected by bounded queues:
+ * <ol>
+ *     <li>walk - finds the text files and archives below the given paths,</li>
+ *     <li>read - reads the content of every file,</li>
+ *     <li>tokenize - turns the content into the distinct terms of the file,</li>
+ *     <li>commit - adds the files to the index in batches, under the write lock of the indexer.</li>
+ * </ol>
+ *
+ * <p>Every stage except commit runs on its own number of threads, so reading files from disk overlaps with tokenizing them.
+ * Commits always run on a single thread, since they are serialized by the write lock anyway.
+ * When a stage falls behind, the queue in front of it fills up and the stages before it block,
+ * so the number of files in flight never exceeds the queue capacities. The content that was read but not yet tokenized
+ * is additionally limited to a number of bytes.</p>
+ *
+ * <p>Files above the parallel threshold of the indexer are not read by the read stage,
+ * but tokenized in chunks straight from disk. Archives are tokenized entry by entry while they are read,
+ * since their entries can only be read sequentially. If the indexer deduplicates identical files, the tokenize stage
+ * hashes the content that was read and reuses the terms of an indexed file with the same content, like a batch would.</p>
+ *
+ * <p>A pipeline runs once. While it runs, {@link #stats()} reports the queue depth and throughput of every stage,
+ * which shows the stage that limits the indexing speed, and {@link #progress()} reports the files and bytes done so far.
+ * A running pipeline can be stopped with {@link #cancel()}: files are committed in whole batches,
+ * so the index then holds exactly the files committed before the cancellation.</p>
+ */
+public class IndexingPipeline {
+    static final int DEFAULT_QUEUE_CAPACITY = 256;
+    static final long DEFAULT_MAX_BUFFERED_BYTES = 64 << 20;
+    static final int DEFAULT_COMMIT_BATCH_SIZE = 1000;
+
+    private static final File END_OF_PATHS = new File("");
+    private static final Document END_OF_DOCUMENTS = new Document(null, 0, null, null, false, 0);
+
+    private final SimpleFileIndexer indexer;
+    private final int walkers;
+    private final int readers;
+    private final int tokenizers;
+    private final int commitBatchSize;
+    private final BlockingQueue<File> paths;
+    private final BlockingQueue<Document> contents;
+    private final BlockingQueue<Document> documents;
+    private final int maxBufferedBytes;
+    private final Semaphore bufferedBytes; // Bytes of content that may be read before it is tokenized
+    private final Stage walk;
+    private final Stage read;
+    private final Stage tokenize;
+    private final Stage commit;
+    private final List<File> failed = Collections.synchronizedList(new ArrayList<>());
+    private final List<File> rolledBack = new ArrayList<>(); // Only modified by the commit thread
+    private int committed; // Only modified by the commit thread
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile boolean cancelled;
+    private volatile boolean walkFinished;
+    private final LongAdder filesFound = new LongAdder();
+    private final LongAdder bytesFound = new LongAdder();
+    private final LongAdder filesDone = new LongAdder(); // Files that were committed, rolled back or failed
+    private final LongAdder bytesDone = new LongAdder();
+    private boolean started;
+
+    /**
+     * Creates a pipeline using the available processors for reading and tokenizing, and default queue sizes.
+     *
+     * @param indexer The indexer whose index the files are committed to.
+     */
+    public IndexingPipeline(SimpleFileIndexer indexer) {
+        this(indexer, 1, Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+                Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BUFFERED_BYTES, DEFAULT_COMMIT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param indexer          The indexer whose index the files are committed to.
+     * @param walkers          The number of threads walking directories. Every given path is walked by a single thread.
+     * @param readers          The number of threads reading files.
+     * @param tokenizers       The number of threads tokenizing files.
+     * @param queueCapacity    The number of files each queue between two stages can hold.
+     * @param maxBufferedBytes The number of bytes of content that may be read ahead of the tokenizers.
+     * @param commitBatchSize  The maximum number of files committed to the index at once.
+     */
+    public IndexingPipeline(SimpleFileIndexer indexer, int walkers, int readers, int tokenizers,
+                            int queueCapacity, long maxBufferedBytes, int commitBatchSize) {
+        if (walkers < 1 || readers < 1 || tokenizers < 1) {
+            throw new IllegalArgumentException("Every stage needs at least one thread.");
+        }
+        if (queueCapacity < 1 || maxBufferedBytes < 1 || commitBatchSize < 1) {
+            throw new IllegalArgumentException("Queue capacity, buffered bytes and batch size must be positive.");
+        }
+        this.indexer = indexer;
+        this.walkers = walkers;
+        this.readers = readers;
+        this.tokenizers = tokenizers;
+        this.commitBatchSize = commitBatchSize;
+        this.paths = new ArrayBlockingQueue<>(queueCapacity);
+        this.contents = new ArrayBlockingQueue<>(queueCapacity);
+        this.documents = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBufferedBytes = (int) Math.min(maxBufferedBytes, Integer.MAX_VALUE);
+        this.bufferedBytes = new Semaphore(this.maxBufferedBytes);
+        this.walk = new Stage("walk", walkers, null);
+        this.read = new Stage("read", readers, this.paths);
+        this.tokenize = new Stage("tokenize", tokenizers, this.contents);
+        this.commit = new Stage("commit", 1, this.documents);
+    }
+
+    /**
+     * Indexes all text files and archives below the given paths, and waits until they are committed.
+     * Files that are already indexed are updated. Files that can't be read are skipped.
+     *
+     * @param roots     The files and directories to index.
+     * @param recursive Whether to index the files in subdirectories.
+     * @return The number of committed files, and the files that were not committed.
+     *         After a cancellation, the files that were skipped are in neither list.
+     * @throws InterruptedException If the calling thread is interrupted. The pipeline is stopped.
+     */
+    public BatchResult run(List<File> roots, boolean recursive) throws InterruptedException {
+        synchronized (this) {
+            if (this.started) {
+                throw new IllegalStateException("A pipeline can only run once.");
+            }
+            this.started = true;
+        }
+        this.startNanos = System.nanoTime();
+
+        Queue<File> pendingRoots = new ConcurrentLinkedQueue<>(roots);
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger activeWalkers = new AtomicInteger(this.walkers);
+        AtomicInteger activeReaders = new AtomicInteger(this.readers);
+        AtomicInteger activeTokenizers = new AtomicInteger(this.tokenizers);
+        for (int i = 0; i < this.walkers; i++) {
+            threads.add(start("walk", i, () -> walkAll(pendingRoots, recursive), activeWalkers, () -> {
+                this.walkFinished = true;
+                endAll(this.paths, END_OF_PATHS, this.readers);
+            }));
+        }
+        for (int i = 0; i < this.readers; i++) {
+            threads.add(start("read", i, this::readAll,
+                    activeReaders, () -> endAll(this.contents, END_OF_DOCUMENTS, this.tokenizers)));
+        }
+        for (int i = 0; i < this.tokenizers; i++) {
+            threads.add(start("tokenize", i, this::tokenizeAll,
+                    activeTokenizers, () -> endAll(this.documents, END_OF_DOCUMENTS, 1)));
+        }
+        threads.add(start("commit", 0, this::commitAll, new AtomicInteger(1), () -> {
+        }));
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            throw e;
+        } finally {
+            this.endNanos = System.nanoTime();
+        }
+        return new BatchResult(this.committed, List.copyOf(this.failed), List.copyOf(this.rolledBack));
+    }
+
+    /**
+     * Stops a running pipeline. Files that are not committed yet are skipped, while the batch that is being committed
+     * is completed. {@link #run(List, boolean)} returns once all stages have stopped.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return {@code true} if the pipeline was cancelled.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Starts a worker thread. The last worker of a stage to finish tells the next stage that no more work will come.
+     */
+    private Thread start(String stage, int number, Worker worker, AtomicInteger activeWorkers, Worker end) {
+        Thread thread = new Thread(() -> {
+            try {
+                worker.run();
+            } catch (InterruptedException e) {
+                return; // The pipeline is stopped, so there is no next stage to tell
+            }
+            if (activeWorkers.decrementAndGet() == 0) {
+                try {
+                    end.run();
+                } catch (InterruptedException ignored) {
+                    // The pipeline is stopped
+                }
+            }
+        }, "indexing-" + stage + "-" + number);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private interface Worker {
+        void run() throws InterruptedException;
+    }
+
+    private static <T> void endAll(BlockingQueue<T> queue, T end, int workers) throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            queue.put(end);
+        }
+    }
+
+    private void walkAll(Queue<File> roots, boolean recursive) throws InterruptedException {
+        for (File root = roots.poll(); root != null && !this.cancelled; root = roots.poll()) {
+            long start = System.nanoTime();
+            try {
+                if (!root.exists()) {
+                    System.out.printf("File %s doesn't exist%n", root.getAbsolutePath());
+                    this.failed.add(root);
+                } else {
+                    walk(root, recursive, true);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Error while walking " + root.getAbsolutePath() + ": " + e.getMessage());
+                this.failed.add(root);
+            }
+            this.walk.record(start);
+        }
+    }
+
+    private void walk(File file, boolean recursive, boolean root) throws InterruptedException {
+        if (this.cancelled) {
+            return;
+        }
+        if (isIndexable(file)) {
+            this.filesFound.increment();
+            this.bytesFound.add(file.length());
+
+            // Time spent waiting for the readers is not counted as work
+            long waitStart = System.nanoTime();
+            this.paths.put(file);
+            this.walk.busyNanos.add(waitStart - System.nanoTime());
+            this.walk.processed.increment();
+            return;
+        }
+        if (!file.isDirectory()) {
+            if (root) {
+                System.out.printf("%s is neither a text file nor a directory, skipping%n", file.getAbsolutePath());
+                this.failed.add(file);
+            }
+            return;
+        }
+        if (!root && !recursive) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            walk(child, recursive, false);
+        }
+    }
+
+    private static boolean isIndexable(File file) {
+        return FileHandling.isTextFile(file) || (file.isFile() && Archives.isArchive(file));
+    }
+
+    private void readAll() throws InterruptedException {
+        for (File file = this.paths.take(); file != END_OF_PATHS; file = this.paths.take()) {
+            if (this.cancelled) {
+                continue; // Drain the queue, so the walkers aren't blocked
+            }
+
+            // Wait until the tokenizers have caught up, before the content is read into memory
+            boolean buffered = !Archives.isArchive(file) && file.length() < this.indexer.getParallelThreshold();
+            int permits = buffered ? (int) Math.min(file.length(), this.maxBufferedBytes) : 0;
+            this.bufferedBytes.acquire(permits);
+
+            long start = System.nanoTime();
+            Document document;
+            try {
+                document = readFile(file, buffered, permits);
+            } catch (RuntimeException e) {
+                System.out.println("Error reading file: " + file.getAbsolutePath() + " (" + e.getMessage() + ")");
+                document = null;
+            }
+            this.read.record(start);
+            this.read.processed.increment();
+
+            if (document == null) {
+                this.bufferedBytes.release(permits);
+                fail(file, file.length());
+            } else {
+                this.contents.put(document);
+            }
+        }
+    }
+
+    /**
+     * Reads a file, or tokenizes all entries of an archive.
+     *
+     * @return The document, or {@code null} if the file can't be read.
+     */
+    private Document readFile(File file, boolean buffered, int permits) {
+        if (Archives.isArchive(file)) {
+            Map<File, SimpleFileIndexer.Staged> entries = this.indexer.tokenizeArchive(file);
+            return entries == null ? null : new Document(file, file.length(), null, entries, true, 0);
+        }
+        if (!buffered) {
+            return new Document(file, file.length(), null, null, false, 0); // Tokenized in chunks straight from disk
+        }
+
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            return new Document(file, content.length, content, null, false, permits);
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + file.getAbsolutePath());
+            return null;
+        }
+    }
+
+    private void tokenizeAll() throws InterruptedException {
+        for (Document document = this.contents.take(); document != END_OF_DOCUMENTS; document = this.contents.take()) {
+            if (this.cancelled) {
+                this.bufferedBytes.release(document.permits);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            FileIndexedEvent event = new FileIndexedEvent();
+            event.begin();
+            Document tokenized = tokenizeDocument(document);
+            this.tokenize.record(start);
+            this.tokenize.processed.increment();
+
+            // Files that weren't read by the read stage report their own event
+            if (tokenized != null && document.content != null && event.shouldCommit()) {
+                event.path = document.file.getPath();
+                event.bytes = document.size;
+                event.terms = tokenized.terms.get(document.file).terms().size();
+                event.tokenizeDuration = System.nanoTime() - start;
+                event.commit();
+            }
+
+            if (tokenized == null) {
+                fail(document.file, document.size);
+            } else {
+                this.documents.put(tokenized);
+            }
+        }
+    }
+
+    private Document tokenizeDocument(Document document) {
+        if (document.terms != null) {
+            return document; // An archive, tokenized while it was read
+        }
+        try {
+            SimpleFileIndexer.Staged staged = document.content != null
+                    ? this.indexer.tokenizeContentDeduplicated(document.content)
+                    : this.indexer.tokenizeFile(document.file);
+            return staged == null ? null : new Document(document.file, document.size, null, Map.of(document.file, staged), false, 0);
+        } catch (RuntimeException e) {
+            System.out.println("Error tokenizing file: " + document.file.getAbsolutePath() + " (" + e.getMessage() + ")");
+            return null;
+        } finally {
+            this.bufferedBytes.release(document.permits);
+        }
+    }
+
+    private void commitAll() throws InterruptedException {
+        boolean ended = false;
+        List<Document> batch = new ArrayList<>();
+        while (!ended) {
+            batch.add(this.documents.take());
+            this.documents.drainTo(batch, this.commitBatchSize - 1);
+            if (batch.getLast() == END_OF_DOCUMENTS) {
+                batch.removeLast();
+                ended = true; // Nothing follows the end, since there is a single commit thread
+            }
+
+            if (!batch.isEmpty() && !this.cancelled) {
+                long start = System.nanoTime();
+                commitBatch(batch);
+                this.commit.record(start);
+                this.commit.processed.add(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    private void commitBatch(List<Document> batch) {
+        SimpleFileIndexer.Batch staged = new SimpleFileIndexer.Batch();
+        long bytes = 0;
+        for (Document document : batch) {
+            staged.files.putAll(document.terms);
+            if (document.archive) {
+                staged.archives.add(document.file);
+            }
+            bytes += document.size;
+        }
+        try {
+            this.indexer.commit(staged);
+            this.committed += staged.files.size();
+        } catch (RuntimeException e) {
+            System.out.println("Error while committing files, the batch was rolled back: " + e.getMessage());
+            this.rolledBack.addAll(staged.files.keySet());
+        }
+        this.filesDone.add(batch.size());
+        this.bytesDone.add(bytes);
+    }
+
+    private void fail(File file, long size) {
+        this.failed.add(file);
+        this.filesDone.increment();
+        this.bytesDone.add(size);
+    }
+
+    /**
+     * Reports how many of the files found so far are done. Can be called while the pipeline runs.
+     *
+     * @return The progress of the pipeline.
+     */
+    public Progress progress() {
+        long start = this.startNanos;
+        long elapsed = start == 0 ? 0 : (this.endNanos != 0 ? this.endNanos : System.nanoTime()) - start;
+        return new Progress(this.filesFound.sum(), this.bytesFound.sum(), this.filesDone.sum(), this.bytesDone.sum(),
+                this.walkFinished, elapsed);
+    }
+
+    /**
+     * Reports the progress of every stage, in pipeline order. Can be called while the pipeline runs.
+     *
+     * @return The statistics of the walk, read, tokenize and commit stages.
+     */
+    public List<StageStats> stats() {
+        long start = this.startNanos;
+        long elapsed = start == 0 ? 0 : (this.endNanos != 0 ? this.endNanos : System.nanoTime()) - start;
+        return List.of(this.walk.snapshot(elapsed), this.read.snapshot(elapsed),
+                this.tokenize.snapshot(elapsed), this.commit.snapshot(elapsed));
+    }
+
+    /**
+     * A file flowing through the pipeline: its content after the read stage, and its terms after the tokenize stage.
+     * An archive carries the terms of all of its entries.
+     */
+    private record Document(File file, long size, byte[] content, Map<File, SimpleFileIndexer.Staged> terms, boolean archive, int permits) {
+    }
+
+    /**
+     * The counters of a stage, updated by its workers.
+     */
+    private static final class Stage {
+        final String name;
+        final int workers;
+        final BlockingQueue<?> input;
+        final LongAdder processed = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+
+        Stage(String name, int workers, BlockingQueue<?> input) {
+            this.name = name;
+            this.workers = workers;
+            this.input = input;
+        }
+
+        void record(long startNanos) {
+            this.busyNanos.add(System.nanoTime() - startNanos);
+        }
+
+        StageStats snapshot(long elapsedNanos) {
+            int queued = this.input == null ? 0 : this.input.size();
+            int capacity = this.input == null ? 0 : queued + this.input.remainingCapacity();
+            return new StageStats(this.name, this.workers, queued, capacity, this.processed.sum(), this.busyNanos.sum(), elapsedNanos);
+        }
+    }
+
+    /**
+     * A snapshot of the progress of a whole pipeline. An archive counts as a single file.
+     *
+     * @param filesFound   The number of files the walk has found so far.
+     * @param bytesFound   The size of those files.
+     * @param filesDone    The number of files that were committed or couldn't be indexed.
+     * @param bytesDone    The size of those files.
+     * @param walkFinished Whether all files have been found, so the totals are final.
+     * @param elapsedNanos The time since the pipeline started.
+     */
+    public record Progress(long filesFound, long bytesFound, long filesDone, long bytesDone,
+                           boolean walkFinished, long elapsedNanos) {
+
+        /**
+         * @return The number of files done per second.
+         */
+        public double filesPerSecond() {
+            return this.elapsedNanos == 0 ? 0 : this.filesDone * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         * @return The number of bytes done per second.
+         */
+        public double bytesPerSecond() {
+            return this.elapsedNanos == 0 ? 0 : this.bytesDone * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         * Estimates the remaining time from the bytes still to do and the byte throughput so far.
+         *
+         * @return The estimated number of seconds until all files are done,
+         *         or -1 if it can't be estimated yet, because the walk hasn't finished or nothing is done yet.
+         */
+        public double etaSeconds() {
+            if (!this.walkFinished || this.bytesDone == 0) {
+                return -1;
+            }
+            return (this.bytesFound - this.bytesDone) / bytesPerSecond();
+        }
+
+        @Override
+        public String toString() {
+            double eta = etaSeconds();
+            return String.format("%d/%d%s files, %.1f/%.1f MB, %.1f files/s, %.2f MB/s, ETA %s",
+                    this.filesDone, this.filesFound, this.walkFinished ? "" : "+", this.bytesDone / 1e6, this.bytesFound / 1e6,
+                    filesPerSecond(), bytesPerSecond() / 1e6, eta < 0 ? "unknown" : String.format("%.0fs", eta));
+        }
+    }
+
+    /**
+     * A snapshot of the progress of a pipeline stage.
+     *
+     * @param name          The name of the stage.
+     * @param workers       The number of threads of the stage.
+     * @param queued        The number of files waiting in the queue in front of the stage.
+     * @param queueCapacity The capacity of that queue, or 0 for the walk stage, which has no queue in front of it.
+     * @param processed     The number of files the stage has handled.
+     * @param busyNanos     The time the threads of the stage spent working, summed over all threads.
+     * @param elapsedNanos  The time since the pipeline started.
+     */
+    public record StageStats(String name, int workers, int queued, int queueCapacity, long processed,
+                             long busyNanos, long elapsedNanos) {
+
+        /**
+         * @return The number of files handled per second since the pipeline started.
+         */
+        public double throughput() {
+            return this.elapsedNanos == 0 ? 0 : this.processed * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         * @return The fraction of time the threads of the stage were busy, between 0 and 1.
+         *         The stage with the highest utilization limits the pipeline.
+         */
+        public double utilization() {
+            return this.elapsedNanos == 0 ? 0 : Math.min(1, (double) this.busyNanos / this.elapsedNanos / this.workers);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s workers=%d queue=%d/%d processed=%d throughput=%.1f/s utilization=%.0f%%",
+                    this.name, this.workers, this.queued, this.queueCapacity, this.processed, throughput(), utilization() * 100);
+        }
+    }
+}
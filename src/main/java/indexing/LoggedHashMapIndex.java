@@ -0,0 +1,177 @@
+package indexing;
+
+import tokenizing.TokenSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link HashMapIndex} that survives a crash of the process: every change is recorded in a {@link WriteAheadLog},
+ * and the index is rebuilt from the latest snapshot and the log when it is opened again.
+ *
+ * <p>The index is kept in a directory with two files: {@value #SNAPSHOT_FILE}, written by {@link #checkpoint()}
+ * in the format of {@link MappedIndex}, and {@value #LOG_FILE}, holding the changes since that snapshot.
+ * A checkpoint writes the new snapshot next to the old one and moves it into place before emptying the log,
+ * so a crash in between only replays changes the snapshot already contains.
+ * The directory is forced to the disk after the move, so the log is never emptied before the new snapshot is durable.</p>
+ *
+ * <p>Changes queue their records before they are applied, so a change the log rejects leaves the index unchanged.
+ * A {@link FileIndexer} waits for the records after releasing its lock, so concurrent changes share the fsyncs of the log.</p>
+ */
+public class LoggedHashMapIndex extends HashMapIndex implements Closeable {
+    static final String SNAPSHOT_FILE = "snapshot.idx";
+    static final String LOG_FILE = "wal.log";
+
+    private final Path directory;
+    private WriteAheadLog log; // Null while the index is recovered, so the recovered changes aren't logged again
+
+    private LoggedHashMapIndex(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the index in a directory, recovering its content from the snapshot and the log,
+     * or creates an empty index if the directory doesn't exist yet.
+     * The index is only returned once it is recovered, and its log is opened after the recovered changes were applied.
+     *
+     * @param directory      The directory of the index.
+     * @param durability     When changes are forced to the disk.
+     * @param intervalMillis The interval between forces with {@link WriteAheadLog.Durability#INTERVAL}.
+     * @return The recovered index.
+     * @throws IOException If the snapshot or the log can't be read.
+     */
+    public static LoggedHashMapIndex open(Path directory, WriteAheadLog.Durability durability, long intervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        LoggedHashMapIndex index = new LoggedHashMapIndex(directory);
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            MappedIndex mapped = MappedIndex.open(snapshot);
+            try {
+                for (String term : mapped.terms()) {
+                    index.addPostings(term, mapped.search(term));
+                }
+            } finally {
+                mapped.unmap(); // Nothing else can reach it, and a mapped snapshot couldn't be replaced on every platform
+            }
+        }
+        WriteAheadLog.replay(directory.resolve(LOG_FILE), index);
+        index.log = new WriteAheadLog(directory.resolve(LOG_FILE), durability, intervalMillis);
+        return index;
+    }
+
+    /**
+     * @return The log the changes of the index are recorded in.
+     */
+    public WriteAheadLog getLog() {
+        return this.log;
+    }
+
+    @Override
+    public void addToIndex(String token, File file) {
+        if (this.log != null) {
+            this.log.appendAdd(file, List.of(token));
+        }
+        super.addToIndex(token, file);
+    }
+
+    @Override
+    public void addDocument(File file, Iterable<String> tokens) {
+        TokenSet distinct = TokenSet.of(tokens);
+        if (this.log != null && !distinct.isEmpty()) {
+            this.log.appendAdd(file, distinct);
+        }
+        super.addDocument(file, distinct);
+    }
+
+    @Override
+    public void addPostings(String token, Collection<File> files) {
+        if (this.log != null && !files.isEmpty()) {
+            this.log.appendPostings(token, files);
+        }
+        super.addPostings(token, files);
+    }
+
+    @Override
+    public void removeFileFromIndex(File file) {
+        if (this.log != null) {
+            this.log.appendRemove(file);
+        }
+        super.removeFileFromIndex(file);
+    }
+
+    @Override
+    public List<File> removeDirectoryFromIndex(File directory) {
+        if (this.log != null) {
+            this.log.appendRemoveDirectory(directory);
+        }
+        return super.removeDirectoryFromIndex(directory);
+    }
+
+    @Override
+    public void clearIndex() {
+        if (this.log != null) {
+            this.log.appendClear();
+        }
+        super.clearIndex();
+    }
+
+    /**
+     * Writes a snapshot of the index and empties the log.
+     * The index must not change until the checkpoint is done, see {@link FileIndexer#checkpoint()}.
+     *
+     * @throws IOException If the snapshot can't be written or the log can't be emptied.
+     */
+    public void checkpoint() throws IOException {
+        Path snapshot = this.directory.resolve(SNAPSHOT_FILE);
+        Path temporary = this.directory.resolve(SNAPSHOT_FILE + ".tmp");
+        MappedIndexWriter.write(this, temporary);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        this.log.reset();
+    }
+
+    /**
+     * Forces the entries of the directory to the disk, so a crash can't undo the move of the snapshot.
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(this.directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // Directories can't be opened on every platform, such as Windows, where the move is durable once done
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces the remaining changes to the disk and closes the log. The index can't be changed afterward.
+     *
+     * @throws IOException If the remaining changes can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        this.log.close();
+    }
+
+    @Override
+    public String toString() {
+        return "LoggedHashMapIndex{" +
+               "directory=" + directory +
+               ", durability=" + log.getDurability() +
+               '}';
+    }
+}
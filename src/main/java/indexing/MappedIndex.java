@@ -0,0 +1,594 @@
+package indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A read-only index that is queried straight from a file written by {@link MappedIndexWriter}.
+ *
+ * <p>Opening the index only reads the header and maps the sections of the file into memory,
+ * so it takes the same time no matter how large the index is. Dictionary lookups, postings decoding and
+ * the file table all work on the mapped bytes. Only the {@link BloomFilter} of the terms is read onto the heap,
+ * so a lookup of a term that isn't in the index usually returns after a few bit tests, without searching the dictionary.
+ * Since the pages come from the operating system's page cache, several processes serving the same index file
+ * share a single copy of it in memory.</p>
+ *
+ * <p>All methods that would change the index throw an {@link UnsupportedOperationException}.
+ * The index can be used by several threads at once.</p>
+ */
+public class MappedIndex implements Index, SortedPostings {
+    // Results of matchPath when the path of a node sorts before or after the path it is compared with
+    private static final int PATH_LESS = -1;
+    private static final int PATH_GREATER = -2;
+    private final int blockSize;
+    private final int termCount;
+    private final int fileCount;
+    private final ByteBuffer terms; // Front-coded blocks
+    private final ByteBuffer blockOffsets;
+    private final ByteBuffer postings;
+    private final ByteBuffer postingsOffsets;
+    private final ByteBuffer names;
+    private final ByteBuffer nodes; // Parent and name offset of every file and directory
+    private final BloomFilter filter;
+    private final Set<File> indexedFiles = new IndexedFiles();
+
+    private MappedIndex(int blockSize, int termCount, int fileCount, ByteBuffer[] sections, BloomFilter filter) {
+        this.blockSize = blockSize;
+        this.termCount = termCount;
+        this.fileCount = fileCount;
+        this.terms = sections[0];
+        this.blockOffsets = sections[1];
+        this.postings = sections[2];
+        this.postingsOffsets = sections[3];
+        this.names = sections[4];
+        this.nodes = sections[5];
+        this.filter = filter;
+    }
+
+    /**
+     * Opens an index file by mapping it into memory.
+     *
+     * @param path The file written by {@link MappedIndexWriter#write(Index, Path)}.
+     * @return The index.
+     * @throws IOException If the file can't be read or is not an index file.
+     */
+    public static MappedIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MappedIndexWriter.HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException(path + " is not an index file.");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MappedIndexWriter.MAGIC) {
+                throw new IOException(path + " is not an index file.");
+            }
+            int version = header.getInt();
+            if (version != MappedIndexWriter.VERSION) {
+                throw new IOException("Unsupported index version: " + version);
+            }
+            int blockSize = header.getInt();
+            int termCount = header.getInt();
+            int fileCount = header.getInt();
+            header.getInt(); // The number of nodes follows from the size of the file table
+
+            long[] offsets = new long[8];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = header.getLong();
+            }
+            if (offsets[7] > channel.size()) {
+                throw new IOException(path + " is truncated.");
+            }
+
+            // The mappings stay valid after the channel is closed
+            ByteBuffer[] sections = new ByteBuffer[6];
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, offsets[i], offsets[i + 1] - offsets[i]);
+            }
+            channel.position(offsets[6]);
+            BloomFilter filter = BloomFilter.readFrom(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))));
+            return new MappedIndex(blockSize, termCount, fileCount, sections, filter);
+        }
+    }
+
+    /**
+     * Unmaps the sections of the index right away, instead of once the garbage collector gets to them,
+     * so the file can be replaced or deleted on every platform.
+     * Reading the index afterward crashes the JVM, so this is only for an index that no other code can reach.
+     * If the JVM doesn't allow unmapping, the sections are left to the garbage collector.
+     */
+    void unmap() {
+        try {
+            Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            Method invokeCleaner = unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+            for (ByteBuffer section : List.of(this.terms, this.blockOffsets, this.postings, this.postingsOffsets, this.names, this.nodes)) {
+                invokeCleaner.invoke(unsafe, section);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The remaining sections are unmapped once they are garbage collected
+        }
+    }
+
+    @Override
+    public void addToIndex(String token, File file) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addDocument(File file, Iterable<String> tokens) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addPostings(String token, Collection<File> files) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeFileFromIndex(File file) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<File> removeDirectoryFromIndex(File directory) {
+        throw readOnly();
+    }
+
+    @Override
+    public void clearIndex() {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("A mapped index is read-only.");
+    }
+
+    @Override
+    public Set<File> search(String query) {
+        int ordinal = ordinal(query);
+        if (ordinal < 0) {
+            return new HashSet<>();
+        }
+
+        int[] position = {this.postingsOffsets.getInt(ordinal * Integer.BYTES)};
+        int count = readVarInt(this.postings, position);
+        position[0] += MappedIndexWriter.skipBytes(count);
+        Set<File> files = new HashSet<>(count * 2);
+        int id = 0;
+        for (int i = 0; i < count; i++) {
+            id += readVarInt(this.postings, position);
+            files.add(file(id));
+        }
+        return files;
+    }
+
+    /**
+     * Reads a page of files straight from the mapped postings. The cursor is the ID of the last file on the previous page.
+     */
+    @Override
+    public SearchPage search(String query, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        int after = SearchPage.parseCursor(cursor);
+        int ordinal = ordinal(query);
+        if (ordinal < 0) {
+            return SearchPage.empty();
+        }
+
+        int[] position = {this.postingsOffsets.getInt(ordinal * Integer.BYTES)};
+        int count = readVarInt(this.postings, position);
+        position[0] += MappedIndexWriter.skipBytes(count);
+        List<File> page = new ArrayList<>(Math.min(limit, count));
+        int id = 0;
+        int i = 0;
+        for (; i < count && page.size() < limit; i++) {
+            id += readVarInt(this.postings, position);
+            if (id > after) {
+                page.add(file(id));
+            }
+        }
+        return new SearchPage(page, i < count ? String.valueOf(id) : null);
+    }
+
+    /**
+     * Counts the files containing a token by reading the length of its postings, without decoding them.
+     */
+    @Override
+    public int count(String query) {
+        int ordinal = ordinal(query);
+        if (ordinal < 0) {
+            return 0;
+        }
+        int[] position = {this.postingsOffsets.getInt(ordinal * Integer.BYTES)};
+        return readVarInt(this.postings, position);
+    }
+
+    /**
+     * Decodes the postings of a token into sorted IDs.
+     */
+    @Override
+    public DocIdSet postings(String term) {
+        int ordinal = ordinal(term);
+        if (ordinal < 0) {
+            return null;
+        }
+
+        int[] position = {this.postingsOffsets.getInt(ordinal * Integer.BYTES)};
+        int[] ids = new int[readVarInt(this.postings, position)];
+        position[0] += MappedIndexWriter.skipBytes(ids.length);
+        int id = 0;
+        for (int i = 0; i < ids.length; i++) {
+            id += readVarInt(this.postings, position);
+            ids[i] = id;
+        }
+        return new DocIdSet(ids, ids.length);
+    }
+
+    /**
+     * Intersects the candidates with the postings of a term straight from the mapped bytes.
+     * The skip entries of the postings are used to jump to the block of the next candidate,
+     * so only the blocks that may contain a candidate are decoded.
+     */
+    @Override
+    public int gallop(String term, int[] candidates, int count) {
+        int ordinal = ordinal(term);
+        if (ordinal < 0) {
+            return 0;
+        }
+
+        int[] position = {this.postingsOffsets.getInt(ordinal * Integer.BYTES)};
+        int size = readVarInt(this.postings, position);
+        int skipStart = position[0];
+        int skips = MappedIndexWriter.skipBytes(size) / MappedIndexWriter.SKIP_BYTES;
+        int gapsStart = skipStart + skips * MappedIndexWriter.SKIP_BYTES;
+        position[0] = gapsStart;
+
+        int kept = 0;
+        int decoded = 0; // The number of postings decoded so far
+        int id = 0; // The last decoded ID
+        int skip = 0; // The number of skip entries whose block starts at or before the current candidate
+        for (int i = 0; i < count; i++) {
+            int candidate = candidates[i];
+            while (skip < skips && this.postings.getInt(skipStart + skip * MappedIndexWriter.SKIP_BYTES) <= candidate) {
+                skip++;
+            }
+            if (skip > 0 && skip * MappedIndexWriter.SKIP_INTERVAL >= decoded) {
+                // Jump to the first ID of the block, whose gap is read and dropped
+                int entry = skipStart + (skip - 1) * MappedIndexWriter.SKIP_BYTES;
+                position[0] = gapsStart + this.postings.getInt(entry + Integer.BYTES);
+                readVarInt(this.postings, position);
+                id = this.postings.getInt(entry);
+                decoded = skip * MappedIndexWriter.SKIP_INTERVAL + 1;
+            }
+            while (decoded < size && (decoded == 0 || id < candidate)) {
+                id += readVarInt(this.postings, position);
+                decoded++;
+            }
+            if (decoded > 0 && id == candidate) {
+                candidates[kept++] = candidate;
+            } else if (id < candidate) {
+                break; // All postings are decoded
+            }
+        }
+        return kept;
+    }
+
+    @Override
+    public boolean isLive(int id) {
+        return true; // Files are never removed from a mapped index
+    }
+
+    @Override
+    public Iterable<String> terms() {
+        return () -> new Iterator<>() {
+            private final int[] position = {0};
+            private int ordinal;
+            private byte[] buffer = new byte[32];
+
+            @Override
+            public boolean hasNext() {
+                return this.ordinal < termCount;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int shared = this.ordinal % blockSize == 0 ? 0 : readVarInt(terms, this.position);
+                int suffix = readVarInt(terms, this.position);
+                if (shared + suffix > this.buffer.length) {
+                    this.buffer = Arrays.copyOf(this.buffer, Math.max(shared + suffix, this.buffer.length * 2));
+                }
+                terms.get(this.position[0], this.buffer, shared, suffix);
+                this.position[0] += suffix;
+                this.ordinal++;
+                return new String(this.buffer, 0, shared + suffix, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    @Override
+    public Set<File> getIndexedFiles() {
+        return this.indexedFiles;
+    }
+
+    /**
+     * @return The number of distinct terms in the index.
+     */
+    public int termCount() {
+        return this.termCount;
+    }
+
+    /**
+     * Looks up the ordinal of a term, skipping the dictionary search if the Bloom filter rules the term out.
+     */
+    private int ordinal(String term) {
+        if (!this.filter.mightContain(term)) {
+            return -1;
+        }
+        return indexOf(term.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Looks up the ordinal of a term in the mapped dictionary, the same way as {@link FrontCodedTermDictionary#indexOf(String)}.
+     *
+     * @return The ordinal, or -1 if the term is not in the index.
+     */
+    private int indexOf(byte[] key) {
+        int blocks = (this.termCount + this.blockSize - 1) / this.blockSize;
+
+        // Binary search for the last block whose head is less than or equal to the key
+        int low = 0;
+        int high = blocks - 1;
+        int[] position = new int[1];
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            position[0] = this.blockOffsets.getInt(mid * Integer.BYTES);
+            int length = readVarInt(this.terms, position);
+            int cmp = compare(this.terms, position[0], length, key);
+            if (cmp == 0) {
+                return mid * this.blockSize;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return -1;
+        }
+
+        // Scan the block: a term matches once its shared prefix covers the matched part and its suffix matches the rest
+        position[0] = this.blockOffsets.getInt(high * Integer.BYTES);
+        int matched = readVarInt(this.terms, position); // Skip the head, which is smaller than the key
+        int headLength = matched;
+        matched = commonPrefix(this.terms, position[0], headLength, key);
+        position[0] += headLength;
+
+        int end = Math.min((high + 1) * this.blockSize, this.termCount);
+        for (int ordinal = high * this.blockSize + 1; ordinal < end; ordinal++) {
+            int shared = readVarInt(this.terms, position);
+            int suffix = readVarInt(this.terms, position);
+            if (shared < matched) {
+                return -1; // The term differs from the key earlier than the previous term, so it is greater
+            }
+            if (shared == matched) {
+                int cmp = compare(this.terms, position[0], suffix, key, matched);
+                if (cmp == 0) {
+                    return ordinal;
+                }
+                if (cmp > 0) {
+                    return -1;
+                }
+                matched += commonPrefix(this.terms, position[0], suffix, key, matched);
+            }
+            position[0] += suffix;
+        }
+        return -1;
+    }
+
+    private static int compare(ByteBuffer buffer, int offset, int length, byte[] key) {
+        return compare(buffer, offset, length, key, 0);
+    }
+
+    /**
+     * Compares the bytes in the buffer with the key, starting at the given position of the key.
+     */
+    private static int compare(ByteBuffer buffer, int offset, int length, byte[] key, int keyFrom) {
+        int keyLength = key.length - keyFrom;
+        int common = Math.min(length, keyLength);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(offset + i), key[keyFrom + i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, keyLength);
+    }
+
+    private static int commonPrefix(ByteBuffer buffer, int offset, int length, byte[] key) {
+        return commonPrefix(buffer, offset, length, key, 0);
+    }
+
+    private static int commonPrefix(ByteBuffer buffer, int offset, int length, byte[] key, int keyFrom) {
+        int common = Math.min(length, key.length - keyFrom);
+        int i = 0;
+        while (i < common && buffer.get(offset + i) == key[keyFrom + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Builds a file from the mapped file table by following the parents of its node.
+     */
+    @Override
+    public File file(int id) {
+        ArrayDeque<String> components = new ArrayDeque<>();
+        int[] position = new int[1];
+        for (int node = id; node >= 0; node = this.nodes.getInt(node * 2 * Integer.BYTES)) {
+            position[0] = this.nodes.getInt(node * 2 * Integer.BYTES + Integer.BYTES);
+            int length = readVarInt(this.names, position);
+            byte[] name = new byte[length];
+            this.names.get(position[0], name);
+            components.push(new String(name, StandardCharsets.UTF_8));
+        }
+        return new File(String.join(File.separator, components));
+    }
+
+    /**
+     * Finds the ID of a file with a binary search, since the files are sorted by path.
+     * Every probe compares the path with the mapped names of its components, without building a File.
+     *
+     * @return The ID, or -1 if the file is not in the index.
+     */
+    int idOf(File file) {
+        String path = file.getPath();
+        int low = 0;
+        int high = this.fileCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int matched = matchPath(mid, path);
+            // A node whose path is a proper prefix of the path sorts before it
+            int cmp = matched == PATH_GREATER ? 1 : matched == path.length() ? 0 : -1;
+            if (cmp == 0) {
+                return mid;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the path of a node with the start of a path, in the order of {@link String#compareTo(String)},
+     * by comparing the path of its parent first and then its own name.
+     *
+     * @return The number of chars at the start of the path that the path of the node equals,
+     * or {@link #PATH_LESS} or {@link #PATH_GREATER} if the path of the node sorts before or after the path.
+     */
+    private int matchPath(int node, String path) {
+        int parent = this.nodes.getInt(node * 2 * Integer.BYTES);
+        int i = 0;
+        if (parent >= 0) {
+            i = matchPath(parent, path);
+            if (i < 0) {
+                return i;
+            }
+            if (i == path.length()) {
+                return PATH_GREATER;
+            }
+            if (path.charAt(i) != File.separatorChar) {
+                return File.separatorChar < path.charAt(i) ? PATH_LESS : PATH_GREATER;
+            }
+            i++;
+        }
+
+        int position = this.nodes.getInt(node * 2 * Integer.BYTES + Integer.BYTES);
+        int length = 0;
+        for (int shift = 0; ; shift += 7) { // The varint length of the name
+            byte b = this.names.get(position++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        // Decode the UTF-8 name one code point at a time, and compare its UTF-16 chars
+        for (int end = position + length; position < end; ) {
+            int first = this.names.get(position++) & 0xFF;
+            int continuations = first < 0x80 ? 0 : first < 0xE0 ? 1 : first < 0xF0 ? 2 : 3;
+            int codePoint = continuations == 0 ? first : first & (0x3F >> continuations);
+            for (int k = 0; k < continuations; k++) {
+                codePoint = codePoint << 6 | (this.names.get(position++) & 0x3F);
+            }
+            for (int unit = 0; unit < Character.charCount(codePoint); unit++) {
+                char c = Character.isBmpCodePoint(codePoint) ? (char) codePoint
+                        : unit == 0 ? Character.highSurrogate(codePoint) : Character.lowSurrogate(codePoint);
+                if (i == path.length()) {
+                    return PATH_GREATER;
+                }
+                char other = path.charAt(i++);
+                if (c != other) {
+                    return c < other ? PATH_LESS : PATH_GREATER;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedIndex{" +
+               "terms=" + this.termCount +
+               ", files=" + this.fileCount +
+               '}';
+    }
+
+    /**
+     * A view of the files in the mapped file table.
+     */
+    private class IndexedFiles extends AbstractSet<File> {
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof File file && idOf(file) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return fileCount;
+        }
+
+        @Override
+        public Iterator<File> iterator() {
+            return new Iterator<>() {
+                private int id;
+
+                @Override
+                public boolean hasNext() {
+                    return this.id < fileCount;
+                }
+
+                @Override
+                public File next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return file(this.id++);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package indexing;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Writes an index to a file in the immutable format read by {@link MappedIndex}.
+ *
+ * <p>The file starts with a fixed-size header, followed by seven sections that are each read separately:</p>
+ * <ol>
+ *     <li>The terms, front-coded in blocks exactly as in {@link FrontCodedTermDictionary}.</li>
+ *     <li>The offset of every block head within the terms section, as ints.</li>
+ *     <li>The postings: for every term, the number of files followed by the gaps between their ascending IDs, as varints.
+ *     A list of more than {@value #SKIP_INTERVAL} files has skip entries between the number and the gaps:
+ *     for the first file of every block of {@value #SKIP_INTERVAL} files after the first block, its ID and the offset
+ *     of its gap behind the skip entries, as ints. They let a search jump close to an ID without decoding the gaps before it.</li>
+ *     <li>The offset of the postings of every term within the postings section, as ints.</li>
+ *     <li>The names of all path components, each a varint length followed by UTF-8 bytes.</li>
+ *     <li>The file table: a parent node and a name offset for every node, as ints. The first nodes are the files,
+ *     sorted by path, so a file ID is the index of its node. They are followed by the directory nodes,
+ *     so every directory is stored only once.</li>
+ *     <li>A {@link BloomFilter} of all terms, as written by {@link BloomFilter#writeTo(java.io.DataOutput)},
+ *     so a lookup of a missing term can skip the dictionary search.</li>
+ * </ol>
+ * <p>All numbers outside varints are big-endian. Every section has to be smaller than 2 GB.</p>
+ */
+public class MappedIndexWriter {
+    static final int MAGIC = 0x49445831; // "IDX1"
+    static final int VERSION = 3;
+    static final int HEADER_BYTES = 6 * Integer.BYTES + 8 * Long.BYTES;
+    static final int SKIP_INTERVAL = 128; // The files per block of a postings list
+    static final int SKIP_BYTES = 2 * Integer.BYTES; // The size of a skip entry
+
+    private MappedIndexWriter() {
+    }
+
+    /**
+     * Writes all terms and files of an index to a file. The file is written to a temporary file first,
+     * and then moved into place, so readers never see a partially written index.
+     *
+     * @param index The index to write. It must be able to list its terms.
+     * @param path  The file to write to. An existing file is replaced.
+     * @throws IOException If the file can't be written, or a section is larger than 2 GB.
+     * @throws UnsupportedOperationException If the index can't list its terms.
+     */
+    public static void write(Index index, Path path) throws IOException {
+        // Files are sorted by path, so their ID can be found with a binary search
+        List<File> files = new ArrayList<>(index.getIndexedFiles());
+        files.sort(Comparator.comparing(File::getPath));
+        Map<File, Integer> fileIds = new HashMap<>(files.size() * 2);
+        for (int i = 0; i < files.size(); i++) {
+            fileIds.put(files.get(i), i);
+        }
+
+        List<String> terms = new ArrayList<>();
+        index.terms().forEach(terms::add);
+        terms.sort(FrontCodedTermDictionary::compare);
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.of(terms);
+
+        write(path, dictionary, files, out -> {
+            long start = out.count;
+            int[] postingsOffsets = new int[terms.size()];
+            int[] ids = new int[16];
+            for (int i = 0; i < terms.size(); i++) {
+                postingsOffsets[i] = checkedOffset(out.count - start);
+                Set<File> postings = index.search(terms.get(i));
+                if (postings.size() > ids.length) {
+                    ids = new int[Math.max(postings.size(), ids.length * 2)];
+                }
+                int count = 0;
+                for (File file : postings) {
+                    ids[count++] = fileIds.get(file);
+                }
+                Arrays.sort(ids, 0, count);
+                writePostings(out, ids, count);
+            }
+            return postingsOffsets;
+        });
+    }
+
+    /**
+     * Writes the merged postings of a {@link SpillingIndexBuilder} to a file, without collecting them on the heap first.
+     * The postings are written to a temporary file as the runs are merged, and copied behind the terms once the
+     * dictionary is complete. Only the front-coded terms, an offset per term and the list of files are kept in memory.
+     * A file that was added to the builder more than once is written once.
+     *
+     * @param builder The builder, whose runs are merged.
+     * @param path    The file to write to. An existing file is replaced.
+     * @throws IOException If a run can't be read, the file can't be written, or a section is larger than 2 GB.
+     */
+    public static void write(SpillingIndexBuilder builder, Path path) throws IOException {
+        // Map the document IDs of the builder, in insertion order, to the IDs of the files sorted by path
+        List<File> documents = builder.files();
+        Integer[] order = new Integer[documents.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(document -> documents.get(document).getPath()));
+        List<File> files = new ArrayList<>(documents.size());
+        int[] fileIds = new int[documents.size()];
+        for (int document : order) {
+            File file = documents.get(document);
+            if (files.isEmpty() || !files.get(files.size() - 1).getPath().equals(file.getPath())) {
+                files.add(file);
+            }
+            fileIds[document] = files.size() - 1;
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path postings = Files.createTempFile(directory, path.getFileName().toString(), ".postings");
+        try {
+            PostingsSpool spool;
+            try (CountingOutput out = new CountingOutput(new BufferedOutputStream(Files.newOutputStream(postings), 1 << 16))) {
+                spool = new PostingsSpool(out, fileIds);
+                builder.mergeIds(spool);
+            }
+
+            FrontCodedTermDictionary terms = spool.dictionary.build();
+            write(path, terms, files, out -> {
+                Files.copy(postings, out);
+                return Arrays.copyOf(spool.offsets, terms.size());
+            });
+        } finally {
+            Files.deleteIfExists(postings);
+        }
+    }
+
+    /**
+     * Collects the terms of merged postings into a dictionary, and writes their postings with the IDs of the files.
+     */
+    private static final class PostingsSpool implements SpillingIndexBuilder.IdConsumer {
+        final FrontCodedTermDictionary.Builder dictionary = new FrontCodedTermDictionary.Builder();
+        private final CountingOutput out;
+        private final int[] fileIds; // File ID by document ID
+        int[] offsets = new int[1024]; // Postings offset by term ordinal
+        private int[] ids = new int[16];
+
+        PostingsSpool(CountingOutput out, int[] fileIds) {
+            this.out = out;
+            this.fileIds = fileIds;
+        }
+
+        @Override
+        public void accept(byte[] term, int[] documentIds, int count) throws IOException {
+            int ordinal = this.dictionary.add(term);
+            if (ordinal == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, ordinal * 2);
+            }
+            this.offsets[ordinal] = checkedOffset(this.out.count);
+
+            if (count > this.ids.length) {
+                this.ids = new int[Math.max(count, this.ids.length * 2)];
+            }
+            for (int i = 0; i < count; i++) {
+                this.ids[i] = this.fileIds[documentIds[i]];
+            }
+            Arrays.sort(this.ids, 0, count);
+            writePostings(this.out, this.ids, count);
+        }
+    }
+
+    /**
+     * Writes the postings of a term: the number of distinct IDs, the skip entries of a long list, and the gaps between the IDs.
+     *
+     * @param ids   The sorted IDs, possibly with duplicates.
+     * @param count The number of valid IDs in the array.
+     */
+    private static void writePostings(CountingOutput out, int[] ids, int count) throws IOException {
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        out.writeVarInt(distinct);
+        if (distinct > SKIP_INTERVAL) {
+            int offset = 0;
+            int previous = 0;
+            for (int i = 0; i < distinct; i++) {
+                if (i % SKIP_INTERVAL == 0 && i > 0) {
+                    out.writeInt(ids[i]);
+                    out.writeInt(offset);
+                }
+                offset += varIntLength(ids[i] - previous);
+                previous = ids[i];
+            }
+        }
+        int previous = 0;
+        for (int i = 0; i < distinct; i++) {
+            out.writeVarInt(ids[i] - previous);
+            previous = ids[i];
+        }
+    }
+
+    /**
+     * Writes the postings section, and returns the offset of the postings of every term within it.
+     */
+    private interface PostingsSection {
+        int[] write(CountingOutput out) throws IOException;
+    }
+
+    /**
+     * Writes all sections of an index file to a temporary file, and moves it into place.
+     */
+    private static void write(Path path, FrontCodedTermDictionary dictionary, List<File> files, PostingsSection postings) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            long[] sections = new long[8];
+            int nodeCount;
+            try (CountingOutput out = new CountingOutput(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.write(new byte[HEADER_BYTES]); // Written last, once the section offsets are known
+
+                sections[0] = out.count;
+                out.write(dictionary.data());
+                sections[1] = out.count;
+                int blocks = (dictionary.size() + dictionary.blockSize() - 1) / dictionary.blockSize();
+                for (int i = 0; i < blocks; i++) {
+                    out.writeInt(dictionary.blockOffsets()[i]);
+                }
+
+                sections[2] = out.count;
+                int[] postingsOffsets = postings.write(out);
+                sections[3] = out.count;
+                for (int offset : postingsOffsets) {
+                    out.writeInt(offset);
+                }
+
+                sections[4] = out.count;
+                List<int[]> nodes = writeFileTable(files, out, sections[4]);
+                sections[5] = out.count;
+                for (int[] node : nodes) {
+                    out.writeInt(node[0]);
+                    out.writeInt(node[1]);
+                }
+                sections[6] = out.count;
+                nodeCount = nodes.size();
+
+                BloomFilter filter = new BloomFilter(dictionary.size(), SegmentedIndex.DEFAULT_FALSE_POSITIVE_RATE);
+                for (String term : dictionary) {
+                    filter.add(term);
+                }
+                filter.writeTo(out);
+                sections[7] = out.count;
+            }
+
+            for (int i = 0; i < 6; i++) {
+                checkedOffset(sections[i + 1] - sections[i]);
+            }
+            writeHeader(temporary, dictionary, files.size(), nodeCount, sections);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes the names of the path components, and returns the nodes of the file table: files first, then directories.
+     */
+    private static List<int[]> writeFileTable(List<File> files, CountingOutput out, long namesStart) throws IOException {
+        List<int[]> nodes = new ArrayList<>(files.size());
+        List<int[]> directoryNodes = new ArrayList<>();
+        Map<String, Integer> directories = new HashMap<>(); // Directory node by parent node and name
+        Map<String, Integer> names = new HashMap<>(); // Name offset by name
+
+        for (File file : files) {
+            String[] components = file.getPath().split(File.separatorChar == '\\' ? "\\\\" : File.separator, -1);
+            int parent = -1;
+            for (int i = 0; i < components.length - 1; i++) {
+                String key = parent + File.separator + components[i];
+                Integer directory = directories.get(key);
+                if (directory == null) {
+                    directory = directoryNodes.size();
+                    directoryNodes.add(new int[]{parent, nameOffset(components[i], names, out, namesStart)});
+                    directories.put(key, directory);
+                }
+                parent = -2 - directory; // Directories are numbered after the files, once their count is known
+            }
+            nodes.add(new int[]{parent, nameOffset(components[components.length - 1], names, out, namesStart)});
+        }
+        nodes.addAll(directoryNodes);
+
+        // Resolve the directory references now that the number of files is known
+        for (int[] node : nodes) {
+            if (node[0] <= -2) {
+                node[0] = files.size() + (-2 - node[0]);
+            }
+        }
+        return nodes;
+    }
+
+    private static int nameOffset(String name, Map<String, Integer> names, CountingOutput out, long namesStart) throws IOException {
+        Integer offset = names.get(name);
+        if (offset == null) {
+            offset = checkedOffset(out.count - namesStart);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeVarInt(bytes.length);
+            out.write(bytes);
+            names.put(name, offset);
+        }
+        return offset;
+    }
+
+    private static void writeHeader(Path path, FrontCodedTermDictionary dictionary, int fileCount, int nodeCount, long[] sections) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(dictionary.blockSize());
+            file.writeInt(dictionary.size());
+            file.writeInt(fileCount);
+            file.writeInt(nodeCount);
+            for (long section : sections) {
+                file.writeLong(section);
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes of the postings of a term taken by its skip entries.
+     */
+    static int skipBytes(int count) {
+        return count > SKIP_INTERVAL ? (count - 1) / SKIP_INTERVAL * SKIP_BYTES : 0;
+    }
+
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int checkedOffset(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Index section is larger than 2 GB.");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * A DataOutputStream that counts the written bytes in a long, so sections may start beyond 2 GB.
+     */
+    private static class CountingOutput extends DataOutputStream {
+        long count;
+
+        CountingOutput(OutputStream out) {
+            super(out);
+            // Count below the DataOutputStream, which writes multi-byte values straight to the underlying stream
+            this.out = new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    this.out.write(b);
+                    count++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    this.out.write(b, off, len);
+                    count += len;
+                }
+            };
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package indexing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for a search. The duration of the event is the latency of the search,
+ * including the time spent waiting for the read lock.
+ */
+@Name("indexer.QueryExecuted")
+@Label("Query Executed")
+@Category("Indexer")
+@Description("A search was answered from the index")
+@StackTrace(false)
+class QueryExecutedEvent extends Event {
+    @Label("Query")
+    String query;
+
+    @Label("Kind")
+    @Description("search, page, count or all")
+    String kind;
+
+    @Label("Hits")
+    int hits;
+}
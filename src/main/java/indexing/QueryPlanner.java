@@ -0,0 +1,206 @@
+package indexing;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Plans and runs queries for the files containing all of several terms.
+ *
+ * <p>The terms are intersected in the order of their document frequency, rarest first, so the set of candidates
+ * is as small as possible from the first step on. A term that no file contains comes first and ends the query
+ * before any postings are read. Every following term is intersected with the candidates using the strategy
+ * that suits the length of both lists:</p>
+ * <ul>
+ *     <li>{@link Strategy#MERGE}: both lists are walked side by side. Used for lists of a similar length.</li>
+ *     <li>{@link Strategy#GALLOPING}: for every candidate, the term's list is searched with steps of growing length.
+ *     Used when the term's list is at least {@value #GALLOP_RATIO} times longer than the candidates.
+ *     A {@link MappedIndex} gallops through its encoded postings with their skip entries, without decoding all of them.</li>
+ *     <li>{@link Strategy#PROBE}: the candidates are looked up in the term's set of files.
+ *     Used for indexes that don't store their postings as sorted IDs.</li>
+ * </ul>
+ * <p>The plan is made from {@link Index#documentFrequency(String)}, which doesn't read any postings.</p>
+ */
+public final class QueryPlanner {
+    static final int GALLOP_RATIO = 16;
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * The ways a term can be combined with the candidates of the previous steps.
+     */
+    public enum Strategy {
+        SCAN, MERGE, GALLOPING, PROBE
+    }
+
+    /**
+     * A step of a plan.
+     *
+     * @param term              The term.
+     * @param documentFrequency The estimated number of files containing the term.
+     * @param strategy          How the term is combined with the candidates. The first step is a {@link Strategy#SCAN}.
+     */
+    public record Step(String term, int documentFrequency, Strategy strategy) {
+    }
+
+    /**
+     * A query plan, whose steps are run in order.
+     *
+     * @param steps         The steps, rarest term first.
+     * @param documentCount The number of indexed files when the plan was made.
+     */
+    public record Plan(List<Step> steps, int documentCount) {
+
+        /**
+         * @return {@code true} if the plan can't match any file, because it has no terms or a term occurs in no file.
+         */
+        public boolean isEmpty() {
+            return this.steps.isEmpty() || this.steps.getFirst().documentFrequency() == 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("Plan for %d terms over %d files:", this.steps.size(), this.documentCount));
+            for (int i = 0; i < this.steps.size(); i++) {
+                Step step = this.steps.get(i);
+                builder.append(String.format("%n  %d. %-9s \"%s\" (%d files)", i + 1, step.strategy(), step.term(), step.documentFrequency()));
+            }
+            if (isEmpty()) {
+                builder.append(String.format("%n  No file can match, so no postings are read."));
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Plans a query for the files containing all of the given terms.
+     *
+     * @param index The index to query.
+     * @param terms The normalized terms. Duplicates are ignored.
+     * @return The plan.
+     */
+    public static Plan plan(Index index, Collection<String> terms) {
+        record Term(String term, int documentFrequency) {
+        }
+        List<Term> ordered = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(terms)) {
+            ordered.add(new Term(term, index.documentFrequency(term)));
+        }
+        ordered.sort(Comparator.comparingInt(Term::documentFrequency));
+
+        boolean sortedPostings = index instanceof SortedPostings;
+        int documentCount = index.getIndexedFiles().size();
+        List<Step> steps = new ArrayList<>(ordered.size());
+        for (Term term : ordered) {
+            Strategy strategy = steps.isEmpty()
+                    ? Strategy.SCAN
+                    : chooseStrategy(sortedPostings, steps.getFirst().documentFrequency(), term.documentFrequency);
+            steps.add(new Step(term.term, term.documentFrequency, strategy));
+        }
+        return new Plan(List.copyOf(steps), documentCount);
+    }
+
+    /**
+     * Chooses how to intersect the candidates with the postings of a term.
+     *
+     * @param sortedPostings    Whether the index stores its postings as sorted IDs.
+     * @param candidates        The number of candidates, at most the frequency of the rarest term.
+     * @param documentFrequency The number of files containing the term.
+     */
+    static Strategy chooseStrategy(boolean sortedPostings, int candidates, int documentFrequency) {
+        if (!sortedPostings) {
+            return Strategy.PROBE;
+        }
+        if ((long) documentFrequency >= (long) GALLOP_RATIO * candidates) {
+            return Strategy.GALLOPING;
+        }
+        return Strategy.MERGE;
+    }
+
+    /**
+     * Runs a plan. Must be called under the same lock as {@link #plan(Index, Collection)},
+     * since the postings must not change in between.
+     *
+     * @param index The index the plan was made for.
+     * @param plan  The plan.
+     * @return The files containing all terms of the plan.
+     */
+    public static Set<File> execute(Index index, Plan plan) {
+        if (plan.isEmpty()) {
+            return new HashSet<>();
+        }
+        if (index instanceof SortedPostings sortedPostings) {
+            return executeSorted(sortedPostings, plan);
+        }
+
+        List<Step> steps = plan.steps();
+        Set<File> result = new HashSet<>(index.search(steps.getFirst().term()));
+        for (int i = 1; i < steps.size() && !result.isEmpty(); i++) {
+            result.retainAll(index.search(steps.get(i).term())); // Probes the term's files for every candidate
+        }
+        return result;
+    }
+
+    private static Set<File> executeSorted(SortedPostings index, Plan plan) {
+        List<Step> steps = plan.steps();
+        DocIdSet first = index.postings(steps.getFirst().term());
+        if (first == null) {
+            return new HashSet<>();
+        }
+
+        // The candidates are kept in a single array, and every step overwrites it with the IDs that remain
+        int[] candidates = new int[first.size()];
+        int count = 0;
+        for (int i = 0; i < first.size(); i++) {
+            if (index.isLive(first.get(i))) { // Skip removed files that weren't purged yet
+                candidates[count++] = first.get(i);
+            }
+        }
+
+        for (int i = 1; i < steps.size() && count > 0; i++) {
+            Step step = steps.get(i);
+            if (step.strategy() == Strategy.GALLOPING) {
+                count = index.gallop(step.term(), candidates, count);
+                continue;
+            }
+            DocIdSet ids = index.postings(step.term());
+            count = ids == null ? 0 : merge(candidates, count, ids);
+        }
+
+        Set<File> result = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            result.add(index.file(candidates[i]));
+        }
+        return result;
+    }
+
+    private static int merge(int[] candidates, int count, DocIdSet ids) {
+        int kept = 0;
+        int position = 0;
+        for (int i = 0; i < count && position < ids.size(); i++) {
+            while (position < ids.size() && ids.get(position) < candidates[i]) {
+                position++;
+            }
+            if (position < ids.size() && ids.get(position) == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps the candidates found in the decoded postings of a term, galloping from one candidate to the next.
+     */
+    static int gallop(int[] candidates, int count, DocIdSet ids) {
+        int kept = 0;
+        int position = 0;
+        for (int i = 0; i < count && position < ids.size(); i++) {
+            position = ids.advance(position, candidates[i]);
+            if (position < ids.size() && ids.get(position) == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,49 @@
+package indexing;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A page of search results.
+ *
+ * @param files      The files on this page.
+ * @param nextCursor The cursor to pass to the next search to continue after this page,
+ *                   or {@code null} if there are no more results.
+ */
+public record SearchPage(List<File> files, String nextCursor) {
+
+    /**
+     * @return A page without any files and without a next page.
+     */
+    public static SearchPage empty() {
+        return new SearchPage(List.of(), null);
+    }
+
+    /**
+     * @return {@code true} if there are more results after this page.
+     */
+    public boolean hasMore() {
+        return this.nextCursor != null;
+    }
+
+    /**
+     * Parses a cursor that was created from a number by an index.
+     *
+     * @param cursor The cursor, or {@code null} to start at the beginning.
+     * @return The number in the cursor, or -1 if the cursor is {@code null}.
+     */
+    static int parseCursor(String cursor) {
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            int value = Integer.parseInt(cursor);
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
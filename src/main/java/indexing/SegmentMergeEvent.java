@@ -0,0 +1,34 @@
+package indexing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for reorganizing the structures of an index: sealing a segment of a {@link SegmentedIndex},
+ * merging pending terms into the dictionary of a {@link FrontCodedIndex}, or purging removed files from a {@link HashMapIndex}.
+ */
+@Name("indexer.SegmentMerge")
+@Label("Segment Merge")
+@Category("Indexer")
+@Description("An index rebuilt part of its structures")
+@StackTrace(false)
+class SegmentMergeEvent extends Event {
+    @Label("Index")
+    String index;
+
+    @Label("Operation")
+    @Description("seal, merge or purge")
+    String operation;
+
+    @Label("Terms")
+    @Description("The number of terms after the operation")
+    int terms;
+
+    @Label("Files")
+    @Description("The number of files covered by the operation")
+    int files;
+}
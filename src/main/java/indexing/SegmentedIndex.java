@@ -0,0 +1,301 @@
+package indexing;
+
+import tokenizing.TokenSet;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SegmentedIndex class implements the Index interface as a list of immutable segments, each covering a group of files.
+ *
+ * <p>New files are added to an active segment backed by a HashMap. Once the active segment holds the configured
+ * number of files, it is sealed: its terms are sorted into a {@link FrontCodedTermDictionary}
+ * and a {@link BloomFilter} of the terms is built. A search checks the filter of every sealed segment first,
+ * and only looks the term up in the dictionary of segments that might contain it.
+ * This makes queries for rare or missing terms cheap, since most segments are skipped after a few bit tests
+ * instead of a binary search over their dictionary.</p>
+ */
+public class SegmentedIndex implements Index {
+    public static final int DEFAULT_SEGMENT_FILES = 1024;
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    final Set<File> indexedFiles;
+    private final int maxSegmentFiles;
+    private final double falsePositiveRate;
+    private final List<Segment> segments; // Sealed segments, oldest first
+    private final HashMap<String, Set<File>> active; // Postings of the active segment
+    private final Set<File> activeFiles;
+    private final LongAdder skippedLookups = new LongAdder(); // Searches are run concurrently under a read lock
+
+    /**
+     * Initializes a new, empty SegmentedIndex using the default segment size and false positive rate.
+     */
+    public SegmentedIndex() {
+        this(DEFAULT_SEGMENT_FILES, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Initializes a new, empty SegmentedIndex.
+     *
+     * @param maxSegmentFiles   The number of files in a segment before it is sealed.
+     * @param falsePositiveRate The false positive rate of the Bloom filter of every sealed segment,
+     *                          or 1 to seal segments without a filter.
+     */
+    public SegmentedIndex(int maxSegmentFiles, double falsePositiveRate) {
+        if (maxSegmentFiles < 1) {
+            throw new IllegalArgumentException("Segment size must be positive: " + maxSegmentFiles);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate <= 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        this.maxSegmentFiles = maxSegmentFiles;
+        this.falsePositiveRate = falsePositiveRate;
+        this.indexedFiles = new HashSet<>();
+        this.segments = new ArrayList<>();
+        this.active = new HashMap<>();
+        this.activeFiles = new HashSet<>();
+    }
+
+    @Override
+    public void addToIndex(String token, File file) {
+        startDocument(file);
+        this.active.computeIfAbsent(token, t -> new HashSet<>()).add(file);
+        this.activeFiles.add(file);
+        this.indexedFiles.add(file); // Track the indexed file
+    }
+
+    @Override
+    public void addDocument(File file, Iterable<String> tokens) {
+        TokenSet distinct = TokenSet.of(tokens);
+        if (distinct.isEmpty()) {
+            return;
+        }
+
+        startDocument(file);
+        for (String token : distinct) {
+            this.active.computeIfAbsent(token, t -> new HashSet<>()).add(file);
+        }
+        this.activeFiles.add(file);
+        this.indexedFiles.add(file);
+    }
+
+    /**
+     * Adds the complete postings of a single token to the active segment.
+     * Since the postings of a token span many files, the active segment is not sealed while postings are added;
+     * call {@link #seal()} once all postings are loaded.
+     *
+     * @param token The token.
+     * @param files The files containing the token.
+     */
+    @Override
+    public void addPostings(String token, Collection<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        this.active.computeIfAbsent(token, t -> new HashSet<>(files.size() * 2)).addAll(files);
+        this.activeFiles.addAll(files);
+        this.indexedFiles.addAll(files);
+    }
+
+    /**
+     * Seals the active segment before a new file is added to it, if the segment is full.
+     */
+    private void startDocument(File file) {
+        if (this.activeFiles.size() >= this.maxSegmentFiles && !this.activeFiles.contains(file)) {
+            seal();
+        }
+    }
+
+    /**
+     * Seals the active segment: its terms are sorted into a front-coded dictionary, and a Bloom filter is built over them.
+     * New files are added to a new, empty active segment.
+     */
+    public void seal() {
+        if (this.active.isEmpty()) {
+            return;
+        }
+        SegmentMergeEvent event = new SegmentMergeEvent();
+        event.begin();
+
+        List<String> terms = new ArrayList<>(this.active.keySet());
+        terms.sort(FrontCodedTermDictionary::compare);
+
+        FrontCodedTermDictionary.Builder builder = new FrontCodedTermDictionary.Builder();
+        List<Set<File>> postings = new ArrayList<>(terms.size());
+        BloomFilter filter = this.falsePositiveRate < 1 ? new BloomFilter(terms.size(), this.falsePositiveRate) : null;
+        for (String term : terms) {
+            builder.add(term);
+            postings.add(this.active.get(term));
+            if (filter != null) {
+                filter.add(term);
+            }
+        }
+
+        this.segments.add(new Segment(builder.build(), postings, filter, new HashSet<>(this.activeFiles)));
+        if (event.shouldCommit()) {
+            event.index = getClass().getSimpleName();
+            event.operation = "seal";
+            event.terms = terms.size();
+            event.files = this.activeFiles.size();
+            event.commit();
+        }
+        this.active.clear();
+        this.activeFiles.clear();
+    }
+
+    /**
+     * Removes a file from the index.
+     * Only the segments containing the file are visited; segments without any remaining files are dropped.
+     *
+     * @param file The file to be removed from the index.
+     */
+    @Override
+    public void removeFileFromIndex(File file) {
+        if (!this.indexedFiles.remove(file)) {
+            return;
+        }
+
+        if (this.activeFiles.remove(file)) {
+            this.active.values().removeIf(files -> files.remove(file) && files.isEmpty());
+        }
+        for (Segment segment : this.segments) {
+            if (segment.files.remove(file)) {
+                for (Set<File> files : segment.postings) {
+                    files.remove(file);
+                }
+            }
+        }
+        this.segments.removeIf(segment -> segment.files.isEmpty());
+    }
+
+    @Override
+    public void clearIndex() {
+        this.segments.clear();
+        this.active.clear();
+        this.activeFiles.clear();
+        this.indexedFiles.clear();
+    }
+
+    @Override
+    public Set<File> search(String query) {
+        Set<File> result = new HashSet<>(this.active.getOrDefault(query, Set.of()));
+        long hash = BloomFilter.hash(query); // Hashed once for the filters of all segments
+        for (Segment segment : this.segments) {
+            if (segment.filter != null && !segment.filter.mightContainHash(hash)) {
+                this.skippedLookups.increment();
+                continue;
+            }
+            int ordinal = segment.dictionary.indexOf(query);
+            if (ordinal >= 0) {
+                result.addAll(segment.postings.get(ordinal));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds up the lengths of the postings of a token in all segments, skipping the segments whose filter rules it out.
+     * No files are copied.
+     */
+    @Override
+    public int documentFrequency(String query) {
+        int count = this.active.getOrDefault(query, Set.of()).size();
+        long hash = BloomFilter.hash(query);
+        for (Segment segment : this.segments) {
+            if (segment.filter != null && !segment.filter.mightContainHash(hash)) {
+                continue;
+            }
+            int ordinal = segment.dictionary.indexOf(query);
+            if (ordinal >= 0) {
+                count += segment.postings.get(ordinal).size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lists the distinct terms of all segments. A term is listed once even if several segments contain it.
+     */
+    @Override
+    public Iterable<String> terms() {
+        Set<String> terms = new HashSet<>(this.active.keySet());
+        for (Segment segment : this.segments) {
+            Iterator<String> dictionary = segment.dictionary.iterator();
+            for (Set<File> files : segment.postings) {
+                String term = dictionary.next();
+                if (!files.isEmpty()) {
+                    terms.add(term);
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Lists the terms of a file from the active segment and the sealed segments holding the file,
+     * checking the postings of every term of these segments, which is what a removal of the file costs too.
+     */
+    @Override
+    public List<String> termsOf(File file) {
+        List<String> terms = new ArrayList<>();
+        if (!this.indexedFiles.contains(file)) {
+            return terms;
+        }
+        if (this.activeFiles.contains(file)) {
+            this.active.forEach((term, files) -> {
+                if (files.contains(file)) {
+                    terms.add(term);
+                }
+            });
+        }
+        for (Segment segment : this.segments) {
+            if (segment.files.contains(file)) {
+                for (int ordinal = 0; ordinal < segment.postings.size(); ordinal++) {
+                    if (segment.postings.get(ordinal).contains(file)) {
+                        terms.add(segment.dictionary.get(ordinal));
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    @Override
+    public Set<File> getIndexedFiles() {
+        return this.indexedFiles;
+    }
+
+    /**
+     * @return The number of sealed segments.
+     */
+    public int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * @return The number of segment lookups that were skipped because the Bloom filter ruled the term out.
+     */
+    public long getSkippedLookups() {
+        return this.skippedLookups.sum();
+    }
+
+    @Override
+    public String toString() {
+        long filterBytes = 0;
+        for (Segment segment : this.segments) {
+            filterBytes += segment.filter != null ? segment.filter.sizeInBytes() : 0;
+        }
+        return "SegmentedIndex{" +
+               "segments=" + this.segments.size() +
+               ", activeTerms=" + this.active.size() +
+               ", filterBytes=" + filterBytes +
+               '}';
+    }
+
+    /**
+     * A sealed segment: the sorted terms of a group of files, their postings by ordinal and an optional Bloom filter.
+     */
+    private record Segment(FrontCodedTermDictionary dictionary, List<Set<File>> postings, BloomFilter filter, Set<File> files) {
+    }
+}
@@ -1,76 +1,809 @@
 package indexing;
 
-import tokenizing.WhitespaceTokenizer;
+import jdk.jfr.Event;
+import tokenizing.AnalysisChain;
+import tokenizing.ByteTokenizer;
+import tokenizing.ChunkedFileTokenizer;
+import tokenizing.DocumentFrequencyFilter;
+import tokenizing.TokenSet;
+import tokenizing.Tokenizer;
+import tokenizing.Utf8ByteTokenizer;
+import util.Archives;
 import util.FileHandling;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * An example implementation of the FileIndexer interface.
- * It uses a WhitespaceTokenizer and a HashMapIndex to index files.
+ * By default, it uses the fastest available {@link Utf8ByteTokenizer} and a HashMapIndex to index files.
  */
 public class SimpleFileIndexer extends FileIndexer {
+    static final long DEFAULT_PARALLEL_THRESHOLD_BYTES = 64 << 20;
 
+    private final ChunkedFileTokenizer chunkedTokenizer;
+    private volatile long parallelThresholdBytes = DEFAULT_PARALLEL_THRESHOLD_BYTES;
+    private volatile ContentDeduplicator deduplicator; // Null unless deduplication is enabled
+    private volatile TermLocations locations; // Null unless term locations are stored
+    private volatile boolean progressOutput = true;
 
     /**
-     * Initializes a new SimpleFileIndexer with a WhitespaceTokenizer and a HashMapIndex.
+     * Initializes a new SimpleFileIndexer with the tokenizer of {@link Utf8ByteTokenizer#fastest()} and a HashMapIndex.
+     * It produces the same tokens as a WhitespaceTokenizer, without decoding the files into Strings.
      */
     public SimpleFileIndexer() {
-        super(new WhitespaceTokenizer(), new HashMapIndex());
+        this(new HashMapIndex());
+    }
+
+    /**
+     * Initializes a new SimpleFileIndexer with the given index and the tokenizer of {@link Utf8ByteTokenizer#fastest()},
+     * the same tokenizer as an indexer created without arguments.
+     * @param index the index to store the tokens in.
+     */
+    public SimpleFileIndexer(Index index) {
+        this(Utf8ByteTokenizer.fastest(), index);
+    }
+
+    /**
+     * Initializes a new SimpleFileIndexer with the given tokenizer and index.
+     * @param tokenizer the tokenizer, possibly an {@link AnalysisChain}.
+     * @param index the index to store the tokens in.
+     */
+    public SimpleFileIndexer(Tokenizer tokenizer, Index index) {
+        super(tokenizer, index);
+        this.chunkedTokenizer = new ChunkedFileTokenizer(tokenizer);
+    }
+
+    /**
+     * Sets the size from which a single file is split into chunks that are tokenized in parallel.
+     * @param parallelThresholdBytes the file size in bytes, or {@link Long#MAX_VALUE} to always tokenize files on one thread.
+     */
+    public void setParallelThreshold(long parallelThresholdBytes) {
+        this.parallelThresholdBytes = parallelThresholdBytes;
+    }
+
+    /**
+     * @return the file size in bytes from which a single file is tokenized in parallel chunks.
+     */
+    public long getParallelThreshold() {
+        return this.parallelThresholdBytes;
+    }
+
+    /**
+     * Enables or disables printing every file when it is indexed. Errors are always printed.
+     * Load tests disable it, so printing doesn't take part in the measured time.
+     * @param enabled whether every indexed file should be printed.
+     */
+    public void setProgressOutput(boolean enabled) {
+        this.progressOutput = enabled;
+    }
+
+    /**
+     * @return whether every file is printed when it is indexed.
+     */
+    public boolean isPrintingProgress() {
+        return this.progressOutput;
+    }
+
+    /**
+     * Enables or disables deduplication of identical files. When enabled, the content of every file is hashed first,
+     * and a file whose content was indexed before reuses the terms of that content instead of being tokenized again.
+     * Every copy is still indexed under its own path.
+     * <p>
+     * The terms of every distinct content are kept in memory while a file with that content is indexed.
+     * Files that were indexed before deduplication was enabled are not deduplicated against.
+     * @param enabled whether identical files should be deduplicated.
+     */
+    public void setDeduplication(boolean enabled) {
+        this.deduplicator = enabled ? new ContentDeduplicator() : null;
+    }
+
+    /**
+     * @return the number of files whose terms were reused from an identical file, or 0 if deduplication is disabled.
+     */
+    public long getDeduplicatedFileCount() {
+        ContentDeduplicator deduplicator = this.deduplicator;
+        return deduplicator != null ? deduplicator.hits() : 0;
+    }
+
+    /**
+     * Enables or disables storing where terms occur, so hits can be shown with their line and a snippet
+     * by {@link #locate(String...)}. When enabled, every file is tokenized one whitespace-separated word at a time,
+     * and the byte offset and line of the first few occurrences of every term are kept in memory.
+     * <p>
+     * The locations are stored when a file is committed. They are not stored for archive entries,
+     * for files tokenized in parallel chunks, and for files whose terms were reused by deduplication,
+     * and indexing such a file again forgets the locations of its earlier version. Disabling forgets all stored locations.
+     * @param enabled whether the locations of terms should be stored.
+     */
+    public void setLocationStorage(boolean enabled) {
+        if (enabled != (this.locations != null)) {
+            this.locations = enabled ? new TermLocations() : null;
+        }
+    }
+
+    /**
+     * @return whether the locations of terms are stored while indexing.
+     */
+    public boolean isStoringLocations() {
+        return this.locations != null;
+    }
+
+    /**
+     * Finds the files containing all keywords, and where the keywords occur in them.
+     * Every snippet is read from the file with a positioned read of the bytes around the occurrence,
+     * so the snippets are wrong if a file changed since it was indexed.
+     * @param keywords the keywords to search for.
+     * @return the occurrences in every matching file, in the order they appear.
+     *         The list is empty for files whose locations weren't stored, or that can't be read anymore.
+     */
+    public Map<File, List<TermLocation>> locate(String... keywords) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String keyword : keywords) {
+            String term = this.tokenizer.normalize(keyword);
+            if (term != null) {
+                terms.add(term);
+            }
+        }
+
+        Map<File, List<TermLocation>> result = new LinkedHashMap<>();
+        TermLocations locations = this.locations;
+        for (File file : searchAll(keywords)) {
+            List<TermLocation> occurrences = new ArrayList<>();
+            if (locations != null) {
+                try {
+                    for (String term : terms) {
+                        occurrences.addAll(locations.read(file, term));
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error reading file: " + file.getAbsolutePath());
+                    occurrences.clear();
+                }
+                occurrences.sort(Comparator.comparingLong(TermLocation::offset));
+            }
+            result.put(file, occurrences);
+        }
+        return result;
+    }
+
+    /**
+     * Creates an indexer with the same tokenizer and settings as this one, for another index that holds the same files,
+     * for example when the index is swapped out to a file or loaded back onto the heap.
+     * The deduplicated contents and stored locations are handed over, and the document frequency filters
+     * of the tokenizer are connected to the new indexer, since this one is no longer used.
+     * @param index the index with the same files as the index of this indexer.
+     * @return the new indexer.
+     */
+    SimpleFileIndexer withIndex(Index index) {
+        SimpleFileIndexer indexer = new SimpleFileIndexer(this.tokenizer, index);
+        indexer.parallelThresholdBytes = this.parallelThresholdBytes;
+        indexer.deduplicator = this.deduplicator;
+        indexer.locations = this.locations;
+        indexer.progressOutput = this.progressOutput;
+        if (this.tokenizer instanceof AnalysisChain chain) {
+            chain.setStatistics(indexer);
+        }
+        return indexer;
+    }
+
+    /**
+     * Creates an indexer that analyzes English text with {@link AnalysisChain#english(DocumentFrequencyFilter)},
+     * skipping terms that already appear in more than the given fraction of the indexed files.
+     * @param index the index to store the tokens in.
+     * @param maxDocumentRatio the fraction of indexed files above which a term is no longer indexed.
+     * @param minDocuments the number of indexed files required before frequent terms are skipped.
+     * @return the indexer.
+     */
+    public static SimpleFileIndexer withEnglishAnalysis(Index index, double maxDocumentRatio, int minDocuments) {
+        DocumentFrequencyFilter frequencyFilter = new DocumentFrequencyFilter(maxDocumentRatio, minDocuments);
+        SimpleFileIndexer indexer = new SimpleFileIndexer(AnalysisChain.english(frequencyFilter), index);
+        frequencyFilter.setStatistics(indexer);
+        return indexer;
     }
 
     /**
      * Indexes a given file. If the provided file can't be read or is not a text file, it will return false.
+     * An archive is indexed as all of its text entries, replacing the entries it was indexed with before.
      * @param file the text file to be indexed.
      * @return a boolean value indicating whether the indexing was successful or not.
      */
     @Override
     public boolean indexFile(File file) {
-        System.out.println("Indexing file: " + file.getAbsolutePath());
+        printProgress(file);
+
+        if (Archives.isArchive(file)) {
+            Batch batch = new Batch();
+            if (!stage(file, batch)) {
+                return false;
+            }
+            commit(batch);
+            return true;
+        }
 
-        String fileContents;
+        Staged staged = tokenizeFile(file);
+        if (staged == null) {
+            return false;
+        }
+
+        // Only the insertion itself blocks concurrent searches
+        IndexMutationEvent event = lockForMutation();
+        try {
+            this.index.addDocument(file, staged.terms());
+            committed(file, staged);
+        } finally {
+            unlockAfterMutation(event, "add", null, 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads and tokenizes a file, without touching the index.
+     * @param file the text file to tokenize.
+     * @return the distinct lowercase tokens of the file, or {@code null} if the file can't be read or is not a text file.
+     */
+    Staged tokenizeFile(File file) {
+        return tokenizeFile(file, Map.of());
+    }
+
+    /**
+     * Reads and tokenizes a file, reusing the terms of an identical file that is indexed or staged in the same batch.
+     */
+    private Staged tokenizeFile(File file, Map<ContentDeduplicator.ContentKey, TokenSet> batchContents) {
+        ContentDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null) {
+            return tokenizeFileDeduplicated(file, deduplicator, batchContents);
+        }
+        return tokenizeFileContents(file);
+    }
+
+    /**
+     * Reads and tokenizes a file, or all text entries of an archive, into a batch.
+     * @return {@code false} if the file or archive can't be read.
+     */
+    private boolean stage(File file, Batch batch) {
+        if (Archives.isArchive(file)) {
+            Map<File, Staged> entries = tokenizeArchive(file);
+            if (entries == null) {
+                return false;
+            }
+            batch.files.putAll(entries);
+            batch.archives.add(file);
+            return true;
+        }
+
+        Staged staged = tokenizeFile(file, batch.contents);
+        if (staged == null) {
+            return false;
+        }
+        batch.files.put(file, staged);
+        if (staged.content() != null) {
+            batch.contents.putIfAbsent(staged.content(), staged.terms());
+        }
+        return true;
+    }
+
+    /**
+     * Streams the text entries of an archive through the tokenizer, without extracting them.
+     * @return the terms of every entry by its virtual path, or {@code null} if the archive can't be read.
+     */
+    Map<File, Staged> tokenizeArchive(File archive) {
+        Map<File, Staged> entries = new LinkedHashMap<>();
+        try {
+            Archives.forEachTextEntry(archive, (entry, content) -> {
+                TokenSet terms = filterDistinct(this.chunkedTokenizer.tokenize(content));
+                if (!terms.isEmpty()) {
+                    entries.put(entry, new Staged(terms));
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error reading archive: " + archive.getAbsolutePath() + " (" + e.getMessage() + ")");
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * Hashes a file, and only tokenizes it if no file with the same content is indexed or staged in the same batch.
+     * The file is registered with its content once it is committed, so it is released again when the file is removed.
+     */
+    private Staged tokenizeFileDeduplicated(File file, ContentDeduplicator deduplicator,
+                                            Map<ContentDeduplicator.ContentKey, TokenSet> batchContents) {
+        // Identical content may still be rejected, since text files are recognized by their name
+        if (!FileHandling.isTextFile(file)) {
+            System.out.printf("File is not a text file: %s", file.getAbsolutePath());
+            return null;
+        }
+
+        ContentDeduplicator.ContentKey key;
         try {
-            fileContents = FileHandling.readTextFile(file);
+            key = ContentDeduplicator.hash(file);
         } catch (IOException e) {
             System.out.println("Error reading file: " + file.getAbsolutePath());
-            return false;
-        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        TokenSet terms = deduplicator.lookup(key, batchContents);
+        if (terms != null) {
+            return new Staged(terms, key, null); // The content isn't scanned, so there are no locations
+        }
+        Staged staged = tokenizeFileContents(file);
+        return staged == null ? null : new Staged(staged.terms(), key, staged.locations());
+    }
+
+    /**
+     * Reads and tokenizes a file, reporting the time of every phase in a {@link FileIndexedEvent}.
+     */
+    private Staged tokenizeFileContents(File file) {
+        if (file.length() >= this.parallelThresholdBytes) {
+            TokenSet terms = tokenizeFileChunked(file);
+            return terms == null ? null : new Staged(terms);
+        }
+
+        FileIndexedEvent event = new FileIndexedEvent();
+        event.begin();
+        long start = timestamp(event);
+        if (!FileHandling.isTextFile(file)) {
             System.out.printf("File is not a text file: %s", file.getAbsolutePath());
-            return false;
+            return null;
         }
+        long detected = timestamp(event);
 
-        List<String> tokenized = this.tokenizer.tokenize(fileContents);
+        Staged staged;
+        long read;
+        long bytes;
+        try {
+            if (this.tokenizer instanceof ByteTokenizer || this.locations != null) {
+                // Tokenize the raw bytes without decoding the whole file into a String, or to find their offsets
+                byte[] fileContents = Files.readAllBytes(file.toPath());
+                read = timestamp(event);
+                bytes = fileContents.length;
+                staged = tokenizeContent(fileContents);
+            } else {
+                String fileContents = Files.readString(file.toPath());
+                read = timestamp(event);
+                bytes = fileContents.length();
 
-        for (String token : tokenized) {
-            this.index.addToIndex(token.toLowerCase(), file);
+                // Deduplicate the tokens locally while tokenizing, so the index only sees every distinct token once
+                TokenSet tokens = new TokenSet(fileContents.length() / 32);
+                this.tokenizer.tokenize(fileContents, token -> tokens.add(token.toLowerCase()));
+                staged = new Staged(filterDistinct(tokens));
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + file.getAbsolutePath());
+            return null;
         }
 
-        return true;
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.bytes = bytes;
+            event.terms = staged.terms().size();
+            event.detectDuration = detected - start;
+            event.readDuration = read - detected;
+            event.tokenizeDuration = System.nanoTime() - read;
+            event.commit();
+        }
+        return staged;
+    }
+
+    /**
+     * @return The current time in nanoseconds if the event is enabled, or 0 to save the call.
+     */
+    private static long timestamp(Event event) {
+        return event.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Tokenizes the content of a file that was already read, without touching the index.
+     * If locations are stored, they are scanned as well, and stored once the file is committed.
+     * @param content the raw bytes of a text file.
+     * @return the distinct lowercase tokens of the content, and their locations if they are stored.
+     */
+    private Staged tokenizeContent(byte[] content) {
+        TokenSet terms = new TokenSet(content.length / 32);
+        Map<String, long[]> locations = null;
+        if (this.locations != null) {
+            locations = TermLocations.scan(content, this.tokenizer, terms);
+        } else if (this.tokenizer instanceof ByteTokenizer byteTokenizer) {
+            byteTokenizer.tokenize(content, 0, content.length, terms::add); // Byte tokenizers already produce lowercase tokens
+        } else {
+            this.tokenizer.tokenize(new String(content, StandardCharsets.UTF_8), token -> terms.add(token.toLowerCase()));
+        }
+        return new Staged(filterDistinct(terms), null, locations);
+    }
+
+    /**
+     * Tokenizes the content of a file that was already read, reusing the terms of an indexed file with the same content
+     * if deduplication is enabled. The file is registered with its content, and its locations are stored,
+     * once it is committed.
+     * @param content the raw bytes of a text file.
+     * @return the distinct lowercase tokens of the content.
+     */
+    Staged tokenizeContentDeduplicated(byte[] content) {
+        ContentDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator == null) {
+            return tokenizeContent(content);
+        }
+        ContentDeduplicator.ContentKey key = ContentDeduplicator.hash(content);
+        TokenSet terms = deduplicator.lookup(key, Map.of());
+        if (terms != null) {
+            return new Staged(terms, key, null); // The content isn't scanned, so there are no locations
+        }
+        Staged staged = tokenizeContent(content);
+        return new Staged(staged.terms(), key, staged.locations());
+    }
+
+    /**
+     * Applies the filters of an {@link AnalysisChain} that work on the distinct terms of a document,
+     * like the {@link DocumentFrequencyFilter}, once the document is tokenized.
+     */
+    private TokenSet filterDistinct(TokenSet terms) {
+        return this.tokenizer instanceof AnalysisChain chain ? chain.filterDistinct(terms) : terms;
+    }
+
+    /**
+     * Tokenizes a large file in parallel chunks, without reading the whole file into memory.
+     */
+    private TokenSet tokenizeFileChunked(File file) {
+        FileIndexedEvent event = new FileIndexedEvent();
+        event.begin();
+        long start = timestamp(event);
+        if (!FileHandling.isTextFile(file)) {
+            System.out.printf("File is not a text file: %s", file.getAbsolutePath());
+            return null;
+        }
+        long detected = timestamp(event);
+
+        TokenSet terms;
+        try {
+            terms = filterDistinct(this.chunkedTokenizer.tokenize(file));
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + file.getAbsolutePath());
+            return null;
+        }
+
+        if (event.shouldCommit()) {
+            event.path = file.getPath();
+            event.bytes = file.length();
+            event.terms = terms.size();
+            event.detectDuration = detected - start;
+            event.tokenizeDuration = System.nanoTime() - detected; // The chunks are read while they are tokenized
+            event.commit();
+        }
+        return terms;
     }
 
     @Override
     public boolean indexFiles(File... files) {
+        return indexFiles(FailurePolicy.ROLL_BACK_BATCH, Math.max(1, files.length), files).isComplete();
+    }
+
+    @Override
+    public BatchResult indexFiles(FailurePolicy policy, int batchSize, File... files) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        int committed = 0;
+        List<File> failed = new ArrayList<>();
+        List<File> rolledBack = new ArrayList<>();
+        for (int start = 0; start < files.length; start += batchSize) {
+            // Stage the batch outside the lock, so searches can continue while the files are read
+            Batch batch = new Batch();
+            int end = Math.min(files.length, start + batchSize);
+            int failedAt = -1; // The first file of the batch that couldn't be indexed
+            for (int i = start; i < end; i++) {
+                File file = files[i];
+                printProgress(file);
+                if (!stage(file, batch)) {
+                    failed.add(file);
+                    if (policy == FailurePolicy.ROLL_BACK_BATCH) {
+                        failedAt = i;
+                        break; // The rest of the batch won't be committed anyway
+                    }
+                }
+            }
+
+            if (failedAt >= 0) {
+                // Nothing was committed yet, so rolling back only means discarding the staged files
+                for (int i = start; i < end; i++) {
+                    if (i != failedAt) {
+                        rolledBack.add(files[i]);
+                    }
+                }
+                continue;
+            }
+
+            commit(batch);
+            committed += batch.files.size();
+        }
+        return new BatchResult(committed, failed, rolledBack);
+    }
+
+    private void printProgress(File file) {
+        if (this.progressOutput) {
+            System.out.println("Indexing file: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Commits a staged batch to the index while holding the write lock, replacing older versions of its files.
+     * The entries of the staged archives are replaced as a whole, so entries that were removed from an archive disappear.
+     * Once all files are added, they are registered with the deduplicator.
+     * If the index fails in the middle of the batch, the files of the batch that were already added are removed again,
+     * and the versions they replaced are restored.
+     */
+    void commit(Batch batch) {
+        IndexMutationEvent event = lockForMutation();
+        List<File> added = new ArrayList<>(batch.files.size());
+        Map<File, List<String>> replaced = Map.of();
+        List<File> removedEntries = new ArrayList<>();
+        try {
+            replaced = snapshot(batch.files.keySet(), batch.archives);
+            for (File archive : batch.archives) {
+                removedEntries.addAll(this.index.removeDirectoryFromIndex(Archives.entryDirectory(archive)));
+            }
+            for (Map.Entry<File, Staged> entry : batch.files.entrySet()) {
+                this.index.removeFileFromIndex(entry.getKey());
+                added.add(entry.getKey());
+                this.index.addDocument(entry.getKey(), entry.getValue().terms());
+            }
+            batch.files.forEach(this::committed);
+            for (File entry : removedEntries) {
+                if (!batch.files.containsKey(entry)) {
+                    released(entry); // Removed from its archive
+                }
+            }
+        } catch (RuntimeException e) {
+            for (File file : added) {
+                this.index.removeFileFromIndex(file);
+            }
+            for (Map.Entry<File, List<String>> entry : replaced.entrySet()) {
+                this.index.removeFileFromIndex(entry.getKey());
+                this.index.addDocument(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        } finally {
+            unlockAfterMutation(event, "commit", null, added.size());
+        }
+    }
+
+    /**
+     * Collects the terms of the indexed files a batch replaces, so they can be restored if the batch fails.
+     * Only the terms of the replaced files are looked up, with {@link Index#termsOf(File)}.
+     * @return the terms of every replaced file, or an empty map if the index can't list the terms of a file.
+     */
+    private Map<File, List<String>> snapshot(Set<File> files, List<File> archives) {
+        Set<File> indexed = this.index.getIndexedFiles();
+        Set<File> replaced = new HashSet<>();
         for (File file : files) {
-            if (!indexFile(file)) {
-                this.clearIndex();
-                return false;
+            if (indexed.contains(file)) {
+                replaced.add(file);
             }
         }
-        return true;
+        for (File archive : archives) {
+            Path entries = Archives.entryDirectory(archive).toPath();
+            for (File file : indexed) {
+                if (file.toPath().startsWith(entries)) {
+                    replaced.add(file);
+                }
+            }
+        }
+
+        Map<File, List<String>> terms = new HashMap<>();
+        try {
+            for (File file : replaced) {
+                terms.put(file, this.index.termsOf(file));
+            }
+        } catch (UnsupportedOperationException e) {
+            return Map.of(); // Nothing can be restored, but the batch can still be committed
+        }
+        return terms;
+    }
+
+    /**
+     * Releases the deduplicated content and the locations of a file that was removed from the index.
+     * Must be called while holding the write lock.
+     */
+    private void released(File file) {
+        ContentDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null) {
+            deduplicator.release(file);
+        }
+        TermLocations locations = this.locations;
+        if (locations != null) {
+            locations.remove(file);
+        }
     }
 
+    /**
+     * Registers a file that was added to the index with the content it was staged with, and stores its locations.
+     * A file that wasn't hashed, like an archive entry, releases the content it was indexed with before,
+     * and a file whose locations weren't scanned forgets the locations of its earlier version.
+     * Must be called while holding the write lock.
+     */
+    private void committed(File file, Staged staged) {
+        ContentDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null) {
+            if (staged.content() != null) {
+                deduplicator.register(file, staged.content(), staged.terms());
+            } else {
+                deduplicator.release(file);
+            }
+        }
+        TermLocations locations = this.locations;
+        if (locations != null) {
+            if (staged.locations() != null) {
+                locations.put(file, staged.locations());
+            } else {
+                locations.remove(file);
+            }
+        }
+    }
+
+    /**
+     * The terms of a file that was tokenized, but not committed yet.
+     * @param terms the distinct terms of the file.
+     * @param content the key of the content of the file if it was hashed for deduplication, or {@code null}.
+     * @param locations the locations of the terms of the file if they were scanned, or {@code null}.
+     */
+    record Staged(TokenSet terms, ContentDeduplicator.ContentKey content, Map<String, long[]> locations) {
+        Staged(TokenSet terms) {
+            this(terms, null, null);
+        }
+    }
+
+    /**
+     * The files of a batch that were tokenized, and the archives whose entries they replace.
+     */
+    static final class Batch {
+        final Map<File, Staged> files = new LinkedHashMap<>();
+        final List<File> archives = new ArrayList<>();
+        private final Map<ContentDeduplicator.ContentKey, TokenSet> contents = new HashMap<>(); // Terms of the hashed files by their content
+    }
+
+    /**
+     * Builds a read-only index file with the files of this index and the given files, within a memory budget.
+     * The postings of this index and of the given files are collected by a {@link SpillingIndexBuilder},
+     * which spills them to temporary files whenever the budget is reached,
+     * and {@link MappedIndexWriter} streams the merged runs straight into the index file.
+     * The returned indexer uses the same tokenizer and settings as this one,
+     * but starts without deduplicated contents or stored locations.
+     *
+     * @param memoryBudgetBytes the approximate number of bytes the postings may take while building.
+     * @param path the index file to write.
+     * @param files the files to be indexed.
+     * @return an indexer serving the built file, or null if a file couldn't be read or the index couldn't be written.
+     */
+    @Override
+    public FileIndexer indexFiles(long memoryBudgetBytes, Path path, File... files) {
+        Set<File> replaced = new LinkedHashSet<>(List.of(files));
+        List<String> replacedDirectories = new ArrayList<>();
+        for (File file : replaced) {
+            if (Archives.isArchive(file)) {
+                replacedDirectories.add(Archives.entryDirectory(file).getPath() + File.separator);
+            }
+        }
+
+        try (SpillingIndexBuilder builder = new SpillingIndexBuilder(memoryBudgetBytes)) {
+            // Keep the files of this index, except for the ones that are indexed again
+            this.lock.readLock().lock();
+            try {
+                builder.addIndex(this.index, file -> replaced.contains(file)
+                        || replacedDirectories.stream().anyMatch(file.getPath()::startsWith));
+            } finally {
+                this.lock.readLock().unlock();
+            }
+
+            for (File file : replaced) {
+                printProgress(file);
+                Batch batch = new Batch();
+                if (!stage(file, batch)) {
+                    return null;
+                }
+                for (Map.Entry<File, Staged> entry : batch.files.entrySet()) {
+                    builder.addDocument(entry.getKey(), entry.getValue().terms());
+                }
+            }
+
+            MappedIndexWriter.write(builder, path);
+            SimpleFileIndexer built = new SimpleFileIndexer(this.tokenizer, MappedIndex.open(path));
+            built.parallelThresholdBytes = this.parallelThresholdBytes;
+            built.setDeduplication(this.deduplicator != null);
+            built.setLocationStorage(this.locations != null);
+            built.progressOutput = this.progressOutput;
+            return built;
+        } catch (IOException e) {
+            System.out.println("Error while building the index file: " + e.getMessage());
+            return null;
+        }
+    }
 
     @Override
     public Set<File> search(String keyword) {
-        return this.index.search(keyword.toLowerCase());
+        QueryExecutedEvent event = new QueryExecutedEvent();
+        event.begin();
+        Set<File> files = new HashSet<>();
+        this.lock.readLock().lock();
+        try {
+            String term = this.tokenizer.normalize(keyword);
+            if (term != null) { // Otherwise the keyword is never indexed, for example a stopword
+                // Copy the result, as the index may change once the lock is released
+                files = new HashSet<>(this.index.search(term));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        queryExecuted(event, "search", keyword, files.size());
+        return files;
     }
 
+    /**
+     * Clears the index. The deduplicated contents and the stored locations are forgotten under the same write lock.
+     */
     @Override
     public void clearIndex() {
-        this.index.clearIndex();
+        IndexMutationEvent event = lockForMutation();
+        try {
+            this.index.clearIndex();
+            ContentDeduplicator deduplicator = this.deduplicator;
+            if (deduplicator != null) {
+                deduplicator.clear();
+            }
+            TermLocations locations = this.locations;
+            if (locations != null) {
+                locations.clear();
+            }
+        } finally {
+            unlockAfterMutation(event, "clear", null, 0);
+        }
+    }
+
+    /**
+     * Removes a file from the index. Its deduplicated content and its locations are released under the same write lock,
+     * so a concurrent commit of the file can't be released by mistake.
+     *
+     * @param file The file to remove from the index.
+     */
+    @Override
+    public void removeFileFromIndex(File file) {
+        IndexMutationEvent event = lockForMutation();
+        try {
+            this.index.removeFileFromIndex(file);
+            released(file);
+        } finally {
+            unlockAfterMutation(event, "remove", file, 1);
+        }
+    }
+
+    /**
+     * Removes all files below a directory from the index. For an archive, all of its entries are removed.
+     * With deduplication enabled, the contents of the removed files are released under the same write lock,
+     * and so are the stored locations of their terms. Only the removed files are visited.
+     *
+     * @param directory The directory whose files should be removed, or a single file.
+     */
+    @Override
+    public void removeDirectoryFromIndex(File directory) {
+        File removed = Archives.isArchive(directory) ? Archives.entryDirectory(directory) : directory;
+        IndexMutationEvent event = lockForMutation();
+        try {
+            this.index.removeDirectoryFromIndex(removed).forEach(this::released);
+        } finally {
+            unlockAfterMutation(event, "remove directory", removed, 0);
+        }
     }
 
     @Override
@@ -0,0 +1,42 @@
+package indexing;
+
+import java.io.File;
+
+/**
+ * Implemented by indexes that store their postings as sorted file IDs,
+ * so the {@link QueryPlanner} can intersect them without creating any File objects.
+ */
+interface SortedPostings {
+    /**
+     * @param term The token.
+     * @return The sorted IDs of the files containing the token, or {@code null} if no file contains it.
+     *         The set must not be changed, and may contain IDs of removed files.
+     */
+    DocIdSet postings(String term);
+
+    /**
+     * Keeps the candidates that contain a term, by galloping through the postings of the term.
+     * This default implementation gallops through the decoded {@link #postings(String)}.
+     *
+     * @param term       The token.
+     * @param candidates The sorted IDs of the candidates. The kept candidates are moved to the start of the array.
+     * @param count      The number of candidates in the array.
+     * @return The number of kept candidates.
+     */
+    default int gallop(String term, int[] candidates, int count) {
+        DocIdSet ids = postings(term);
+        return ids == null ? 0 : QueryPlanner.gallop(candidates, count, ids);
+    }
+
+    /**
+     * @param id A file ID from the postings.
+     * @return {@code true} if the file is still indexed.
+     */
+    boolean isLive(int id);
+
+    /**
+     * @param id The ID of an indexed file.
+     * @return The file.
+     */
+    File file(int id);
+}
@@ -0,0 +1,420 @@
+package indexing;
+
+import tokenizing.TokenSet;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Builds an index within a fixed memory budget, so corpora larger than the heap can be indexed.
+ *
+ * <p>Documents are added to an in-memory buffer that maps every term to the sorted IDs of the documents containing it.
+ * Once the estimated size of the buffer reaches the memory budget, its terms are sorted
+ * and written to a temporary run file, after which the buffer starts empty again.
+ * When all documents are added, the runs are merged with a k-way merge that reads every run sequentially,
+ * producing each term once, in sorted order, with the IDs of all documents containing it.</p>
+ *
+ * <p>Terms are sorted in the unsigned UTF-8 byte order used by {@link FrontCodedTermDictionary},
+ * so {@link MappedIndexWriter#write(SpillingIndexBuilder, Path)} can stream the merged output straight into an index file,
+ * and the finished index never has to fit on the heap. The list of added files stays on the heap,
+ * and is counted against the memory budget.</p>
+ */
+public class SpillingIndexBuilder implements Closeable {
+    // Rough estimates of the heap used per buffered term and per buffered posting
+    static final int TERM_OVERHEAD_BYTES = 112;
+    static final int POSTING_BYTES = 6;
+    static final int FILE_OVERHEAD_BYTES = 64; // Per added file, besides the characters of its path
+
+    private final long memoryBudgetBytes;
+    private final Path tempDirectory;
+    private final List<File> files = new ArrayList<>(); // Indexed files, by document ID
+    private final List<Path> runs = new ArrayList<>();
+    private HashMap<String, PostingsList> buffer = new HashMap<>();
+    private long bufferedBytes;
+    private long fileBytes; // The estimated heap of the list of added files
+
+    /**
+     * Consumes the merged postings, one term at a time in sorted order.
+     */
+    public interface PostingsConsumer {
+        /**
+         * Accepts the postings of a single term.
+         *
+         * @param term  The term.
+         * @param files The files containing the term, in the order they were added to the builder.
+         * @throws IOException If the postings can't be processed.
+         */
+        void accept(String term, List<File> files) throws IOException;
+    }
+
+    /**
+     * Consumes the merged postings as document IDs, one term at a time in sorted order.
+     */
+    interface IdConsumer {
+        /**
+         * Accepts the postings of a single term.
+         *
+         * @param term  The UTF-8 bytes of the term.
+         * @param ids   The ascending IDs of the documents containing the term, see {@link #files()}.
+         * @param count The number of valid IDs in the array.
+         * @throws IOException If the postings can't be processed.
+         */
+        void accept(byte[] term, int[] ids, int count) throws IOException;
+    }
+
+    /**
+     * Creates a builder that spills its runs into the default temporary directory.
+     *
+     * @param memoryBudgetBytes The approximate number of bytes the buffered postings may take.
+     */
+    public SpillingIndexBuilder(long memoryBudgetBytes) {
+        this(memoryBudgetBytes, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @param memoryBudgetBytes The approximate number of bytes the buffered postings may take.
+     * @param tempDirectory     The directory to write the temporary run files to.
+     */
+    public SpillingIndexBuilder(long memoryBudgetBytes, Path tempDirectory) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Adds all distinct tokens of a document. If the buffer exceeds the memory budget afterward, it is spilled to disk.
+     *
+     * @param file   The file the tokens were read from.
+     * @param tokens All tokens of the file, possibly containing duplicates.
+     * @throws IOException If the buffer can't be spilled.
+     */
+    public void addDocument(File file, Iterable<String> tokens) throws IOException {
+        int documentId = addFile(file);
+        for (String token : TokenSet.of(tokens)) {
+            buffer(token).add(documentId);
+            this.bufferedBytes += POSTING_BYTES;
+        }
+        spillIfNeeded();
+    }
+
+    /**
+     * Adds the postings of an existing index, leaving out some of its files, for example because they are added again.
+     * The postings are buffered and spilled like those of added documents, so the index doesn't have to fit in the budget.
+     * Must be called before any document is added.
+     *
+     * @param index The index. It must be able to list its terms.
+     * @param skip  Whether a file of the index is left out.
+     * @throws IOException If the buffer can't be spilled.
+     * @throws IllegalStateException If documents were added before.
+     * @throws UnsupportedOperationException If the index can't list its terms.
+     */
+    public void addIndex(Index index, Predicate<File> skip) throws IOException {
+        if (!this.files.isEmpty()) {
+            throw new IllegalStateException("An index must be added before any document.");
+        }
+        Map<File, Integer> ids = new HashMap<>();
+        for (File file : index.getIndexedFiles()) {
+            if (!skip.test(file)) {
+                ids.put(file, addFile(file));
+            }
+        }
+
+        int[] termIds = new int[16];
+        for (String term : index.terms()) {
+            int count = 0;
+            for (File file : index.search(term)) {
+                Integer id = ids.get(file);
+                if (id != null) {
+                    if (count == termIds.length) {
+                        termIds = Arrays.copyOf(termIds, count * 2);
+                    }
+                    termIds[count++] = id;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+
+            // Every term is added once, so its IDs only have to be sorted among themselves
+            Arrays.sort(termIds, 0, count);
+            PostingsList postings = buffer(term);
+            for (int i = 0; i < count; i++) {
+                postings.add(termIds[i]);
+            }
+            this.bufferedBytes += (long) POSTING_BYTES * count;
+            spillIfNeeded();
+        }
+    }
+
+    private int addFile(File file) {
+        this.files.add(file);
+        this.fileBytes += FILE_OVERHEAD_BYTES + 2L * file.getPath().length();
+        return this.files.size() - 1;
+    }
+
+    private PostingsList buffer(String token) {
+        PostingsList postings = this.buffer.get(token);
+        if (postings == null) {
+            postings = new PostingsList();
+            this.buffer.put(token, postings);
+            this.bufferedBytes += TERM_OVERHEAD_BYTES + 2L * token.length();
+        }
+        return postings;
+    }
+
+    /**
+     * Spills the buffer once it and the list of added files together reach the memory budget.
+     */
+    private void spillIfNeeded() throws IOException {
+        if (this.bufferedBytes + this.fileBytes >= this.memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * @return The number of run files written so far.
+     */
+    public int getRunCount() {
+        return this.runs.size();
+    }
+
+    /**
+     * @return The number of documents added so far.
+     */
+    public int getDocumentCount() {
+        return this.files.size();
+    }
+
+    /**
+     * @return The added files, by document ID. Not copied, so it must not be modified.
+     */
+    List<File> files() {
+        return this.files;
+    }
+
+    /**
+     * Writes the buffered postings, sorted by term, to a new run file and empties the buffer.
+     */
+    private void spill() throws IOException {
+        if (this.buffer.isEmpty()) {
+            return;
+        }
+
+        byte[][] terms = new byte[this.buffer.size()][];
+        PostingsList[] postings = new PostingsList[terms.length];
+        int i = 0;
+        for (Map.Entry<String, PostingsList> entry : this.buffer.entrySet()) {
+            terms[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            postings[i] = entry.getValue();
+            i++;
+        }
+        // Release the map before sorting, so the budget isn't exceeded twice over
+        this.buffer = new HashMap<>();
+        this.bufferedBytes = 0;
+
+        Integer[] order = new Integer[terms.length];
+        for (i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms[a], terms[b]));
+
+        Path run = Files.createTempFile(this.tempDirectory, "index-run-", ".bin");
+        this.runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            out.writeInt(terms.length);
+            for (int index : order) {
+                writeVarInt(out, terms[index].length);
+                out.write(terms[index]);
+
+                // Document IDs are ascending, so they are stored as small gaps
+                PostingsList list = postings[index];
+                writeVarInt(out, list.size);
+                int previous = 0;
+                for (int j = 0; j < list.size; j++) {
+                    writeVarInt(out, list.ids[j] - previous);
+                    previous = list.ids[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges all runs, including the postings still buffered in memory,
+     * and passes every term with its files to the consumer in sorted order.
+     *
+     * @param consumer The consumer of the merged postings.
+     * @throws IOException If a run can't be written or read.
+     */
+    public void merge(PostingsConsumer consumer) throws IOException {
+        List<File> merged = new ArrayList<>();
+        mergeIds((term, ids, count) -> {
+            merged.clear();
+            for (int i = 0; i < count; i++) {
+                merged.add(this.files.get(ids[i]));
+            }
+            consumer.accept(new String(term, StandardCharsets.UTF_8), merged);
+        });
+    }
+
+    /**
+     * Merges all runs, including the postings still buffered in memory,
+     * and passes every term with the IDs of its documents to the consumer in sorted order.
+     * Terms left without documents, because all their files were skipped by {@link #addIndex}, are left out.
+     *
+     * @param consumer The consumer of the merged postings.
+     * @throws IOException If a run can't be written or read.
+     */
+    void mergeIds(IdConsumer consumer) throws IOException {
+        spill();
+
+        // Runs are ordered by term; for equal terms, earlier runs come first so document IDs stay sorted
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = Arrays.compareUnsigned(a.term, b.term);
+            return cmp != 0 ? cmp : Integer.compare(a.runNumber, b.runNumber);
+        });
+
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < this.runs.size(); i++) {
+                RunReader reader = new RunReader(this.runs.get(i), i);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            PostingsList merged = new PostingsList();
+            while (!queue.isEmpty()) {
+                RunReader first = queue.poll();
+                byte[] term = first.term;
+                merged.size = 0;
+                first.readPostings(merged);
+                if (first.next()) {
+                    queue.add(first);
+                }
+
+                // Collect the postings of the same term from all other runs
+                while (!queue.isEmpty() && Arrays.equals(queue.peek().term, term)) {
+                    RunReader reader = queue.poll();
+                    reader.readPostings(merged);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                }
+
+                if (merged.size > 0) {
+                    consumer.accept(term, merged.ids, merged.size);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes all run files and discards the buffered postings.
+     */
+    @Override
+    public void close() throws IOException {
+        this.buffer.clear();
+        this.bufferedBytes = 0;
+        this.fileBytes = 0;
+        for (Path run : this.runs) {
+            Files.deleteIfExists(run);
+        }
+        this.runs.clear();
+    }
+
+    /**
+     * A growable list of document IDs.
+     */
+    private static class PostingsList {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.size + (this.size >> 1) + 1);
+            }
+            this.ids[this.size++] = id;
+        }
+    }
+
+    /**
+     * Reads the terms of a run file sequentially.
+     */
+    private static class RunReader implements Closeable {
+        final int runNumber;
+        private final DataInputStream in;
+        private int remainingTerms;
+        byte[] term;
+
+        RunReader(Path run, int runNumber) throws IOException {
+            this.runNumber = runNumber;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+            this.remainingTerms = this.in.readInt();
+        }
+
+        /**
+         * Moves to the next term of the run.
+         *
+         * @return {@code false} if the run has no more terms.
+         */
+        boolean next() throws IOException {
+            if (this.remainingTerms == 0) {
+                return false;
+            }
+            this.remainingTerms--;
+            this.term = new byte[readVarInt(this.in)];
+            this.in.readFully(this.term);
+            return true;
+        }
+
+        /**
+         * Reads the postings of the current term. Must be called exactly once per term, before {@link #next()}.
+         */
+        void readPostings(PostingsList target) throws IOException {
+            int count = readVarInt(this.in);
+            int id = 0;
+            for (int i = 0; i < count; i++) {
+                id += readVarInt(this.in);
+                target.add(id);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,20 @@
+package indexing;
+
+import java.io.File;
+
+/**
+ * An occurrence of a term in an indexed file, with the line it occurs on.
+ *
+ * @param file    The file.
+ * @param term    The normalized term.
+ * @param line    The line number of the occurrence, starting at 1.
+ * @param offset  The byte offset of the word containing the term.
+ * @param snippet The line of the occurrence, cut to a few dozen bytes around the term.
+ */
+public record TermLocation(File file, String term, int line, long offset, String snippet) {
+
+    @Override
+    public String toString() {
+        return this.file.getAbsolutePath() + ":" + this.line + ": " + this.snippet;
+    }
+}
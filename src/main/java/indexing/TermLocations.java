@@ -0,0 +1,219 @@
+package indexing;
+
+import tokenizing.ByteTokenizer;
+import tokenizing.TokenSet;
+import tokenizing.Tokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Remembers where the terms of every file occur, so a hit can be shown in context without searching the file again.
+ *
+ * <p>For every term of a file, the byte offset and line number of its first {@link #MAX_OCCURRENCES} occurrences
+ * are kept, packed into a single long each: the offset in the low {@value #OFFSET_BITS} bits and the line above it.
+ * A snippet is then read from the file with a single positioned read of the bytes around an occurrence.</p>
+ *
+ * <p>The locations are scanned while a file is tokenized, and stored once the file is committed to the index.
+ * They are only changed under the write lock of the indexer, together with the index,
+ * but read without the lock, so the files are kept in a concurrent map.</p>
+ */
+class TermLocations {
+    static final int MAX_OCCURRENCES = 8; // The occurrences kept per term and file
+    static final int SNIPPET_RADIUS = 80; // The bytes read on each side of an occurrence
+    private static final int OFFSET_BITS = 40;
+    private static final long MAX_OFFSET = (1L << OFFSET_BITS) - 1;
+    private static final int MAX_LINE = (1 << (Long.SIZE - OFFSET_BITS)) - 1;
+
+    private final Map<File, Map<String, long[]>> files = new ConcurrentHashMap<>();
+
+    /**
+     * Tokenizes the content of a file one whitespace-separated word at a time, remembering where every term occurs.
+     *
+     * @param content   The raw bytes of the file.
+     * @param tokenizer The tokenizer to split every word with.
+     * @param terms     The set the distinct lowercase terms of the content are added to.
+     * @return The packed locations of every term, in the order they occur.
+     */
+    static Map<String, long[]> scan(byte[] content, Tokenizer tokenizer, TokenSet terms) {
+        Map<String, long[]> locations = new HashMap<>();
+        int line = 1;
+        int position = 0;
+        while (position < content.length) {
+            // Skip whitespace, counting the lines
+            byte b = content[position];
+            if (isWhitespace(b)) {
+                if (b == '\n') {
+                    line++;
+                }
+                position++;
+                continue;
+            }
+
+            int start = position;
+            while (position < content.length && !isWhitespace(content[position])) {
+                position++;
+            }
+
+            long location = pack(start, line);
+            if (tokenizer instanceof ByteTokenizer byteTokenizer) {
+                byteTokenizer.tokenize(content, start, position - start, term -> add(locations, terms, term, location));
+            } else {
+                String word = new String(content, start, position - start, StandardCharsets.UTF_8);
+                tokenizer.tokenize(word, token -> add(locations, terms, token.toLowerCase(), location));
+            }
+        }
+        return locations;
+    }
+
+    private static void add(Map<String, long[]> locations, TokenSet terms, String term, long location) {
+        terms.add(term);
+        long[] occurrences = locations.get(term);
+        if (occurrences == null) {
+            locations.put(term, new long[]{location});
+        } else if (occurrences.length < MAX_OCCURRENCES && occurrences[occurrences.length - 1] != location) {
+            // Arrays are grown one by one, since most terms only occur a few times in a file
+            occurrences = Arrays.copyOf(occurrences, occurrences.length + 1);
+            occurrences[occurrences.length - 1] = location;
+            locations.put(term, occurrences);
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    /**
+     * Packs an occurrence into a long. Offsets and lines beyond the available bits are clamped.
+     */
+    static long pack(long offset, int line) {
+        return (long) Math.min(line, MAX_LINE) << OFFSET_BITS | Math.min(offset, MAX_OFFSET);
+    }
+
+    static long offset(long location) {
+        return location & MAX_OFFSET;
+    }
+
+    static int line(long location) {
+        return (int) (location >>> OFFSET_BITS);
+    }
+
+    /**
+     * Stores the locations of the terms of a file, replacing those it was indexed with before.
+     */
+    void put(File file, Map<String, long[]> locations) {
+        this.files.put(file, locations);
+    }
+
+    /**
+     * @return The packed locations of a term in a file, or an empty array if none were recorded.
+     */
+    long[] get(File file, String term) {
+        Map<String, long[]> locations = this.files.get(file);
+        long[] occurrences = locations != null ? locations.get(term) : null;
+        return occurrences != null ? occurrences : new long[0];
+    }
+
+    /**
+     * Forgets the locations of a file, for example when it's removed from the index.
+     */
+    void remove(File file) {
+        this.files.remove(file);
+    }
+
+    /**
+     * Forgets the locations of all files that don't match a condition,
+     * for example the files below a directory that was removed from the index.
+     */
+    void retainIf(Predicate<File> condition) {
+        this.files.keySet().removeIf(condition.negate());
+    }
+
+    void clear() {
+        this.files.clear();
+    }
+
+    /**
+     * @return The number of files with recorded locations.
+     */
+    int size() {
+        return this.files.size();
+    }
+
+    /**
+     * Reads the snippets of the occurrences of a term in a file,
+     * reading only the bytes around every occurrence instead of the whole file.
+     *
+     * @param file The file.
+     * @param term The normalized term.
+     * @return The occurrences in the order they appear in the file.
+     * @throws IOException If the file can't be read.
+     */
+    List<TermLocation> read(File file, String term) throws IOException {
+        long[] occurrences = get(file, term);
+        List<TermLocation> result = new ArrayList<>(occurrences.length);
+        if (occurrences.length == 0) {
+            return result;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * SNIPPET_RADIUS);
+            for (long location : occurrences) {
+                long offset = offset(location);
+                long start = Math.max(0, offset - SNIPPET_RADIUS);
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                    // Positioned reads don't move the channel, so every occurrence is read independently
+                }
+                String snippet = snippet(buffer.array(), buffer.position(), (int) (offset - start));
+                result.add(new TermLocation(file, term, line(location), offset, snippet));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cuts the line containing an occurrence out of the bytes read around it.
+     *
+     * @param bytes    The bytes read around the occurrence.
+     * @param length   The number of bytes read.
+     * @param position The position of the occurrence in the bytes.
+     * @return The line of the occurrence, trimmed, or an empty string if the file changed since it was indexed.
+     */
+    static String snippet(byte[] bytes, int length, int position) {
+        if (position >= length) {
+            return "";
+        }
+        int start = position;
+        while (start > 0 && bytes[start - 1] != '\n') {
+            start--;
+        }
+        int end = position;
+        while (end < length && bytes[end] != '\n') {
+            end++;
+        }
+
+        // A character cut off at either end of the bytes read is decoded as a replacement character
+        String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        int first = 0;
+        int last = line.length();
+        while (first < last && line.charAt(first) == '\uFFFD') {
+            first++;
+        }
+        while (last > first && line.charAt(last - 1) == '\uFFFD') {
+            last--;
+        }
+        return line.substring(first, last).strip();
+    }
+}
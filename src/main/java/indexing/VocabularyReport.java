@@ -0,0 +1,41 @@
+package indexing;
+
+import java.util.List;
+
+/**
+ * Statistics about the vocabulary of an index.
+ *
+ * @param termCount       The number of distinct terms.
+ * @param topTerms        The most frequent terms, most frequent first.
+ * @param lengthHistogram The number of postings lists by length: bucket {@code b} counts the lists
+ *                        with {@code 2^b} up to {@code 2^(b+1) - 1} files.
+ */
+public record VocabularyReport(int termCount, List<TermFrequency> topTerms, long[] lengthHistogram) {
+
+    /**
+     * A term and the number of files containing it.
+     *
+     * @param term              The term.
+     * @param documentFrequency The number of files containing the term.
+     */
+    public record TermFrequency(String term, int documentFrequency) {
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%d distinct terms%n", this.termCount));
+        builder.append(String.format("Top %d terms by document frequency:%n", this.topTerms.size()));
+        for (TermFrequency term : this.topTerms) {
+            builder.append(String.format("  %-20s %d%n", term.term(), term.documentFrequency()));
+        }
+        builder.append("Postings lengths:");
+        for (int bucket = 0; bucket < this.lengthHistogram.length; bucket++) {
+            long low = 1L << bucket;
+            long high = (low << 1) - 1;
+            String range = low == high ? String.valueOf(low) : low + "-" + high;
+            builder.append(String.format("%n  %-20s %d", range, this.lengthHistogram[bucket]));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,151 @@
+package indexing;
+
+import java.util.*;
+
+/**
+ * Keeps statistics about the vocabulary of an index up to date while postings grow:
+ * the number of distinct terms, a histogram of the lengths of the postings lists,
+ * and the terms with the longest postings.
+ *
+ * <p>The longest postings are tracked by a bounded heavy-hitters sketch, which holds at most {@code capacity} terms.
+ * A term enters the sketch when its postings grow longer than the shortest tracked postings, which is then evicted.
+ * While postings only grow, the sketch holds the {@code capacity} most frequent terms,
+ * and a term that isn't tracked costs a single hash lookup per update.
+ * When a file is removed, its terms shrink with {@link #shrink(String, int)}: the term count and the histogram stay exact,
+ * but a tracked term that shrinks isn't replaced by an untracked one that may now be more frequent.
+ * The index rebuilds the statistics with {@link #clear()} and {@link #record(String, int)} when it purges removed files.</p>
+ */
+class VocabularyStats {
+    private static final Comparator<TrackedTerm> BY_FREQUENCY =
+            Comparator.comparingInt(TrackedTerm::documentFrequency).thenComparing(TrackedTerm::term);
+
+    private final int capacity;
+    private final HashMap<String, Integer> tracked = new HashMap<>(); // Document frequency of the tracked terms
+    private final TreeSet<TrackedTerm> heavyHitters = new TreeSet<>(BY_FREQUENCY); // Tracked terms, rarest first
+    private final long[] lengthHistogram = new long[Integer.SIZE]; // Postings by the highest bit of their length
+    private int termCount;
+
+    /**
+     * @param capacity The number of terms the sketch tracks, the largest k a report can be made for.
+     */
+    VocabularyStats(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records that the postings of a term grew by one file.
+     *
+     * @param term   The term.
+     * @param length The new length of the postings.
+     */
+    void grow(String term, int length) {
+        if (length == 1) {
+            this.termCount++;
+        } else {
+            this.lengthHistogram[bucket(length - 1)]--;
+        }
+        this.lengthHistogram[bucket(length)]++;
+        offer(term, length);
+    }
+
+    /**
+     * Records that the postings of a term lost a file.
+     *
+     * @param term   The term.
+     * @param length The new length of the postings, 0 if no file contains the term anymore.
+     */
+    void shrink(String term, int length) {
+        this.lengthHistogram[bucket(length + 1)]--;
+        if (length == 0) {
+            this.termCount--;
+        } else {
+            this.lengthHistogram[bucket(length)]++;
+        }
+
+        Integer previous = this.tracked.get(term);
+        if (previous != null) {
+            this.heavyHitters.remove(new TrackedTerm(term, previous));
+            if (length == 0) {
+                this.tracked.remove(term);
+            } else {
+                this.tracked.put(term, length);
+                this.heavyHitters.add(new TrackedTerm(term, length));
+            }
+        }
+    }
+
+    /**
+     * Records the postings of a term, while rebuilding the statistics.
+     *
+     * @param term   The term.
+     * @param length The length of the postings, 0 to ignore the term.
+     */
+    void record(String term, int length) {
+        if (length == 0) {
+            return;
+        }
+        this.termCount++;
+        this.lengthHistogram[bucket(length)]++;
+        offer(term, length);
+    }
+
+    private void offer(String term, int length) {
+        Integer previous = this.tracked.get(term);
+        if (previous != null) {
+            this.heavyHitters.remove(new TrackedTerm(term, previous));
+        } else if (this.tracked.size() >= this.capacity) {
+            TrackedTerm rarest = this.heavyHitters.first();
+            if (length <= rarest.documentFrequency()) {
+                return; // Not frequent enough to be tracked
+            }
+            this.heavyHitters.pollFirst();
+            this.tracked.remove(rarest.term());
+        }
+        this.tracked.put(term, length);
+        this.heavyHitters.add(new TrackedTerm(term, length));
+    }
+
+    /**
+     * Removes all statistics.
+     */
+    void clear() {
+        this.tracked.clear();
+        this.heavyHitters.clear();
+        Arrays.fill(this.lengthHistogram, 0);
+        this.termCount = 0;
+    }
+
+    /**
+     * @param k The number of most frequent terms to report, at most the capacity of the sketch.
+     * @return A report of the statistics.
+     */
+    VocabularyReport report(int k) {
+        if (k < 1 || k > this.capacity) {
+            throw new IllegalArgumentException("k must be between 1 and " + this.capacity + ": " + k);
+        }
+        List<VocabularyReport.TermFrequency> topTerms = new ArrayList<>(Math.min(k, this.heavyHitters.size()));
+        for (Iterator<TrackedTerm> terms = this.heavyHitters.descendingIterator(); terms.hasNext() && topTerms.size() < k; ) {
+            TrackedTerm term = terms.next();
+            topTerms.add(new VocabularyReport.TermFrequency(term.term(), term.documentFrequency()));
+        }
+
+        int buckets = this.lengthHistogram.length;
+        while (buckets > 0 && this.lengthHistogram[buckets - 1] == 0) {
+            buckets--;
+        }
+        return new VocabularyReport(this.termCount, topTerms, Arrays.copyOf(this.lengthHistogram, buckets));
+    }
+
+    /**
+     * @return The bucket of a postings length: 0 for length 1, 1 for lengths 2 to 3, 2 for lengths 4 to 7, and so on.
+     */
+    static int bucket(int length) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(length);
+    }
+
+    private record TrackedTerm(String term, int documentFrequency) {
+    }
+}
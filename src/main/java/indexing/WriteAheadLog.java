@@ -0,0 +1,507 @@
+package indexing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes to an index, at the granularity of documents, so the index can be rebuilt after a crash.
+ *
+ * <p>Every record is written as its length, the CRC-32 of its payload, and the payload: a type byte followed by the
+ * path and terms of the change. A record that was only partly written when the process died fails its checksum,
+ * so {@link #replay(Path, Index)} stops there and the log is truncated to the last complete record.
+ * Replaying a record twice leaves the index unchanged, so a log may safely be replayed on top of a snapshot
+ * that already contains some of its records.</p>
+ *
+ * <p>Appending only encodes the record and queues it, so it can be done while holding the lock of the index.
+ * A single writer thread takes all queued records, writes them with one call, and, depending on the
+ * {@link Durability}, forces them to the disk with one fsync: the records of concurrent changes share that fsync,
+ * which is called group commit. A change waits for its record with {@link #sync(long)}, after releasing the lock,
+ * so other changes can join the next group in the meantime.</p>
+ *
+ * <p>Once a group couldn't be written, the log is failed: the records that are still queued are dropped,
+ * and every later append is rejected, so a failed log neither grows in memory nor accepts changes it can't keep.</p>
+ */
+public class WriteAheadLog implements Closeable {
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte REMOVE_DIRECTORY = 3;
+    private static final byte POSTINGS = 4;
+    private static final byte CLEAR = 5;
+    private static final int HEADER_BYTES = 8; // The length and the checksum of a record
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    /**
+     * When the log forces its records to the disk.
+     */
+    public enum Durability {
+        /**
+         * Every group of records is forced to the disk before the changes in it return.
+         * No acknowledged change is lost, even if the machine fails.
+         */
+        BATCH,
+        /**
+         * Records are written right away, and forced to the disk at a fixed interval.
+         * Changes return without waiting, and at most the changes of one interval are lost if the machine fails.
+         */
+        INTERVAL,
+        /**
+         * Records are written right away, but only forced to the disk when the log is flushed or closed.
+         * Changes survive a crash of the process, but not of the machine.
+         */
+        NONE
+    }
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final long intervalNanos;
+    private final Thread writer;
+
+    private final Object lock = new Object(); // Guards the fields below
+    private List<byte[]> pending = new ArrayList<>();
+    private long appended; // The sequence number of the last queued record
+    private long size; // The number of bytes of the records in the file and the queue
+    private long written; // The sequence number of the last record written to the file
+    private long durable; // The sequence number of the last record forced to the disk
+    private boolean forceRequested;
+    private boolean closed;
+    private IOException failure;
+    private long groups; // The number of groups written, for statistics
+
+    /**
+     * Opens a log for appending, creating it if it doesn't exist.
+     * An incomplete record at the end of the log, left by a crash, is cut off.
+     *
+     * @param path           The log file.
+     * @param durability     When records are forced to the disk.
+     * @param intervalMillis The interval between forces with {@link Durability#INTERVAL}.
+     * @throws IOException If the log can't be opened.
+     */
+    public WriteAheadLog(Path path, Durability durability, long intervalMillis) throws IOException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        this.durability = durability;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long length = Files.exists(path) ? validLength(path) : 0;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.truncate(length);
+        this.channel.position(length);
+        this.size = length;
+
+        this.writer = new Thread(this::writeGroups, "write-ahead-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the record of a document that was added to the index.
+     *
+     * @param file  The file.
+     * @param terms The distinct terms of the file.
+     * @return The sequence number of the record, to wait for with {@link #sync(long)}.
+     */
+    public long appendAdd(File file, Iterable<String> terms) {
+        return append(encode(ADD, file.getPath(), terms));
+    }
+
+    /**
+     * Queues the record of a file that was removed from the index.
+     *
+     * @param file The file.
+     * @return The sequence number of the record.
+     */
+    public long appendRemove(File file) {
+        return append(encode(REMOVE, file.getPath(), List.of()));
+    }
+
+    /**
+     * Queues the record of a directory whose files were removed from the index.
+     *
+     * @param directory The directory, or a single file.
+     * @return The sequence number of the record.
+     */
+    public long appendRemoveDirectory(File directory) {
+        return append(encode(REMOVE_DIRECTORY, directory.getPath(), List.of()));
+    }
+
+    /**
+     * Queues the record of the complete postings of a term, for example when postings are loaded in bulk.
+     * The term is written in place of the path, followed by the paths of the files.
+     *
+     * @param term  The term.
+     * @param files The files containing the term.
+     * @return The sequence number of the record.
+     */
+    public long appendPostings(String term, Collection<File> files) {
+        List<String> paths = new ArrayList<>(files.size());
+        for (File file : files) {
+            paths.add(file.getPath());
+        }
+        return append(encode(POSTINGS, term, paths));
+    }
+
+    /**
+     * Queues the record of an index that was cleared.
+     *
+     * @return The sequence number of the record.
+     */
+    public long appendClear() {
+        return append(encode(CLEAR, "", List.of()));
+    }
+
+    /**
+     * Queues a record.
+     *
+     * @throws UncheckedIOException If an earlier group of records couldn't be written.
+     */
+    private long append(byte[] record) {
+        synchronized (this.lock) {
+            if (this.closed) {
+                throw new IllegalStateException("The write-ahead log is closed.");
+            }
+            throwIfFailed();
+            this.pending.add(record);
+            this.size += record.length;
+            this.lock.notifyAll();
+            return ++this.appended;
+        }
+    }
+
+    /**
+     * @return The sequence number of the last queued record, or 0 if none was queued since the log was opened.
+     */
+    public long lastSequence() {
+        synchronized (this.lock) {
+            return this.appended;
+        }
+    }
+
+    /**
+     * @return The number of bytes of all records since the log was last emptied, including the queued ones.
+     */
+    public long size() {
+        synchronized (this.lock) {
+            return this.size;
+        }
+    }
+
+    /**
+     * Waits until a record is as durable as the {@link Durability} of the log promises.
+     * With {@link Durability#BATCH}, that is until the record is forced to the disk;
+     * with the other modes, this only reports an earlier failure to write.
+     *
+     * @param sequence The sequence number of the record.
+     * @throws UncheckedIOException If the log couldn't be written.
+     */
+    public void sync(long sequence) {
+        synchronized (this.lock) {
+            if (this.durability == Durability.BATCH) {
+                awaitDurable(sequence);
+            }
+            throwIfFailed();
+        }
+    }
+
+    /**
+     * Forces all queued records to the disk, no matter the {@link Durability}, and waits until they are.
+     *
+     * @throws UncheckedIOException If the log couldn't be written.
+     */
+    public void flush() {
+        synchronized (this.lock) {
+            this.forceRequested = true;
+            this.lock.notifyAll();
+            awaitDurable(this.appended);
+            throwIfFailed();
+        }
+    }
+
+    /**
+     * Empties the log, once all of its records are part of a snapshot.
+     * No records may be appended while the log is reset.
+     *
+     * @throws IOException If the log can't be truncated.
+     */
+    public void reset() throws IOException {
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        synchronized (this.lock) {
+            this.channel.truncate(0);
+            this.channel.force(true);
+            this.size = 0;
+        }
+    }
+
+    /**
+     * @return The number of groups of records that were written, each with a single write and at most one fsync.
+     */
+    public long groupCount() {
+        synchronized (this.lock) {
+            return this.groups;
+        }
+    }
+
+    /**
+     * @return When records are forced to the disk.
+     */
+    public Durability getDurability() {
+        return this.durability;
+    }
+
+    /**
+     * Forces all records to the disk and closes the log.
+     *
+     * @throws IOException If the remaining records couldn't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this.lock) {
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+        synchronized (this.lock) {
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (this.durable < sequence && this.failure == null) {
+            try {
+                this.lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // The change is already applied, so its record is waited for anyway
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throwIfFailed() {
+        if (this.failure != null) {
+            throw new UncheckedIOException("The write-ahead log couldn't be written.", this.failure);
+        }
+    }
+
+    /**
+     * The loop of the writer thread: writes the queued records in groups, and forces them to the disk when due.
+     */
+    private void writeGroups() {
+        long lastForce = System.nanoTime();
+        while (true) {
+            List<byte[]> group;
+            long last;
+            boolean force;
+            synchronized (this.lock) {
+                while (this.pending.isEmpty() && !this.closed && !isForceDue(lastForce)) {
+                    waitForWork(lastForce);
+                }
+                if (this.pending.isEmpty() && this.closed && this.durable == this.appended) {
+                    return;
+                }
+                group = this.pending;
+                this.pending = new ArrayList<>();
+                last = this.appended;
+                force = this.durability == Durability.BATCH || this.forceRequested || this.closed
+                        || (this.durability == Durability.INTERVAL && System.nanoTime() - lastForce >= this.intervalNanos);
+                this.forceRequested = false;
+            }
+
+            IOException error = null;
+            try {
+                write(group);
+                if (force) {
+                    this.channel.force(false);
+                    lastForce = System.nanoTime();
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this.lock) {
+                if (error != null) {
+                    this.failure = error;
+                    this.pending = new ArrayList<>(); // Never written, and no more records are accepted
+                    this.lock.notifyAll();
+                    return;
+                }
+                this.written = last;
+                if (force) {
+                    this.durable = last;
+                }
+                if (!group.isEmpty()) {
+                    this.groups++;
+                }
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return Whether written records have to be forced to the disk, even though no new records are queued.
+     */
+    private boolean isForceDue(long lastForce) {
+        return this.written > this.durable && (this.forceRequested
+                || (this.durability == Durability.INTERVAL && System.nanoTime() - lastForce >= this.intervalNanos));
+    }
+
+    private void waitForWork(long lastForce) {
+        try {
+            if (this.durability == Durability.INTERVAL && this.written > this.durable) {
+                long remaining = this.intervalNanos - (System.nanoTime() - lastForce);
+                TimeUnit.NANOSECONDS.timedWait(this.lock, Math.max(remaining, 1));
+            } else {
+                this.lock.wait();
+            }
+        } catch (InterruptedException e) {
+            // The writer only stops when the log is closed
+        }
+    }
+
+    private void write(List<byte[]> group) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[group.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(group.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= this.channel.write(buffers);
+        }
+    }
+
+    /**
+     * Encodes a record with its header.
+     */
+    private static byte[] encode(byte type, String path, Iterable<String> values) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(0); // Room for the header
+            out.writeByte(type);
+            out.writeUTF(path);
+            List<String> list = new ArrayList<>();
+            values.forEach(list::add);
+            out.writeInt(list.size());
+            for (String value : list) {
+                out.writeUTF(value);
+            }
+
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, HEADER_BYTES, record.length - HEADER_BYTES);
+            ByteBuffer.wrap(record).putInt(record.length - HEADER_BYTES).putInt((int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by in-memory streams
+        }
+    }
+
+    /**
+     * Applies all complete records of a log to an index, in the order they were appended.
+     *
+     * @param path  The log file. A missing file is an empty log.
+     * @param index The index to apply the records to.
+     * @return The number of records applied.
+     * @throws IOException If the log can't be read.
+     */
+    public static int replay(Path path, Index index) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                apply(payload, index);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return The length of the complete records at the start of a log.
+     */
+    private static long validLength(Path path) throws IOException {
+        long length = 0;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                length += HEADER_BYTES + payload.length;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return The payload of the next record, or {@code null} at the end of the log or at an incomplete record.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        byte[] header = in.readNBytes(HEADER_BYTES);
+        if (header.length < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0) {
+            return null;
+        }
+        byte[] payload = in.readNBytes(length);
+        if (payload.length < length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == checksum ? payload : null;
+    }
+
+    private static void apply(byte[] payload, Index index) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String path = in.readUTF();
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+
+        switch (type) {
+            case ADD -> index.addDocument(new File(path), values);
+            case REMOVE -> index.removeFileFromIndex(new File(path));
+            case REMOVE_DIRECTORY -> index.removeDirectoryFromIndex(new File(path));
+            case POSTINGS -> index.addPostings(path, values.stream().map(File::new).toList());
+            case CLEAR -> index.clearIndex();
+            default -> throw new IOException("Unknown record type in write-ahead log: " + type);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import indexing.BatchResult;
+import indexing.FailurePolicy;
+import indexing.FileIndexer;
+import indexing.IndexingPipeline;
+import indexing.LoggedHashMapIndex;
+import indexing.MappedIndex;
+import indexing.SearchPage;
+import indexing.SegmentedIndex;
+import indexing.SimpleFileIndexer;
+import indexing.WriteAheadLog;
+import util.FileHandling;
+import util.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless HTTP server that exposes a {@link FileIndexer} to other processes on the local machine.
+ *
+ * <p>The server only listens on the loopback interface and answers with JSON. It offers four endpoints:</p>
+ * <ul>
+ *     <li>{@code GET /query?q=<word>&limit=<n>&cursor=<cursor>} - Finds the files containing a word.
+ *     With a limit, only one page of files is returned, together with the cursor of the next page.</li>
+ *     <li>{@code POST /index?path=<path>&path=<path>&recursive=true} - Indexes (or re-indexes) files and directories.
+ *     The parameters can also be sent form-encoded in the request body, which is useful for long lists of paths.</li>
+ *     <li>{@code GET /stats} - Reports the size of the index and the load of the server.</li>
+ *     <li>{@code POST /checkpoint} - Writes a snapshot of a logged index and empties its write-ahead log.</li>
+ * </ul>
+ *
+ * <p>Every request is handled on its own virtual thread. To apply backpressure, the number of requests
+ * in progress is limited: once the limit is reached, new requests are rejected right away with
+ * {@code 503 Service Unavailable} instead of queueing up. Indexing jobs have a separate, smaller limit,
+ * and are rejected with {@code 429 Too Many Requests} when it is reached, so they can't take all capacity from queries.</p>
+ *
+ * <p>A logged index can also be checkpointed in the background with {@link #scheduleCheckpoints(long, long)},
+ * so its log, and with it the time to recover after a crash, doesn't grow without bounds.</p>
+ */
+public class IndexServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_REQUESTS = 256;
+    public static final int DEFAULT_MAX_INDEXING_JOBS = 2;
+    static final int INDEX_BATCH_SIZE = 1000; // Files committed to the index at once
+    static final int MAX_BODY_BYTES = 1 << 20; // The largest request body that is read, in bytes
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64 << 20;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long MAX_CHECKPOINT_POLL_MILLIS = 1000; // How often the size of the log is checked at most
+
+    static {
+        // The built-in server writes headers and body separately, which otherwise adds
+        // the delayed ACK timeout (about 40ms) to every response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final FileIndexer fileIndexer;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+    private final Semaphore requestPermits; // Limits the number of requests in progress
+    private final Semaphore indexingPermits; // Limits the number of indexing jobs in progress
+    private final AtomicLong servedRequests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private volatile IndexingPipeline lastPipeline; // The most recent indexing job, if any
+    private volatile ScheduledExecutorService checkpoints; // Null unless checkpoints are scheduled
+    private volatile long lastCheckpoint = System.nanoTime();
+
+    /**
+     * Creates a server for the given indexer. The server has to be started with {@link #start()}.
+     *
+     * @param fileIndexer     The indexer to expose.
+     * @param port            The port to listen on, or 0 to pick a free port.
+     * @param maxRequests     The maximum number of requests handled at the same time.
+     * @param maxIndexingJobs The maximum number of indexing jobs running at the same time.
+     * @throws IOException If the server socket can't be bound.
+     */
+    public IndexServer(FileIndexer fileIndexer, int port, int maxRequests, int maxIndexingJobs) throws IOException {
+        this.fileIndexer = fileIndexer;
+        this.requestPermits = new Semaphore(maxRequests);
+        this.indexingPermits = new Semaphore(maxIndexingJobs);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.httpServer.setExecutor(this.executor);
+        this.httpServer.createContext("/query", exchange -> handle(exchange, "GET", this::handleQuery));
+        this.httpServer.createContext("/index", exchange -> handle(exchange, "POST", this::handleIndex));
+        this.httpServer.createContext("/stats", exchange -> handle(exchange, "GET", this::handleStats));
+        this.httpServer.createContext("/checkpoint", exchange -> handle(exchange, "POST", this::handleCheckpoint));
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        this.httpServer.start();
+    }
+
+    /**
+     * Checkpoints the logged index of the indexer in the background, once its log has grown to a given size
+     * or a given time has passed since the last checkpoint, whichever comes first. An empty log isn't checkpointed.
+     *
+     * @param maxLogBytes    The size of the log that triggers a checkpoint.
+     * @param intervalMillis The longest time between checkpoints.
+     */
+    public void scheduleCheckpoints(long maxLogBytes, long intervalMillis) {
+        if (maxLogBytes < 1 || intervalMillis < 1) {
+            throw new IllegalArgumentException("Checkpoint size and interval must be positive: " + maxLogBytes + ", " + intervalMillis);
+        }
+        if (this.checkpoints != null) {
+            throw new IllegalStateException("Checkpoints are already scheduled.");
+        }
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long pollMillis = Math.min(intervalMillis, MAX_CHECKPOINT_POLL_MILLIS);
+        this.checkpoints = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("checkpoint").daemon().factory());
+        this.checkpoints.scheduleWithFixedDelay(() -> {
+            long size = this.fileIndexer.getLogSize();
+            if (size >= maxLogBytes || (size > 0 && System.nanoTime() - this.lastCheckpoint >= intervalNanos)) {
+                try {
+                    checkpoint();
+                } catch (IOException | RuntimeException e) { // Keeps the schedule running
+                    System.out.println("Error writing a checkpoint: " + e.getMessage());
+                }
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a snapshot of the logged index of the indexer and empties its log.
+     *
+     * @throws IOException If the snapshot can't be written.
+     * @throws UnsupportedOperationException If the index isn't logged.
+     */
+    public void checkpoint() throws IOException {
+        this.fileIndexer.checkpoint();
+        this.lastCheckpoint = System.nanoTime();
+    }
+
+    /**
+     * Stops the server, waiting at most one second for requests in progress to finish,
+     * and for a scheduled checkpoint in progress.
+     */
+    public void stop() {
+        this.httpServer.stop(1);
+        this.executor.shutdown();
+        ScheduledExecutorService checkpoints = this.checkpoints;
+        if (checkpoints != null) {
+            checkpoints.shutdown();
+            try {
+                checkpoints.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return this.httpServer.getAddress().getPort();
+    }
+
+    /**
+     * A response to a request, consisting of an HTTP status code and a body that is written as JSON.
+     */
+    record Response(int status, Object body) {
+    }
+
+    /**
+     * Handles a request to one of the endpoints.
+     */
+    interface Endpoint {
+        Response handle(Map<String, List<String>> parameters);
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(method)) {
+                send(exchange, new Response(405, Map.of("error", "Use " + method + " for this endpoint.")));
+                return;
+            }
+
+            // Reject right away instead of queueing when the server is saturated
+            if (!this.requestPermits.tryAcquire()) {
+                this.rejectedRequests.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, new Response(503, Map.of("error", "Server is busy, try again later.")));
+                return;
+            }
+
+            Response response;
+            try {
+                response = respond(exchange, endpoint);
+            } catch (RuntimeException e) {
+                response = new Response(500, Map.of("error", String.valueOf(e.getMessage())));
+            } finally {
+                this.requestPermits.release();
+            }
+            send(exchange, response);
+        }
+    }
+
+    /**
+     * Parses the parameters of the query string and the body, and passes them to the endpoint.
+     * A body larger than {@link #MAX_BODY_BYTES} is rejected without reading the rest of it.
+     */
+    private Response respond(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            return new Response(413, Map.of("error", "The request body is larger than " + MAX_BODY_BYTES + " bytes."));
+        }
+
+        Map<String, List<String>> parameters;
+        try {
+            parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+            parseParameters(new String(body, StandardCharsets.UTF_8)).forEach((name, values) ->
+                    parameters.computeIfAbsent(name, n -> new ArrayList<>()).addAll(values));
+        } catch (IllegalArgumentException e) {
+            // Thrown by URLDecoder for an incomplete or invalid escape sequence
+            return new Response(400, Map.of("error", "Malformed parameters: " + e.getMessage()));
+        }
+
+        Response response = endpoint.handle(parameters);
+        this.servedRequests.incrementAndGet();
+        return response;
+    }
+
+    private Response handleQuery(Map<String, List<String>> parameters) {
+        List<String> keywords = parameters.getOrDefault("q", List.of());
+        if (keywords.size() != 1 || keywords.getFirst().isBlank()) {
+            return new Response(400, Map.of("error", "Please provide one keyword to search for using the 'q' parameter."));
+        }
+        String keyword = keywords.getFirst().trim().toLowerCase();
+
+        List<String> limits = parameters.getOrDefault("limit", List.of());
+        List<String> cursors = parameters.getOrDefault("cursor", List.of());
+        if (!limits.isEmpty() || !cursors.isEmpty()) {
+            return handleQueryPage(keyword, limits.isEmpty() ? "100" : limits.getFirst(), cursors.isEmpty() ? null : cursors.getFirst());
+        }
+
+        Set<File> files = this.fileIndexer.search(keyword);
+        List<String> paths = files.stream().map(File::getAbsolutePath).sorted().toList();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("keyword", keyword);
+        body.put("count", paths.size());
+        body.put("files", paths);
+        return new Response(200, body);
+    }
+
+    private Response handleQueryPage(String keyword, String limitParameter, String cursor) {
+        SearchPage page;
+        try {
+            page = this.fileIndexer.search(keyword, cursor, Integer.parseInt(limitParameter));
+        } catch (IllegalArgumentException e) {
+            // Also covers a limit that is not a number
+            return new Response(400, Map.of("error", "Invalid limit or cursor: " + e.getMessage()));
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("keyword", keyword);
+        body.put("count", this.fileIndexer.count(keyword));
+        body.put("files", page.files().stream().map(File::getAbsolutePath).toList());
+        body.put("next", page.nextCursor());
+        return new Response(200, body);
+    }
+
+    private Response handleIndex(Map<String, List<String>> parameters) {
+        List<String> paths = parameters.getOrDefault("path", List.of());
+        if (paths.isEmpty()) {
+            return new Response(400, Map.of("error", "Please provide at least one 'path' parameter."));
+        }
+        boolean recursive = Boolean.parseBoolean(parameters.getOrDefault("recursive", List.of("false")).getFirst());
+
+        if (!this.indexingPermits.tryAcquire()) {
+            this.rejectedRequests.incrementAndGet();
+            return new Response(429, Map.of("error", "Too many indexing jobs in progress, try again later."));
+        }
+
+        try {
+            if (this.fileIndexer instanceof SimpleFileIndexer simpleIndexer) {
+                return indexWithPipeline(simpleIndexer, paths, recursive);
+            }
+
+            List<String> failed = new ArrayList<>();
+            List<File> files = new ArrayList<>();
+            for (String path : paths) {
+                List<File> found = FileHandling.getTextFiles(new File(path).getAbsoluteFile(), recursive);
+                if (found == null) {
+                    failed.add(path);
+                    continue;
+                }
+                files.addAll(found);
+            }
+
+            // Files that are already indexed are always updated, there is nobody to ask
+            BatchResult result = this.fileIndexer.indexFiles(FailurePolicy.SKIP_FILE, INDEX_BATCH_SIZE, files.toArray(new File[0]));
+            int indexed = result.committed();
+            result.failed().forEach(file -> failed.add(file.getAbsolutePath()));
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("indexed", indexed);
+            body.put("failed", failed);
+            return new Response(failed.isEmpty() ? 200 : 207, body);
+        } finally {
+            this.indexingPermits.release();
+        }
+    }
+
+    /**
+     * Walks, reads, tokenizes and commits the files in overlapping stages. The pipeline is kept for {@code /stats}.
+     */
+    private Response indexWithPipeline(SimpleFileIndexer indexer, List<String> paths, boolean recursive) {
+        IndexingPipeline pipeline = new IndexingPipeline(indexer);
+        this.lastPipeline = pipeline;
+        BatchResult result;
+        try {
+            result = pipeline.run(paths.stream().map(path -> new File(path).getAbsoluteFile()).toList(), recursive);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(503, Map.of("error", "Indexing was interrupted."));
+        }
+
+        List<String> failed = new ArrayList<>();
+        result.failed().forEach(file -> failed.add(file.getAbsolutePath()));
+        result.rolledBack().forEach(file -> failed.add(file.getAbsolutePath()));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("indexed", result.committed());
+        body.put("failed", failed);
+        return new Response(failed.isEmpty() ? 200 : 207, body);
+    }
+
+    private Response handleStats(Map<String, List<String>> ignored) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("indexedFiles", this.fileIndexer.getIndexedFileCount());
+        body.put("servedRequests", this.servedRequests.get());
+        body.put("rejectedRequests", this.rejectedRequests.get());
+        body.put("availableRequestPermits", this.requestPermits.availablePermits());
+        body.put("availableIndexingPermits", this.indexingPermits.availablePermits());
+
+        // The stages of the most recent indexing job, to find out which stage limits indexing
+        IndexingPipeline pipeline = this.lastPipeline;
+        if (pipeline != null) {
+            List<Map<String, Object>> stages = new ArrayList<>();
+            for (IndexingPipeline.StageStats stage : pipeline.stats()) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("stage", stage.name());
+                stats.put("workers", stage.workers());
+                stats.put("queued", stage.queued());
+                stats.put("queueCapacity", stage.queueCapacity());
+                stats.put("processed", stage.processed());
+                stats.put("throughput", Math.round(stage.throughput() * 10) / 10.0);
+                stats.put("utilization", Math.round(stage.utilization() * 100) / 100.0);
+                stages.add(stats);
+            }
+            body.put("indexingStages", stages);
+        }
+        return new Response(200, body);
+    }
+
+    private Response handleCheckpoint(Map<String, List<String>> ignored) {
+        long logBytes = this.fileIndexer.getLogSize();
+        try {
+            checkpoint();
+        } catch (UnsupportedOperationException e) {
+            return new Response(400, Map.of("error", "The index has no write-ahead log to checkpoint."));
+        } catch (IOException e) {
+            return new Response(500, Map.of("error", "The checkpoint couldn't be written: " + e.getMessage()));
+        }
+        return new Response(200, Map.of("checkpointedLogBytes", logBytes));
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Parses a URL query string into a map of parameter names to their values.
+     *
+     * @param query The raw query string, or {@code null}.
+     * @return The parameters. A parameter may occur several times.
+     */
+    static Map<String, List<String>> parseParameters(String query) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.computeIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), n -> new ArrayList<>())
+                    .add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Starts a server for a new {@link SimpleFileIndexer}, which runs until the process is stopped.
+     * <p>
+     * Supported options: {@code --port <port>}, {@code --max-requests <n>}, {@code --max-indexing-jobs <n>}
+     * {@code --index <file>}, which serves a read-only index file written with {@link FileIndexer#writeIndex}
+     * instead of starting with an empty index, {@code --dedup}, which tokenizes byte-identical files only once
+     * (see {@link SimpleFileIndexer#setDeduplication(boolean)}), {@code --wal <directory>}, which keeps a
+     * {@link LoggedHashMapIndex} in the directory, recovering it after a crash, with {@code --durability batch|interval|none},
+     * checkpointed once the log reaches {@code --checkpoint-bytes <n>} or after {@code --checkpoint-seconds <n>},
+     * and at shutdown, and {@code --segment-files <n>}, which keeps the files in a {@link SegmentedIndex} with segments of that many files
+     * and Bloom filters with the false positive rate of {@code --false-positive-rate <rate>}.
+     *
+     * @param args The command line options.
+     * @throws IOException If the server can't be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int maxRequests = DEFAULT_MAX_REQUESTS;
+        int maxIndexingJobs = DEFAULT_MAX_INDEXING_JOBS;
+        String indexFile = null;
+        boolean deduplicate = false;
+        String walDirectory = null;
+        WriteAheadLog.Durability durability = WriteAheadLog.Durability.BATCH;
+        long checkpointBytes = DEFAULT_CHECKPOINT_BYTES;
+        long checkpointMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+        int segmentFiles = 0;
+        double falsePositiveRate = SegmentedIndex.DEFAULT_FALSE_POSITIVE_RATE;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--max-requests" -> maxRequests = Integer.parseInt(args[++i]);
+                case "--max-indexing-jobs" -> maxIndexingJobs = Integer.parseInt(args[++i]);
+                case "--index" -> indexFile = args[++i];
+                case "--dedup" -> deduplicate = true;
+                case "--wal" -> walDirectory = args[++i];
+                case "--durability" -> durability = WriteAheadLog.Durability.valueOf(args[++i].toUpperCase());
+                case "--checkpoint-bytes" -> checkpointBytes = Long.parseLong(args[++i]);
+                case "--checkpoint-seconds" -> checkpointMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(args[++i]));
+                case "--segment-files" -> segmentFiles = Integer.parseInt(args[++i]);
+                case "--false-positive-rate" -> falsePositiveRate = Double.parseDouble(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if ((indexFile != null ? 1 : 0) + (walDirectory != null ? 1 : 0) + (segmentFiles > 0 ? 1 : 0) > 1) {
+            throw new IllegalArgumentException("--index, --wal and --segment-files can't be combined.");
+        }
+
+        SimpleFileIndexer fileIndexer;
+        LoggedHashMapIndex loggedIndex = null;
+        if (walDirectory != null) {
+            loggedIndex = LoggedHashMapIndex.open(Path.of(walDirectory), durability, WriteAheadLog.DEFAULT_INTERVAL_MILLIS);
+            fileIndexer = new SimpleFileIndexer(loggedIndex);
+            System.out.printf("Recovered %d files from %s%n", fileIndexer.getIndexedFileCount(), walDirectory);
+        } else if (segmentFiles > 0) {
+            fileIndexer = new SimpleFileIndexer(new SegmentedIndex(segmentFiles, falsePositiveRate));
+        } else {
+            fileIndexer = indexFile == null
+                    ? new SimpleFileIndexer()
+                    : new SimpleFileIndexer(MappedIndex.open(Path.of(indexFile)));
+        }
+        fileIndexer.setDeduplication(deduplicate);
+        IndexServer server = new IndexServer(fileIndexer, port, maxRequests, maxIndexingJobs);
+        if (loggedIndex != null) {
+            server.scheduleCheckpoints(checkpointBytes, checkpointMillis);
+        }
+        LoggedHashMapIndex logged = loggedIndex; // Effectively final for the shutdown hook
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (logged != null && fileIndexer.getLogSize() > 0) {
+                try {
+                    server.checkpoint(); // The next start only loads the snapshot
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Error writing a checkpoint: " + e.getMessage());
+                }
+            }
+            if (logged != null) {
+                try {
+                    logged.close(); // Forces the remaining changes to the disk
+                } catch (IOException e) {
+                    System.out.println("Error closing the write-ahead log: " + e.getMessage());
+                }
+            }
+        }));
+        server.start();
+        System.out.println("Listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+    }
+}
@@ -0,0 +1,133 @@
+package server;
+
+import util.LatencyRecorder;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load generator for the {@link IndexServer}.
+ *
+ * <p>It runs a number of clients, each on its own virtual thread, that send queries for random words
+ * from a list as fast as the server answers them. At the end it reports the throughput,
+ * the latency percentiles of successful queries and how many requests were rejected by the server.</p>
+ *
+ * <p>Supported options: {@code --url <server url>}, {@code --clients <n>}, {@code --seconds <n>}
+ * and {@code --words <word1,word2,...>}.</p>
+ */
+public class LoadGenerator {
+    private final URI baseUri;
+    private final List<String> words;
+    private final HttpClient client;
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final Map<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates a load generator for a server.
+     *
+     * @param baseUri The URI of the server, for example {@code http://127.0.0.1:8080}.
+     * @param words   The words to query.
+     */
+    public LoadGenerator(URI baseUri, List<String> words) {
+        this.baseUri = baseUri;
+        this.words = words;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Sends queries from the given number of clients until the duration has passed.
+     *
+     * @param clients  The number of concurrent clients.
+     * @param duration How long to generate load for.
+     * @throws InterruptedException If interrupted while waiting for the clients.
+     */
+    public void run(int clients, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        sendQuery();
+                    }
+                });
+            }
+        }
+    }
+
+    private void sendQuery() {
+        String word = this.words.get(ThreadLocalRandom.current().nextInt(this.words.size()));
+        HttpRequest request = HttpRequest.newBuilder(
+                        this.baseUri.resolve("/query?q=" + URLEncoder.encode(word, StandardCharsets.UTF_8)))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = this.client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                this.latencies.record(System.nanoTime() - start);
+            } else if (response.statusCode() == 503) {
+                // Back off briefly when the server applies backpressure
+                Thread.sleep(1);
+            }
+            this.statusCounts.computeIfAbsent(response.statusCode(), s -> new AtomicLong()).incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            this.failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Builds a report of the load test.
+     *
+     * @param duration The duration the load was generated for.
+     * @return A human-readable report.
+     */
+    public String report(Duration duration) {
+        return String.format("Successful queries: %d (%.1f/s)%nLatency: %s%nStatus codes: %s%nFailed requests: %d",
+                this.latencies.count(), this.latencies.count() / (duration.toMillis() / 1000.0),
+                this.latencies.summary(), this.statusCounts, this.failures.get());
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        URI uri = URI.create("http://127.0.0.1:" + IndexServer.DEFAULT_PORT);
+        int clients = 64;
+        int seconds = 10;
+        List<String> words = List.of("the", "city", "poland", "voivodeship", "usa", "potatoes");
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> uri = URI.create(args[++i]);
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--words" -> words = List.of(args[++i].split(","));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        LoadGenerator generator = new LoadGenerator(uri, words);
+        Duration duration = Duration.ofSeconds(seconds);
+        System.out.printf("Sending queries to %s from %d clients for %d seconds...%n", uri, clients, seconds);
+        generator.run(clients, duration);
+        System.out.println(generator.report(duration));
+    }
+}
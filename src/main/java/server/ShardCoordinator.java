@@ -0,0 +1,382 @@
+package server;
+
+import util.FileHandling;
+import util.Json;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates several {@link IndexServer} worker processes that each hold a part (a shard) of the index,
+ * so the size of the corpus isn't limited by the heap of a single JVM.
+ *
+ * <p>Files are assigned to shards by the hash of their path, so a file always ends up on the same shard
+ * and updating it replaces its old version. Queries are sent to all shards at the same time (scatter),
+ * and the results are merged (gather). Every shard has to answer within the shard timeout;
+ * shards that are too slow or unreachable are left out and the result is marked as partial.
+ * Indexing has a separate, longer timeout; the paths of a shard that doesn't finish in time are reported as failed.</p>
+ *
+ * <p>Workers can either be existing servers, or local JVMs started with {@link #launch(int, Duration)}.</p>
+ */
+public class ShardCoordinator implements Closeable {
+    public static final Duration DEFAULT_INDEX_TIMEOUT = Duration.ofMinutes(10);
+
+    private final List<URI> shards;
+    private final Duration shardTimeout;
+    private final Duration indexTimeout;
+    private final List<Process> processes; // Worker processes started by this coordinator
+    private final HttpClient client;
+
+    /**
+     * Creates a coordinator for already running workers.
+     *
+     * @param shards       The base URIs of the workers, for example {@code http://127.0.0.1:8080}.
+     * @param shardTimeout How long to wait for each shard to answer a query.
+     */
+    public ShardCoordinator(List<URI> shards, Duration shardTimeout) {
+        this(shards, shardTimeout, DEFAULT_INDEX_TIMEOUT);
+    }
+
+    /**
+     * Creates a coordinator for already running workers.
+     *
+     * @param shards       The base URIs of the workers, for example {@code http://127.0.0.1:8080}.
+     * @param shardTimeout How long to wait for each shard to answer a query.
+     * @param indexTimeout How long to wait for each shard to index its part of the files.
+     */
+    public ShardCoordinator(List<URI> shards, Duration shardTimeout, Duration indexTimeout) {
+        this(shards, shardTimeout, indexTimeout, List.of());
+    }
+
+    private ShardCoordinator(List<URI> shards, Duration shardTimeout, Duration indexTimeout, List<Process> processes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+        this.shards = List.copyOf(shards);
+        this.shardTimeout = shardTimeout;
+        this.indexTimeout = indexTimeout;
+        this.processes = List.copyOf(processes);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(shardTimeout)
+                .build();
+    }
+
+    /**
+     * Starts the given number of worker JVMs on the local machine and creates a coordinator for them.
+     * The workers use the same Java executable and class path as the current process.
+     * They are stopped when the coordinator is closed.
+     *
+     * @param workers      The number of worker processes to start.
+     * @param shardTimeout How long to wait for each shard to answer a query.
+     * @return A coordinator for the started workers.
+     * @throws IOException If a worker can't be started or doesn't become ready.
+     */
+    public static ShardCoordinator launch(int workers, Duration shardTimeout) throws IOException {
+        return launch(workers, shardTimeout, DEFAULT_INDEX_TIMEOUT);
+    }
+
+    /**
+     * Starts the given number of worker JVMs on the local machine and creates a coordinator for them.
+     *
+     * @param workers      The number of worker processes to start.
+     * @param shardTimeout How long to wait for each shard to answer a query.
+     * @param indexTimeout How long to wait for each shard to index its part of the files.
+     * @return A coordinator for the started workers.
+     * @throws IOException If a worker can't be started or doesn't become ready.
+     */
+    public static ShardCoordinator launch(int workers, Duration shardTimeout, Duration indexTimeout) throws IOException {
+        String java = ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        String classPath = System.getProperty("java.class.path");
+
+        List<URI> shards = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                int port = findFreePort();
+                Process process = new ProcessBuilder(java, "-cp", classPath, IndexServer.class.getName(), "--port", String.valueOf(port))
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                processes.add(process);
+                shards.add(URI.create("http://127.0.0.1:" + port));
+            }
+
+            ShardCoordinator coordinator = new ShardCoordinator(shards, shardTimeout, indexTimeout, processes);
+            coordinator.awaitReady(Duration.ofSeconds(30));
+            return coordinator;
+        } catch (IOException | RuntimeException e) {
+            processes.forEach(Process::destroyForcibly);
+            throw e;
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void awaitReady(Duration timeout) throws IOException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (URI shard : this.shards) {
+            while (true) {
+                try {
+                    HttpRequest request = HttpRequest.newBuilder(shard.resolve("/stats")).GET().build();
+                    if (this.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    // The worker isn't listening yet
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for workers", e);
+                }
+
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Worker " + shard + " didn't become ready in time.");
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for workers", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The base URIs of all shards.
+     */
+    public List<URI> getShards() {
+        return this.shards;
+    }
+
+    /**
+     * Returns the shard a file is assigned to.
+     *
+     * @param file The file.
+     * @return The index of the shard in {@link #getShards()}.
+     */
+    int shardOf(File file) {
+        return Math.floorMod(file.getAbsolutePath().hashCode(), this.shards.size());
+    }
+
+    /**
+     * Indexes the text files in the given files and directories, splitting them across the shards.
+     * All shards index their part at the same time.
+     * The paths of a shard that fails or doesn't answer within the index timeout are reported as failed.
+     *
+     * @param roots     The files and directories to index.
+     * @param recursive Whether to search the directories recursively.
+     * @return The number of indexed files and the paths that could not be indexed.
+     */
+    public IndexResult index(List<File> roots, boolean recursive) {
+        List<List<String>> assignments = new ArrayList<>();
+        for (int i = 0; i < this.shards.size(); i++) {
+            assignments.add(new ArrayList<>());
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (File root : roots) {
+            List<File> files = FileHandling.getTextFiles(root.getAbsoluteFile(), recursive);
+            if (files == null) {
+                failed.add(root.getAbsolutePath());
+                continue;
+            }
+            for (File file : files) {
+                assignments.get(shardOf(file)).add(file.getAbsolutePath());
+            }
+        }
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < this.shards.size(); i++) {
+            List<String> paths = assignments.get(i);
+            if (paths.isEmpty()) {
+                responses.add(null);
+                continue;
+            }
+
+            // The paths are sent in the body, as there may be too many for a URL
+            StringBuilder body = new StringBuilder();
+            for (String path : paths) {
+                body.append(body.isEmpty() ? "" : "&").append("path=").append(URLEncoder.encode(path, StandardCharsets.UTF_8));
+            }
+            HttpRequest request = HttpRequest.newBuilder(this.shards.get(i).resolve("/index"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+            responses.add(this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .orTimeout(this.indexTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        int indexed = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            if (responses.get(i) == null) {
+                continue;
+            }
+            try {
+                HttpResponse<String> response = responses.get(i).join();
+                Map<?, ?> json = (Map<?, ?>) Json.parse(response.body());
+                if (json.get("indexed") instanceof Long count) {
+                    indexed += count.intValue();
+                }
+                if (json.get("failed") instanceof List<?> paths) {
+                    paths.forEach(path -> failed.add(String.valueOf(path)));
+                } else if (response.statusCode() != 200) {
+                    failed.addAll(assignments.get(i));
+                }
+            } catch (RuntimeException e) {
+                // The whole shard failed or timed out
+                failed.addAll(assignments.get(i));
+            }
+        }
+
+        return new IndexResult(indexed, failed);
+    }
+
+    /**
+     * Searches all shards for files containing a keyword and merges their results.
+     * Shards that don't answer within the shard timeout are skipped.
+     *
+     * @param keyword The keyword to search for.
+     * @return The merged files, and whether the result is partial because some shards didn't answer.
+     */
+    public QueryResult search(String keyword) {
+        String query = "/query?q=" + URLEncoder.encode(keyword, StandardCharsets.UTF_8);
+
+        // Scatter the query to all shards at once
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (URI shard : this.shards) {
+            HttpRequest request = HttpRequest.newBuilder(shard.resolve(query))
+                    .timeout(this.shardTimeout)
+                    .GET()
+                    .build();
+            responses.add(this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .orTimeout(this.shardTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        // Gather the answers
+        Set<File> files = new HashSet<>();
+        List<URI> failedShards = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++) {
+            try {
+                HttpResponse<String> response = responses.get(i).join();
+                if (response.statusCode() != 200) {
+                    failedShards.add(this.shards.get(i));
+                    continue;
+                }
+                Map<?, ?> json = (Map<?, ?>) Json.parse(response.body());
+                for (Object path : (List<?>) json.get("files")) {
+                    files.add(new File(String.valueOf(path)));
+                }
+            } catch (RuntimeException e) {
+                // Timed out, unreachable or an invalid answer
+                failedShards.add(this.shards.get(i));
+            }
+        }
+
+        return new QueryResult(files, !failedShards.isEmpty(), failedShards);
+    }
+
+    /**
+     * Stops the worker processes started by this coordinator.
+     */
+    @Override
+    public void close() {
+        for (Process process : this.processes) {
+            process.destroy();
+        }
+        for (Process process : this.processes) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The result of indexing files across the shards.
+     *
+     * @param indexed The number of files that were indexed.
+     * @param failed  The paths that could not be indexed.
+     */
+    public record IndexResult(int indexed, List<String> failed) {
+    }
+
+    /**
+     * The merged result of a query across the shards.
+     *
+     * @param files        The files containing the keyword, from all shards that answered.
+     * @param partial      Whether some shards didn't answer, so files may be missing.
+     * @param failedShards The shards that didn't answer in time or failed.
+     */
+    public record QueryResult(Set<File> files, boolean partial, List<URI> failedShards) {
+    }
+
+    /**
+     * Starts local workers, indexes the given paths across them and then answers queries read from the standard input,
+     * one keyword per line.
+     * <p>
+     * Supported options: {@code --workers <n>}, {@code --timeout-ms <n>}, {@code --index-timeout-ms <n>}
+     * and {@code -r} for recursive indexing,
+     * followed by the paths to index.
+     *
+     * @param args The command line options.
+     * @throws IOException If the workers can't be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int workers = 2;
+        long timeoutMillis = 1000;
+        long indexTimeoutMillis = DEFAULT_INDEX_TIMEOUT.toMillis();
+        boolean recursive = false;
+        List<File> roots = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--timeout-ms" -> timeoutMillis = Long.parseLong(args[++i]);
+                case "--index-timeout-ms" -> indexTimeoutMillis = Long.parseLong(args[++i]);
+                case "-r", "--recursive" -> recursive = true;
+                default -> roots.add(new File(args[i]));
+            }
+        }
+
+        try (ShardCoordinator coordinator = launch(workers, Duration.ofMillis(timeoutMillis), Duration.ofMillis(indexTimeoutMillis))) {
+            System.out.println("Started workers: " + coordinator.getShards());
+            IndexResult result = coordinator.index(roots, recursive);
+            System.out.printf("Indexed %d files, %d failed%n", result.indexed(), result.failed().size());
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                QueryResult queryResult = coordinator.search(line.trim().toLowerCase());
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("files", queryResult.files().stream().map(File::getAbsolutePath).sorted().toList());
+                json.put("partial", queryResult.partial());
+                json.put("failedShards", queryResult.failedShards());
+                System.out.println(Json.write(json));
+            }
+        }
+    }
+}
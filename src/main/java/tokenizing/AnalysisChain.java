@@ -0,0 +1,144 @@
+package tokenizing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Combines a tokenizer with a sequence of {@link TokenFilter}s, forming a single tokenizer.
+ *
+ * <p>Every token produced by the tokenizer is passed through all filters in order, and only the tokens
+ * that survive every filter reach the consumer. This happens in a single pass over the token stream,
+ * without intermediate lists between the steps.</p>
+ *
+ * <p>Filters that {@link TokenFilter#appliesToDistinctTerms() apply to distinct terms} are skipped while tokenizing.
+ * They are applied by {@link #filterDistinct(TokenSet)}, after the other filters, once the distinct terms of a document are known.</p>
+ *
+ * <p>A typical chain for English text is created by {@link #english(DocumentFrequencyFilter)}.</p>
+ *
+ * <p>The chain can tokenize raw UTF-8 bytes. If its tokenizer is a {@link ByteTokenizer}, the bytes are
+ * tokenized directly, otherwise they are decoded first.</p>
+ */
+public class AnalysisChain implements ByteTokenizer {
+    private final Tokenizer tokenizer;
+    private final TokenFilter[] filters;
+
+    /**
+     * Creates a chain.
+     * @param tokenizer The tokenizer splitting the text into tokens.
+     * @param filters The filters to apply to every token, in order.
+     */
+    public AnalysisChain(Tokenizer tokenizer, TokenFilter... filters) {
+        this.tokenizer = tokenizer;
+        this.filters = filters.clone();
+    }
+
+    /**
+     * Creates a chain for English text: whitespace tokenization, punctuation stripping,
+     * stopword removal and light stemming, optionally followed by a document frequency filter.
+     * @param documentFrequencyFilter The filter removing very frequent terms, or {@code null} to keep them.
+     * @return The chain.
+     */
+    public static AnalysisChain english(DocumentFrequencyFilter documentFrequencyFilter) {
+        List<TokenFilter> filters = new ArrayList<>(List.of(new PunctuationFilter(), new StopwordFilter(), new LightStemFilter()));
+        if (documentFrequencyFilter != null) {
+            filters.add(documentFrequencyFilter);
+        }
+        return new AnalysisChain(new WhitespaceTokenizer(), filters.toArray(new TokenFilter[0]));
+    }
+
+    @Override
+    public List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens::add);
+        return tokens;
+    }
+
+    @Override
+    public void tokenize(String text, Consumer<String> sink) {
+        this.tokenizer.tokenize(text, token -> {
+            String filtered = apply(token, false);
+            if (filtered != null) {
+                sink.accept(filtered);
+            }
+        });
+    }
+
+    @Override
+    public void tokenize(byte[] data, int offset, int length, Consumer<String> sink) {
+        Consumer<String> filteringSink = token -> {
+            String filtered = apply(token, false);
+            if (filtered != null) {
+                sink.accept(filtered);
+            }
+        };
+
+        if (this.tokenizer instanceof ByteTokenizer byteTokenizer) {
+            byteTokenizer.tokenize(data, offset, length, filteringSink);
+        } else {
+            // Byte tokenizers must produce lowercase tokens, which other tokenizers don't guarantee
+            this.tokenizer.tokenize(new String(data, offset, length, StandardCharsets.UTF_8),
+                    token -> filteringSink.accept(token.toLowerCase()));
+        }
+    }
+
+    /**
+     * Normalizes a search keyword with the tokenizer and all filters that apply to queries.
+     * @param keyword The keyword to normalize.
+     * @return The normalized keyword, or {@code null} if it would never be indexed (for example, a stopword).
+     */
+    @Override
+    public String normalize(String keyword) {
+        String normalized = this.tokenizer.normalize(keyword);
+        return normalized == null ? null : apply(normalized, true);
+    }
+
+    /**
+     * Applies the filters that work on the distinct terms of a document, in order.
+     * @param terms The distinct terms of a document, tokenized by this chain.
+     * @return The filtered terms, or the same set if the chain has no such filters.
+     */
+    public TokenSet filterDistinct(TokenSet terms) {
+        for (TokenFilter filter : this.filters) {
+            if (filter.appliesToDistinctTerms()) {
+                terms = filter.filter(terms);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Connects the document frequency filters of the chain to the statistics of an index,
+     * for example when the indexer using the chain is replaced.
+     * @param statistics The statistics of the index the chain tokenizes documents for.
+     */
+    public void setStatistics(TermStatistics statistics) {
+        for (TokenFilter filter : this.filters) {
+            if (filter instanceof DocumentFrequencyFilter frequencyFilter) {
+                frequencyFilter.setStatistics(statistics);
+            }
+        }
+    }
+
+    private String apply(String token, boolean query) {
+        for (TokenFilter filter : this.filters) {
+            if (query ? !filter.appliesToQueries() : filter.appliesToDistinctTerms()) {
+                continue;
+            }
+            token = filter.filter(token);
+            if (token == null) {
+                return null;
+            }
+        }
+        return token;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisChain{" +
+               "tokenizer=" + tokenizer +
+               ", filters=" + filters.length +
+               '}';
+    }
+}
@@ -0,0 +1,120 @@
+package tokenizing;
+
+import java.util.Arrays;
+
+/**
+ * A hash table that maps the bytes of a token to its String, so every distinct token is only decoded once.
+ *
+ * <p>The keys are stored back to back in a single byte array, and the table itself consists of
+ * plain int arrays, so looking up a token that was seen before doesn't allocate anything.
+ * Once the table holds the maximum number of terms, it is cleared and starts over,
+ * which bounds its memory use for very large vocabularies.</p>
+ *
+ * <p>The table is not thread-safe.</p>
+ */
+class ByteTermTable {
+    private final int maxTerms;
+    private int[] offsets; // Offset of the key in the pool + 1 per slot, 0 marks an empty slot
+    private int[] lengths;
+    private int[] hashes;
+    private String[] values;
+    private byte[] pool = new byte[1 << 12];
+    private int poolSize;
+    private int size;
+
+    ByteTermTable(int maxTerms) {
+        this.maxTerms = maxTerms;
+        allocate(1 << 10);
+    }
+
+    private void allocate(int capacity) {
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.values = new String[capacity];
+    }
+
+    /**
+     * Looks up the String of a token.
+     * @param key The buffer holding the key bytes.
+     * @param from The position of the first key byte.
+     * @param length The number of key bytes.
+     * @param hash The hash of the key bytes, computed by the caller while scanning them.
+     * @return The String stored for the key, or {@code null} if the key hasn't been seen before.
+     */
+    String get(byte[] key, int from, int length, int hash) {
+        int mask = this.offsets.length - 1;
+        for (int slot = hash & mask; this.offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (this.hashes[slot] == hash && this.lengths[slot] == length) {
+                int offset = this.offsets[slot] - 1;
+                if (Arrays.equals(this.pool, offset, offset + length, key, from, from + length)) {
+                    return this.values[slot];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores the String of a token that isn't present in the table yet.
+     */
+    void put(byte[] key, int from, int length, int hash, String value) {
+        if (this.size >= this.maxTerms) {
+            clear();
+        }
+        if ((this.size + 1) * 2 > this.offsets.length) {
+            grow();
+        }
+
+        if (this.poolSize + length > this.pool.length) {
+            this.pool = Arrays.copyOf(this.pool, Math.max(this.pool.length * 2, this.poolSize + length));
+        }
+        System.arraycopy(key, from, this.pool, this.poolSize, length);
+
+        insert(this.poolSize, length, hash, value);
+        this.poolSize += length;
+        this.size++;
+    }
+
+    private void insert(int offset, int length, int hash, String value) {
+        int mask = this.offsets.length - 1;
+        int slot = hash & mask;
+        while (this.offsets[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.offsets[slot] = offset + 1;
+        this.lengths[slot] = length;
+        this.hashes[slot] = hash;
+        this.values[slot] = value;
+    }
+
+    private void grow() {
+        int[] oldOffsets = this.offsets;
+        int[] oldLengths = this.lengths;
+        int[] oldHashes = this.hashes;
+        String[] oldValues = this.values;
+        allocate(oldOffsets.length * 2);
+        for (int slot = 0; slot < oldOffsets.length; slot++) {
+            if (oldOffsets[slot] != 0) {
+                insert(oldOffsets[slot] - 1, oldLengths[slot], oldHashes[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return The number of terms in the table.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all terms.
+     */
+    void clear() {
+        allocate(1 << 10);
+        this.pool = new byte[1 << 12];
+        this.poolSize = 0;
+        this.size = 0;
+    }
+}
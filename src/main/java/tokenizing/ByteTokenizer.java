@@ -0,0 +1,19 @@
+package tokenizing;
+
+import java.util.function.Consumer;
+
+/**
+ * A tokenizer that can work directly on the raw UTF-8 bytes of a file,
+ * so the file doesn't have to be decoded into a String first.
+ * The tokens it produces are already lowercase.
+ */
+public interface ByteTokenizer extends Tokenizer {
+    /**
+     * Tokenizes UTF-8 encoded text, passing every token to a consumer as soon as it is found.
+     * @param data The buffer holding the UTF-8 encoded text.
+     * @param offset The position of the first byte of the text in the buffer.
+     * @param length The number of bytes of the text.
+     * @param sink The consumer receiving the tokens, in order.
+     */
+    void tokenize(byte[] data, int offset, int length, Consumer<String> sink);
+}
@@ -0,0 +1,228 @@
+package tokenizing;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tokenizes a single large file on several threads.
+ *
+ * <p>The file is split into chunks of roughly equal size. Every chunk ends at a whitespace byte,
+ * so no token is cut in half, and since whitespace is ASCII, no UTF-8 character is cut either.
+ * The chunks are read with positional reads on a shared {@link FileChannel} and tokenized in parallel.
+ * Their distinct tokens are merged in file order, so the result is identical to tokenizing the whole file at once,
+ * including the order in which the tokens were first seen.</p>
+ *
+ * <p>Streams that can't be read at arbitrary positions, such as entries of compressed archives,
+ * are split into chunks the same way while they are read sequentially.</p>
+ *
+ * <p>Only a bounded number of chunks is read ahead of the merge, so the memory used doesn't depend on the size of the file.
+ * This requires that the tokenizer never produces tokens spanning whitespace, which holds for all tokenizers in this package.</p>
+ */
+public class ChunkedFileTokenizer {
+    static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+    private static final int ALIGNMENT_WINDOW = 4096;
+
+    private final Tokenizer tokenizer;
+    private final int chunkSize;
+    private final Executor executor;
+    private final int maxPendingChunks;
+
+    /**
+     * Creates a chunked tokenizer using the default chunk size and the common fork/join pool.
+     *
+     * @param tokenizer The tokenizer used for every chunk.
+     */
+    public ChunkedFileTokenizer(Tokenizer tokenizer) {
+        this(tokenizer, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Creates a chunked tokenizer.
+     *
+     * @param tokenizer   The tokenizer used for every chunk. Tokens of byte tokenizers are expected to be lowercase already.
+     * @param chunkSize   The approximate size of a chunk in bytes.
+     * @param executor    The executor the chunks are tokenized on.
+     * @param parallelism The number of chunks that may be tokenized at the same time.
+     */
+    public ChunkedFileTokenizer(Tokenizer tokenizer, int chunkSize, Executor executor, int parallelism) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.tokenizer = tokenizer;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+        // Read a little ahead, so workers don't wait while the chunks are merged
+        this.maxPendingChunks = 2 * Math.max(1, parallelism);
+    }
+
+    /**
+     * Tokenizes a file in parallel chunks.
+     *
+     * @param file The file to tokenize.
+     * @return The distinct lowercase tokens of the file, in the order they first appear.
+     * @throws IOException If the file can't be read.
+     */
+    public TokenSet tokenize(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            TokenSet terms = new TokenSet((int) Math.min(size / 32, 1 << 20));
+            ArrayDeque<CompletableFuture<TokenSet>> pending = new ArrayDeque<>();
+
+            try {
+                long start = 0;
+                while (start < size) {
+                    long end = alignedEnd(channel, start, size);
+                    long chunkStart = start;
+                    pending.add(CompletableFuture.supplyAsync(() -> tokenizeChunk(channel, chunkStart, end), this.executor));
+                    if (pending.size() >= this.maxPendingChunks) {
+                        mergeInto(terms, pending.poll());
+                    }
+                    start = end;
+                }
+                while (!pending.isEmpty()) {
+                    mergeInto(terms, pending.poll());
+                }
+                return terms;
+            } finally {
+                // Don't close the channel while chunks that are no longer needed are still being read
+                for (CompletableFuture<TokenSet> chunk : pending) {
+                    chunk.exceptionally(e -> null).join();
+                }
+            }
+        }
+    }
+
+    /**
+     * Tokenizes a stream, reading it sequentially in chunks that end at a whitespace byte.
+     * A stream that fits in a single chunk is tokenized on the calling thread.
+     *
+     * @param in The stream to tokenize. It is not closed.
+     * @return The distinct lowercase tokens of the stream, in the order they first appear.
+     * @throws IOException If the stream can't be read.
+     */
+    public TokenSet tokenize(InputStream in) throws IOException {
+        byte[] buffer = new byte[Math.min(this.chunkSize, 1 << 16)];
+        int length = in.readNBytes(buffer, 0, buffer.length);
+        if (length < buffer.length) {
+            return tokenizeBytes(Arrays.copyOf(buffer, length));
+        }
+        buffer = Arrays.copyOf(buffer, this.chunkSize);
+
+        TokenSet terms = new TokenSet(this.chunkSize / 32);
+        ArrayDeque<CompletableFuture<TokenSet>> pending = new ArrayDeque<>();
+        while (true) {
+            length += in.readNBytes(buffer, length, buffer.length - length);
+            boolean end = length < buffer.length; // Only the end of the stream leaves the buffer partly filled
+
+            // Cut the chunk after the last whitespace byte, and keep the rest for the next chunk
+            int split = length;
+            if (!end) {
+                while (split > 0 && !Utf8ByteTokenizer.isWhitespace(buffer[split - 1])) {
+                    split--;
+                }
+                if (split == 0) {
+                    // A single token fills the whole buffer
+                    if (buffer.length > Integer.MAX_VALUE / 2) {
+                        throw new IOException("Token is too long to be indexed.");
+                    }
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+            }
+
+            byte[] chunk = Arrays.copyOf(buffer, split);
+            pending.add(CompletableFuture.supplyAsync(() -> tokenizeBytes(chunk), this.executor));
+            if (pending.size() >= this.maxPendingChunks) {
+                mergeInto(terms, pending.poll());
+            }
+            System.arraycopy(buffer, split, buffer, 0, length - split);
+            length -= split;
+            if (end) {
+                break;
+            }
+        }
+        while (!pending.isEmpty()) {
+            mergeInto(terms, pending.poll());
+        }
+        return terms;
+    }
+
+    /**
+     * Finds the end of the chunk starting at the given position: the first whitespace byte after the nominal chunk size,
+     * or the end of the file.
+     */
+    private long alignedEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = start + this.chunkSize;
+        ByteBuffer window = ByteBuffer.allocate(ALIGNMENT_WINDOW);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (Utf8ByteTokenizer.isWhitespace(window.get(i))) {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private TokenSet tokenizeChunk(FileChannel channel, long start, long end) {
+        if (end - start > Integer.MAX_VALUE - 8) {
+            throw new UncheckedIOException(new IOException("Token at position " + start + " is too long to be indexed."));
+        }
+
+        byte[] chunk = new byte[(int) (end - start)];
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("File was truncated while reading.");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return tokenizeBytes(chunk);
+    }
+
+    private TokenSet tokenizeBytes(byte[] chunk) {
+        TokenSet terms = new TokenSet(chunk.length / 32);
+        if (this.tokenizer instanceof ByteTokenizer byteTokenizer) {
+            byteTokenizer.tokenize(chunk, 0, chunk.length, terms::add);
+        } else {
+            this.tokenizer.tokenize(new String(chunk, StandardCharsets.UTF_8), token -> terms.add(token.toLowerCase()));
+        }
+        return terms;
+    }
+
+    private static void mergeInto(TokenSet terms, CompletableFuture<TokenSet> chunk) throws IOException {
+        try {
+            for (String token : chunk.join()) {
+                terms.add(token);
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+}
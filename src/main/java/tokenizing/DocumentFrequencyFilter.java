@@ -0,0 +1,94 @@
+package tokenizing;
+
+/**
+ * Removes terms that already appear in too many documents of an index.
+ *
+ * <p>Terms that appear in nearly every document produce the longest postings lists,
+ * while being useless for finding a specific document. This filter decides dynamically, based on
+ * the current state of the index: once a term appears in more than the given fraction of all documents,
+ * it is no longer added for new documents. The documents indexed before the term reached the threshold keep it.</p>
+ *
+ * <p>Until the index contains a minimum number of documents, all terms are kept,
+ * as the document frequencies of a small index say little about the corpus.</p>
+ *
+ * <p>In an {@link AnalysisChain}, the filter is applied once to the distinct terms of every document,
+ * so the statistics are looked up once per term rather than once per occurrence.</p>
+ *
+ * <p>The filter is not applied to search keywords.</p>
+ */
+public class DocumentFrequencyFilter implements TokenFilter {
+    private final double maxDocumentRatio;
+    private final int minDocuments;
+    private volatile TermStatistics statistics;
+
+    /**
+     * Creates a filter. It keeps all terms until it is connected to an index with {@link #setStatistics(TermStatistics)}.
+     * @param maxDocumentRatio The fraction of documents (between 0 and 1) above which a term is removed.
+     * @param minDocuments The number of documents the index must contain before terms are removed.
+     */
+    public DocumentFrequencyFilter(double maxDocumentRatio, int minDocuments) {
+        if (maxDocumentRatio <= 0 || maxDocumentRatio > 1) {
+            throw new IllegalArgumentException("The document ratio must be between 0 and 1: " + maxDocumentRatio);
+        }
+        this.maxDocumentRatio = maxDocumentRatio;
+        this.minDocuments = minDocuments;
+    }
+
+    /**
+     * Connects the filter to the statistics of the index it filters terms for.
+     * @param statistics The statistics of the index.
+     */
+    public void setStatistics(TermStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public String filter(String token) {
+        TermStatistics statistics = this.statistics;
+        if (statistics == null) {
+            return token;
+        }
+
+        int documents = statistics.documentCount();
+        if (documents < this.minDocuments) {
+            return token;
+        }
+        return statistics.documentFrequency(token) > this.maxDocumentRatio * documents ? null : token;
+    }
+
+    /**
+     * Removes the terms that appear in too many documents from the distinct terms of a document,
+     * reading the number of documents only once.
+     * @param terms The distinct terms of a document.
+     * @return The terms that are kept, or the same set if all are kept.
+     */
+    @Override
+    public TokenSet filter(TokenSet terms) {
+        TermStatistics statistics = this.statistics;
+        if (statistics == null) {
+            return terms;
+        }
+
+        int documents = statistics.documentCount();
+        if (documents < this.minDocuments) {
+            return terms;
+        }
+        TokenSet filtered = new TokenSet(terms.size());
+        for (String term : terms) {
+            if (statistics.documentFrequency(term) <= this.maxDocumentRatio * documents) {
+                filtered.add(term);
+            }
+        }
+        return filtered;
+    }
+
+    @Override
+    public boolean appliesToQueries() {
+        return false;
+    }
+
+    @Override
+    public boolean appliesToDistinctTerms() {
+        return true;
+    }
+}
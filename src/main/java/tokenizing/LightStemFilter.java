@@ -0,0 +1,35 @@
+package tokenizing;
+
+/**
+ * A light English stemmer that only reduces plural forms to their singular, so "cities" matches "city".
+ * It implements the "S-stemmer" rules, which are far less aggressive than full stemmers like Porter's,
+ * and therefore rarely merge unrelated words:
+ * <ul>
+ *     <li>"ies" becomes "y", unless preceded by "e" or "a" (cities, but not aeries or dies).</li>
+ *     <li>"es" becomes "e", unless preceded by "a", "e" or "o" (horses, but not does or goes).</li>
+ *     <li>a final "s" is removed, unless preceded by "u" or "s" (cars, but not status or class).</li>
+ * </ul>
+ * Tokens are expected to be lowercase.
+ */
+public class LightStemFilter implements TokenFilter {
+
+    @Override
+    public String filter(String token) {
+        int length = token.length();
+        if (length < 4 || token.charAt(length - 1) != 's') {
+            return token;
+        }
+
+        if (token.endsWith("ies") && !token.endsWith("eies") && !token.endsWith("aies")) {
+            return token.substring(0, length - 3) + "y";
+        }
+        if (token.endsWith("es") && !token.endsWith("aes") && !token.endsWith("ees") && !token.endsWith("oes")) {
+            return token.substring(0, length - 1);
+        }
+        char beforeLast = token.charAt(length - 2);
+        if (beforeLast != 'u' && beforeLast != 's') {
+            return token.substring(0, length - 1);
+        }
+        return token;
+    }
+}
@@ -0,0 +1,26 @@
+package tokenizing;
+
+/**
+ * Strips punctuation from the start and the end of tokens, so {@code "york,"} and {@code "(york)"} become {@code "york"}.
+ * Punctuation inside a token, like in {@code "e-mail"} or {@code "3.14"}, is kept.
+ * Tokens that consist only of punctuation are removed.
+ */
+public class PunctuationFilter implements TokenFilter {
+
+    @Override
+    public String filter(String token) {
+        int start = 0;
+        int end = token.length();
+        while (start < end && !Character.isLetterOrDigit(token.charAt(start))) {
+            start++;
+        }
+        while (end > start && !Character.isLetterOrDigit(token.charAt(end - 1))) {
+            end--;
+        }
+
+        if (start == end) {
+            return null;
+        }
+        return start == 0 && end == token.length() ? token : token.substring(start, end);
+    }
+}
@@ -0,0 +1,40 @@
+package tokenizing;
+
+import java.util.Set;
+
+/**
+ * Removes stopwords, very common words like "the" or "and" that appear in almost every document
+ * and are useless for finding a specific one.
+ * Tokens are expected to be lowercase.
+ */
+public class StopwordFilter implements TokenFilter {
+    /**
+     * A list of common English stopwords.
+     */
+    public static final Set<String> ENGLISH_STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into", "is", "it",
+            "no", "not", "of", "on", "or", "such", "that", "the", "their", "then", "there", "these",
+            "they", "this", "to", "was", "will", "with");
+
+    private final Set<String> stopwords;
+
+    /**
+     * Creates a filter that removes common English stopwords.
+     */
+    public StopwordFilter() {
+        this(ENGLISH_STOPWORDS);
+    }
+
+    /**
+     * Creates a filter that removes the given stopwords.
+     * @param stopwords The lowercase stopwords to remove.
+     */
+    public StopwordFilter(Set<String> stopwords) {
+        this.stopwords = Set.copyOf(stopwords);
+    }
+
+    @Override
+    public String filter(String token) {
+        return this.stopwords.contains(token) ? null : token;
+    }
+}
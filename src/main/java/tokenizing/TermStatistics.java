@@ -0,0 +1,18 @@
+package tokenizing;
+
+/**
+ * Provides statistics about the terms stored in an index, for filters that adapt to the indexed content.
+ */
+public interface TermStatistics {
+    /**
+     * Looks up the document frequency of a term. This is called for many terms of every document, so it must be cheap.
+     * @param term The term.
+     * @return The number of documents containing the term, or an upper bound of it.
+     */
+    int documentFrequency(String term);
+
+    /**
+     * @return The total number of documents.
+     */
+    int documentCount();
+}
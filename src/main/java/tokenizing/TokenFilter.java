@@ -0,0 +1,50 @@
+package tokenizing;
+
+/**
+ * A single step of an {@link AnalysisChain}, which transforms or removes tokens coming from a tokenizer.
+ */
+@FunctionalInterface
+public interface TokenFilter {
+    /**
+     * Filters a single token.
+     * @param token The token to filter, never {@code null}.
+     * @return The transformed token, or {@code null} to remove the token.
+     */
+    String filter(String token);
+
+    /**
+     * Whether the filter should also be applied to search keywords.
+     * Filters that normalize tokens must be applied to keywords as well, so they match the indexed tokens.
+     * Filters that only decide what is worth indexing should not.
+     * @return {@code true} if the filter applies to search keywords.
+     */
+    default boolean appliesToQueries() {
+        return true;
+    }
+
+    /**
+     * Whether the filter is applied once to every distinct term of a document, with {@link #filter(TokenSet)},
+     * instead of to every token as it is produced. Filters that look up statistics of the index should be,
+     * since a document contains far fewer distinct terms than tokens.
+     * @return {@code true} if the filter applies to the distinct terms of a document.
+     */
+    default boolean appliesToDistinctTerms() {
+        return false;
+    }
+
+    /**
+     * Filters the distinct terms of a document. By default, {@link #filter(String)} is applied to every term.
+     * @param terms The distinct terms of a document.
+     * @return The filtered terms, possibly the same set.
+     */
+    default TokenSet filter(TokenSet terms) {
+        TokenSet filtered = new TokenSet(terms.size());
+        for (String term : terms) {
+            String token = filter(term);
+            if (token != null) {
+                filtered.add(token);
+            }
+        }
+        return filtered;
+    }
+}
@@ -0,0 +1,184 @@
+package tokenizing;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A lightweight set of distinct tokens, used to deduplicate the tokens of a single document
+ * before they are inserted into an index.
+ *
+ * <p>The set uses open addressing with linear probing over plain arrays,
+ * storing the hash code of every token next to it.
+ * Unlike a {@link java.util.HashSet}, adding a token does not allocate an entry object,
+ * so the thousandth repeat of a token only costs a hash computation and an array probe.
+ * Tokens are iterated in insertion order.</p>
+ */
+public class TokenSet implements Iterable<String> {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] slots; // Position of the token in the tokens array + 1, 0 marks an empty slot
+    private int[] hashes; // Hash codes of the tokens, in insertion order
+    private String[] tokens; // Distinct tokens, in insertion order
+    private int size;
+
+    /**
+     * Creates an empty TokenSet.
+     */
+    public TokenSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty TokenSet sized for the expected number of distinct tokens.
+     *
+     * @param expectedSize The expected number of distinct tokens.
+     */
+    public TokenSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.hashes = new int[capacity / 2];
+        this.tokens = new String[capacity / 2];
+    }
+
+    /**
+     * Collects the distinct tokens of a sequence.
+     * If the sequence already is a TokenSet, it is returned as is.
+     *
+     * @param tokens The tokens to collect.
+     * @return A TokenSet containing each distinct token once.
+     */
+    public static TokenSet of(Iterable<String> tokens) {
+        if (tokens instanceof TokenSet set) {
+            return set;
+        }
+        TokenSet set = new TokenSet();
+        for (String token : tokens) {
+            set.add(token);
+        }
+        return set;
+    }
+
+    /**
+     * Adds a token to the set if it is not already present.
+     *
+     * @param token The token to add.
+     * @return {@code true} if the token was added, {@code false} if it was already present.
+     */
+    public boolean add(String token) {
+        int hash = mix(token.hashCode());
+        int mask = this.slots.length - 1;
+        int slot = hash & mask;
+
+        while (this.slots[slot] != 0) {
+            int position = this.slots[slot] - 1;
+            if (this.hashes[position] == hash && this.tokens[position].equals(token)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.size == this.tokens.length) {
+            grow();
+            return add(token);
+        }
+
+        this.hashes[this.size] = hash;
+        this.tokens[this.size] = token;
+        this.slots[slot] = ++this.size;
+        return true;
+    }
+
+    /**
+     * Checks whether a token is present in the set.
+     *
+     * @param token The token to check.
+     * @return {@code true} if the token is present.
+     */
+    public boolean contains(String token) {
+        int hash = mix(token.hashCode());
+        int mask = this.slots.length - 1;
+        for (int slot = hash & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+            int position = this.slots[slot] - 1;
+            if (this.hashes[position] == hash && this.tokens[position].equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of distinct tokens in the set.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return {@code true} if the set contains no tokens.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all tokens, keeping the allocated capacity so the set can be reused for the next document.
+     */
+    public void clear() {
+        Arrays.fill(this.slots, 0);
+        Arrays.fill(this.tokens, 0, this.size, null);
+        this.size = 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return this.position < size;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return tokens[this.position++];
+            }
+        };
+    }
+
+    private void grow() {
+        int capacity = this.slots.length * 2;
+        this.slots = new int[capacity];
+        this.hashes = Arrays.copyOf(this.hashes, capacity / 2);
+        this.tokens = Arrays.copyOf(this.tokens, capacity / 2);
+
+        // Re-insert the positions of all tokens into the larger slot table
+        int mask = capacity - 1;
+        for (int position = 0; position < this.size; position++) {
+            int slot = this.hashes[position] & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = position + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        // Spread the bits, as String hash codes of similar tokens often only differ in the lowest bits
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < this.size; i++) {
+            builder.append(i == 0 ? "" : ", ").append(this.tokens[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
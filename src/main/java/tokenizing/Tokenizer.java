@@ -1,6 +1,7 @@
 package tokenizing;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A simple interface outlining the required functionality of a tokenizer.
@@ -15,4 +16,24 @@ public interface Tokenizer {
      */
     List<String> tokenize(String text);
 
+    /**
+     * Tokenizes a given text string, passing every token to a consumer as soon as it is found.
+     * Implementations should override this method to avoid building an intermediate list.
+     * @param text The text to tokenize.
+     * @param sink The consumer receiving the tokens, in order.
+     */
+    default void tokenize(String text, Consumer<String> sink) {
+        tokenize(text).forEach(sink);
+    }
+
+    /**
+     * Normalizes a search keyword the same way the tokens of a text are normalized,
+     * so it can be looked up in an index built with this tokenizer.
+     * @param keyword The keyword to normalize.
+     * @return The normalized keyword, or {@code null} if the keyword would never be indexed.
+     */
+    default String normalize(String keyword) {
+        return keyword.toLowerCase();
+    }
+
 }
@@ -0,0 +1,185 @@
+package tokenizing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * A whitespace tokenizer that works directly on UTF-8 encoded bytes and lowercases the tokens.
+ *
+ * <p>It produces the same tokens as the {@link WhitespaceTokenizer}, but skips decoding the text into a String.
+ * Whitespace is detected at the byte level, which is safe for UTF-8, as the bytes of multibyte characters
+ * never fall into the ASCII range. ASCII letters are lowercased and hashed in the same pass.
+ * The resulting bytes are looked up in a table of known terms, so a String is only created the first time
+ * a term is seen; every later occurrence reuses that String, including its cached hash code.
+ * Tokens containing non-ASCII characters are decoded and lowercased with {@link String#toLowerCase()}
+ * the first time they are seen, to get the same result as the String based tokenizer.</p>
+ *
+ * <p>A call borrows a table of known terms from the tokenizer and returns it when done, so the tokenizer can be shared
+ * between threads. Concurrent calls use tables of their own, and at most one table per processor is kept
+ * between calls, which bounds the memory of the tokenizer no matter how many threads use it.</p>
+ *
+ * <p>{@link #fastest()} returns a variant that scans for whitespace with SIMD instructions, when they are available.</p>
+ */
+public class Utf8ByteTokenizer implements ByteTokenizer {
+    static final int DEFAULT_MAX_CACHED_TERMS = 1 << 20;
+
+    private final int maxCachedTerms;
+    private final ArrayBlockingQueue<Scratch> idle; // The tables that no call is using
+
+    /**
+     * Creates a tokenizer that caches up to about a million distinct terms per table.
+     */
+    public Utf8ByteTokenizer() {
+        this(DEFAULT_MAX_CACHED_TERMS);
+    }
+
+    /**
+     * Creates a tokenizer.
+     * @param maxCachedTerms The number of distinct terms a table caches before it is cleared.
+     */
+    public Utf8ByteTokenizer(int maxCachedTerms) {
+        this.maxCachedTerms = maxCachedTerms;
+        this.idle = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates the fastest available tokenizer. If the {@code jdk.incubator.vector} module is present
+     * (the JVM was started with {@code --add-modules jdk.incubator.vector}), this is a {@link VectorWhitespaceTokenizer},
+     * otherwise a tokenizer using the scalar loop. Which one was chosen is reported by {@link #isVectorized()}.
+     * This is the tokenizer of a {@code SimpleFileIndexer} created without arguments.
+     * @return The tokenizer.
+     */
+    public static Utf8ByteTokenizer fastest() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded by name, so the Vector API classes are never touched when the module is missing
+                return (Utf8ByteTokenizer) Class.forName("tokenizing.VectorWhitespaceTokenizer")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The module is present but unusable, so the scalar loop is the fastest tokenizer there is
+            }
+        }
+        return new Utf8ByteTokenizer();
+    }
+
+    /**
+     * @return {@code true} if whitespace is found with SIMD instructions, {@code false} if with the scalar loop.
+     */
+    public boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * @return An idle table of known terms, or a new one if all of them are in use.
+     */
+    Scratch acquire() {
+        Scratch scratch = this.idle.poll();
+        return scratch != null ? scratch : new Scratch(this.maxCachedTerms);
+    }
+
+    /**
+     * Keeps a table for later calls, unless enough tables are kept already.
+     */
+    void release(Scratch scratch) {
+        this.idle.offer(scratch);
+    }
+
+    /**
+     * The state of a call: the table of known terms and a buffer for lowercasing a token.
+     */
+    static class Scratch {
+        final ByteTermTable terms;
+        byte[] buffer = new byte[64];
+
+        Scratch(int maxCachedTerms) {
+            this.terms = new ByteTermTable(maxCachedTerms);
+        }
+    }
+
+    @Override
+    public List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens::add);
+        return tokens;
+    }
+
+    @Override
+    public void tokenize(String text, Consumer<String> sink) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        tokenize(bytes, 0, bytes.length, sink);
+    }
+
+    @Override
+    public void tokenize(byte[] data, int offset, int length, Consumer<String> sink) {
+        Scratch scratch = acquire();
+        try {
+            tokenize(scratch, data, offset, length, sink);
+        } finally {
+            release(scratch);
+        }
+    }
+
+    /**
+     * Splits the bytes into tokens, using a table of known terms that no other call is using.
+     */
+    void tokenize(Scratch scratch, byte[] data, int offset, int length, Consumer<String> sink) {
+        int end = offset + length;
+        int start = -1; // Start of the current token, or -1 between tokens
+        for (int i = offset; i < end; i++) {
+            if (isWhitespace(data[i])) {
+                if (start >= 0) {
+                    sink.accept(term(scratch, data, start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            sink.accept(term(scratch, data, start, end));
+        }
+    }
+
+    /**
+     * Returns the lowercase String of the token between two positions, creating it only if the term is new.
+     */
+    String term(Scratch scratch, byte[] data, int from, int to) {
+        int length = to - from;
+        if (scratch.buffer.length < length) {
+            scratch.buffer = new byte[Math.max(length, scratch.buffer.length * 2)];
+        }
+        byte[] key = scratch.buffer;
+
+        // Lowercase ASCII letters and hash the key in one pass
+        int hash = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = data[from + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            } else if (b < 0) {
+                ascii = false;
+            }
+            key[i] = b;
+            hash = 31 * hash + b;
+        }
+        hash ^= hash >>> 16;
+
+        String term = scratch.terms.get(key, 0, length, hash);
+        if (term == null) {
+            term = ascii
+                    ? new String(key, 0, length, StandardCharsets.ISO_8859_1)
+                    : new String(data, from, length, StandardCharsets.UTF_8).toLowerCase();
+            scratch.terms.put(key, 0, length, hash, term);
+        }
+        return term;
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+}
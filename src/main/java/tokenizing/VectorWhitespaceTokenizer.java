@@ -0,0 +1,81 @@
+package tokenizing;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.function.Consumer;
+
+/**
+ * A {@link Utf8ByteTokenizer} that finds token boundaries with SIMD instructions, using the Vector API.
+ *
+ * <p>The text is loaded in vectors of the widest size the CPU supports (32 bytes with AVX2, 64 with AVX-512).
+ * All bytes of a vector are classified as whitespace or not at once, producing a bit mask with one bit per byte.
+ * The token boundaries are then found with {@link Long#numberOfTrailingZeros(long)} on the mask,
+ * so runs of text or whitespace within a vector are skipped without looking at single bytes.
+ * The remaining bytes at the end, which don't fill a whole vector, are scanned with the scalar loop.</p>
+ *
+ * <p>The Vector API is an incubator module, so this class can only be used when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}. Use {@link Utf8ByteTokenizer#fastest()} to fall back
+ * to the scalar tokenizer when the module isn't present.</p>
+ */
+public class VectorWhitespaceTokenizer extends Utf8ByteTokenizer {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    void tokenize(Scratch scratch, byte[] data, int offset, int length, Consumer<String> sink) {
+        int lanes = SPECIES.length();
+        long allLanes = lanes == 64 ? -1L : (1L << lanes) - 1;
+
+        int end = offset + length;
+        int vectorEnd = offset + SPECIES.loopBound(length);
+        int start = -1; // Start of the current token, or -1 between tokens
+        int i = offset;
+
+        for (; i < vectorEnd; i += lanes) {
+            ByteVector bytes = ByteVector.fromArray(SPECIES, data, i);
+            // Whitespace is ' ' or a byte from '\t' (9) to '\r' (13); the latter is checked with one unsigned comparison
+            VectorMask<Byte> whitespaceMask = bytes.eq((byte) ' ')
+                    .or(bytes.sub((byte) '\t').compare(VectorOperators.UNSIGNED_LE, (byte) ('\r' - '\t')));
+            long whitespace = whitespaceMask.toLong();
+            long text = ~whitespace & allLanes;
+
+            // Alternate between finding the start and the end of a token, until the vector has no more boundaries
+            int lane = 0;
+            while (true) {
+                long candidates = (start < 0 ? text : whitespace) & (-1L << lane);
+                if (candidates == 0) {
+                    break;
+                }
+                lane = Long.numberOfTrailingZeros(candidates);
+                if (start < 0) {
+                    start = i + lane;
+                } else {
+                    sink.accept(term(scratch, data, start, i + lane));
+                    start = -1;
+                }
+            }
+        }
+
+        // Scan the remaining bytes one by one
+        for (; i < end; i++) {
+            if (isWhitespace(data[i])) {
+                if (start >= 0) {
+                    sink.accept(term(scratch, data, start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            sink.accept(term(scratch, data, start, end));
+        }
+    }
+}
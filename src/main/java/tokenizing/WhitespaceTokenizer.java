@@ -1,6 +1,7 @@
 package tokenizing;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public class WhitespaceTokenizer implements Tokenizer {
     /**
@@ -34,5 +35,33 @@ public class WhitespaceTokenizer implements Tokenizer {
 
     }
 
+    /**
+     * Tokenizes a string in a single pass, passing every lowercase token to the sink without building a list.
+     * Uses the same whitespace characters as the {@code \s} regular expression class.
+     * @param text The text to be tokenized.
+     * @param sink The consumer receiving the tokens.
+     */
+    @Override
+    public void tokenize(String text, Consumer<String> sink) {
+        int start = -1; // Start of the current token, or -1 between tokens
+        for (int i = 0; i < text.length(); i++) {
+            if (isWhitespace(text.charAt(i))) {
+                if (start >= 0) {
+                    sink.accept(text.substring(start, i).toLowerCase());
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            sink.accept(text.substring(start).toLowerCase());
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
 
 }
@@ -0,0 +1,144 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Utility class for reading the text entries of {@code .zip}, {@code .jar}, {@code .gz} and {@code .tar.gz} archives
+ * as streams, without extracting them to disk.
+ *
+ * <p>Every entry is addressed by a virtual path: the path of the archive, followed by {@code !/}
+ * and the path of the entry inside the archive, for example {@code logs.zip!/2024/app.txt}.
+ * A {@code .gz} file that isn't a tar archive contains a single entry, named after the file without the extension.</p>
+ */
+public class Archives {
+    /**
+     * Separates the path of an archive from the path of an entry inside it.
+     */
+    public static final String ENTRY_SEPARATOR = "!/";
+
+    private static final int SNIFF_BYTES = 4096;
+
+    private Archives() {
+    }
+
+    /**
+     * Receives the text entries of an archive.
+     */
+    public interface EntryVisitor {
+        /**
+         * Reads a text entry. The stream ends with the entry and must not be closed.
+         *
+         * @param entry   The virtual path of the entry.
+         * @param content The content of the entry.
+         * @throws IOException If the entry can't be read.
+         */
+        void visit(File entry, InputStream content) throws IOException;
+    }
+
+    /**
+     * Checks whether a file is an archive whose entries can be read, based on its name.
+     *
+     * @param file The file to check.
+     * @return {@code true} if the file is a zip, jar or gzip file.
+     */
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".jar") || name.endsWith(".gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * @param archive The archive.
+     * @param entry   The path of the entry inside the archive, using {@code /} as separator.
+     * @return The virtual path of the entry.
+     */
+    public static File entryFile(File archive, String entry) {
+        return new File(archive.getPath() + ENTRY_SEPARATOR + entry);
+    }
+
+    /**
+     * Returns the virtual directory containing all entries of an archive,
+     * which can be used to remove all entries at once.
+     *
+     * @param archive The archive.
+     * @return The virtual directory of the entries.
+     */
+    public static File entryDirectory(File archive) {
+        return new File(archive.getPath() + ENTRY_SEPARATOR.charAt(0));
+    }
+
+    /**
+     * Streams all text entries of an archive to a visitor, in the order they are stored.
+     * An entry is considered text if its name has a text MIME type, or if its name has no known type
+     * and its first bytes contain no NUL byte (for example log files).
+     *
+     * @param archive The archive.
+     * @param visitor The visitor receiving the text entries.
+     * @throws IOException If the archive can't be read or is corrupt.
+     */
+    public static void forEachTextEntry(File archive, EntryVisitor visitor) throws IOException {
+        String name = archive.getName().toLowerCase(Locale.ROOT);
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(archive.toPath()), 1 << 16)) {
+            if (name.endsWith(".zip") || name.endsWith(".jar")) {
+                ZipInputStream zip = new ZipInputStream(file);
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if (!entry.isDirectory()) {
+                        visitIfText(entryFile(archive, entry.getName()), entry.getName(), zip, visitor);
+                    }
+                }
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                TarReader tar = new TarReader(new GZIPInputStream(file, 1 << 16));
+                for (String entry = tar.nextFile(); entry != null; entry = tar.nextFile()) {
+                    visitIfText(entryFile(archive, entry), entry, tar.entry(), visitor);
+                }
+            } else if (name.endsWith(".gz")) {
+                String entry = archive.getName().substring(0, archive.getName().length() - 3);
+                visitIfText(entryFile(archive, entry), entry, new GZIPInputStream(file, 1 << 16), visitor);
+            } else {
+                throw new IOException(archive.getAbsolutePath() + " is not a supported archive.");
+            }
+        }
+    }
+
+    private static void visitIfText(File file, String name, InputStream content, EntryVisitor visitor) throws IOException {
+        String mimeType;
+        try {
+            mimeType = Files.probeContentType(Path.of(name));
+        } catch (InvalidPathException e) {
+            return; // Entries can have names that aren't valid on this platform
+        }
+        if (mimeType != null && !mimeType.startsWith("text")) {
+            return;
+        }
+
+        InputStream in = new BufferedInputStream(content, SNIFF_BYTES);
+        if (mimeType == null && !looksLikeText(in)) {
+            return;
+        }
+        visitor.visit(file, in);
+    }
+
+    /**
+     * Checks the first bytes of a stream for NUL bytes, which don't occur in text, without consuming them.
+     */
+    private static boolean looksLikeText(InputStream in) throws IOException {
+        in.mark(SNIFF_BYTES);
+        byte[] start = in.readNBytes(SNIFF_BYTES);
+        in.reset();
+        for (byte b : start) {
+            if (b == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
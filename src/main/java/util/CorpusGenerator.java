@@ -0,0 +1,101 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a synthetic corpus of text files whose words follow a {@link ZipfDistribution},
+ * to test the indexer at sizes that the bundled Wikipedia extracts can't reach.
+ *
+ * <p>The words are made up of lowercase letters, with the most common words being the shortest,
+ * as in natural language. The files are spread over a tree of directories of the configured depth,
+ * with {@value #DIRECTORIES_PER_LEVEL} directories on every level. The same seed always generates the same corpus.</p>
+ */
+public class CorpusGenerator {
+    static final int DIRECTORIES_PER_LEVEL = 4;
+    private static final int WORDS_PER_LINE = 12;
+
+    private final int fileCount;
+    private final int wordsPerFile;
+    private final int depth;
+    private final ZipfDistribution distribution;
+    private final long seed;
+
+    /**
+     * @param fileCount      The number of files.
+     * @param wordsPerFile   The number of words in every file.
+     * @param depth          The number of directory levels below the corpus directory, 0 to put all files in it.
+     * @param vocabularySize The number of distinct words to draw from.
+     * @param exponent       The exponent of the Zipf distribution of the words.
+     * @param seed           The seed of the random words.
+     */
+    public CorpusGenerator(int fileCount, int wordsPerFile, int depth, int vocabularySize, double exponent, long seed) {
+        if (fileCount < 0 || wordsPerFile < 0 || depth < 0) {
+            throw new IllegalArgumentException("File count, words per file and depth must not be negative.");
+        }
+        this.fileCount = fileCount;
+        this.wordsPerFile = wordsPerFile;
+        this.depth = depth;
+        this.distribution = new ZipfDistribution(vocabularySize, exponent);
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the word of a rank: {@code a} to {@code z} for the first 26 ranks, then {@code aa}, {@code ab}, and so on.
+     *
+     * @param rank The rank of the word, from 0.
+     * @return The word.
+     */
+    public static String word(int rank) {
+        StringBuilder word = new StringBuilder();
+        for (int value = rank + 1; value > 0; value = (value - 1) / 26) {
+            word.append((char) ('a' + (value - 1) % 26));
+        }
+        return word.reverse().toString();
+    }
+
+    /**
+     * Writes the corpus into a directory, which is created if needed.
+     *
+     * @param directory The directory of the corpus.
+     * @return The generated files.
+     * @throws IOException If a file can't be written.
+     */
+    public List<File> generate(Path directory) throws IOException {
+        List<File> files = new ArrayList<>(this.fileCount);
+        for (int i = 0; i < this.fileCount; i++) {
+            Path parent = directory;
+            int position = i;
+            for (int level = 0; level < this.depth; level++) {
+                parent = parent.resolve("dir" + position % DIRECTORIES_PER_LEVEL);
+                position /= DIRECTORIES_PER_LEVEL;
+            }
+            Files.createDirectories(parent);
+
+            Path file = parent.resolve("file" + i + ".txt");
+            Random random = new Random(this.seed * 31 + i); // Every file can be generated on its own
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (int w = 0; w < this.wordsPerFile; w++) {
+                    writer.write(word(this.distribution.sample(random)));
+                    writer.write((w + 1) % WORDS_PER_LINE == 0 ? '\n' : ' ');
+                }
+            }
+            files.add(file.toFile());
+        }
+        return files;
+    }
+
+    /**
+     * @return The distribution of the words, for example to generate queries that match the corpus.
+     */
+    public ZipfDistribution getDistribution() {
+        return this.distribution;
+    }
+}
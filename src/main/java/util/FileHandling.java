@@ -32,6 +32,26 @@ public class FileHandling {
         return Files.readString(file.toPath());
     }
 
+    /**
+     * Reads the raw bytes of a text file, without decoding them.
+     *
+     * @param file The text file to read.
+     * @return The content of the file.
+     * @throws IOException If an I/O error occurs reading from the file.
+     * @throws IllegalArgumentException If the file does not exist or is not a text file.
+     */
+    public static byte[] readTextFileBytes(File file) throws IOException {
+        if (!file.exists()) {
+            throw new IllegalArgumentException(file.getAbsolutePath() + " doesn't exist.");
+        }
+
+        if (!isTextFile(file)) {
+            throw new IllegalArgumentException(file.getAbsolutePath() + " is not a text file.");
+        }
+
+        return Files.readAllBytes(file.toPath());
+    }
+
     /**
      * Checks if a given file is a text file based on its MIME type.
      *
@@ -69,6 +89,7 @@ public class FileHandling {
     /**
      * Retrieves a list of text files from the specified file or directory.
      * If the provided file is a text file, it will be included in the list.
+     * Archives are included as well, since their text entries can be indexed (see {@link Archives}).
      *
      * @param file      The file or directory to search for text files.
      * @param recursive Whether to search recursively through subdirectories.
@@ -81,7 +102,7 @@ public class FileHandling {
             return null;
         }
 
-        if (isTextFile(file)) {
+        if (isTextFile(file) || (file.isFile() && Archives.isArchive(file))) {
             return List.of(file);
         }
 
@@ -98,7 +119,7 @@ public class FileHandling {
         }
 
         for (File f : filesInDirectory) {
-            if (isTextFile(f)) {
+            if (isTextFile(f) || (f.isFile() && Archives.isArchive(f))) {
                 textFiles.add(f);
                 continue;
             }
@@ -0,0 +1,261 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Minimal helpers for writing and reading JSON, so the project doesn't need a JSON library for its simple messages.
+ * Values are written as-is: strings are quoted and escaped, numbers and booleans are written using their
+ * string representation, collections become arrays and maps become objects.
+ * Parsing does the reverse, producing Strings, Longs, Doubles, Booleans, Lists and Maps.
+ */
+public class Json {
+
+    /**
+     * Converts a value into its JSON representation.
+     *
+     * @param value A String, Number, Boolean, Collection, Map or {@code null}. Other objects are written as strings.
+     * @return The JSON representation of the value.
+     */
+    public static String write(Object value) {
+        StringBuilder builder = new StringBuilder();
+        write(builder, value);
+        return builder.toString();
+    }
+
+    private static void write(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            builder.append('{');
+            Iterator<? extends Map.Entry<?, ?>> entries = map.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<?, ?> entry = entries.next();
+                quote(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                write(builder, entry.getValue());
+                if (entries.hasNext()) {
+                    builder.append(',');
+                }
+            }
+            builder.append('}');
+        } else if (value instanceof Collection<?> collection) {
+            builder.append('[');
+            Iterator<?> elements = collection.iterator();
+            while (elements.hasNext()) {
+                write(builder, elements.next());
+                if (elements.hasNext()) {
+                    builder.append(',');
+                }
+            }
+            builder.append(']');
+        } else {
+            quote(builder, value.toString());
+        }
+    }
+
+    private static void quote(StringBuilder builder, String text) {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param json The JSON text.
+     * @return The parsed value: a String, Long, Double, Boolean, List, Map or {@code null}.
+     * @throws IllegalArgumentException If the text is not valid JSON.
+     */
+    public static Object parse(String json) {
+        Parser parser = new Parser(json);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.position != json.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    private static class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (this.position >= this.text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = this.text.charAt(this.position);
+            switch (c) {
+                case '{' -> {
+                    return object();
+                }
+                case '[' -> {
+                    return array();
+                }
+                case '"' -> {
+                    return string();
+                }
+                default -> {
+                    if (this.text.startsWith("true", this.position)) {
+                        this.position += 4;
+                        return true;
+                    }
+                    if (this.text.startsWith("false", this.position)) {
+                        this.position += 5;
+                        return false;
+                    }
+                    if (this.text.startsWith("null", this.position)) {
+                        this.position += 4;
+                        return null;
+                    }
+                    return number();
+                }
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            this.position++; // Skip the opening brace
+            skipWhitespace();
+            if (peek() == '}') {
+                this.position++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                map.put(key, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    this.position++;
+                    continue;
+                }
+                expect('}');
+                return map;
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            this.position++; // Skip the opening bracket
+            skipWhitespace();
+            if (peek() == ']') {
+                this.position++;
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    this.position++;
+                    continue;
+                }
+                expect(']');
+                return list;
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n' -> builder.append('\n');
+                    case 'r' -> builder.append('\r');
+                    case 't' -> builder.append('\t');
+                    case 'b' -> builder.append('\b');
+                    case 'f' -> builder.append('\f');
+                    case 'u' -> {
+                        if (this.position + 4 > this.text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        builder.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+                        this.position += 4;
+                    }
+                    default -> builder.append(escaped); // Covers \", \\ and \/
+                }
+            }
+        }
+
+        private Object number() {
+            int start = this.position;
+            while (this.position < this.text.length() && "+-0123456789.eE".indexOf(this.text.charAt(this.position)) >= 0) {
+                this.position++;
+            }
+            String number = this.text.substring(start, this.position);
+            if (number.isEmpty()) {
+                throw error("Unexpected character");
+            }
+            try {
+                if (number.contains(".") || number.contains("e") || number.contains("E")) {
+                    return Double.parseDouble(number);
+                }
+                return Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number");
+            }
+        }
+
+        void skipWhitespace() {
+            while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+                this.position++;
+            }
+        }
+
+        private char peek() {
+            return this.position < this.text.length() ? this.text.charAt(this.position) : 0;
+        }
+
+        private char next() {
+            if (this.position >= this.text.length()) {
+                throw error("Unexpected end of input");
+            }
+            return this.text.charAt(this.position++);
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                this.position--;
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + this.position);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Records latencies and reports their percentiles.
+ * Recording is thread-safe, so a single recorder can be shared by all threads of a load test.
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1024]; // Latencies in nanoseconds
+    private int count;
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        if (this.count == this.samples.length) {
+            this.samples = Arrays.copyOf(this.samples, this.samples.length * 2);
+        }
+        this.samples[this.count++] = nanos;
+    }
+
+    /**
+     * @return The number of recorded latencies.
+     */
+    public synchronized int count() {
+        return this.count;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of all recorded latencies falls.
+     *
+     * @param percentile The percentile, between 0 and 100 (for example 99.9).
+     * @return The latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public synchronized long percentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.samples, this.count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * this.count) - 1;
+        return sorted[Math.max(0, Math.min(rank, this.count - 1))];
+    }
+
+    /**
+     * @return A summary of the p50, p99 and p99.9 latencies in milliseconds.
+     */
+    public String summary() {
+        return String.format("p50=%.3fms p99=%.3fms p999=%.3fms",
+                percentile(50) / 1e6, percentile(99) / 1e6, percentile(99.9) / 1e6);
+    }
+}
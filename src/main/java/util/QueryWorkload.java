@@ -0,0 +1,98 @@
+package util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A list of queries to replay against an index, each made of one or more keywords.
+ * A workload is stored as a text file with one query per line and the keywords separated by spaces,
+ * so workloads can be recorded once and replayed to compare versions of the indexer.
+ */
+public class QueryWorkload {
+    private final List<List<String>> queries;
+
+    /**
+     * @param queries The queries, each a list of keywords.
+     */
+    public QueryWorkload(List<List<String>> queries) {
+        this.queries = List.copyOf(queries);
+    }
+
+    /**
+     * Generates queries whose keywords follow the same distribution as the words of a generated corpus,
+     * so common words are also queried more often.
+     *
+     * @param distribution The distribution of the words, from {@link CorpusGenerator#getDistribution()}.
+     * @param count        The number of queries.
+     * @param maxKeywords  The maximum number of keywords of a query. Every query has between 1 and this many.
+     * @param seed         The seed of the random queries.
+     * @return The workload.
+     */
+    public static QueryWorkload generate(ZipfDistribution distribution, int count, int maxKeywords, long seed) {
+        if (maxKeywords < 1) {
+            throw new IllegalArgumentException("Queries need at least one keyword: " + maxKeywords);
+        }
+        Random random = new Random(seed);
+        List<List<String>> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int keywords = 1 + random.nextInt(maxKeywords);
+            List<String> query = new ArrayList<>(keywords);
+            for (int k = 0; k < keywords; k++) {
+                query.add(CorpusGenerator.word(distribution.sample(random)));
+            }
+            queries.add(query);
+        }
+        return new QueryWorkload(queries);
+    }
+
+    /**
+     * Reads a workload from a file with one query per line. Empty lines are skipped.
+     *
+     * @param file The file.
+     * @return The workload.
+     * @throws IOException If the file can't be read.
+     */
+    public static QueryWorkload load(Path file) throws IOException {
+        List<List<String>> queries = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty()) {
+                queries.add(List.of(trimmed.split("\\s+")));
+            }
+        }
+        return new QueryWorkload(queries);
+    }
+
+    /**
+     * Writes the workload to a file with one query per line, which can be read with {@link #load(Path)}.
+     *
+     * @param file The file. An existing file is replaced.
+     * @throws IOException If the file can't be written.
+     */
+    public void save(Path file) throws IOException {
+        List<String> lines = new ArrayList<>(this.queries.size());
+        for (List<String> query : this.queries) {
+            lines.add(String.join(" ", query));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The queries, each a list of keywords.
+     */
+    public List<List<String>> queries() {
+        return this.queries;
+    }
+
+    /**
+     * @return The number of queries.
+     */
+    public int size() {
+        return this.queries.size();
+    }
+}
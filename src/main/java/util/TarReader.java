@@ -0,0 +1,186 @@
+package util;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the regular files of a tar archive sequentially from a stream.
+ * Supports ustar archives, including GNU long names and the {@code path} of PAX headers.
+ */
+class TarReader {
+    private static final int BLOCK = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK];
+    private long remaining; // Bytes of the current entry that haven't been read yet
+    private long padding; // Bytes after the current entry up to the next block
+
+    TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Skips to the next regular file.
+     *
+     * @return The path of the file inside the archive, or {@code null} at the end of the archive.
+     * @throws IOException If the archive can't be read or is corrupt.
+     */
+    String nextFile() throws IOException {
+        String longName = null;
+        while (true) {
+            skipFully(this.remaining + this.padding);
+            this.remaining = 0;
+            this.padding = 0;
+
+            if (this.in.readNBytes(this.header, 0, BLOCK) < BLOCK || isZero(this.header)) {
+                return null; // The archive ends with empty blocks, which some writers leave out
+            }
+
+            long size = parseNumber(124, 12);
+            char type = (char) this.header[156];
+            this.remaining = size;
+            this.padding = (BLOCK - size % BLOCK) % BLOCK;
+
+            if (type == 'L' || type == 'x') {
+                // The entry holds the name of the next file
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Corrupt tar header.");
+                }
+                byte[] data = readFully((int) size);
+                this.remaining = 0;
+                longName = type == 'L' ? cString(data, 0, data.length) : paxPath(data, longName);
+                continue;
+            }
+            if (type != '0' && type != '\0' && type != '7') {
+                continue; // Directories, links and other special files have no text to index
+            }
+
+            if (longName != null) {
+                return longName;
+            }
+            String name = cString(this.header, 0, 100);
+            String prefix = isUstar() ? cString(this.header, 345, 155) : "";
+            return prefix.isEmpty() ? name : prefix + "/" + name;
+        }
+    }
+
+    /**
+     * @return The content of the current file. The stream ends with the file and must not be closed.
+     */
+    InputStream entry() {
+        return new FilterInputStream(this.in) {
+            @Override
+            public int read() throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int b = this.in.read();
+                if (b < 0) {
+                    throw new EOFException("Tar archive is truncated.");
+                }
+                remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int read = this.in.read(b, off, (int) Math.min(len, remaining));
+                if (read < 0) {
+                    throw new EOFException("Tar archive is truncated.");
+                }
+                remaining -= read;
+                return read;
+            }
+
+            @Override
+            public void close() {
+                // The archive stays open for the next entries
+            }
+        };
+    }
+
+    private boolean isUstar() {
+        return this.header[257] == 'u' && this.header[258] == 's' && this.header[259] == 't'
+               && this.header[260] == 'a' && this.header[261] == 'r';
+    }
+
+    /**
+     * Parses a numeric header field, which is octal text, or a big-endian binary number if the first bit is set.
+     */
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((this.header[offset] & 0x80) != 0) {
+            long value = 0;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (this.header[i] & 0xFF);
+            }
+            return value;
+        }
+
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = this.header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Corrupt tar header.");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Finds the path in the records of a PAX header, each formatted as {@code <length> <key>=<value>\n}.
+     */
+    private static String paxPath(byte[] data, String fallback) {
+        String records = new String(data, StandardCharsets.UTF_8);
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            if (space >= 0 && record.startsWith("path=", space + 1)) {
+                return record.substring(space + 1 + "path=".length());
+            }
+        }
+        return fallback;
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] data = this.in.readNBytes(length);
+        if (data.length < length) {
+            throw new EOFException("Tar archive is truncated.");
+        }
+        return data;
+    }
+
+    private void skipFully(long count) throws IOException {
+        if (count > 0) {
+            this.in.skipNBytes(count);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks from a Zipf distribution, in which the probability of rank {@code k} (counting from 1)
+ * is proportional to {@code 1 / k^exponent}. Natural language roughly follows an exponent of 1:
+ * the most common word occurs twice as often as the second most common one, and so on.
+ */
+public class ZipfDistribution {
+    private final double[] cumulative; // The probability of every rank or a lower one
+
+    /**
+     * @param size     The number of ranks.
+     * @param exponent The exponent of the distribution, 0 for a uniform distribution.
+     */
+    public ZipfDistribution(int size, double exponent) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive: " + size);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Exponent must not be negative: " + exponent);
+        }
+
+        this.cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            this.cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            this.cumulative[rank] /= sum;
+        }
+    }
+
+    /**
+     * @param random The source of randomness.
+     * @return A rank between 0 (the most likely) and {@code size() - 1}.
+     */
+    public int sample(Random random) {
+        int position = Arrays.binarySearch(this.cumulative, random.nextDouble());
+        int rank = position >= 0 ? position : -(position + 1);
+        return Math.min(rank, this.cumulative.length - 1); // Guards against rounding in the last sum
+    }
+
+    /**
+     * @param rank A rank between 0 and {@code size() - 1}.
+     * @return The probability of the rank.
+     */
+    public double probability(int rank) {
+        return rank == 0 ? this.cumulative[0] : this.cumulative[rank] - this.cumulative[rank - 1];
+    }
+
+    /**
+     * @return The number of ranks.
+     */
+    public int size() {
+        return this.cumulative.length;
+    }
+}
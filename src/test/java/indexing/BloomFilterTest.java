@@ -0,0 +1,63 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("term" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("term" + i));
+        }
+    }
+
+    @Test
+    void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("term" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("missing" + i)) {
+                falsePositives++;
+            }
+        }
+        // Allow some slack over the configured rate of 1%
+        assertTrue(falsePositives < 2000, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        BloomFilter filter = new BloomFilter(100, 0.05);
+        filter.add("voivodeship");
+        filter.add("new");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        BloomFilter read = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(filter.getHashCount(), read.getHashCount());
+        assertEquals(filter.sizeInBytes(), read.sizeInBytes());
+        assertTrue(read.mightContain("voivodeship"));
+        assertTrue(read.mightContain("new"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(filter.mightContain("potatoes" + i), read.mightContain("potatoes" + i));
+        }
+    }
+
+    @Test
+    void testInvalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+    }
+}
@@ -0,0 +1,58 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tokenizing.TokenSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentDeduplicatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testHashIdentifiesContent() throws IOException {
+        File a = Files.writeString(this.tempDir.resolve("a.txt"), "same content").toFile();
+        File b = Files.writeString(this.tempDir.resolve("b.txt"), "same content").toFile();
+        File c = Files.writeString(this.tempDir.resolve("c.txt"), "other content").toFile();
+
+        assertEquals(ContentDeduplicator.hash(a), ContentDeduplicator.hash(b));
+        assertNotEquals(ContentDeduplicator.hash(a), ContentDeduplicator.hash(c));
+        assertEquals(12, ContentDeduplicator.hash(a).length());
+    }
+
+    @Test
+    void testContentIsReleasedWithItsLastFile() {
+        ContentDeduplicator deduplicator = new ContentDeduplicator();
+        ContentDeduplicator.ContentKey key = new ContentDeduplicator.ContentKey(1, 2, 3);
+        TokenSet terms = TokenSet.of(List.of("hello"));
+        File a = new File("a.txt");
+        File b = new File("b.txt");
+
+        assertNull(deduplicator.lookup(key, Map.of()));
+        // A content staged in the same batch is found before it is registered
+        assertSame(terms, deduplicator.lookup(key, Map.of(key, terms)));
+        deduplicator.register(a, key, terms);
+        deduplicator.register(b, key, deduplicator.lookup(key, Map.of()));
+        assertEquals(2, deduplicator.hits());
+
+        deduplicator.release(a);
+        assertSame(terms, deduplicator.lookup(key, Map.of()));
+
+        // Registering a file with new content releases its old content
+        deduplicator.register(b, new ContentDeduplicator.ContentKey(4, 5, 6), TokenSet.of(List.of("world")));
+        assertNull(deduplicator.lookup(key, Map.of()));
+        assertEquals(1, deduplicator.contentCount());
+
+        deduplicator.retainIf(file -> false);
+        assertEquals(0, deduplicator.contentCount());
+    }
+}
@@ -0,0 +1,110 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileTableTest {
+
+    private final FileTable table = new FileTable();
+
+    @Test
+    void testAddAndLookUp() {
+        File absolute = new File("/data/corpus/a.txt").getAbsoluteFile();
+        File relative = new File("relative.txt");
+        File nested = new File(new File("data", "corpus"), "b.txt");
+
+        int id1 = table.add(absolute);
+        int id2 = table.add(relative);
+        int id3 = table.add(nested);
+
+        assertEquals(id1, table.add(absolute)); // Adding a file twice returns the same ID
+        assertEquals(3, table.size());
+        assertEquals(id2, table.idOf(relative));
+        assertEquals(-1, table.idOf(new File("missing.txt")));
+        assertEquals(-1, table.idOf(absolute.getParentFile())); // Directories are not files
+
+        // Files are rebuilt with their original paths
+        assertEquals(absolute, table.file(id1));
+        assertEquals(relative, table.file(id2));
+        assertEquals(nested, table.file(id3));
+    }
+
+    @Test
+    void testRemove() {
+        File file = new File("/data/a.txt").getAbsoluteFile();
+        int id = table.add(file);
+
+        assertTrue(table.remove(id));
+        assertFalse(table.remove(id));
+        assertFalse(table.contains(id));
+        assertEquals(-1, table.idOf(file));
+        assertEquals(0, table.size());
+
+        // Removed IDs aren't reused until they are recycled
+        assertNotEquals(id, table.add(file));
+        assertEquals(1, table.removedCount());
+    }
+
+    @Test
+    void testRemoveAllBelowDirectory() {
+        File root = new File("/data").getAbsoluteFile();
+        int a = table.add(new File(root, "a.txt"));
+        int b = table.add(new File(root, "sub/b.txt"));
+        int c = table.add(new File(root, "sub/deeper/c.txt"));
+        int other = table.add(new File("/other/d.txt").getAbsoluteFile());
+
+        int[] removed = table.removeAll(new File(root, "sub"));
+        assertEquals(Set.of(b, c), toSet(removed));
+        assertTrue(table.contains(a));
+        assertTrue(table.contains(other));
+        assertEquals(-1, table.idOf(new File(root, "sub/b.txt")));
+
+        List<File> removedFiles = new ArrayList<>();
+        int d = table.add(new File(root, "sub/d.txt"));
+        int e = table.add(new File(root, "sub/deeper/e.txt"));
+        assertEquals(Set.of(a, d, e), toSet(table.removeAll(root, removedFiles)));
+        assertEquals(Set.of(new File(root, "a.txt"), new File(root, "sub/d.txt"), new File(root, "sub/deeper/e.txt")),
+                new HashSet<>(removedFiles));
+        assertEquals(1, table.size());
+        assertEquals(0, table.removeAll(new File(root, "missing")).length);
+
+        // A single file can be removed as well
+        assertEquals(Set.of(other), toSet(table.removeAll(new File("/other/d.txt").getAbsoluteFile())));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void testRecycleRemovedIds() {
+        int id = table.add(new File("a.txt"));
+        table.remove(id);
+        table.recycleRemovedIds();
+
+        assertEquals(0, table.removedCount());
+        assertEquals(id, table.add(new File("b.txt")));
+        assertEquals(new File("b.txt"), table.file(id));
+    }
+
+    @Test
+    void testIdsAndClear() {
+        int id1 = table.add(new File("a.txt"));
+        int id2 = table.add(new File("b/c.txt"));
+        assertEquals(Set.of(id1, id2), toSet(table.ids()));
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(0, table.ids().length);
+        assertEquals(-1, table.idOf(new File("a.txt")));
+    }
+
+    private static Set<Integer> toSet(int[] ids) {
+        return new HashSet<>(Arrays.stream(ids).boxed().toList());
+    }
+}
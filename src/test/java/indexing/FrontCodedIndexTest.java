@@ -0,0 +1,99 @@
+package indexing;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontCodedIndexTest {
+
+    private FrontCodedIndex index;
+    private final File file1 = new File("file1.txt");
+    private final File file2 = new File("file2.txt");
+
+    @BeforeEach
+    void setUp() {
+        // A small threshold makes sure both the buffer and the dictionary are exercised
+        index = new FrontCodedIndex(2);
+    }
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    void testAddAndSearch() {
+        index.addToIndex("york", file1);
+        index.addToIndex("new", file1);
+        index.addToIndex("new", file2);
+        index.addToIndex("city", file2);
+        index.addToIndex("york", file2);
+
+        assertEquals(Set.of(file1, file2), index.search("new"));
+        assertEquals(Set.of(file1, file2), index.search("york"));
+        assertEquals(Set.of(file2), index.search("city"));
+        assertTrue(index.search("potatoes").isEmpty());
+        assertEquals(Set.of(file1, file2), index.getIndexedFiles());
+    }
+
+    @Test
+    void testRemoveFileFromIndex() {
+        index.addToIndex("new", file1);
+        index.addToIndex("york", file1);
+        index.addToIndex("new", file2);
+        index.addToIndex("city", file2);
+
+        index.removeFileFromIndex(file1);
+
+        assertEquals(Set.of(file2), index.search("new"));
+        assertTrue(index.search("york").isEmpty());
+        assertEquals(List.of("city", "new"), toList(index.terms(null, null)));
+    }
+
+    @Test
+    void testOrderedIteration() {
+        for (String term : List.of("pear", "apple", "peach", "banana", "plum")) {
+            index.addToIndex(term, file1);
+        }
+
+        assertEquals(List.of("apple", "banana", "peach", "pear", "plum"), toList(index.terms(null, null)));
+        assertEquals(List.of("banana", "peach"), toList(index.terms("b", "pear")));
+        assertEquals(List.of("peach", "pear"), toList(index.termsWithPrefix("pea")));
+        assertEquals(5, index.termCount());
+    }
+
+    @Test
+    void testClearIndex() {
+        index.addToIndex("token1", file1);
+        index.addToIndex("token2", file1);
+        index.addToIndex("token3", file2);
+        index.clearIndex();
+
+        assertTrue(index.getIndexedFiles().isEmpty());
+        assertTrue(index.search("token1").isEmpty());
+        assertEquals(0, index.termCount());
+    }
+
+    @Test
+    void testMergeThresholdGrowsWithTheDictionary() {
+        for (int i = 0; i < 100; i++) {
+            index.addToIndex(String.format("term%03d", i), file1);
+        }
+        // The buffer may hold a fraction of the dictionary, not just the configured two terms
+        assertTrue(index.mergeThreshold() >= (100 - index.mergeThreshold()) / FrontCodedIndex.PENDING_FRACTION);
+        assertTrue(index.mergeThreshold() > 2);
+
+        // Listing terms skips removed terms and includes buffered ones without merging the buffer
+        index.addToIndex("zzz", file2);
+        index.removeFileFromIndex(file1);
+        assertEquals(1, index.termCount());
+        assertEquals(List.of("zzz"), toList(index.terms(null, null)));
+        assertEquals(List.of("zzz"), toList(index.termsWithPrefix("z")));
+        assertTrue(toList(index.terms("a", "t")).isEmpty());
+    }
+}
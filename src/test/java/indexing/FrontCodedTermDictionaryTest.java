@@ -0,0 +1,90 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontCodedTermDictionaryTest {
+
+    private final List<String> terms = List.of("apple", "application", "apply", "banana", "band", "bandana",
+            "can", "candle", "zebra", "zoo", "żółw", "日本");
+
+    private static List<String> toList(Iterator<String> iterator) {
+        List<String> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    void testLookup() {
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.of(terms);
+        assertEquals(terms.size(), dictionary.size());
+
+        for (int i = 0; i < terms.size(); i++) {
+            assertEquals(i, dictionary.indexOf(terms.get(i)));
+            assertEquals(terms.get(i), dictionary.get(i));
+        }
+
+        // Missing terms report their insertion point
+        assertEquals(-1, dictionary.indexOf("aardvark"));
+        assertEquals(-4, dictionary.indexOf("b"));
+        assertEquals(-(terms.size() + 1), dictionary.indexOf("日本語"));
+    }
+
+    @Test
+    void testLookupAcrossBlocks() {
+        List<String> many = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            many.add(String.format("term%04d", i));
+        }
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.of(many);
+
+        for (int i = 0; i < many.size(); i++) {
+            assertEquals(i, dictionary.indexOf(many.get(i)));
+        }
+        assertEquals(-(501), dictionary.indexOf("term0499a"));
+        assertEquals(many, toList(dictionary.iterator()));
+    }
+
+    @Test
+    void testDuplicatesAndOrder() {
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.of(List.of("b", "a", "c", "a"));
+        assertEquals(List.of("a", "b", "c"), toList(dictionary.iterator()));
+    }
+
+    @Test
+    void testRange() {
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.of(terms);
+        assertEquals(List.of("banana", "band", "bandana", "can"), toList(dictionary.range("b", "candle")));
+        assertEquals(List.of("zebra", "zoo", "żółw", "日本"), toList(dictionary.range("zebra", null)));
+        assertEquals(List.of("apple", "application"), toList(dictionary.range(null, "apply")));
+        assertTrue(toList(dictionary.range("x", "c")).isEmpty());
+    }
+
+    @Test
+    void testPrefix() {
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.of(terms);
+        assertEquals(List.of("apple", "application", "apply"), toList(dictionary.prefixed("appl")));
+        assertEquals(List.of("band", "bandana"), toList(dictionary.prefixed("band")));
+        assertTrue(toList(dictionary.prefixed("x")).isEmpty());
+        assertTrue(toList(dictionary.prefixed("日本語")).isEmpty());
+    }
+
+    @Test
+    void testBuilderRejectsUnsortedTerms() {
+        FrontCodedTermDictionary.Builder builder = new FrontCodedTermDictionary.Builder();
+        builder.add("b");
+        assertThrows(IllegalArgumentException.class, () -> builder.add("a"));
+        assertThrows(IllegalArgumentException.class, () -> builder.add("b"));
+    }
+
+    @Test
+    void testEmpty() {
+        FrontCodedTermDictionary dictionary = FrontCodedTermDictionary.empty();
+        assertEquals(0, dictionary.size());
+        assertEquals(-1, dictionary.indexOf("anything"));
+        assertFalse(dictionary.iterator().hasNext());
+    }
+}
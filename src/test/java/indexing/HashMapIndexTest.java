@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -48,6 +50,20 @@ class HashMapIndexTest {
         assertEquals(1, filesForToken2.size());
     }
 
+    @Test
+    void testAddDocument() {
+        index.addDocument(file1, List.of("the", "city", "the", "the"));
+        index.addDocument(file2, List.of("the", "state"));
+        index.addDocument(file3, List.of());
+
+        assertEquals(Set.of(file1, file2), index.search("the"));
+        assertEquals(Set.of(file1), index.search("city"));
+        assertEquals(Set.of(file2), index.search("state"));
+
+        // A document without tokens isn't tracked
+        assertEquals(Set.of(file1, file2), index.getIndexedFiles());
+    }
+
     @Test
     void testSearchNonExistentToken() {
         Set<File> result = index.search("nonExistentToken");
@@ -92,4 +108,113 @@ class HashMapIndexTest {
         assertTrue(indexedFiles.contains(file2));
     }
 
+    @Test
+    void testRemoveDirectoryFromIndex() {
+        File directory = new File("/corpus").getAbsoluteFile();
+        File nested1 = new File(directory, "a/one.txt");
+        File nested2 = new File(directory, "b/two.txt");
+        index.addDocument(nested1, List.of("shared", "one"));
+        index.addDocument(nested2, List.of("shared", "two"));
+        index.addDocument(file1, List.of("shared"));
+
+        index.removeDirectoryFromIndex(directory);
+
+        assertEquals(Set.of(file1), index.search("shared"));
+        assertTrue(index.search("one").isEmpty());
+        assertEquals(Set.of(file1), index.getIndexedFiles());
+    }
+
+    @Test
+    void testTermsOf() {
+        index.addDocument(file1, List.of("apple", "banana", "apple"));
+        index.addToIndex("cherry", file1);
+        index.addPostings("date", List.of(file1, file2));
+        assertEquals(Set.of("apple", "banana", "cherry", "date"), new HashSet<>(index.termsOf(file1)));
+        assertEquals(List.of("date"), index.termsOf(file2));
+
+        index.removeFileFromIndex(file1);
+        assertTrue(index.termsOf(file1).isEmpty());
+        index.addDocument(file1, List.of("elderberry"));
+        assertEquals(List.of("elderberry"), index.termsOf(file1));
+
+        // The other indexes list the same terms by checking their postings
+        for (Index other : List.of(new FrontCodedIndex(), new SegmentedIndex(1, 0.01))) {
+            other.addDocument(file1, List.of("apple", "banana"));
+            other.addDocument(file2, List.of("banana"));
+            assertEquals(Set.of("apple", "banana"), new HashSet<>(other.termsOf(file1)), other.toString());
+            assertTrue(other.termsOf(new File("missing.txt")).isEmpty());
+        }
+    }
+
+    @Test
+    void testRemovedFilesArePurged() {
+        for (int i = 0; i < 200; i++) {
+            index.addDocument(new File("file" + i + ".txt"), List.of("common", "term" + i));
+        }
+        for (int i = 0; i < 200; i++) {
+            index.removeFileFromIndex(new File("file" + i + ".txt"));
+        }
+
+        // The postings of the removed files were purged in bulk
+        assertTrue(index.index.size() < 200);
+        assertTrue(index.search("common").isEmpty());
+        assertTrue(index.getIndexedFiles().isEmpty());
+
+        // Re-adding a removed file doesn't bring back its old terms
+        index.addDocument(new File("file199.txt"), List.of("new"));
+        assertTrue(index.search("term199").isEmpty());
+        assertEquals(Set.of(new File("file199.txt")), index.search("new"));
+    }
+
+    @Test
+    void testEstimatedHeapBytesFollowsChanges() {
+        for (int i = 0; i < 200; i++) {
+            index.addDocument(new File("file" + i + ".txt"), List.of("common", "term" + i));
+        }
+        assertEquals(scannedHeapBytes(), index.estimatedHeapBytes());
+
+        // Removed files count until they are purged, which happens before all of them are removed
+        for (int i = 0; i < 190; i++) {
+            index.removeFileFromIndex(new File("file" + i + ".txt"));
+            assertEquals(scannedHeapBytes(), index.estimatedHeapBytes());
+        }
+
+        index.clearIndex();
+        assertEquals(0, index.estimatedHeapBytes());
+    }
+
+    private long scannedHeapBytes() {
+        long bytes = (long) (index.files.size() + index.files.removedCount()) * HashMapIndex.FILE_BYTES;
+        for (String term : index.terms()) {
+            bytes += HashMapIndex.TERM_OVERHEAD_BYTES + term.length() + (long) index.index.get(term).size() * HashMapIndex.POSTING_BYTES;
+        }
+        return bytes;
+    }
+
+    @Test
+    void testSearchPages() {
+        for (int i = 0; i < 25; i++) {
+            index.addDocument(new File("file" + i + ".txt"), List.of("common"));
+        }
+        index.removeFileFromIndex(new File("file3.txt"));
+        assertEquals(24, index.count("common"));
+        assertEquals(0, index.count("missing"));
+
+        Set<File> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SearchPage page = index.search("common", cursor, 10);
+            assertTrue(page.files().size() <= 10);
+            seen.addAll(page.files());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(index.search("common"), seen);
+        assertFalse(index.search("missing", null, 10).hasMore());
+        assertThrows(IllegalArgumentException.class, () -> index.search("common", "not a cursor", 10));
+    }
+
 }
@@ -0,0 +1,122 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File write(String name, String content) throws IOException {
+        return Files.writeString(this.tempDir.resolve(name), content).toFile();
+    }
+
+    @Test
+    void testIndexesAreCreatedByName() {
+        IndexRegistry registry = new IndexRegistry(Long.MAX_VALUE, this.tempDir.resolve("spill"), indexer -> false);
+        assertEquals(List.of(IndexRegistry.DEFAULT_INDEX), registry.names());
+
+        FileIndexer project = registry.get("project");
+        assertSame(project, registry.get("project"));
+        assertNotSame(project, registry.get(IndexRegistry.DEFAULT_INDEX));
+        assertEquals(List.of(IndexRegistry.DEFAULT_INDEX, "project"), registry.names());
+        assertThrows(IllegalArgumentException.class, () -> registry.get("../escape"));
+    }
+
+    @Test
+    void testColdIndexesAreSwappedOutAndLoadedBack() throws IOException {
+        File a = write("a.txt", "apple banana");
+        File b = write("b.txt", "banana cherry");
+        IndexRegistry registry = new IndexRegistry(Long.MAX_VALUE, this.tempDir.resolve("spill"), indexer -> false);
+        assertTrue(registry.load("first").indexFile(a));
+        assertTrue(registry.load("second").indexFile(b));
+        long heap = registry.estimatedHeapBytes();
+        assertTrue(heap > 0);
+
+        // Only one index fits, so the least recently used one is swapped out
+        registry.setMemoryBudget(heap - 1);
+        assertEquals(List.of("first"), registry.enforceBudget());
+        assertTrue(registry.isSwappedOut("first"));
+        assertFalse(registry.isSwappedOut("second"));
+        assertTrue(registry.estimatedHeapBytes() < heap);
+
+        // A swapped out index is searched from its file
+        assertEquals(Set.of(a), registry.get("first").search("apple"));
+        assertThrows(UnsupportedOperationException.class, () -> registry.get("first").removeFileFromIndex(a));
+        Map<String, Set<File>> hits = registry.searchAll("banana");
+        assertEquals(Map.of("first", Set.of(a), "second", Set.of(b)), hits);
+
+        // Loading it for a change swaps out the other index instead
+        FileIndexer first = registry.load("first");
+        assertFalse(registry.isSwappedOut("first"));
+        assertTrue(registry.isSwappedOut("second"));
+        first.removeFileFromIndex(a);
+        assertTrue(first.search("apple").isEmpty());
+        assertEquals(Set.of(b), registry.get("second").search("cherry"));
+    }
+
+    @Test
+    void testSwappingKeepsTheTokenizerAndSettings() throws IOException {
+        File a = write("a.txt", "Running dogs");
+        IndexRegistry registry = new IndexRegistry(Long.MAX_VALUE, this.tempDir.resolve("spill"), indexer -> false);
+        SimpleFileIndexer english = SimpleFileIndexer.withEnglishAnalysis(new HashMapIndex(), 1.0, 1);
+        english.setLocationStorage(true);
+        english.setDeduplication(true);
+        registry.put("english", english);
+        assertTrue(registry.load("english").indexFile(a));
+
+        registry.setMemoryBudget(0);
+        assertEquals(List.of("english"), registry.enforceBudget());
+        SimpleFileIndexer swapped = (SimpleFileIndexer) registry.get("english");
+        assertEquals(Set.of(a), swapped.search("dog")); // Still stemmed like the documents
+        assertEquals(1, swapped.locate("dog").get(a).size());
+
+        SimpleFileIndexer loaded = (SimpleFileIndexer) registry.load("english");
+        assertTrue(loaded.isStoringLocations());
+        File copy = write("copy.txt", "Running dogs");
+        assertTrue(loaded.indexFile(copy));
+        assertEquals(1, loaded.getDeduplicatedFileCount());
+        assertEquals(Set.of(a, copy), loaded.search("running"));
+    }
+
+    @Test
+    void testPinnedIndexesStayOnTheHeap() throws IOException {
+        File a = write("a.txt", "apple");
+        IndexRegistry registry = new IndexRegistry(Long.MAX_VALUE, this.tempDir.resolve("spill"),
+                indexer -> indexer.getIndexedFileCount() > 0);
+        assertTrue(registry.load(IndexRegistry.DEFAULT_INDEX).indexFile(a));
+
+        registry.setMemoryBudget(1);
+        assertTrue(registry.enforceBudget().isEmpty());
+        assertFalse(registry.isSwappedOut(IndexRegistry.DEFAULT_INDEX));
+    }
+
+    @Test
+    void testBuiltIndexesAreServedFromTheirFile() throws IOException {
+        File a = write("a.txt", "apple banana");
+        File b = write("b.txt", "banana cherry");
+        IndexRegistry registry = new IndexRegistry(Long.MAX_VALUE, this.tempDir.resolve("spill"), indexer -> false);
+        assertTrue(registry.load("built").indexFile(a));
+
+        FileIndexer built = registry.build("built", 1 << 20, b);
+        assertSame(built, registry.get("built"));
+        assertTrue(registry.isSwappedOut("built"));
+        assertEquals(Set.of(a, b), built.search("banana"));
+
+        // Changing it loads it onto the heap
+        registry.load("built").removeFileFromIndex(b);
+        assertFalse(registry.isSwappedOut("built"));
+        assertEquals(Set.of(a), registry.get("built").search("banana"));
+    }
+}
@@ -0,0 +1,69 @@
+package indexing;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexerEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEventsAreRecorded() throws Exception {
+        File file = Files.writeString(this.tempDir.resolve("file.txt"), "hello flight recorder").toFile();
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        SegmentedIndex segmentedIndex = new SegmentedIndex(1, 1);
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("indexer.FileIndexed", "indexer.QueryExecuted", "indexer.IndexMutation", "indexer.SegmentMerge")) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            indexer.indexFile(file);
+            indexer.search("hello");
+            indexer.searchAll("hello", "recorder");
+            indexer.removeFileFromIndex(file);
+            segmentedIndex.addDocument(new File("a"), List.of("a"));
+            segmentedIndex.addDocument(new File("b"), List.of("b")); // Seals the segment of the first file
+
+            recording.stop();
+            Path output = this.tempDir.resolve("recording.jfr");
+            recording.dump(output);
+            events = RecordingFile.readAllEvents(output);
+        }
+
+        Map<String, List<RecordedEvent>> byName = events.stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+        RecordedEvent indexed = byName.get("indexer.FileIndexed").getFirst();
+        assertEquals(file.getPath(), indexed.getString("path"));
+        assertEquals(file.length(), indexed.getLong("bytes"));
+        assertEquals(3, indexed.getInt("terms"));
+
+        Map<String, RecordedEvent> queries = byName.get("indexer.QueryExecuted").stream()
+                .collect(Collectors.toMap(event -> event.getString("kind"), Function.identity()));
+        assertEquals("hello", queries.get("search").getString("query"));
+        assertEquals(1, queries.get("search").getInt("hits"));
+        assertEquals("hello recorder", queries.get("all").getString("query"));
+
+        assertEquals(List.of("add", "remove"), byName.get("indexer.IndexMutation").stream()
+                .map(event -> event.getString("operation")).toList());
+        assertEquals("seal", byName.get("indexer.SegmentMerge").getFirst().getString("operation"));
+    }
+}
@@ -0,0 +1,71 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexingJobTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void createFiles(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Path directory = this.tempDir.resolve("dir" + i % 10);
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve("file" + i + ".txt"), "common unique" + i);
+        }
+    }
+
+    @Test
+    void testCompletes() throws Exception {
+        createFiles(20);
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        IndexingJobs jobs = new IndexingJobs();
+
+        IndexingJob job = jobs.submit(indexer, List.of(this.tempDir.toFile()), true);
+        assertEquals(IndexingJob.State.COMPLETED, job.await());
+
+        assertEquals(1, job.getId());
+        assertSame(job, jobs.get(1));
+        assertNull(jobs.get(2));
+        assertEquals(List.of(job), jobs.list());
+        assertEquals(20, job.getResult().committed());
+        assertEquals(20, indexer.search("common").size());
+
+        IndexingPipeline.Progress progress = job.progress();
+        assertEquals(20, progress.filesDone());
+        assertEquals(progress.bytesFound(), progress.bytesDone());
+        assertTrue(progress.bytesPerSecond() > 0);
+
+        job.cancel(); // Cancelling a finished job does nothing
+        assertEquals(IndexingJob.State.COMPLETED, job.getState());
+    }
+
+    @Test
+    void testCancelLeavesConsistentIndex() throws Exception {
+        createFiles(2000);
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        IndexingJob job = new IndexingJobs().submit(indexer, List.of(this.tempDir.toFile()), true);
+        job.cancel();
+        assertEquals(IndexingJob.State.CANCELLED, job.await());
+
+        // Exactly the committed files are indexed, each with all of its terms
+        Set<File> indexed = indexer.getIndexedFiles();
+        assertEquals(job.getResult().committed(), indexed.size());
+        assertEquals(indexed, indexer.search("common"));
+        for (File file : indexed) {
+            String unique = file.getName().replace("file", "unique").replace(".txt", "");
+            assertEquals(Set.of(file), indexer.search(unique));
+        }
+        assertTrue(job.progress().filesDone() <= job.progress().filesFound());
+    }
+}
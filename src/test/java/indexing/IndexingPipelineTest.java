@@ -0,0 +1,108 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import util.FileHandling;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexingPipelineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void createTree() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            Path directory = this.tempDir.resolve("dir" + i % 5).resolve("sub" + i % 3);
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve("file" + i + ".txt"), "common word" + i + " group" + i % 5);
+        }
+        Files.write(this.tempDir.resolve("image.png"), new byte[]{1, 2, 3});
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(this.tempDir.resolve("docs.zip")))) {
+            zip.putNextEntry(new ZipEntry("inside.txt"));
+            zip.write("common zipped".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testSameAsSequentialIndexing() throws Exception {
+        createTree();
+        SimpleFileIndexer sequential = new SimpleFileIndexer();
+        sequential.indexFiles(FileHandling.getTextFiles(this.tempDir.toFile(), true).toArray(new File[0]));
+
+        // Tiny queues and buffers, so every stage is held back by the next one
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        IndexingPipeline pipeline = new IndexingPipeline(indexer, 2, 3, 2, 1, 16, 4);
+        BatchResult result = pipeline.run(List.of(this.tempDir.toFile()), true);
+
+        assertTrue(result.isComplete());
+        assertEquals(51, result.committed()); // 50 files and one archive entry
+        assertEquals(sequential.getIndexedFiles(), indexer.getIndexedFiles());
+        for (String keyword : new String[]{"common", "word7", "group3", "zipped"}) {
+            assertEquals(sequential.search(keyword), indexer.search(keyword), keyword);
+        }
+
+        List<IndexingPipeline.StageStats> stats = pipeline.stats();
+        assertEquals(List.of("walk", "read", "tokenize", "commit"), stats.stream().map(IndexingPipeline.StageStats::name).toList());
+        for (IndexingPipeline.StageStats stage : stats) {
+            assertEquals(0, stage.queued()); // All queues are drained at the end
+            assertTrue(stage.utilization() >= 0 && stage.utilization() <= 1);
+        }
+        assertEquals(51, stats.get(0).processed()); // 50 files and the archive
+        assertEquals(51, stats.get(3).processed());
+        assertEquals(1, stats.get(1).queueCapacity());
+
+        IndexingPipeline.Progress progress = pipeline.progress();
+        assertTrue(progress.walkFinished());
+        assertEquals(51, progress.filesFound());
+        assertEquals(51, progress.filesDone());
+        assertEquals(progress.bytesFound(), progress.bytesDone());
+        assertEquals(0, progress.etaSeconds());
+    }
+
+    @Test
+    void testDeduplicatesReadFiles() throws Exception {
+        Path original = Files.writeString(this.tempDir.resolve("original.txt"), "same content");
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        indexer.setDeduplication(true);
+        assertTrue(indexer.indexFile(original.toFile()));
+
+        Path copies = Files.createDirectories(this.tempDir.resolve("copies"));
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(copies.resolve("copy" + i + ".txt"), "same content");
+        }
+        BatchResult result = new IndexingPipeline(indexer).run(List.of(copies.toFile()), true);
+
+        assertEquals(3, result.committed());
+        assertEquals(3, indexer.getDeduplicatedFileCount());
+        assertEquals(4, indexer.search("content").size());
+    }
+
+    @Test
+    void testNonRecursiveAndFailures() throws Exception {
+        createTree();
+        Files.writeString(this.tempDir.resolve("top.txt"), "top level");
+        File missing = this.tempDir.resolve("missing").toFile();
+        File image = this.tempDir.resolve("image.png").toFile();
+
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        IndexingPipeline pipeline = new IndexingPipeline(indexer);
+        BatchResult result = pipeline.run(List.of(this.tempDir.toFile(), missing, image), false);
+
+        assertEquals(Set.of(missing, image), Set.copyOf(result.failed()));
+        assertEquals(2, result.committed()); // top.txt and the archive entry
+        assertEquals(Set.of(this.tempDir.resolve("top.txt").toFile()), indexer.search("top"));
+
+        assertThrows(IllegalStateException.class, () -> pipeline.run(List.of(), false));
+    }
+}
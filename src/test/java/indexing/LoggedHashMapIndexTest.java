@@ -0,0 +1,69 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tokenizing.TokenSet;
+import tokenizing.WhitespaceTokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoggedHashMapIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testChangesAreRecoveredFromTheLog() throws IOException {
+        Path directory = this.tempDir.resolve("index");
+        File a = Files.writeString(this.tempDir.resolve("a.txt"), "apple banana").toFile();
+        File b = Files.writeString(this.tempDir.resolve("b.txt"), "banana cherry").toFile();
+
+        LoggedHashMapIndex index = LoggedHashMapIndex.open(directory, WriteAheadLog.Durability.BATCH, 10);
+        SimpleFileIndexer indexer = new SimpleFileIndexer(new WhitespaceTokenizer(), index);
+        assertTrue(indexer.indexFiles(a, b));
+        indexer.removeFileFromIndex(a);
+        // The process dies without closing the log: every change has already returned, so its records are on disk
+
+        LoggedHashMapIndex recovered = LoggedHashMapIndex.open(directory, WriteAheadLog.Durability.BATCH, 10);
+        assertEquals(Set.of(b), recovered.getIndexedFiles());
+        assertEquals(Set.of(b), recovered.search("banana"));
+        assertTrue(recovered.search("apple").isEmpty());
+        recovered.close();
+        index.close();
+    }
+
+    @Test
+    void testCheckpointReplacesTheLogWithASnapshot() throws IOException {
+        Path directory = this.tempDir.resolve("index");
+        File a = new File("a.txt");
+        File b = new File("b.txt");
+
+        try (LoggedHashMapIndex index = LoggedHashMapIndex.open(directory, WriteAheadLog.Durability.INTERVAL, 5)) {
+            SimpleFileIndexer indexer = new SimpleFileIndexer(new WhitespaceTokenizer(), index);
+            indexer.commit(batch(a, "apple"));
+            indexer.checkpoint();
+            assertEquals(0, Files.size(directory.resolve(LoggedHashMapIndex.LOG_FILE)));
+
+            indexer.commit(batch(b, "banana"));
+        }
+
+        try (LoggedHashMapIndex recovered = LoggedHashMapIndex.open(directory, WriteAheadLog.Durability.NONE, 5)) {
+            assertEquals(Set.of(a, b), recovered.getIndexedFiles());
+            assertEquals(Set.of(a), recovered.search("apple"));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> new SimpleFileIndexer().checkpoint());
+    }
+
+    private static SimpleFileIndexer.Batch batch(File file, String term) {
+        SimpleFileIndexer.Batch batch = new SimpleFileIndexer.Batch();
+        batch.files.put(file, new SimpleFileIndexer.Staged(TokenSet.of(List.of(term))));
+        return batch;
+    }
+}
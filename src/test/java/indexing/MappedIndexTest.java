@@ -0,0 +1,179 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MappedIndex writeAndOpen(Index index) throws IOException {
+        Path path = this.tempDir.resolve("index.idx");
+        MappedIndexWriter.write(index, path);
+        return MappedIndex.open(path);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        File absolute = new File(File.separator + "data" + File.separator + "docs" + File.separator + "a.txt");
+        File sibling = new File(File.separator + "data" + File.separator + "docs" + File.separator + "b.txt");
+        File nested = new File("relative" + File.separator + "deeper" + File.separator + "c.txt");
+        File topLevel = new File("d.txt");
+        index.addDocument(absolute, List.of("hello", "world", "ünïcode"));
+        index.addDocument(sibling, List.of("hello", "there"));
+        index.addDocument(nested, List.of("world"));
+        index.addDocument(topLevel, List.of("hello"));
+
+        MappedIndex mapped = writeAndOpen(index);
+
+        for (String term : index.terms()) {
+            assertEquals(index.search(term), mapped.search(term), term);
+            assertEquals(index.count(term), mapped.count(term), term);
+        }
+        assertEquals(index.getIndexedFiles(), mapped.getIndexedFiles());
+        assertTrue(mapped.getIndexedFiles().contains(nested));
+        assertFalse(mapped.getIndexedFiles().contains(new File("missing.txt")));
+        assertEquals(4, mapped.termCount());
+        assertEquals(Set.of("hello", "world", "there", "ünïcode"), Set.copyOf(toList(mapped.terms())));
+    }
+
+    @Test
+    void testFindsFilesByPath() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        String sep = File.separator;
+        // Names that are prefixes of each other, sort around the separator, or contain multibyte characters
+        List<File> files = new ArrayList<>();
+        for (String path : List.of("a", "a.txt", "a" + sep + "b", "a" + sep + "b" + sep + "c", "ab", "a-b" + sep + "c", "a0",
+                "é", "é" + sep + "x", "\uFFFD", "😀", "😀" + sep + "😀", sep + "root" + sep + "x", sep + "rootx")) {
+            files.add(new File(path));
+        }
+        for (File file : files) {
+            index.addDocument(file, List.of("term"));
+        }
+        MappedIndex mapped = writeAndOpen(index);
+
+        Set<Integer> ids = new HashSet<>();
+        for (File file : files) {
+            int id = mapped.idOf(file);
+            assertEquals(file, mapped.file(id));
+            ids.add(id);
+        }
+        assertEquals(files.size(), ids.size());
+        for (String missing : List.of("", "0", "a" + sep + "c", "a" + sep + "b" + sep + "c" + sep + "d", "b",
+                "e", "😀" + sep + "x", sep + "root", "\uFFFF")) {
+            assertEquals(-1, mapped.idOf(new File(missing)), missing);
+        }
+    }
+
+    @Test
+    void testMissingTerms() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        for (int i = 0; i < 100; i++) {
+            index.addDocument(new File("file" + i), List.of("term" + i * 2));
+        }
+        MappedIndex mapped = writeAndOpen(index);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Set.of(new File("file" + i)), mapped.search("term" + i * 2));
+            assertTrue(mapped.search("term" + (i * 2 + 1)).isEmpty());
+        }
+        assertTrue(mapped.search("").isEmpty());
+        assertTrue(mapped.search("a").isEmpty());
+        assertTrue(mapped.search("zzz").isEmpty());
+        assertEquals(0, mapped.count("zzz"));
+    }
+
+    @Test
+    void testSearchPages() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        for (int i = 0; i < 25; i++) {
+            index.addDocument(new File("file" + i), List.of("common"));
+        }
+        MappedIndex mapped = writeAndOpen(index);
+
+        Set<File> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SearchPage page = mapped.search("common", cursor, 10);
+            seen.addAll(page.files());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(index.search("common"), seen);
+        assertTrue(mapped.search("missing", null, 10).files().isEmpty());
+    }
+
+    @Test
+    void testGallopUsesSkipEntries() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.addDocument(new File("file" + i + ".txt"), i % 3 == 0 ? List.of("common", "third") : List.of("common"));
+        }
+        MappedIndex mapped = writeAndOpen(index);
+
+        // Candidates spread over several blocks, before, inside and after the postings of the term
+        for (String term : List.of("common", "third", "missing")) {
+            DocIdSet all = mapped.postings("common");
+            int[] candidates = new int[all.size() / 7 + 1];
+            int count = 0;
+            for (int i = 0; i < all.size(); i += 7) {
+                candidates[count++] = all.get(i);
+            }
+            int[] expected = candidates.clone();
+            DocIdSet ids = mapped.postings(term);
+            int expectedCount = ids == null ? 0 : QueryPlanner.gallop(expected, count, ids);
+
+            int kept = mapped.gallop(term, candidates, count);
+            assertEquals(expectedCount, kept, term);
+            assertArrayEquals(Arrays.copyOf(expected, expectedCount), Arrays.copyOf(candidates, kept), term);
+        }
+    }
+
+    @Test
+    void testEmptyIndex() throws IOException {
+        MappedIndex mapped = writeAndOpen(new HashMapIndex());
+
+        assertTrue(mapped.search("hello").isEmpty());
+        assertTrue(mapped.getIndexedFiles().isEmpty());
+        assertFalse(mapped.terms().iterator().hasNext());
+    }
+
+    @Test
+    void testReadOnly() throws IOException {
+        HashMapIndex index = new HashMapIndex();
+        index.addDocument(new File("file1.txt"), List.of("hello"));
+        MappedIndex mapped = writeAndOpen(index);
+
+        assertThrows(UnsupportedOperationException.class, () -> mapped.addToIndex("world", new File("file2.txt")));
+        assertThrows(UnsupportedOperationException.class, () -> mapped.removeFileFromIndex(new File("file1.txt")));
+        assertThrows(UnsupportedOperationException.class, mapped::clearIndex);
+        assertEquals(Set.of(new File("file1.txt")), mapped.search("hello"));
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path path = this.tempDir.resolve("other.txt");
+        Files.writeString(path, "This is not an index file, but it is long enough to hold a header.");
+
+        assertThrows(IOException.class, () -> MappedIndex.open(path));
+    }
+
+    private static List<String> toList(Iterable<String> terms) {
+        List<String> list = new ArrayList<>();
+        terms.forEach(list::add);
+        return list;
+    }
+}
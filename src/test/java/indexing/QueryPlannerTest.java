@@ -0,0 +1,130 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tokenizing.WhitespaceTokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryPlannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Fills an index with files whose terms are the divisors they are a multiple of,
+     * so "d2" is in half of the files and "d97" only in a few.
+     */
+    private static void fill(Index index, int files) {
+        for (int i = 1; i <= files; i++) {
+            List<String> tokens = new ArrayList<>();
+            for (int divisor : new int[]{1, 2, 3, 5, 11, 13, 97}) {
+                if (i % divisor == 0) {
+                    tokens.add("d" + divisor);
+                }
+            }
+            index.addDocument(new File("file" + i), tokens);
+        }
+    }
+
+    private static Set<File> expected(Index index, String... terms) {
+        Set<File> result = new HashSet<>(index.getIndexedFiles());
+        for (String term : terms) {
+            result.retainAll(index.search(term));
+        }
+        return result;
+    }
+
+    @Test
+    void testPlanOrdersByFrequency() {
+        HashMapIndex index = new HashMapIndex();
+        fill(index, 1000);
+
+        QueryPlanner.Plan plan = QueryPlanner.plan(index, List.of("d2", "d97", "d1", "d97"));
+
+        assertEquals(List.of("d97", "d2", "d1"), plan.steps().stream().map(QueryPlanner.Step::term).toList());
+        assertEquals(List.of(10, 500, 1000), plan.steps().stream().map(QueryPlanner.Step::documentFrequency).toList());
+        assertEquals(QueryPlanner.Strategy.SCAN, plan.steps().get(0).strategy());
+        assertEquals(QueryPlanner.Strategy.GALLOPING, plan.steps().get(1).strategy());
+        assertFalse(plan.isEmpty());
+        assertTrue(plan.toString().contains("GALLOPING \"d2\" (500 files)"));
+
+        QueryPlanner.Plan missing = QueryPlanner.plan(index, List.of("d2", "missing"));
+        assertEquals("missing", missing.steps().getFirst().term());
+        assertTrue(missing.isEmpty());
+        assertTrue(QueryPlanner.execute(index, missing).isEmpty());
+        assertTrue(QueryPlanner.plan(index, List.of()).isEmpty());
+    }
+
+    @Test
+    void testChooseStrategy() {
+        assertEquals(QueryPlanner.Strategy.PROBE, QueryPlanner.chooseStrategy(false, 10, 1000));
+        assertEquals(QueryPlanner.Strategy.GALLOPING, QueryPlanner.chooseStrategy(true, 10, 1000));
+        assertEquals(QueryPlanner.Strategy.MERGE, QueryPlanner.chooseStrategy(true, 1000, 2000));
+        assertEquals(QueryPlanner.Strategy.MERGE, QueryPlanner.chooseStrategy(true, 100, 200));
+    }
+
+    @Test
+    void testAllStrategiesMatch() throws IOException {
+        HashMapIndex hashMapIndex = new HashMapIndex();
+        SegmentedIndex segmentedIndex = new SegmentedIndex(64, 0.01);
+        FrontCodedIndex frontCodedIndex = new FrontCodedIndex();
+        for (Index index : List.of(hashMapIndex, segmentedIndex, frontCodedIndex)) {
+            fill(index, 3000);
+        }
+        Path path = this.tempDir.resolve("index.idx");
+        MappedIndexWriter.write(hashMapIndex, path);
+        MappedIndex mappedIndex = MappedIndex.open(path);
+
+        // Merge and galloping steps over long postings with skip entries, and a query without results
+        List<String[]> queries = List.of(new String[]{"d13", "d11"}, new String[]{"d97", "d1"}, new String[]{"d5", "d2", "d1"},
+                new String[]{"d97", "d5", "d3", "d2"}, new String[]{"d1"});
+        Set<QueryPlanner.Strategy> used = EnumSet.noneOf(QueryPlanner.Strategy.class);
+        for (String[] query : queries) {
+            QueryPlanner.plan(hashMapIndex, List.of(query)).steps().forEach(step -> used.add(step.strategy()));
+        }
+        assertEquals(EnumSet.complementOf(EnumSet.of(QueryPlanner.Strategy.PROBE)), used);
+
+        for (Index index : List.of(hashMapIndex, segmentedIndex, frontCodedIndex, mappedIndex)) {
+            for (String[] query : queries) {
+                QueryPlanner.Plan plan = QueryPlanner.plan(index, List.of(query));
+                assertEquals(expected(hashMapIndex, query), QueryPlanner.execute(index, plan), plan.toString());
+            }
+        }
+        assertEquals(QueryPlanner.Strategy.PROBE, QueryPlanner.plan(segmentedIndex, List.of("d2", "d3")).steps().get(1).strategy());
+    }
+
+    @Test
+    void testRemovedFilesAreSkipped() {
+        HashMapIndex index = new HashMapIndex();
+        fill(index, 100);
+        index.removeFileFromIndex(new File("file6"));
+
+        QueryPlanner.Plan plan = QueryPlanner.plan(index, List.of("d2", "d3"));
+        assertEquals(expected(index, "d2", "d3"), QueryPlanner.execute(index, plan));
+        assertFalse(QueryPlanner.execute(index, plan).contains(new File("file6")));
+    }
+
+    @Test
+    void testSearchAll() throws IOException {
+        Path first = Files.writeString(this.tempDir.resolve("first.txt"), "apple banana cherry");
+        Path second = Files.writeString(this.tempDir.resolve("second.txt"), "apple cherry");
+        Files.writeString(this.tempDir.resolve("third.txt"), "banana");
+        SimpleFileIndexer indexer = new SimpleFileIndexer(new WhitespaceTokenizer(), new HashMapIndex());
+        for (File file : Objects.requireNonNull(this.tempDir.toFile().listFiles())) {
+            indexer.indexFile(file);
+        }
+
+        assertEquals(Set.of(first.toFile(), second.toFile()), indexer.searchAll("Apple", "cherry"));
+        assertEquals(Set.of(first.toFile()), indexer.searchAll("apple", "banana"));
+        assertTrue(indexer.searchAll("apple", "durian").isEmpty());
+        assertEquals("durian", indexer.explain("apple", "durian").steps().getFirst().term());
+        assertEquals(2, indexer.documentFrequency("apple"));
+    }
+}
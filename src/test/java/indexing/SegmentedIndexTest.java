@@ -0,0 +1,84 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedIndexTest {
+
+    private final File file1 = new File("file1.txt");
+    private final File file2 = new File("file2.txt");
+    private final File file3 = new File("file3.txt");
+
+    @Test
+    void testSearchAcrossSegments() {
+        SegmentedIndex index = new SegmentedIndex(1, 0.01);
+        index.addDocument(file1, List.of("hello", "world"));
+        index.addDocument(file2, List.of("hello", "there"));
+        index.addDocument(file3, List.of("world"));
+
+        assertEquals(2, index.getSegmentCount()); // The third file is still in the active segment
+        assertEquals(Set.of(file1, file2), index.search("hello"));
+        assertEquals(Set.of(file1, file3), index.search("world"));
+        assertEquals(Set.of(file2), index.search("there"));
+        assertEquals(Set.of(file1, file2, file3), index.getIndexedFiles());
+    }
+
+    @Test
+    void testMissingTermsSkipSegments() {
+        SegmentedIndex index = new SegmentedIndex(1, 0.001);
+        for (int i = 0; i < 20; i++) {
+            index.addDocument(new File("file" + i), List.of("common", "term" + i));
+        }
+        index.seal();
+
+        assertTrue(index.search("potatoes").isEmpty());
+        assertTrue(index.getSkippedLookups() >= 19); // At most one false positive is likely
+        assertEquals(20, index.search("common").size());
+    }
+
+    @Test
+    void testWithoutFilters() {
+        SegmentedIndex index = new SegmentedIndex(1, 1);
+        index.addDocument(file1, List.of("hello"));
+        index.addDocument(file2, List.of("hello"));
+        index.seal();
+
+        assertTrue(index.search("potatoes").isEmpty());
+        assertEquals(0, index.getSkippedLookups());
+        assertEquals(Set.of(file1, file2), index.search("hello"));
+    }
+
+    @Test
+    void testRemoveFileFromIndex() {
+        SegmentedIndex index = new SegmentedIndex(2, 0.01);
+        index.addDocument(file1, List.of("hello", "world"));
+        index.addDocument(file2, List.of("hello"));
+        index.addDocument(file3, List.of("hello"));
+
+        index.removeFileFromIndex(file1);
+        assertEquals(Set.of(file2, file3), index.search("hello"));
+        assertTrue(index.search("world").isEmpty());
+
+        index.removeFileFromIndex(file2);
+        assertEquals(0, index.getSegmentCount()); // The sealed segment no longer has any files
+        assertEquals(Set.of(file3), index.search("hello"));
+        assertEquals(Set.of(file3), index.getIndexedFiles());
+    }
+
+    @Test
+    void testClearIndex() {
+        SegmentedIndex index = new SegmentedIndex(1, 0.01);
+        index.addToIndex("hello", file1);
+        index.addToIndex("hello", file2);
+        index.clearIndex();
+
+        assertTrue(index.search("hello").isEmpty());
+        assertTrue(index.getIndexedFiles().isEmpty());
+        assertEquals(0, index.getSegmentCount());
+    }
+}
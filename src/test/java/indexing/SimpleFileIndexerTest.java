@@ -2,12 +2,21 @@ package indexing;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import tokenizing.WhitespaceTokenizer;
 import util.FileHandling;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -83,16 +92,97 @@ class SimpleFileIndexerTest {
         }
     }
 
+    @Test
+    void testIndexFiles_withoutProgressOutput() {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        indexer.setProgressOutput(false);
+        System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+        try {
+            BatchResult result = indexer.indexFiles(FailurePolicy.SKIP_FILE, 1, textFile1, nonTextFile, textFile2);
+            assertEquals(2, result.committed());
+        } finally {
+            System.setOut(out);
+        }
+
+        // Only the failure is printed
+        String output = printed.toString(StandardCharsets.UTF_8);
+        assertFalse(output.contains("Indexing file"), output);
+        assertTrue(output.contains(nonTextFile.getAbsolutePath()), output);
+        assertFalse(indexer.isPrintingProgress());
+    }
+
     @Test
     void testIndexFiles_withNonTextFile() {
         // We make sure the file is not a text file
         assertFalse(FileHandling.isTextFile(nonTextFile));
 
         assertFalse(indexer.indexFiles(textFile1, nonTextFile));
-        // Ensure that the index is cleared after failure
+        // Ensure that nothing of the failed batch is committed
         assertTrue(indexer.search("hello,").isEmpty());
     }
 
+    @Test
+    void testIndexFiles_failureKeepsCommittedFiles() {
+        assertTrue(indexer.indexFiles(textFile2));
+        assertFalse(indexer.indexFiles(textFile1, nonTextFile));
+
+        // The earlier batch is still there, the failed batch was rolled back
+        assertEquals(Set.of(textFile2), indexer.search("hello,"));
+        assertEquals(Set.of(textFile2), indexer.getIndexedFiles());
+    }
+
+    @Test
+    void testIndexFiles_failingIndexRestoresReplacedFiles() throws IOException {
+        boolean[] failing = {false};
+        HashMapIndex index = new HashMapIndex() {
+            @Override
+            public void addDocument(File file, Iterable<String> tokens) {
+                if (failing[0] && file.equals(textFile1)) {
+                    failing[0] = false; // Fails once
+                    throw new IllegalStateException("The index is broken.");
+                }
+                super.addDocument(file, tokens);
+            }
+        };
+        SimpleFileIndexer failingIndexer = new SimpleFileIndexer(new WhitespaceTokenizer(), index);
+        assertTrue(failingIndexer.indexFiles(textFile1, textFile2));
+
+        // Re-index both files with new content, and fail while adding the second one
+        Files.writeString(textFile1.toPath(), "Replaced content.");
+        Files.writeString(textFile2.toPath(), "Replaced content too.");
+        failing[0] = true;
+        assertThrows(IllegalStateException.class, () -> failingIndexer.indexFiles(textFile2, textFile1));
+
+        // The committed versions of both files are still indexed
+        assertEquals(Set.of(textFile1, textFile2), failingIndexer.search("hello,"));
+        assertEquals(Set.of(textFile2), failingIndexer.search("different"));
+        assertTrue(failingIndexer.search("replaced").isEmpty());
+        assertEquals(Set.of(textFile1, textFile2), failingIndexer.getIndexedFiles());
+    }
+
+    @Test
+    void testIndexFiles_batchPolicies() throws IOException {
+        File textFile3 = Files.createTempFile("testFile3", ".txt").toFile();
+        Files.writeString(textFile3.toPath(), "Hello again.");
+        textFile3.deleteOnExit();
+
+        // Batches of two: the second batch contains the non-text file
+        BatchResult rolledBack = indexer.indexFiles(FailurePolicy.ROLL_BACK_BATCH, 2, textFile1, textFile2, nonTextFile, textFile3);
+        assertEquals(2, rolledBack.committed());
+        assertEquals(List.of(nonTextFile), rolledBack.failed());
+        assertEquals(List.of(textFile3), rolledBack.rolledBack());
+        assertEquals(Set.of(textFile1, textFile2), indexer.search("hello,"));
+
+        BatchResult skipped = indexer.indexFiles(FailurePolicy.SKIP_FILE, 2, textFile1, textFile2, nonTextFile, textFile3);
+        assertEquals(3, skipped.committed());
+        assertEquals(List.of(nonTextFile), skipped.failed());
+        assertTrue(skipped.rolledBack().isEmpty());
+        assertFalse(skipped.isComplete());
+        assertEquals(Set.of(textFile3), indexer.search("again."));
+        assertEquals(3, indexer.getIndexedFileCount());
+    }
+
     @Test
     void testClearIndex() {
         indexer.indexFile(textFile1);
@@ -165,6 +255,18 @@ class SimpleFileIndexerTest {
         assertFalse(resultOld.contains(textFile1));
     }
 
+    @Test
+    void testUpdateFileInIndex_unreadableFileKeepsIndexedVersion() throws IOException {
+        File vanishing = Files.createTempFile("vanishingFile", ".txt").toFile();
+        Files.writeString(vanishing.toPath(), "Committed content.");
+        assertTrue(indexer.indexFile(vanishing));
+        assertTrue(vanishing.delete());
+
+        assertFalse(indexer.updateFileInIndex(vanishing));
+        assertTrue(indexer.isIndexed(vanishing));
+        assertEquals(Set.of(vanishing), indexer.search("committed"));
+    }
+
     @Test
     void testUpdateFileInIndex_nonIndexedFile() throws IOException {
         // Create a new file that hasn't been indexed
@@ -178,4 +280,206 @@ class SimpleFileIndexerTest {
         // Verify that the file also gets indexed
         assertTrue(indexer.getIndexedFiles().contains(nonIndexedFile));
     }
+
+    @Test
+    void testParallelTokenization() {
+        SimpleFileIndexer parallelIndexer = new SimpleFileIndexer();
+        parallelIndexer.setParallelThreshold(0); // Tokenize every file in chunks
+
+        assertTrue(parallelIndexer.indexFile(textFile2));
+        assertTrue(indexer.indexFile(textFile2));
+        for (String keyword : new String[]{"hello,", "world!", "different", "file."}) {
+            assertEquals(indexer.search(keyword), parallelIndexer.search(keyword));
+            assertEquals(Set.of(textFile2), parallelIndexer.search(keyword));
+        }
+        assertFalse(parallelIndexer.indexFile(nonTextFile));
+    }
+
+    @Test
+    void testDeduplication() throws IOException {
+        indexer.setDeduplication(true);
+        File copy = Files.createTempFile("testFile1Copy", ".txt").toFile();
+        Files.copy(textFile1.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+
+        assertTrue(indexer.indexFiles(textFile1, copy, textFile2));
+        assertEquals(1, indexer.getDeduplicatedFileCount());
+        assertEquals(Set.of(textFile1, copy, textFile2), indexer.search("hello,"));
+        assertEquals(Set.of(textFile1, copy, textFile2), indexer.search("file."));
+
+        // Changing one copy doesn't affect the other
+        Files.writeString(copy.toPath(), "Updated content for the copy.");
+        assertTrue(indexer.updateFileInIndex(copy));
+        assertEquals(Set.of(textFile1, textFile2), indexer.search("file."));
+        assertEquals(Set.of(copy), indexer.search("copy."));
+
+        // The content stays known while one file still has it
+        indexer.removeFileFromIndex(textFile2);
+        File another = Files.createTempFile("testFile1Copy", ".txt").toFile();
+        Files.copy(textFile1.toPath(), another.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        another.deleteOnExit();
+        assertTrue(indexer.indexFile(another));
+        assertEquals(2, indexer.getDeduplicatedFileCount());
+        assertEquals(Set.of(textFile1, another), indexer.search("file."));
+
+        assertFalse(indexer.indexFile(nonTextFile));
+    }
+
+    @Test
+    void testDeduplicationOnlyRemembersCommittedFiles() throws IOException {
+        indexer.setDeduplication(true);
+        File copy = Files.createTempFile("testFile1Copy", ".txt").toFile();
+        Files.copy(textFile1.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        copy.deleteOnExit();
+
+        // The rolled back batch leaves nothing behind that later files could reuse
+        assertFalse(indexer.indexFiles(textFile1, nonTextFile));
+        assertTrue(indexer.indexFile(copy));
+        assertEquals(0, indexer.getDeduplicatedFileCount());
+        assertEquals(Set.of(copy), indexer.search("hello,"));
+    }
+
+    @Test
+    void testLocations() throws IOException {
+        assertTrue(indexer.indexFile(textFile1)); // Indexed before locations are stored
+        indexer.setLocationStorage(true);
+        File lines = Files.createTempFile("testLines", ".txt").toFile();
+        Files.writeString(lines.toPath(), "Hello there.\nThis line mentions a test here,\nand this one a test file.");
+        lines.deleteOnExit();
+        assertTrue(indexer.indexFiles(lines, textFile2));
+
+        Map<File, List<TermLocation>> located = indexer.locate("test", "file.");
+        assertEquals(Set.of(textFile1, textFile2, lines), located.keySet());
+        assertTrue(located.get(textFile1).isEmpty());
+        assertEquals(2, located.get(textFile2).size());
+
+        // Occurrences of all keywords, in the order they appear
+        List<TermLocation> occurrences = located.get(lines);
+        assertEquals(List.of(2, 3, 3), occurrences.stream().map(TermLocation::line).toList());
+        assertEquals("This line mentions a test here,", occurrences.get(0).snippet());
+        assertEquals("and this one a test file.", occurrences.get(2).snippet());
+        assertEquals(List.of("test", "test", "file."), occurrences.stream().map(TermLocation::term).toList());
+
+        indexer.removeFileFromIndex(lines);
+        assertFalse(indexer.locate("mentions").containsKey(lines));
+    }
+
+    @Test
+    void testLocationsFollowCommittedVersions() throws IOException {
+        indexer.setLocationStorage(true);
+        File lines = Files.createTempFile("testLines", ".txt").toFile();
+        Files.writeString(lines.toPath(), "first\nsecond test");
+        lines.deleteOnExit();
+        assertTrue(indexer.indexFile(lines));
+
+        // A rolled back batch keeps the locations of the committed version
+        Files.writeString(lines.toPath(), "test first\nsecond");
+        assertFalse(indexer.indexFiles(lines, nonTextFile));
+        assertEquals(List.of(2), indexer.locate("test").get(lines).stream().map(TermLocation::line).toList());
+
+        // A version tokenized in chunks has no locations, so the old ones are forgotten
+        indexer.setParallelThreshold(1);
+        assertTrue(indexer.indexFiles(lines));
+        assertTrue(indexer.locate("test").get(lines).isEmpty());
+    }
+
+    @Test
+    void testArchiveEntries() throws IOException {
+        File archive = Files.createTempFile("archive", ".zip").toFile();
+        archive.deleteOnExit();
+        writeZip(archive, Map.of("a.txt", "hello archive", "nested/b.txt", "hello nested"));
+
+        assertTrue(indexer.indexFile(archive));
+        File entryA = new File(archive.getPath() + "!/a.txt");
+        File entryB = new File(archive.getPath() + "!/nested/b.txt");
+        assertEquals(Set.of(entryA, entryB), indexer.search("hello"));
+        assertEquals(Set.of(entryB), indexer.search("nested"));
+
+        // Reindexing the archive replaces all of its entries
+        writeZip(archive, Map.of("a.txt", "changed archive"));
+        assertTrue(indexer.indexFiles(archive, textFile1));
+        assertEquals(Set.of(entryA), indexer.search("changed"));
+        assertTrue(indexer.search("nested").isEmpty());
+
+        indexer.removeDirectoryFromIndex(archive);
+        assertEquals(Set.of(textFile1), indexer.getIndexedFiles());
+    }
+
+    @Test
+    void testRemovingDirectoryReleasesItsContents() throws IOException {
+        indexer.setDeduplication(true);
+        File directory = Files.createTempDirectory("removedDirectory").toFile();
+        File removed = new File(directory, "nested/removed.txt");
+        assertTrue(removed.getParentFile().mkdirs());
+        Files.writeString(removed.toPath(), "Content of a removed directory.");
+        removed.deleteOnExit();
+        assertTrue(indexer.indexFiles(removed, textFile1));
+
+        indexer.removeDirectoryFromIndex(directory);
+        assertEquals(Set.of(textFile1), indexer.getIndexedFiles());
+
+        // The content was released, so a later copy is tokenized again instead of reusing it
+        File copy = Files.createTempFile("removedCopy", ".txt").toFile();
+        Files.writeString(copy.toPath(), "Content of a removed directory.");
+        copy.deleteOnExit();
+        assertTrue(indexer.indexFile(copy));
+        assertEquals(0, indexer.getDeduplicatedFileCount());
+        assertEquals(Set.of(copy), indexer.search("removed"));
+    }
+
+    private static void writeZip(File archive, Map<String, String> entries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive.toPath()))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void testSearchPageAndCount() {
+        // A FrontCodedIndex uses the default paging of the Index interface
+        for (FileIndexer pagedIndexer : List.of(indexer, new SimpleFileIndexer(new WhitespaceTokenizer(), new FrontCodedIndex()))) {
+            pagedIndexer.indexFiles(textFile1, textFile2);
+            assertEquals(2, pagedIndexer.count("Hello,"));
+
+            SearchPage first = pagedIndexer.search("hello,", null, 1);
+            assertEquals(1, first.files().size());
+            assertTrue(first.hasMore());
+
+            SearchPage second = pagedIndexer.search("hello,", first.nextCursor(), 1);
+            assertEquals(1, second.files().size());
+            assertFalse(second.hasMore());
+            assertEquals(Set.of(textFile1, textFile2), Set.of(first.files().getFirst(), second.files().getFirst()));
+        }
+    }
+
+    @Test
+    void testEnglishAnalysis() throws IOException {
+        SimpleFileIndexer analyzingIndexer = SimpleFileIndexer.withEnglishAnalysis(new HashMapIndex(), 0.5, 2);
+        File cities = Files.createTempFile("cities", ".txt").toFile();
+        Files.writeString(cities.toPath(), "The largest cities of the United States, like New York.");
+        cities.deleteOnExit();
+
+        assertTrue(analyzingIndexer.indexFiles(textFile1, cities));
+
+        // Punctuation is stripped and plurals are stemmed, for the files and the keywords alike
+        assertEquals(Set.of(textFile1), analyzingIndexer.search("hello"));
+        assertEquals(Set.of(textFile1), analyzingIndexer.search("Hello,"));
+        assertEquals(Set.of(cities), analyzingIndexer.search("city"));
+        assertEquals(Set.of(cities), analyzingIndexer.search("York"));
+        assertTrue(analyzingIndexer.search("the").isEmpty());
+
+        // Once there are enough files, terms in more than half of them are no longer added for new files
+        File greeting = Files.createTempFile("greeting", ".txt").toFile();
+        File world = Files.createTempFile("world", ".txt").toFile();
+        Files.writeString(greeting.toPath(), "Hello again.");
+        Files.writeString(world.toPath(), "Hello world.");
+        greeting.deleteOnExit();
+        world.deleteOnExit();
+        assertTrue(analyzingIndexer.indexFile(greeting));
+        assertTrue(analyzingIndexer.indexFile(world));
+        assertEquals(Set.of(textFile1, greeting), analyzingIndexer.search("hello"));
+        assertEquals(Set.of(textFile1, world), analyzingIndexer.search("world"));
+    }
 }
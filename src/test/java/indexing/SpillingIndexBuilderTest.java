@@ -0,0 +1,137 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingIndexBuilderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSpillsAndMergesToSameResult() throws IOException {
+        Random random = new Random(42);
+        HashMapIndex expected = new HashMapIndex();
+        HashMapIndex actual = new HashMapIndex();
+
+        // A tiny budget forces many runs
+        try (SpillingIndexBuilder builder = new SpillingIndexBuilder(4096, tempDir)) {
+            for (int i = 0; i < 200; i++) {
+                File file = new File("file" + i + ".txt");
+                List<String> tokens = new ArrayList<>();
+                for (int j = 0; j < 30; j++) {
+                    tokens.add("term" + random.nextInt(500));
+                }
+                expected.addDocument(file, tokens);
+                builder.addDocument(file, tokens);
+            }
+            assertTrue(builder.getRunCount() > 1);
+
+            builder.merge(actual::addPostings);
+        }
+
+        // File IDs depend on the insertion order, so the postings are compared as files
+        assertEquals(expected.index.keySet(), actual.index.keySet());
+        for (String term : expected.index.keySet()) {
+            assertEquals(expected.search(term), actual.search(term));
+        }
+        assertEquals(expected.getIndexedFiles(), actual.getIndexedFiles());
+    }
+
+    @Test
+    void testMergeIsSortedAndComplete() throws IOException {
+        File file1 = new File("a.txt");
+        File file2 = new File("b.txt");
+        File file3 = new File("c.txt");
+
+        List<String> terms = new ArrayList<>();
+        Map<String, List<File>> postings = new HashMap<>();
+        try (SpillingIndexBuilder builder = new SpillingIndexBuilder(1, tempDir)) {
+            // Every document is spilled into its own run
+            builder.addDocument(file1, List.of("zoo", "apple", "żółw"));
+            builder.addDocument(file2, List.of("apple", "banana"));
+            builder.addDocument(file3, List.of("zoo", "apple"));
+            assertEquals(3, builder.getRunCount());
+
+            builder.merge((term, files) -> {
+                terms.add(term);
+                postings.put(term, List.copyOf(files));
+            });
+        }
+
+        assertEquals(List.of("apple", "banana", "zoo", "żółw"), terms);
+        assertEquals(List.of(file1, file2, file3), postings.get("apple"));
+        assertEquals(List.of(file1, file3), postings.get("zoo"));
+    }
+
+    @Test
+    void testCloseDeletesRuns() throws IOException {
+        SpillingIndexBuilder builder = new SpillingIndexBuilder(1, tempDir);
+        builder.addDocument(new File("a.txt"), List.of("one", "two"));
+        assertEquals(1, Files.list(tempDir).count());
+
+        builder.close();
+        assertEquals(0, Files.list(tempDir).count());
+    }
+
+    @Test
+    void testWritesIndexFileWithExistingIndex() throws IOException {
+        File a = new File("docs/a.txt");
+        File b = new File("docs/b.txt");
+        File c = new File("docs/c.txt");
+        HashMapIndex existing = new HashMapIndex();
+        existing.addDocument(a, List.of("apple", "banana"));
+        existing.addDocument(b, List.of("banana", "old"));
+
+        Path path = tempDir.resolve("built.idx");
+        try (SpillingIndexBuilder builder = new SpillingIndexBuilder(1, tempDir)) {
+            // The version of b in the existing index is replaced by the added one
+            builder.addIndex(existing, b::equals);
+            builder.addDocument(b, List.of("banana", "new"));
+            builder.addDocument(c, List.of("cherry", "apple"));
+            assertThrows(IllegalStateException.class, () -> builder.addIndex(existing, file -> false));
+            MappedIndexWriter.write(builder, path);
+        }
+
+        MappedIndex index = MappedIndex.open(path);
+        assertEquals(Set.of(a, b, c), index.getIndexedFiles());
+        assertEquals(Set.of(a, c), index.search("apple"));
+        assertEquals(Set.of(a, b), index.search("banana"));
+        assertEquals(Set.of(b), index.search("new"));
+        assertTrue(index.search("old").isEmpty());
+        List<String> terms = new ArrayList<>();
+        index.terms().forEach(terms::add);
+        assertEquals(List.of("apple", "banana", "cherry", "new"), terms);
+    }
+
+    @Test
+    void testIndexFilesWithMemoryBudget() throws IOException {
+        File textFile1 = tempDir.resolve("one.txt").toFile();
+        File textFile2 = tempDir.resolve("two.txt").toFile();
+        Files.writeString(textFile1.toPath(), "Warsaw is the capital of Poland");
+        Files.writeString(textFile2.toPath(), "Washington is the capital of the United States");
+
+        SimpleFileIndexer indexer = new SimpleFileIndexer();
+        assertTrue(indexer.indexFile(textFile1));
+        Path path = tempDir.resolve("index.idx");
+        FileIndexer built = indexer.indexFiles(64, path, textFile2);
+        assertNotNull(built);
+
+        // The built index holds both files, while the indexer it was built from is unchanged
+        assertEquals(Set.of(textFile1, textFile2), built.search("capital"));
+        assertEquals(Set.of(textFile1), built.search("poland"));
+        assertEquals(Set.of(textFile1), indexer.getIndexedFiles());
+
+        // A file that can't be read leaves no index file
+        assertNull(built.indexFiles(64, tempDir.resolve("other.idx"), new File(tempDir.toFile(), "missing.txt")));
+        assertFalse(Files.exists(tempDir.resolve("other.idx")));
+    }
+}
@@ -0,0 +1,87 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tokenizing.TokenSet;
+import tokenizing.WhitespaceTokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TermLocationsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testScanRecordsOffsetsAndLines() {
+        byte[] content = "Hello world\n\n  hello\tagain\n".getBytes(StandardCharsets.UTF_8);
+        TokenSet terms = new TokenSet();
+        Map<String, long[]> locations = TermLocations.scan(content, new WhitespaceTokenizer(), terms);
+
+        assertEquals(3, terms.size());
+        long[] hello = locations.get("hello");
+        assertEquals(2, hello.length);
+        assertEquals(0, TermLocations.offset(hello[0]));
+        assertEquals(1, TermLocations.line(hello[0]));
+        assertEquals(15, TermLocations.offset(hello[1]));
+        assertEquals(3, TermLocations.line(hello[1]));
+        assertEquals(3, TermLocations.line(locations.get("again")[0]));
+    }
+
+    @Test
+    void testScanKeepsOnlyTheFirstOccurrences() {
+        byte[] content = "word ".repeat(TermLocations.MAX_OCCURRENCES * 2).getBytes(StandardCharsets.UTF_8);
+        Map<String, long[]> locations = TermLocations.scan(content, new WhitespaceTokenizer(), new TokenSet());
+
+        long[] word = locations.get("word");
+        assertEquals(TermLocations.MAX_OCCURRENCES, word.length);
+        assertEquals(5L * (TermLocations.MAX_OCCURRENCES - 1), TermLocations.offset(word[word.length - 1]));
+    }
+
+    @Test
+    void testPackClampsLargeLines() {
+        long location = TermLocations.pack(123, Integer.MAX_VALUE);
+        assertEquals(123, TermLocations.offset(location));
+        assertTrue(TermLocations.line(location) > 0);
+    }
+
+    @Test
+    void testSnippetIsCutToTheLine() {
+        byte[] bytes = "first line\nsecond line with the term\nthird".getBytes(StandardCharsets.UTF_8);
+        assertEquals("second line with the term", TermLocations.snippet(bytes, bytes.length, 30));
+        assertEquals("", TermLocations.snippet(bytes, 5, 30));
+
+        // A character cut off at the end of the bytes read is dropped
+        byte[] cut = "café".getBytes(StandardCharsets.UTF_8);
+        assertEquals("caf", TermLocations.snippet(cut, cut.length - 1, 0));
+    }
+
+    @Test
+    void testReadsSnippetsFromTheFile() throws IOException {
+        String padding = "x".repeat(TermLocations.SNIPPET_RADIUS * 3);
+        File file = Files.writeString(this.tempDir.resolve("a.txt"),
+                padding + "\nthe needle is here\n" + padding + "\n  another needle\n").toFile();
+
+        TermLocations locations = new TermLocations();
+        locations.put(file, TermLocations.scan(Files.readAllBytes(file.toPath()), new WhitespaceTokenizer(), new TokenSet()));
+
+        List<TermLocation> needles = locations.read(file, "needle");
+        assertEquals(2, needles.size());
+        assertEquals(2, needles.get(0).line());
+        assertEquals("the needle is here", needles.get(0).snippet());
+        assertEquals(4, needles.get(1).line());
+        assertEquals("another needle", needles.get(1).snippet());
+        assertTrue(locations.read(file, "missing").isEmpty());
+
+        locations.retainIf(f -> false);
+        assertEquals(0, locations.size());
+    }
+}
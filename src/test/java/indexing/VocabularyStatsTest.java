@@ -0,0 +1,97 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VocabularyStatsTest {
+
+    @Test
+    void testBucket() {
+        assertEquals(0, VocabularyStats.bucket(1));
+        assertEquals(1, VocabularyStats.bucket(2));
+        assertEquals(1, VocabularyStats.bucket(3));
+        assertEquals(2, VocabularyStats.bucket(4));
+        assertEquals(10, VocabularyStats.bucket(1024));
+    }
+
+    @Test
+    void testSketchKeepsMostFrequentTerms() {
+        VocabularyStats stats = new VocabularyStats(3);
+        // Term i grows to i files, interleaved so frequent terms are evicted and enter again
+        for (int length = 1; length <= 20; length++) {
+            for (int term = length; term <= 20; term++) {
+                stats.grow("t" + term, length);
+            }
+        }
+
+        VocabularyReport report = stats.report(3);
+        assertEquals(20, report.termCount());
+        assertEquals(List.of(new VocabularyReport.TermFrequency("t20", 20), new VocabularyReport.TermFrequency("t19", 19),
+                new VocabularyReport.TermFrequency("t18", 18)), report.topTerms());
+        // Lengths 1, 2-3, 4-7, 8-15 and 16-20
+        assertArrayEquals(new long[]{1, 2, 4, 8, 5}, report.lengthHistogram());
+        assertThrows(IllegalArgumentException.class, () -> stats.report(4));
+    }
+
+    @Test
+    void testIncrementalMatchesScan() {
+        HashMapIndex index = new HashMapIndex();
+        List<File> files = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            File file = new File("file" + i);
+            files.add(file);
+            List<String> tokens = new ArrayList<>();
+            for (int divisor = 1; divisor <= 40; divisor++) {
+                if (i % divisor == 0) {
+                    tokens.add("d" + divisor);
+                }
+            }
+            index.addDocument(file, tokens);
+        }
+        index.addToIndex("single", files.getFirst());
+
+        VocabularyReport report = index.vocabulary(5);
+        assertEquals(41, report.termCount());
+        assertEquals(List.of("d1", "d2", "d3", "d4", "d5"), report.topTerms().stream().map(VocabularyReport.TermFrequency::term).toList());
+        assertEquals(150, report.topTerms().get(1).documentFrequency());
+        assertReportsEqual(scan(index, 5), report);
+
+        // Removing a few files shrinks the statistics before any purge
+        for (File file : files.subList(0, 10)) {
+            index.removeFileFromIndex(file);
+        }
+        assertEquals(0, index.documentFrequency("single"));
+        assertEquals(290, index.documentFrequency("d1"));
+        report = index.vocabulary(5);
+        assertEquals(40, report.termCount());
+        assertReportsEqual(scan(index, 5), report);
+
+        // Removing most files purges the postings, which rebuilds the statistics
+        for (File file : files.subList(10, 250)) {
+            index.removeFileFromIndex(file);
+        }
+        assertReportsEqual(scan(index, 5), index.vocabulary(5));
+
+        index.clearIndex();
+        assertEquals(0, index.vocabulary(5).termCount());
+    }
+
+    private static VocabularyReport scan(Index index, int k) {
+        VocabularyStats stats = new VocabularyStats(k);
+        for (String term : index.terms()) {
+            stats.record(term, index.documentFrequency(term));
+        }
+        return stats.report(k);
+    }
+
+    private static void assertReportsEqual(VocabularyReport expected, VocabularyReport actual) {
+        assertEquals(expected.termCount(), actual.termCount());
+        assertEquals(expected.topTerms(), actual.topTerms());
+        assertArrayEquals(expected.lengthHistogram(), actual.lengthHistogram());
+    }
+}
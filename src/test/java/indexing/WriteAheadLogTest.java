@@ -0,0 +1,120 @@
+package indexing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReplayAppliesRecordsInOrder() throws IOException {
+        for (WriteAheadLog.Durability durability : WriteAheadLog.Durability.values()) {
+            assertReplayAppliesRecordsInOrder(this.tempDir.resolve(durability + ".log"), durability);
+        }
+    }
+
+    private void assertReplayAppliesRecordsInOrder(Path path, WriteAheadLog.Durability durability) throws IOException {
+        File a = new File("docs/a.txt");
+        File b = new File("docs/b.txt");
+        try (WriteAheadLog log = new WriteAheadLog(path, durability, 10)) {
+            log.appendAdd(a, List.of("apple", "banana"));
+            log.appendAdd(b, List.of("banana"));
+            log.appendRemove(a);
+            log.appendPostings("cherry", List.of(a, b));
+            long last = log.appendRemoveDirectory(new File("other"));
+            log.sync(last);
+            assertEquals(5, log.lastSequence());
+        }
+
+        HashMapIndex index = new HashMapIndex();
+        assertEquals(5, WriteAheadLog.replay(path, index));
+        assertEquals(Set.of(a, b), index.getIndexedFiles());
+        assertEquals(Set.of(b), index.search("banana"));
+        assertTrue(index.search("apple").isEmpty());
+        assertEquals(Set.of(a, b), index.search("cherry"));
+
+        // Replaying the log again leaves the index unchanged
+        WriteAheadLog.replay(path, index);
+        assertEquals(Set.of(b), index.search("banana"));
+    }
+
+    @Test
+    void testIncompleteRecordIsCutOff() throws IOException {
+        Path path = this.tempDir.resolve("wal.log");
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.Durability.BATCH, 10)) {
+            log.sync(log.appendAdd(new File("a.txt"), List.of("apple")));
+            log.sync(log.appendAdd(new File("b.txt"), List.of("banana")));
+        }
+
+        // Cut the second record in half, as a crash in the middle of a write would
+        long length = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(length - 5);
+        }
+        HashMapIndex index = new HashMapIndex();
+        assertEquals(1, WriteAheadLog.replay(path, index));
+        assertEquals(Set.of(new File("a.txt")), index.getIndexedFiles());
+
+        // Appending starts after the last complete record
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.Durability.BATCH, 10)) {
+            log.sync(log.appendClear());
+        }
+        assertEquals(2, WriteAheadLog.replay(path, new HashMapIndex()));
+    }
+
+    @Test
+    void testConcurrentChangesShareGroups() throws Exception {
+        Path path = this.tempDir.resolve("wal.log");
+        int threads = 8;
+        int recordsPerThread = 200;
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.Durability.BATCH, 10)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        log.sync(log.appendAdd(new File("t" + thread + "/" + i + ".txt"), List.of("term")));
+                    }
+                }));
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertTrue(log.groupCount() <= threads * recordsPerThread);
+        }
+
+        HashMapIndex index = new HashMapIndex();
+        assertEquals(threads * recordsPerThread, WriteAheadLog.replay(path, index));
+        assertEquals(threads * recordsPerThread, index.count("term"));
+    }
+
+    @Test
+    void testResetEmptiesTheLog() throws IOException {
+        Path path = this.tempDir.resolve("wal.log");
+        try (WriteAheadLog log = new WriteAheadLog(path, WriteAheadLog.Durability.NONE, 10)) {
+            log.appendAdd(new File("a.txt"), List.of("apple"));
+            assertTrue(log.size() > 0);
+            log.reset();
+            assertEquals(0, log.size());
+            log.appendAdd(new File("b.txt"), List.of("banana"));
+        }
+        HashMapIndex index = new HashMapIndex();
+        assertEquals(1, WriteAheadLog.replay(path, index));
+        assertEquals(Set.of(new File("b.txt")), index.getIndexedFiles());
+        assertThrows(IllegalArgumentException.class, () -> new WriteAheadLog(path, WriteAheadLog.Durability.INTERVAL, 0));
+    }
+}
@@ -0,0 +1,155 @@
+package server;
+
+import indexing.LoggedHashMapIndex;
+import indexing.SimpleFileIndexer;
+import indexing.WriteAheadLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tokenizing.WhitespaceTokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexServerTest {
+
+    private IndexServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private File textFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new IndexServer(new SimpleFileIndexer(), 0, 8, 1);
+        server.start();
+
+        textFile = Files.createTempFile("serverTest", ".txt").toFile();
+        Files.writeString(textFile.toPath(), "Warsaw is the capital of Poland");
+        textFile.deleteOnExit();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testIndexAndQuery() throws IOException, InterruptedException {
+        String path = URLEncoder.encode(textFile.getAbsolutePath(), StandardCharsets.UTF_8);
+        HttpResponse<String> indexResponse = send("POST", "/index?path=" + path);
+        assertEquals(200, indexResponse.statusCode());
+        assertEquals("{\"indexed\":1,\"failed\":[]}", indexResponse.body());
+
+        HttpResponse<String> queryResponse = send("GET", "/query?q=Poland");
+        assertEquals(200, queryResponse.statusCode());
+        assertTrue(queryResponse.body().contains("\"count\":1"));
+        assertTrue(queryResponse.body().contains(textFile.getName()));
+
+        HttpResponse<String> pageResponse = send("GET", "/query?q=Poland&limit=1");
+        assertTrue(pageResponse.body().endsWith("\"next\":null}"));
+        assertEquals(400, send("GET", "/query?q=Poland&limit=x").statusCode());
+
+        HttpResponse<String> missResponse = send("GET", "/query?q=potatoes");
+        assertEquals("{\"keyword\":\"potatoes\",\"count\":0,\"files\":[]}", missResponse.body());
+
+        HttpResponse<String> statsResponse = send("GET", "/stats");
+        assertTrue(statsResponse.body().startsWith("{\"indexedFiles\":1,"));
+    }
+
+    @Test
+    void testInvalidRequests() throws IOException, InterruptedException {
+        assertEquals(400, send("GET", "/query").statusCode());
+        assertEquals(400, send("POST", "/index").statusCode());
+        assertEquals(405, send("GET", "/index?path=x").statusCode());
+    }
+
+    @Test
+    void testOversizedAndMalformedBodies() throws IOException, InterruptedException {
+        assertEquals(413, sendBody("/index", "path=" + "a".repeat(IndexServer.MAX_BODY_BYTES)).statusCode());
+        assertEquals(400, sendBody("/index", "path=%zz").statusCode());
+        assertEquals(400, sendBody("/index", "path=%E").statusCode());
+
+        // The server keeps serving after rejecting the bodies
+        String path = URLEncoder.encode(textFile.getAbsolutePath(), StandardCharsets.UTF_8);
+        assertEquals(200, sendBody("/index", "path=" + path).statusCode());
+    }
+
+    private HttpResponse<String> sendBody(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testBackpressure() throws IOException, InterruptedException {
+        server.stop();
+        // A server without request permits rejects everything right away
+        server = new IndexServer(new SimpleFileIndexer(), 0, 0, 1);
+        server.start();
+
+        HttpResponse<String> response = send("GET", "/query?q=poland");
+        assertEquals(503, response.statusCode());
+        assertTrue(response.headers().firstValue("Retry-After").isPresent());
+    }
+
+    @Test
+    void testCheckpoints(@TempDir Path directory) throws IOException, InterruptedException {
+        assertEquals(400, send("POST", "/checkpoint").statusCode());
+        server.stop();
+
+        try (LoggedHashMapIndex index = LoggedHashMapIndex.open(directory, WriteAheadLog.Durability.BATCH, 10)) {
+            SimpleFileIndexer indexer = new SimpleFileIndexer(new WhitespaceTokenizer(), index);
+            server = new IndexServer(indexer, 0, 8, 1);
+            server.start();
+
+            // Forced through the endpoint
+            assertTrue(indexer.indexFile(textFile));
+            assertTrue(indexer.getLogSize() > 0);
+            HttpResponse<String> response = send("POST", "/checkpoint");
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().startsWith("{\"checkpointedLogBytes\":"), response.body());
+            assertEquals(0, indexer.getLogSize());
+
+            // Triggered by the size of the log
+            server.scheduleCheckpoints(1, 60_000);
+            assertTrue(indexer.indexFile(textFile));
+            for (int i = 0; i < 100 && indexer.getLogSize() > 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, indexer.getLogSize());
+            server.stop();
+        }
+
+        try (LoggedHashMapIndex recovered = LoggedHashMapIndex.open(directory, WriteAheadLog.Durability.NONE, 10)) {
+            assertEquals(1, recovered.getIndexedFiles().size());
+        }
+    }
+
+    @Test
+    void testParseParameters() {
+        Map<String, List<String>> parameters = IndexServer.parseParameters("path=a%20b&path=c&recursive=true&empty");
+        assertEquals(List.of("a b", "c"), parameters.get("path"));
+        assertEquals(List.of("true"), parameters.get("recursive"));
+        assertEquals(List.of(""), parameters.get("empty"));
+    }
+}
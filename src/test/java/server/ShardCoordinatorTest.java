@@ -0,0 +1,111 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardCoordinatorTest {
+
+    private static ShardCoordinator coordinator;
+    private static final List<File> files = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        // Two real worker JVMs on the local machine
+        coordinator = ShardCoordinator.launch(2, Duration.ofSeconds(5));
+
+        File directory = Files.createTempDirectory("shards").toFile();
+        directory.deleteOnExit();
+        for (int i = 0; i < 6; i++) {
+            File file = new File(directory, "file" + i + ".txt");
+            Files.writeString(file.toPath(), "common unique" + i + (i % 2 == 0 ? " even" : " odd"));
+            file.deleteOnExit();
+            files.add(file);
+        }
+
+        ShardCoordinator.IndexResult result = coordinator.index(List.of(directory), false);
+        assertEquals(6, result.indexed());
+        assertTrue(result.failed().isEmpty());
+    }
+
+    @AfterAll
+    static void tearDown() {
+        coordinator.close();
+    }
+
+    @Test
+    void testQueryMergesAllShards() {
+        ShardCoordinator.QueryResult result = coordinator.search("common");
+        assertEquals(Set.copyOf(files), result.files());
+        assertFalse(result.partial());
+
+        assertEquals(Set.of(files.get(3)), coordinator.search("unique3").files());
+        assertEquals(Set.of(files.get(0), files.get(2), files.get(4)), coordinator.search("even").files());
+        assertTrue(coordinator.search("potatoes").files().isEmpty());
+    }
+
+    @Test
+    void testFilesAreSpreadAcrossShards() {
+        long firstShard = files.stream().filter(file -> coordinator.shardOf(file) == 0).count();
+        assertTrue(firstShard > 0 && firstShard < files.size());
+    }
+
+    @Test
+    void testSlowAndUnreachableShardsGivePartialResults() throws IOException {
+        // A shard that answers far too late
+        HttpServer slowShard = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        slowShard.createContext("/", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.close();
+        });
+        slowShard.start();
+
+        try {
+            URI slow = URI.create("http://127.0.0.1:" + slowShard.getAddress().getPort());
+            URI unreachable = URI.create("http://127.0.0.1:1");
+            List<URI> shards = new ArrayList<>(coordinator.getShards());
+            shards.add(slow);
+            shards.add(unreachable);
+
+            ShardCoordinator partialCoordinator = new ShardCoordinator(shards, Duration.ofMillis(300), Duration.ofMillis(500));
+            ShardCoordinator.QueryResult result = partialCoordinator.search("common");
+
+            assertTrue(result.partial());
+            assertEquals(List.of(slow, unreachable), result.failedShards());
+            // The answers of the healthy shards are still returned
+            assertEquals(Set.copyOf(files), result.files());
+
+            // Indexing doesn't wait for the slow shard either, its paths are reported as failed
+            ShardCoordinator.IndexResult indexResult = partialCoordinator.index(files, false);
+            Set<String> expectedFailures = new HashSet<>();
+            for (File file : files) {
+                int shard = partialCoordinator.shardOf(file);
+                if (shard >= 2) {
+                    expectedFailures.add(file.getAbsolutePath());
+                }
+            }
+            assertEquals(expectedFailures, Set.copyOf(indexResult.failed()));
+            assertEquals(files.size() - expectedFailures.size(), indexResult.indexed());
+        } finally {
+            slowShard.stop(0);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package tokenizing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisChainTest {
+
+    @Test
+    void testEnglishChain() {
+        AnalysisChain chain = AnalysisChain.english(null);
+        assertEquals(List.of("new", "york", "city", "largest", "city", "united", "state"),
+                chain.tokenize("New York, the City! (largest of the cities in the United States)"));
+    }
+
+    @Test
+    void testStreamingMatchesList() {
+        AnalysisChain chain = new AnalysisChain(new WhitespaceTokenizer(), new PunctuationFilter());
+        List<String> streamed = new ArrayList<>();
+        chain.tokenize("  Hello, world!\t-- done  ", streamed::add);
+        assertEquals(List.of("hello", "world", "done"), streamed);
+        assertEquals(streamed, chain.tokenize("  Hello, world!\t-- done  "));
+    }
+
+    @Test
+    void testPunctuationFilter() {
+        PunctuationFilter filter = new PunctuationFilter();
+        assertEquals("york", filter.filter("york,"));
+        assertEquals("york", filter.filter("(york)"));
+        assertEquals("e-mail", filter.filter("e-mail"));
+        assertEquals("3.14", filter.filter("3.14"));
+        assertNull(filter.filter("--"));
+    }
+
+    @Test
+    void testLightStemFilter() {
+        LightStemFilter filter = new LightStemFilter();
+        assertEquals("city", filter.filter("cities"));
+        assertEquals("horse", filter.filter("horses"));
+        assertEquals("car", filter.filter("cars"));
+        assertEquals("status", filter.filter("status"));
+        assertEquals("class", filter.filter("class"));
+        assertEquals("is", filter.filter("is"));
+    }
+
+    @Test
+    void testNormalizeSkipsIndexOnlyFilters() {
+        Map<String, Integer> frequencies = new HashMap<>(Map.of("common", 10));
+        DocumentFrequencyFilter frequencyFilter = new DocumentFrequencyFilter(0.5, 5);
+        frequencyFilter.setStatistics(new TermStatistics() {
+            @Override
+            public int documentFrequency(String term) {
+                return frequencies.getOrDefault(term, 0);
+            }
+
+            @Override
+            public int documentCount() {
+                return 10;
+            }
+        });
+        AnalysisChain chain = AnalysisChain.english(frequencyFilter);
+
+        // Frequent terms are not indexed any more, but can still be searched for
+        assertEquals(List.of("common", "rare"), chain.tokenize("common rare"));
+        List<String> kept = new ArrayList<>();
+        chain.filterDistinct(TokenSet.of(chain.tokenize("common rare"))).forEach(kept::add);
+        assertEquals(List.of("rare"), kept);
+        assertEquals("common", chain.normalize("Common,"));
+        assertNull(chain.normalize("The"));
+    }
+
+    @Test
+    void testDocumentFrequencyFilterWaitsForMinimumDocuments() {
+        DocumentFrequencyFilter filter = new DocumentFrequencyFilter(0.5, 100);
+        assertEquals("word", filter.filter("word")); // Not connected to an index yet
+
+        filter.setStatistics(new TermStatistics() {
+            @Override
+            public int documentFrequency(String term) {
+                return 10;
+            }
+
+            @Override
+            public int documentCount() {
+                return 10;
+            }
+        });
+        assertEquals("word", filter.filter("word"));
+    }
+}
@@ -0,0 +1,103 @@
+package tokenizing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedFileTokenizerTest {
+
+    private static File createFile(String contents) throws IOException {
+        File file = Files.createTempFile("chunked", ".txt").toFile();
+        Files.writeString(file.toPath(), contents);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static List<String> serial(Tokenizer tokenizer, File file) throws IOException {
+        TokenSet terms = new TokenSet();
+        tokenizer.tokenize(Files.readString(file.toPath()), token -> terms.add(token.toLowerCase()));
+        List<String> tokens = new ArrayList<>();
+        terms.forEach(tokens::add);
+        return tokens;
+    }
+
+    private static List<String> chunked(Tokenizer tokenizer, File file, int chunkSize) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<String> tokens = new ArrayList<>();
+            new ChunkedFileTokenizer(tokenizer, chunkSize, executor, 3).tokenize(file).forEach(tokens::add);
+            return tokens;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSameAsSerialTokenization() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Word").append(i % 300).append(i % 7 == 0 ? "\n" : " ").append("Zażółć gęślą jaźń\t");
+        }
+        File file = createFile(text.toString());
+
+        for (Tokenizer tokenizer : List.of(new Utf8ByteTokenizer(), new WhitespaceTokenizer())) {
+            List<String> expected = serial(tokenizer, file);
+            for (int chunkSize : new int[]{1, 7, 64, 1000, 1 << 20}) {
+                // Same tokens, first seen in the same order
+                assertEquals(expected, chunked(tokenizer, file, chunkSize));
+            }
+        }
+    }
+
+    @Test
+    void testStreamSameAsFile() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("Word").append(i % 300).append(i % 7 == 0 ? "\n" : " ").append("Zażółć gęślą jaźń\t");
+        }
+        text.append("a".repeat(5000)); // A token longer than the chunk, at the end of the stream
+        File file = createFile(text.toString());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int chunkSize : new int[]{1, 7, 64, 1000, 1 << 20}) {
+                ChunkedFileTokenizer tokenizer = new ChunkedFileTokenizer(new Utf8ByteTokenizer(), chunkSize, executor, 3);
+                List<String> tokens = new ArrayList<>();
+                tokenizer.tokenize(new ByteArrayInputStream(bytes)).forEach(tokens::add);
+                assertEquals(serial(new Utf8ByteTokenizer(), file), tokens);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testTokensLongerThanChunk() throws IOException {
+        String longToken = "a".repeat(10_000);
+        File file = createFile("  first " + longToken + " last");
+        assertEquals(List.of("first", longToken, "last"), chunked(new Utf8ByteTokenizer(), file, 16));
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        File file = createFile("");
+        assertTrue(chunked(new Utf8ByteTokenizer(), file, 16).isEmpty());
+    }
+
+    @Test
+    void testMissingFile() {
+        File file = new File("missing-" + System.nanoTime() + ".txt");
+        assertThrows(IOException.class, () -> chunked(new Utf8ByteTokenizer(), file, 16));
+    }
+}
@@ -0,0 +1,56 @@
+package tokenizing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenSetTest {
+
+    @Test
+    void testDeduplication() {
+        TokenSet set = new TokenSet();
+        assertTrue(set.add("the"));
+        assertTrue(set.add("city"));
+        assertFalse(set.add("the"));
+        assertFalse(set.add("city"));
+
+        assertEquals(2, set.size());
+        assertTrue(set.contains("the"));
+        assertFalse(set.contains("york"));
+    }
+
+    @Test
+    void testInsertionOrderAndGrowth() {
+        TokenSet set = new TokenSet(1);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            expected.add("token" + i);
+            set.add("token" + i);
+            set.add("token" + (i / 2)); // Repeats of earlier tokens
+        }
+
+        List<String> actual = new ArrayList<>();
+        set.forEach(actual::add);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testClear() {
+        TokenSet set = TokenSet.of(List.of("a", "b", "a"));
+        assertEquals(2, set.size());
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains("a"));
+        assertTrue(set.add("a"));
+    }
+
+    @Test
+    void testOfReturnsSameSet() {
+        TokenSet set = TokenSet.of(List.of("a"));
+        assertSame(set, TokenSet.of(set));
+    }
+}
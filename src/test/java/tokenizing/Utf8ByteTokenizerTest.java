@@ -0,0 +1,103 @@
+package tokenizing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8ByteTokenizerTest {
+
+    private final Utf8ByteTokenizer tokenizer = new Utf8ByteTokenizer();
+
+    private List<String> tokenizeBytes(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        List<String> tokens = new ArrayList<>();
+        tokenizer.tokenize(bytes, 0, bytes.length, tokens::add);
+        return tokens;
+    }
+
+    @Test
+    void tokenize_sameAsWhitespaceTokenizer() {
+        String input = "Hello, world!\tThis is a test.\n";
+        assertEquals(List.of("hello,", "world!", "this", "is", "a", "test."), tokenizeBytes(input));
+        assertEquals(tokenizeBytes(input), tokenizer.tokenize(input));
+    }
+
+    @Test
+    void tokenize_nonAscii() {
+        assertEquals(List.of("żółw", "łódź", "straße", "ελλάδα", "日本"), tokenizeBytes("ŻÓŁW Łódź STRAßE ΕΛΛΆΔΑ 日本"));
+    }
+
+    @Test
+    void tokenize_reusesStrings() {
+        List<String> tokens = tokenizeBytes("the The THE the");
+        assertEquals(List.of("the", "the", "the", "the"), tokens);
+        // Every occurrence of a known term is the same String instance
+        for (String token : tokens) {
+            assertSame(tokens.getFirst(), token);
+        }
+    }
+
+    @Test
+    void tokenize_emptyAndWhitespaceOnly() {
+        assertTrue(tokenizeBytes("").isEmpty());
+        assertTrue(tokenizeBytes(" \t\n\u000B\f\r ").isEmpty());
+    }
+
+    @Test
+    void tokenize_range() {
+        byte[] bytes = "skip KEEP this skip".getBytes(StandardCharsets.UTF_8);
+        List<String> tokens = new ArrayList<>();
+        tokenizer.tokenize(bytes, 5, 9, tokens::add);
+        assertEquals(List.of("keep", "this"), tokens);
+    }
+
+    @Test
+    void acquire_reusesIdleTablesUpToOnePerProcessor() {
+        Utf8ByteTokenizer.Scratch first = tokenizer.acquire();
+        Utf8ByteTokenizer.Scratch second = tokenizer.acquire();
+        assertNotSame(first, second);
+        tokenizer.release(first);
+        assertSame(first, tokenizer.acquire());
+
+        // Tables released beyond one per processor are dropped
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Utf8ByteTokenizer.Scratch> inUse = new ArrayList<>();
+        for (int i = 0; i < processors + 5; i++) {
+            inUse.add(tokenizer.acquire());
+        }
+        inUse.forEach(tokenizer::release);
+        Set<Utf8ByteTokenizer.Scratch> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < processors + 5; i++) {
+            reused.add(tokenizer.acquire());
+        }
+        assertEquals(processors, inUse.stream().filter(reused::contains).count());
+    }
+
+    @Test
+    void tokenize_randomTextMatchesWhitespaceTokenizer() {
+        WhitespaceTokenizer reference = new WhitespaceTokenizer();
+        // A tiny cache makes sure clearing it doesn't change the result
+        Utf8ByteTokenizer smallCache = new Utf8ByteTokenizer(16);
+        Random random = new Random(7);
+        String alphabet = "aAbBzZ09.,!é€😀 \t\n";
+
+        for (int round = 0; round < 100; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                text.append(Character.toChars(alphabet.codePointAt(alphabet.offsetByCodePoints(0, random.nextInt(alphabet.codePointCount(0, alphabet.length()))))));
+            }
+
+            List<String> expected = new ArrayList<>();
+            reference.tokenize(text.toString(), expected::add);
+            assertEquals(expected, smallCache.tokenize(text.toString()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package tokenizing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorWhitespaceTokenizerTest {
+
+    private final Utf8ByteTokenizer scalar = new Utf8ByteTokenizer();
+    private final VectorWhitespaceTokenizer vector = new VectorWhitespaceTokenizer();
+
+    private static List<String> tokenize(Utf8ByteTokenizer tokenizer, byte[] bytes, int offset, int length) {
+        List<String> tokens = new ArrayList<>();
+        tokenizer.tokenize(bytes, offset, length, tokens::add);
+        return tokens;
+    }
+
+    @Test
+    void testFastestUsesVectorApiWhenAvailable() {
+        // The tests run with --add-modules jdk.incubator.vector
+        assertInstanceOf(VectorWhitespaceTokenizer.class, Utf8ByteTokenizer.fastest());
+        assertTrue(Utf8ByteTokenizer.fastest().isVectorized());
+        assertFalse(this.scalar.isVectorized());
+    }
+
+    @Test
+    void testTokensSpanningVectors() {
+        String longToken = "x".repeat(150);
+        String text = "  Start " + longToken + "\t\t" + " ".repeat(100) + "MIDDLE\nend";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        assertEquals(List.of("start", longToken, "middle", "end"), tokenize(vector, bytes, 0, bytes.length));
+    }
+
+    @Test
+    void testMatchesScalarTokenizer() {
+        Random random = new Random(11);
+        String alphabet = "abcXYZ,.é日 \t\n\r\u000B\f";
+
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(400);
+            for (int i = 0; i < length; i++) {
+                // Long runs of the same kind of character, to exercise vectors without boundaries
+                char c = alphabet.charAt(random.nextInt(alphabet.length()));
+                text.append(String.valueOf(c).repeat(1 + random.nextInt(random.nextBoolean() ? 3 : 70)));
+            }
+
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            // Only split between characters, as the scalar tokenizer would
+            while (offset > 0 && (bytes[offset] & 0xC0) == 0x80) {
+                offset--;
+            }
+            assertEquals(tokenize(scalar, bytes, 0, bytes.length), tokenize(vector, bytes, 0, bytes.length));
+            assertEquals(tokenize(scalar, bytes, offset, bytes.length - offset),
+                    tokenize(vector, bytes, offset, bytes.length - offset));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package tokenizing;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,6 +40,19 @@ class WhitespaceTokenizerTest {
     }
 
 
+    @Test
+    void tokenize_streaming() {
+        // The streaming variant produces the same tokens without building a list
+        List<String> tokens = new ArrayList<>();
+        tokenizer.tokenize(input, tokens::add);
+        assertEquals(tokenizer.tokenize(input), tokens);
+
+        // Leading whitespace doesn't produce an empty token
+        tokens.clear();
+        tokenizer.tokenize(" \u000BHello\fworld ", tokens::add);
+        assertEquals(List.of("hello", "world"), tokens);
+    }
+
     @Test
     void tokenize_multipleSpaces() {
         // Test tokenization of multiple spaces
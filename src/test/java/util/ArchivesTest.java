@@ -0,0 +1,114 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchivesTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Map<String, String> read(File archive) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        Archives.forEachTextEntry(archive, (entry, content) ->
+                entries.put(entry.getPath(), new String(content.readAllBytes(), StandardCharsets.UTF_8)));
+        return entries;
+    }
+
+    @Test
+    void testZipEntries() throws IOException {
+        File archive = this.tempDir.resolve("sources.jar").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive.toPath()))) {
+            zip.putNextEntry(new ZipEntry("docs/"));
+            zip.putNextEntry(new ZipEntry("docs/readme.txt"));
+            zip.write("hello archive".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("Main.class"));
+            zip.write(new byte[]{(byte) 0xCA, (byte) 0xFE, 0, 0});
+            zip.putNextEntry(new ZipEntry("app.log"));
+            zip.write("log line".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("data"));
+            zip.write(new byte[]{1, 0, 2});
+        }
+
+        assertTrue(Archives.isArchive(archive));
+        // Binary entries are skipped: by their type, or by their content if the name has no known type
+        assertEquals(Map.of(
+                archive.getPath() + "!/docs/readme.txt", "hello archive",
+                archive.getPath() + "!/app.log", "log line"), read(archive));
+    }
+
+    @Test
+    void testGzip() throws IOException {
+        File archive = this.tempDir.resolve("notes.txt.gz").toFile();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive.toPath()))) {
+            out.write("compressed notes".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(Map.of(archive.getPath() + "!/notes.txt", "compressed notes"), read(archive));
+    }
+
+    @Test
+    void testTarGzip() throws IOException {
+        String longName = "deep/".repeat(30) + "file.txt";
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "dir/", '5', new byte[0]);
+        writeTarEntry(tar, "dir/a.txt", '0', "first file".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "././@LongLink", 'L', (longName + "\0").getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, longName.substring(0, 99), '0', "second file".getBytes(StandardCharsets.UTF_8));
+        tar.write(new byte[1024]);
+
+        File archive = this.tempDir.resolve("logs.tar.gz").toFile();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive.toPath()))) {
+            out.write(tar.toByteArray());
+        }
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put(archive.getPath() + "!/dir/a.txt", "first file");
+        expected.put(archive.getPath() + "!/" + longName, "second file");
+        assertEquals(expected, read(archive));
+    }
+
+    @Test
+    void testCorruptArchive() throws IOException {
+        File archive = this.tempDir.resolve("broken.gz").toFile();
+        Files.writeString(archive.toPath(), "not compressed at all");
+
+        assertThrows(IOException.class, () -> read(archive));
+    }
+
+    @Test
+    void testEntryPaths() {
+        File archive = new File("dir", "logs.zip");
+        assertEquals(new File("dir", "logs.zip!" + File.separator + "a.txt"), Archives.entryFile(archive, "a.txt"));
+        assertEquals(new File("dir", "logs.zip!"), Archives.entryDirectory(archive));
+        assertFalse(Archives.isArchive(new File("notes.txt")));
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream tar, String name, char type, byte[] content) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        tar.writeBytes(header);
+        tar.writeBytes(content);
+        tar.writeBytes(new byte[(512 - content.length % 512) % 512]);
+    }
+}
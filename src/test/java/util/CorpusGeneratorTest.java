@@ -0,0 +1,76 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWords() {
+        assertEquals("a", CorpusGenerator.word(0));
+        assertEquals("z", CorpusGenerator.word(25));
+        assertEquals("aa", CorpusGenerator.word(26));
+        assertEquals("az", CorpusGenerator.word(51));
+        assertEquals("ba", CorpusGenerator.word(52));
+        assertEquals("zz", CorpusGenerator.word(701));
+        assertEquals("aaa", CorpusGenerator.word(702));
+    }
+
+    @Test
+    void testZipfDistribution() {
+        ZipfDistribution distribution = new ZipfDistribution(100, 1.0);
+        assertEquals(2 * distribution.probability(1), distribution.probability(0), 1e-12);
+        assertEquals(3 * distribution.probability(2), distribution.probability(0), 1e-12);
+
+        int[] counts = new int[100];
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            counts[distribution.sample(random)]++;
+        }
+        assertEquals(distribution.probability(0) * 100_000, counts[0], 1000);
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[9] && counts[9] > counts[99]);
+
+        ZipfDistribution uniform = new ZipfDistribution(4, 0);
+        assertEquals(0.25, uniform.probability(3), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> new ZipfDistribution(0, 1));
+    }
+
+    @Test
+    void testGenerateIsReproducible() throws IOException {
+        CorpusGenerator generator = new CorpusGenerator(20, 30, 2, 1000, 1.0, 7);
+        List<File> files = generator.generate(this.tempDir.resolve("first"));
+        List<File> again = new CorpusGenerator(20, 30, 2, 1000, 1.0, 7).generate(this.tempDir.resolve("second"));
+
+        assertEquals(20, files.size());
+        for (int i = 0; i < files.size(); i++) {
+            Path relative = this.tempDir.resolve("first").relativize(files.get(i).toPath());
+            assertEquals(3, relative.getNameCount()); // Two directories and the file
+            String content = Files.readString(files.get(i).toPath());
+            assertEquals(30, content.trim().split("\\s+").length);
+            assertEquals(content, Files.readString(again.get(i).toPath()));
+        }
+    }
+
+    @Test
+    void testWorkloadRoundTrip() throws IOException {
+        QueryWorkload workload = QueryWorkload.generate(new ZipfDistribution(1000, 1.0), 50, 3, 5);
+        assertEquals(50, workload.size());
+        assertTrue(workload.queries().stream().allMatch(query -> query.size() >= 1 && query.size() <= 3));
+
+        Path file = this.tempDir.resolve("workload.txt");
+        workload.save(file);
+        assertEquals(workload.queries(), QueryWorkload.load(file).queries());
+    }
+}
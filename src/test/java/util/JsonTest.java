@@ -0,0 +1,50 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTest {
+
+    @Test
+    void testWrite() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "a \"quoted\"\\path\n");
+        map.put("count", 3);
+        map.put("partial", false);
+        map.put("files", List.of("x", "y"));
+        map.put("missing", null);
+
+        assertEquals("{\"name\":\"a \\\"quoted\\\"\\\\path\\n\",\"count\":3,\"partial\":false,\"files\":[\"x\",\"y\"],\"missing\":null}",
+                Json.write(map));
+    }
+
+    @Test
+    void testParseRoundTrip() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "tab\tquote\" unicode \u00e9");
+        map.put("count", 42L);
+        map.put("ratio", 0.5);
+        map.put("ok", true);
+        map.put("files", List.of("a", "b"));
+        map.put("nested", Map.of("empty", List.of()));
+
+        assertEquals(map, Json.parse(Json.write(map)));
+    }
+
+    @Test
+    void testParseWhitespaceAndEscapes() {
+        assertEquals(Map.of("a", List.of(1L, -2L, "\u0041")), Json.parse(" { \"a\" : [ 1 , -2 , \"\\u0041\" ] } "));
+    }
+
+    @Test
+    void testParseInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{\"a\":1"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("[1,]"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{} extra"));
+    }
+}